@@ -0,0 +1,31 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.example.NullQueueCharFaweChunk;
+import com.boydti.fawe.jnbt.anvil.MCAQueue;
+import com.boydti.fawe.object.FaweChunk;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * An anvil queue on a temporary folder, so benchmarks can run without a server<br>
+ * - Queued chunks are plain char chunks (the same as a server queue would create)
+ */
+public class BenchmarkQueue extends MCAQueue {
+
+    public BenchmarkQueue(File folder) {
+        super("benchmark", folder, true);
+    }
+
+    public static File createFolder() throws IOException {
+        File folder = Files.createTempDirectory("fawe-benchmark").toFile();
+        new File(folder, "region").mkdirs();
+        folder.deleteOnExit();
+        return folder;
+    }
+
+    @Override
+    public FaweChunk getQueuedFaweChunk(int x, int z) {
+        return new NullQueueCharFaweChunk(x, z);
+    }
+}
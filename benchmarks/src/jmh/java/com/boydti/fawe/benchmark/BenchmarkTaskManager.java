@@ -0,0 +1,54 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.util.TaskManager;
+
+/**
+ * A task manager without a server, so code using {@link TaskManager#IMP} can be benchmarked<br>
+ * - Main thread and delayed tasks are run straight away on the calling thread<br>
+ * - Async tasks are run on the public fork join pool
+ */
+public class BenchmarkTaskManager extends TaskManager {
+
+    /**
+     * Set {@link TaskManager#IMP} if no task manager is set yet
+     */
+    public static void init() {
+        if (TaskManager.IMP == null) {
+            TaskManager.IMP = new BenchmarkTaskManager();
+        }
+    }
+
+    @Override
+    public int repeat(Runnable r, int interval) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    @Override
+    public int repeatAsync(Runnable r, int interval) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    @Override
+    public void async(Runnable r) {
+        getPublicForkJoinPool().execute(r);
+    }
+
+    @Override
+    public void task(Runnable r) {
+        r.run();
+    }
+
+    @Override
+    public void later(Runnable r, int delay) {
+        r.run();
+    }
+
+    @Override
+    public void laterAsync(Runnable r, int delay) {
+        async(r);
+    }
+
+    @Override
+    public void cancel(int task) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.LocalBlockVectorSet;
+import com.boydti.fawe.object.collection.SparseBitSet;
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.worldedit.Vector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Add, test and iterate the positions of a sphere in the block vector sets, and the bit set they use
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockSetBenchmark {
+    private static final int RADIUS = 32;
+
+    // x, y, z of each position
+    private int[] positions;
+    private BlockVectorSet blockVectorSet;
+    private LocalBlockVectorSet localSet;
+    private SparseBitSet bitSet;
+
+    @Setup
+    public void setup() {
+        int size = 0;
+        int[] tmp = new int[(RADIUS * 2 + 1) * (RADIUS * 2 + 1) * (RADIUS * 2 + 1) * 3];
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int y = -RADIUS; y <= RADIUS; y++) {
+                for (int z = -RADIUS; z <= RADIUS; z++) {
+                    if (x * x + y * y + z * z <= RADIUS * RADIUS) {
+                        tmp[size++] = x;
+                        tmp[size++] = y + 128;
+                        tmp[size++] = z;
+                    }
+                }
+            }
+        }
+        positions = new int[size];
+        System.arraycopy(tmp, 0, positions, 0, size);
+        blockVectorSet = addBlockVectorSet();
+        localSet = addLocalSet();
+        bitSet = setBits();
+    }
+
+    @Benchmark
+    public BlockVectorSet addBlockVectorSet() {
+        BlockVectorSet set = new BlockVectorSet();
+        for (int i = 0; i < positions.length; i += 3) {
+            set.add(positions[i], positions[i + 1], positions[i + 2]);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public LocalBlockVectorSet addLocalSet() {
+        LocalBlockVectorSet set = new LocalBlockVectorSet();
+        for (int i = 0; i < positions.length; i += 3) {
+            set.add(positions[i], positions[i + 1], positions[i + 2]);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public int containsBlockVectorSet() {
+        int count = 0;
+        for (int i = 0; i < positions.length; i += 3) {
+            if (blockVectorSet.contains(positions[i] + 1, positions[i + 1], positions[i + 2])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int containsLocalSet() {
+        int count = 0;
+        for (int i = 0; i < positions.length; i += 3) {
+            if (localSet.contains(positions[i] + 1, positions[i + 1], positions[i + 2])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long iterateBlockVectorSet() {
+        long total = 0;
+        for (Vector pos : blockVectorSet) {
+            total += pos.getBlockY();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long iterateLocalSet() {
+        long total = 0;
+        for (Vector pos : localSet) {
+            total += pos.getBlockY();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public SparseBitSet setBits() {
+        SparseBitSet set = new SparseBitSet();
+        for (int i = 0; i < positions.length; i += 3) {
+            set.set(MathMan.tripleSearchCoords(positions[i], positions[i + 1], positions[i + 2]));
+        }
+        return set;
+    }
+
+    @Benchmark
+    public long nextSetBit() {
+        long total = 0;
+        for (int index = bitSet.nextSetBit(0); index != -1; index = bitSet.nextSetBit(index + 1)) {
+            total += index;
+        }
+        return total;
+    }
+}
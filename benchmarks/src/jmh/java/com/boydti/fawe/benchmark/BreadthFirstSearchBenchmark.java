@@ -0,0 +1,61 @@
+package com.boydti.fawe.benchmark;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Flood fill a sphere with a {@link RecursiveVisitor} (no queue, so only the search itself is measured)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BreadthFirstSearchBenchmark {
+
+    @Param({"16", "48"})
+    public int radius;
+
+    private static class SphereMask extends AbstractMask {
+        private final int radiusSqr;
+
+        private SphereMask(int radius) {
+            this.radiusSqr = radius * radius;
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+        }
+
+        @Override
+        public boolean test(int x, int y, int z) {
+            y -= 128;
+            return x * x + y * y + z * z <= radiusSqr;
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public int floodFill() {
+        RecursiveVisitor visitor = new RecursiveVisitor(new SphereMask(radius), position -> true);
+        visitor.visit(new Vector(0, 128, 0));
+        Operations.completeBlindly(visitor);
+        return visitor.getAffected();
+    }
+}
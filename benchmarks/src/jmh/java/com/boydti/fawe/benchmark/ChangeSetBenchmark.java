@@ -0,0 +1,64 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.change.MutableBlockChange;
+import com.boydti.fawe.object.changeset.MemoryOptimizedHistory;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Write and read the block changes of a 64x64x64 edit in a {@link MemoryOptimizedHistory}<br>
+ * - compression = history.compression-level
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChangeSetBenchmark {
+    private static final int SIZE = 64;
+
+    @Param({"1", "4", "8"})
+    public int compression;
+
+    private MemoryOptimizedHistory written;
+
+    @Setup
+    public void setup() {
+        Settings.IMP.HISTORY.COMPRESSION_LEVEL = compression;
+        written = write();
+    }
+
+    @Benchmark
+    public MemoryOptimizedHistory write() {
+        MemoryOptimizedHistory history = new MemoryOptimizedHistory("benchmark");
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    int from = y < 32 ? 1 << 4 : 0;
+                    int to = ((x + z) & 3) == 0 ? 4 << 4 : 3 << 4;
+                    history.add(x, y, z, from, to);
+                }
+            }
+        }
+        history.flush();
+        return history;
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        long total = 0;
+        Iterator<MutableBlockChange> iterator = written.getBlockIterator(false);
+        while (iterator.hasNext()) {
+            total += iterator.next().id;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,120 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.object.io.FastByteArrayInputStream;
+import com.boydti.fawe.object.io.FastByteArrayOutputStream;
+import com.boydti.fawe.object.io.PGZIPOutputStream;
+import com.boydti.fawe.object.io.zstd.ZstdFrameInputStream;
+import com.boydti.fawe.object.io.zstd.ZstdFrameOutputStream;
+import com.boydti.fawe.util.MainUtil;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compress and decompress 4MB of block data with the codecs used for history and clipboards<br>
+ * - LZ4 / LZ4_HIGH / ZSTD = {@link MainUtil#getCompressedOS(OutputStream, int, int)} at level 1 / 4 / 7<br>
+ * - Level 7 is zstd at level 22 under the LZ4 layers (zstd-jni if the native library loads, otherwise pure java)<br>
+ * - ZSTD_JNI = the zstd-jni {@link ZstdOutputStream} / {@link ZstdInputStream} at level 3<br>
+ * - ZSTD_JAVA = the pure java {@link ZstdFrameOutputStream} / {@link ZstdFrameInputStream} at level 3<br>
+ * - PGZIP = {@link PGZIPOutputStream} to compress, {@link GZIPInputStream} to decompress
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompressionBenchmark {
+    private static final int SIZE = 1 << 22;
+    private static final int BUFFER = 1 << 16;
+
+    @Param({"LZ4", "LZ4_HIGH", "ZSTD", "ZSTD_JNI", "ZSTD_JAVA", "PGZIP"})
+    public String codec;
+
+    private byte[] data;
+    private byte[] compressed;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        // Runs of a few block ids, similar to a section of terrain
+        data = new byte[SIZE];
+        SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < SIZE; ) {
+            int run = 1 + random.nextInt(64);
+            byte id = (byte) (random.nextInt(8) == 0 ? random.nextInt(256) : random.nextInt(4));
+            for (int j = 0; j < run && i < SIZE; j++) {
+                data[i++] = id;
+            }
+        }
+        compressed = compress();
+        buffer = new byte[BUFFER];
+    }
+
+    private OutputStream getOutput(OutputStream out) throws IOException {
+        switch (codec) {
+            case "LZ4":
+                return MainUtil.getCompressedOS(out, 1, BUFFER);
+            case "LZ4_HIGH":
+                return MainUtil.getCompressedOS(out, 4, BUFFER);
+            case "ZSTD":
+                return MainUtil.getCompressedOS(out, 7, BUFFER);
+            case "ZSTD_JNI":
+                return new ZstdOutputStream(out, 3);
+            case "ZSTD_JAVA":
+                return new ZstdFrameOutputStream(out, 3, ZstdFrameOutputStream.DEFAULT_FRAME_SIZE);
+            case "PGZIP":
+                return new PGZIPOutputStream(out);
+            default:
+                throw new IllegalArgumentException(codec);
+        }
+    }
+
+    private InputStream getInput(InputStream in) throws IOException {
+        switch (codec) {
+            case "LZ4":
+            case "LZ4_HIGH":
+            case "ZSTD":
+                return MainUtil.getCompressedIS(in, BUFFER);
+            case "ZSTD_JNI":
+                return new ZstdInputStream(in);
+            case "ZSTD_JAVA":
+                return new ZstdFrameInputStream(in);
+            case "PGZIP":
+                return new GZIPInputStream(in, BUFFER);
+            default:
+                throw new IllegalArgumentException(codec);
+        }
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream(SIZE >> 2);
+        try (OutputStream out = getOutput(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        long total = 0;
+        try (InputStream in = getInput(new FastByteArrayInputStream(compressed))) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,59 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.config.Settings;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Evaluate a //generate style expression over a 32x32x32 cube<br>
+ * - compiled = experimental.compile-expressions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExpressionBenchmark {
+    private static final int SIZE = 32;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    @Param({"x*x+y*y+z*z<0.8", "sin(x*4)+cos(z*4)>y*2&&abs(x)<0.9"})
+    public String expression;
+
+    private Expression compiledExpression;
+
+    @Setup
+    public void setup() throws ExpressionException {
+        Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS = compiled;
+        compiledExpression = Expression.compile(expression, "x", "y", "z");
+        compiledExpression.optimize();
+    }
+
+    @Benchmark
+    public int evaluate() throws EvaluationException {
+        int count = 0;
+        for (int x = 0; x < SIZE; x++) {
+            double nx = x * 2.0 / SIZE - 1;
+            for (int y = 0; y < SIZE; y++) {
+                double ny = y * 2.0 / SIZE - 1;
+                for (int z = 0; z < SIZE; z++) {
+                    double nz = z * 2.0 / SIZE - 1;
+                    if (compiledExpression.evaluate(nx, ny, nz) > 0) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
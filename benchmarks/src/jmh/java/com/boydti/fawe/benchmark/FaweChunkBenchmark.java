@@ -0,0 +1,69 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.example.NullQueueCharFaweChunk;
+import com.boydti.fawe.example.PaletteFaweChunk;
+import com.boydti.fawe.object.FaweChunk;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Set and get every block of a queued chunk<br>
+ * - CHAR = {@link NullQueueCharFaweChunk}, PALETTE = {@link PaletteFaweChunk} (see queue.chunk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FaweChunkBenchmark {
+    // A few block types, as in a typical edit
+    private static final int[] BLOCKS = {1, 2, 3, 4, 12, 13, 24};
+
+    @Param({"CHAR", "PALETTE"})
+    public String type;
+
+    private FaweChunk filled;
+
+    @Setup
+    public void setup() {
+        filled = fill(newChunk());
+    }
+
+    private FaweChunk newChunk() {
+        return type.equals("PALETTE") ? new PaletteFaweChunk(null, 0, 0) : new NullQueueCharFaweChunk(0, 0);
+    }
+
+    private static FaweChunk fill(FaweChunk chunk) {
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    chunk.setBlock(x, y, z, BLOCKS[(x + y * 7 + z * 3) % BLOCKS.length], 0);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    @Benchmark
+    public FaweChunk setBlocks() {
+        return fill(newChunk());
+    }
+
+    @Benchmark
+    public long getBlocks() {
+        long total = 0;
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    total += filled.getBlockCombinedId(x, y, z);
+                }
+            }
+        }
+        return total;
+    }
+}
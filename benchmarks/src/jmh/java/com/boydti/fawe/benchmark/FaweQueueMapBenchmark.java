@@ -0,0 +1,89 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.example.ConcurrentFaweQueueMap;
+import com.boydti.fawe.example.DefaultFaweQueueMap;
+import com.boydti.fawe.example.IFaweQueueMap;
+import com.boydti.fawe.object.FaweChunk;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Queue blocks through the chunk map of a queue (see queue.map)<br>
+ * - Each thread writes to its own chunks, as an edit split over threads would<br>
+ * - The default map isn't thread safe, so each lookup is locked when used by multiple threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FaweQueueMapBenchmark {
+    private static final int CHUNKS = 16;
+
+    @Param({"DEFAULT", "CONCURRENT"})
+    public String map;
+
+    private BenchmarkQueue queue;
+    private IFaweQueueMap queueMap;
+
+    @Setup(Level.Trial)
+    public void setupQueue() throws IOException {
+        queue = new BenchmarkQueue(BenchmarkQueue.createFolder());
+    }
+
+    @Setup(Level.Iteration)
+    public void setupMap() {
+        queueMap = map.equals("CONCURRENT") ? new ConcurrentFaweQueueMap(queue) : new DefaultFaweQueueMap(queue);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadOffset {
+        private int chunkX;
+
+        @Setup
+        public void setup(ThreadParams params) {
+            chunkX = params.getThreadIndex() * CHUNKS;
+        }
+    }
+
+    private void setBlocks(int chunkX, boolean lock) {
+        for (int cz = 0; cz < CHUNKS; cz++) {
+            for (int cx = chunkX; cx < chunkX + CHUNKS; cx++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        FaweChunk chunk;
+                        if (lock) {
+                            synchronized (queueMap) {
+                                chunk = queueMap.getFaweChunk(cx, cz);
+                            }
+                        } else {
+                            chunk = queueMap.getFaweChunk(cx, cz);
+                        }
+                        chunk.setBlock(x, 64, z, 1, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleThread(ThreadOffset offset) {
+        setBlocks(offset.chunkX, false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void multipleThreads(ThreadOffset offset) {
+        setBlocks(offset.chunkX, queueMap instanceof DefaultFaweQueueMap);
+    }
+}
@@ -0,0 +1,55 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.jnbt.anvil.MCAChunk;
+import com.boydti.fawe.object.io.FastByteArrayInputStream;
+import com.sk89q.jnbt.NBTInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Write and read the NBT of an anvil chunk with terrain in its lower 5 sections
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MCAChunkBenchmark {
+    private BenchmarkQueue queue;
+    private MCAChunk chunk;
+    private byte[] bytes;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        queue = new BenchmarkQueue(BenchmarkQueue.createFolder());
+        chunk = new MCAChunk(queue, 0, 0);
+        for (int y = 0; y < 80; y++) {
+            int id = y == 0 ? 7 : y < 60 ? 1 : y < 79 ? 3 : 2;
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    chunk.setBlock(x, y, z, id, 0);
+                }
+            }
+        }
+        buffer = new byte[1 << 16];
+        bytes = chunk.toBytes(buffer);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return chunk.toBytes(buffer);
+    }
+
+    @Benchmark
+    public MCAChunk read() throws IOException {
+        try (NBTInputStream nis = new NBTInputStream(new FastByteArrayInputStream(bytes))) {
+            return new MCAChunk(nis, queue, 0, 0, true);
+        }
+    }
+}
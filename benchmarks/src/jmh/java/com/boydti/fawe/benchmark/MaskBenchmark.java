@@ -0,0 +1,67 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.object.mask.SimplexMask;
+import com.sk89q.worldedit.MutableBlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.mask.BlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.MaskIntersection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Test a mask intersection over a 64x64x64 cube with {@link Mask#test(com.sk89q.worldedit.Vector)} and {@link Mask#test(int, int, int)}<br>
+ * - The block mask reads an empty extent, so only the mask overhead is measured
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MaskBenchmark {
+    private static final int SIZE = 64;
+
+    private Mask mask;
+
+    @Setup
+    public void setup() {
+        BlockMask air = new BlockMask(new NullExtent(), new BaseBlock(0));
+        mask = new MaskIntersection(new SimplexMask(0.05, 0.2, 0.8), air);
+    }
+
+    @Benchmark
+    public int testVector() {
+        MutableBlockVector mutable = new MutableBlockVector();
+        int count = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    if (mask.test(mutable.setComponents(x, y, z))) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int testInt() {
+        int count = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    if (mask.test(x, y, z)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
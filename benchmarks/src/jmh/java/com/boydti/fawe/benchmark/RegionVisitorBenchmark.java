@@ -0,0 +1,72 @@
+package com.boydti.fawe.benchmark;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.visitor.RegionVisitor;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.World;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Visit an ellipsoid and a cylinder with a {@link RegionVisitor}, reading the block at each position from the queue<br>
+ * - ITERATOR = the visitor has no queue, so it uses the region's iterator<br>
+ * - SECTIONS = the visitor has the queue, so it visits the region section by section with int coordinates
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegionVisitorBenchmark {
+    private static final int RADIUS = 48;
+
+    @Param({"ELLIPSOID", "CYLINDER"})
+    public String shape;
+
+    @Param({"ITERATOR", "SECTIONS"})
+    public String path;
+
+    private BenchmarkQueue queue;
+    private Region region;
+
+    @Setup
+    public void setup() throws IOException {
+        queue = new BenchmarkQueue(BenchmarkQueue.createFolder());
+        Vector center = new Vector(0, 64, 0);
+        switch (shape) {
+            case "ELLIPSOID":
+                region = new EllipsoidRegion((World) null, center, new Vector(RADIUS, RADIUS, RADIUS));
+                break;
+            case "CYLINDER":
+                region = new CylinderRegion((World) null, center, new Vector2D(RADIUS, RADIUS), 64 - RADIUS, 64 + RADIUS);
+                break;
+            default:
+                throw new IllegalArgumentException(shape);
+        }
+        // Create the chunks up front, so both paths only read them
+        visit();
+    }
+
+    @Benchmark
+    public long visit() {
+        long[] total = new long[1];
+        RegionFunction function = position -> {
+            total[0] += queue.getCombinedId4Data(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+            return true;
+        };
+        RegionVisitor visitor = new RegionVisitor(region, function, path.equals("SECTIONS") ? queue : null);
+        Operations.completeBlindly(visitor);
+        return total[0] + visitor.getAffected();
+    }
+}
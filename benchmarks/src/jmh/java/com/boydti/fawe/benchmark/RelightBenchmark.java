@@ -0,0 +1,112 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.example.NMSRelighter;
+import com.boydti.fawe.jnbt.anvil.MCAChunk;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.util.MathMan;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Relight the sky light of a square of chunks, serially and in parallel (see lighting.parallel-sky)<br>
+ * - The score is in chunks relit per second<br>
+ * - The chunks have flat terrain with floating platforms, so light is both propagated and smoothed<br>
+ * - The relit chunks are surrounded by a ring of chunks which are only read
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RelightBenchmark {
+    // Width of the square of chunks which are relit
+    private static final int SIZE = 16;
+    private static final int CHUNKS = SIZE * SIZE;
+
+    @Param({"SERIAL", "PARALLEL"})
+    public String mode;
+
+    private NMSRelighter relighter;
+    private boolean parallelSky;
+
+    /**
+     * A queue of pre-generated chunks<br>
+     * - The chunk map is never changed while relighting, so it can be read from multiple threads
+     */
+    private static class RelightQueue extends BenchmarkQueue {
+        private final Long2ObjectOpenHashMap<MCAChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+        public RelightQueue(File folder) {
+            super(folder);
+        }
+
+        @Override
+        public FaweChunk getCachedChunk(FaweQueue faweQueue, int cx, int cz) {
+            return chunks.get(MathMan.pairInt(cx, cz));
+        }
+
+        @Override
+        public FaweChunk loadChunk(FaweQueue faweQueue, int x, int z, boolean generate) {
+            return getCachedChunk(faweQueue, x, z);
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkTaskManager.init();
+        parallelSky = Settings.IMP.LIGHTING.PARALLEL_SKY;
+        RelightQueue queue = new RelightQueue(BenchmarkQueue.createFolder());
+        for (int cz = -1; cz <= SIZE; cz++) {
+            for (int cx = -1; cx <= SIZE; cx++) {
+                queue.chunks.put(MathMan.pairInt(cx, cz), generate(queue, cx, cz));
+            }
+        }
+        relighter = new NMSRelighter(queue);
+    }
+
+    private MCAChunk generate(FaweQueue queue, int cx, int cz) {
+        MCAChunk chunk = new MCAChunk(queue, cx, cz);
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                for (int y = 0; y < 64; y++) {
+                    int id = y == 0 ? 7 : y < 60 ? 1 : y < 63 ? 3 : 2;
+                    chunk.setBlock(x, y, z, id, 0);
+                }
+                // A platform in one corner of each chunk, which shades the ground below it
+                if (x < 8 && z < 8) {
+                    chunk.setBlock(x, 72 + ((cx + cz) & 7), z, 5, 0);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    @TearDown
+    public void tearDown() {
+        Settings.IMP.LIGHTING.PARALLEL_SKY = parallelSky;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void relightSky() {
+        Settings.IMP.LIGHTING.PARALLEL_SKY = mode.equals("PARALLEL");
+        for (int cz = 0; cz < SIZE; cz++) {
+            for (int cx = 0; cx < SIZE; cx++) {
+                relighter.addChunk(cx, cz, null, 0xFFFF);
+            }
+        }
+        relighter.fixSkyLighting();
+    }
+}
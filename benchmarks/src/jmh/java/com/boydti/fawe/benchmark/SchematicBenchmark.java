@@ -0,0 +1,83 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.jnbt.SchematicStreamer;
+import com.boydti.fawe.object.io.FastByteArrayInputStream;
+import com.boydti.fawe.object.io.FastByteArrayOutputStream;
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Load a generated .schematic into a memory clipboard with the {@link SchematicStreamer}<br>
+ * - compression = clipboard.compression-level
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SchematicBenchmark {
+
+    @Param({"64", "128"})
+    public int size;
+
+    @Param({"0", "1"})
+    public int compression;
+
+    private byte[] schematic;
+
+    @Setup
+    public void setup() throws IOException {
+        Settings.IMP.CLIPBOARD.USE_DISK = false;
+        Settings.IMP.CLIPBOARD.COMPRESSION_LEVEL = compression;
+        int volume = size * size * size;
+        byte[] blocks = new byte[volume];
+        byte[] data = new byte[volume];
+        for (int i = 0; i < volume; i++) {
+            int y = i / (size * size);
+            blocks[i] = (byte) (y < size / 2 ? 1 : y == size / 2 ? 2 : 0);
+            data[i] = (byte) (blocks[i] == 1 && (i & 7) == 0 ? 1 : 0);
+        }
+        Map<String, Tag> map = new HashMap<>();
+        map.put("Width", new ShortTag((short) size));
+        map.put("Height", new ShortTag((short) size));
+        map.put("Length", new ShortTag((short) size));
+        map.put("Materials", new StringTag("Alpha"));
+        map.put("Blocks", new ByteArrayTag(blocks));
+        map.put("Data", new ByteArrayTag(data));
+        map.put("Entities", new ListTag(CompoundTag.class, Collections.<Tag>emptyList()));
+        map.put("TileEntities", new ListTag(CompoundTag.class, Collections.<Tag>emptyList()));
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream();
+        try (NBTOutputStream out = new NBTOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeNamedTag("Schematic", new CompoundTag(map));
+        }
+        schematic = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Clipboard load() throws IOException {
+        NBTInputStream in = new NBTInputStream(new GZIPInputStream(new FastByteArrayInputStream(schematic)));
+        return new SchematicStreamer(in, UUID.randomUUID()).getClipboard();
+    }
+}
@@ -0,0 +1,129 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.object.io.zstd.ZstdCompressor;
+import com.boydti.fawe.object.io.zstd.ZstdDecompressor;
+import com.boydti.fawe.object.io.zstd.ZstdFrameOutputStream;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compress 4MB of block data as a single zstd frame<br>
+ * - FAST / GREEDY = the pure java {@link ZstdCompressor} at level 1 / 3<br>
+ * - GREEDY_DIRECT = the pure java {@link ZstdCompressor} at level 3, between direct buffers<br>
+ * - NATIVE = zstd-jni at level 3<br>
+ * - Setup checks the pure java output round trips with {@link ZstdDecompressor} and zstd-jni<br>
+ * - Setup checks the native output (and a {@link ZstdFrameOutputStream} stream) can be read by the other implementation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ZstdBenchmark {
+    private static final int SIZE = 1 << 22;
+
+    @Param({"FAST", "GREEDY", "GREEDY_DIRECT", "NATIVE"})
+    public String compressor;
+
+    private byte[] data;
+    private byte[] output;
+    private ByteBuffer directData;
+    private ByteBuffer directOutput;
+    private ZstdCompressor zstd;
+
+    @Setup
+    public void setup() throws IOException {
+        // Runs of a few block ids, similar to a section of terrain
+        data = new byte[SIZE];
+        SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < SIZE; ) {
+            int run = 1 + random.nextInt(64);
+            byte id = (byte) (random.nextInt(8) == 0 ? random.nextInt(256) : random.nextInt(4));
+            for (int j = 0; j < run && i < SIZE; j++) {
+                data[i++] = id;
+            }
+        }
+        int max = ZstdCompressor.maxCompressedLength(SIZE);
+        output = new byte[max];
+        directData = ByteBuffer.allocateDirect(SIZE);
+        directData.put(data).flip();
+        directOutput = ByteBuffer.allocateDirect(max);
+        switch (compressor) {
+            case "FAST":
+                zstd = new ZstdCompressor(1);
+                break;
+            case "GREEDY":
+            case "GREEDY_DIRECT":
+                zstd = new ZstdCompressor(3);
+                break;
+            case "NATIVE":
+                // The java decoder can read native frames
+                long nativeSize = Zstd.compress(output, data, 3);
+                if (Zstd.isError(nativeSize)) {
+                    throw new IllegalStateException(Zstd.getErrorName(nativeSize));
+                }
+                byte[] decompressed = new byte[SIZE];
+                int length = new ZstdDecompressor().decompress(output, 0, (int) nativeSize, decompressed, 0, SIZE);
+                check(length == SIZE && Arrays.equals(data, decompressed), "java decompression of native zstd");
+                // A legacy history stream (level 22, small frames) can be read by native zstd
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                try (ZstdFrameOutputStream out = new ZstdFrameOutputStream(baos, 22, 1 << 17)) {
+                    out.write(data);
+                }
+                try (DataInputStream in = new DataInputStream(new ZstdInputStream(new ByteArrayInputStream(baos.toByteArray())))) {
+                    Arrays.fill(decompressed, (byte) 0);
+                    in.readFully(decompressed);
+                    check(in.read() == -1 && Arrays.equals(data, decompressed), "native decompression of a java zstd stream");
+                }
+                return;
+            default:
+                throw new IllegalArgumentException(compressor);
+        }
+        int size = zstd.compress(data, 0, SIZE, output, 0, max);
+        byte[] decompressed = new byte[SIZE];
+        int length = new ZstdDecompressor().decompress(output, 0, size, decompressed, 0, SIZE);
+        check(length == SIZE && Arrays.equals(data, decompressed), "java round trip");
+        // The native decoder can read java frames
+        Arrays.fill(decompressed, (byte) 0);
+        long nativeLength = Zstd.decompress(decompressed, Arrays.copyOf(output, size));
+        check(!Zstd.isError(nativeLength) && nativeLength == SIZE && Arrays.equals(data, decompressed), "native decompression of java zstd");
+    }
+
+    private void check(boolean success, String name) {
+        if (!success) {
+            throw new IllegalStateException("Zstd " + name + " failed for " + compressor);
+        }
+    }
+
+    @Benchmark
+    public long compress() {
+        switch (compressor) {
+            case "FAST":
+            case "GREEDY":
+                return zstd.compress(data, 0, SIZE, output, 0, output.length);
+            case "GREEDY_DIRECT":
+                directData.rewind();
+                directOutput.clear();
+                zstd.compress(directData, directOutput);
+                return directOutput.position();
+            case "NATIVE":
+                return Zstd.compress(output, data, 3);
+            default:
+                throw new IllegalArgumentException(compressor);
+        }
+    }
+}
@@ -362,6 +362,11 @@ public class BukkitQueue18R3 extends BukkitQueue_0<net.minecraft.server.v1_8_R3.
         return ls[FaweCache.CACHE_J[y][z & 15][x & 15]];
     }
 
+    @Override
+    public char[] getIdArray(ChunkSection section, int layer) {
+        return section.getIdArray();
+    }
+
     @Override
     public CharFaweChunk getPrevious(CharFaweChunk fs, ChunkSection[] sections, Map<?, ?> tilesGeneric, Collection<?>[] entitiesGeneric, Set<UUID> createdEntities, boolean all) throws Exception {
         Map<BlockPosition, TileEntity> tiles = (Map<BlockPosition, TileEntity>) tilesGeneric;
@@ -652,12 +652,10 @@ public class Fawe {
                 com.github.luben.zstd.util.Native.load();
             } catch (Throwable e) {
                 if (Settings.IMP.CLIPBOARD.COMPRESSION_LEVEL > 6 || Settings.IMP.HISTORY.COMPRESSION_LEVEL > 6) {
-                    Settings.IMP.CLIPBOARD.COMPRESSION_LEVEL = Math.min(6, Settings.IMP.CLIPBOARD.COMPRESSION_LEVEL);
-                    Settings.IMP.HISTORY.COMPRESSION_LEVEL = Math.min(6, Settings.IMP.HISTORY.COMPRESSION_LEVEL);
                     debug("====== ZSTD COMPRESSION BINDING NOT FOUND ======");
                     debug(e);
                     debug("===============================================");
-                    debug("FAWE will work but won't compress data as much");
+                    debug("FAWE will work but zstd compression will be slower");
                     debug("===============================================");
                 }
             }
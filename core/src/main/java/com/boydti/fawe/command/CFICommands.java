@@ -7,6 +7,7 @@ import com.boydti.fawe.config.Commands;
 import com.boydti.fawe.jnbt.anvil.HeightMapMCAGenerator;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.object.RunnableVal3;
 import com.boydti.fawe.object.clipboard.MultiClipboardHolder;
 import com.boydti.fawe.object.pattern.PatternExtent;
 import com.boydti.fawe.util.*;
@@ -233,7 +234,22 @@ public class CFICommands extends MethodCommands {
             generator.setFolder(folder);
 
             fp.sendMessage(BBC.getPrefix() + "Generating");
+            final long[] lastMessage = {System.currentTimeMillis()};
+            generator.setWriteProgressTask(new RunnableVal3<Integer, Integer, Double>() {
+                @Override
+                public void run(Integer written, Integer total, Double perSecond) {
+                    synchronized (lastMessage) {
+                        long now = System.currentTimeMillis();
+                        if (now - lastMessage[0] < 5000) {
+                            return;
+                        }
+                        lastMessage[0] = now;
+                    }
+                    fp.sendMessage(BBC.getPrefix() + "Generating " + written + "/" + total + " regions (" + String.format("%.1f", perSecond) + "/s)");
+                }
+            });
             generator.generate();
+            generator.setWriteProgressTask(null);
             generator.setPacketViewer(null);
             generator.setImageViewer(null);
             settings.remove();
@@ -71,6 +71,8 @@ public class Settings extends Config {
     public TAB_COMPLETION TAB_COMPLETION;
     @Create
     public REGION_RESTRICTIONS_OPTIONS REGION_RESTRICTIONS_OPTIONS;
+    @Create
+    public ANVIL ANVIL;
 
     @Comment("Paths for various directories")
     public static final class PATHS {
@@ -89,6 +91,11 @@ public class Settings extends Config {
         @Comment("Each player has their own sub directory for schematics")
         public boolean PER_PLAYER_SCHEMATICS = true;
         public String COMMANDS = "commands";
+        @Comment({
+                "Trained zstd dictionaries (see history.zstd-dictionary)",
+                " - History written with a dictionary can't be read without it",
+        })
+        public String DICTIONARIES = "dictionaries";
     }
 
     @Comment("Region restriction settings")
@@ -214,12 +221,45 @@ public class Settings extends Config {
                 "NOTE: If using disk, do some compression (3+) as smaller files save faster"
         })
         public int COMPRESSION_LEVEL = 3;
+        @Comment({
+                "The codec to compress history with (instead of compression-level):",
+                " - legacy = use compression-level",
+                " - none, lz4, lz4-high, zstd or gzip = use codec-level",
+                " - auto = try each codec on the start of each file, and use the smallest which is faster than auto-target-mbps",
+                "NOTE: Older versions can't read history saved with a codec",
+                "NOTE: Clipboards still use clipboard.compression-level",
+        })
+        public String COMPRESSION_CODEC = "legacy";
+        @Comment({
+                "The level of the compression codec:",
+                " - lz4-high = 1-17",
+                " - zstd = 1-22",
+                " - gzip = 1-9",
+        })
+        public int CODEC_LEVEL = 3;
+        @Comment("The kilobytes at the start of each file to sample for auto compression (and dictionary training)")
+        public int AUTO_SAMPLE_KB = 64;
+        @Comment("The minimum compression speed (in MB/s) for auto compression")
+        public int AUTO_TARGET_MBPS = 100;
+        @Comment({
+                "Compress block changes with a zstd dictionary (auto or zstd codec only):",
+                " - The dictionary is trained from the first few history files, then saved",
+                " - Much better ratio for small edits",
+        })
+        public boolean ZSTD_DICTIONARY = false;
         @Comment({
                 "The buffer size for compression:",
                 " - Larger = better ratio but uses more upfront memory",
                 " - Must be in the range [64, 33554432]",
         })
         public int BUFFER_SIZE = 531441;
+        @Comment({
+                "Group block changes by chunk, with an index at the end of each file:",
+                " - Region limited undo, rollback and inspection only read the chunks they need",
+                " - Each chunk is compressed separately, so files are slightly larger",
+                " - Older versions can't read history saved with this enabled",
+        })
+        public boolean CHUNK_INDEX = false;
 
 
         @Comment({
@@ -311,6 +351,63 @@ public class Settings extends Config {
         })
         public int DISCARD_AFTER_MS = 60000;
 
+        @Comment({
+                "How queued chunks are stored while an edit is being processed",
+                " - DEFAULT = A single synchronized map",
+                " - CONCURRENT = A striped map for edits populated from multiple threads",
+                " - This has no effect if `prevent-crashes` is enabled"
+        })
+        public String MAP = "DEFAULT";
+
+        @Comment({
+                "How blocks are stored in each queued chunk",
+                " - CHAR = A char[4096] per modified section",
+                " - PALETTE = A palette per section (less memory for large edits with few block types)",
+        })
+        public String CHUNK = "CHAR";
+
+        @Comment({
+                "Generate the blocks of large set/replace/sphere/cylinder edits on all threads",
+                " - Each thread fills its own chunks, and history is recorded in the same order",
+                " - Only used for patterns of plain blocks (e.g. `stone` or `50%stone,50%dirt`)",
+        })
+        public boolean PARALLEL_EDITS = true;
+        @Comment("The minimum volume of an edit before it is generated on all threads")
+        public int PARALLEL_EDIT_VOLUME = 65536;
+
+        @Create
+        public static SCHEDULER SCHEDULER;
+
+        public static class SCHEDULER {
+            @Comment({"How the time available each tick is shared between queued edits",
+                    " - SINGLE = Give the whole tick to one edit at a time",
+                    " - FAIR = Share each tick between all players' edits (deficit round robin)"
+            })
+            public String MODE = "SINGLE";
+            @Comment({
+                    "The tick duration (ms) the FAIR scheduler will try to keep the server under",
+                    " - The time given to edits is adjusted every tick to meet this target"
+            })
+            public int TARGET_MSPT = 50;
+            @Comment("The minimum and maximum time (ms) given to edits each tick")
+            public int MIN_MS = 5;
+            public int MAX_MS = 50;
+            @Comment({
+                    "The smallest slice of a tick (ms) each player's edit is given",
+                    " - Lower values share ticks more evenly but add overhead"
+            })
+            public int QUANTUM_MS = 2;
+            @Comment({
+                    "How aggressively the time per tick is adjusted (PID controller gains)",
+                    " - P = Reaction to the current error",
+                    " - I = Reaction to the accumulated error",
+                    " - D = Reaction to the change in error"
+            })
+            public double P = 0.5;
+            public double I = 0.25;
+            public double D = 0.05;
+        }
+
         public static class PROGRESS {
             @Comment({"Display constant titles about the progress of a user's edit",
                     " - false = disabled",
@@ -377,6 +474,13 @@ public class Settings extends Config {
                 " - PERM: fawe.freebuild.<plugin>"
         })
         public boolean FREEBUILD = false;
+
+        @Comment({
+                "[SAFE] Compile expressions (e.g. //generate, //deform) instead of interpreting them",
+                " - Operators, variables and math functions are evaluated without reflection",
+                " - Unsupported parts of an expression fall back to the interpreter"
+        })
+        public boolean COMPILE_EXPRESSIONS = false;
     }
 
     public static class WEB {
@@ -464,6 +568,36 @@ public class Settings extends Config {
         public int MODE = 1;
         @Comment({"If existing lighting should be removed before relighting"})
         public boolean REMOVE_FIRST = false;
+        @Comment({
+                "If sky light should be recalculated in parallel",
+                " - Much faster for large edits (e.g. //regen or //set air)",
+                " - Neighbouring chunks are smoothed in a different order, so light can differ slightly"
+        })
+        public boolean PARALLEL_SKY = false;
+    }
+
+    @Comment("Region file filtering (used by the //anvil commands)")
+    public static class ANVIL {
+        @Comment({
+                "Filter region files with separate read, process and write stages",
+                " - Disk reads and writes no longer hold up the threads decompressing and filtering chunks",
+        })
+        public boolean PIPELINE = false;
+        @Comment("Threads reading compressed chunks from disk")
+        public int READ_THREADS = 1;
+        @Comment("Threads decompressing and filtering chunks (0 = number of cores)")
+        public int PROCESS_THREADS = 0;
+        @Comment("Threads saving finished region files")
+        public int WRITE_THREADS = 1;
+        @Comment("The maximum number of chunks (or files) waiting between stages")
+        public int QUEUE_SIZE = 256;
+        @Comment("Print the throughput of each stage when filtering finishes")
+        public boolean REPORT = true;
+        @Comment({
+                "Read region files through a memory mapped buffer",
+                " - Chunks are copied straight from the mapped file instead of a seek and read per chunk",
+        })
+        public boolean MEMORY_MAPPED_READS = false;
     }
 
     public void reload(File file) {
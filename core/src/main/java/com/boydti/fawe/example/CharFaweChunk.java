@@ -255,11 +255,28 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
                     break;
             }
         }
+        if (id == 0) {
+            this.air[i]++;
+            vs[j] = (char) 1;
+            return;
+        }
+        vs[j] = getStoredId(id, data);
+        heightMap[z << 4 | x] = (byte) y;
+    }
+
+    /**
+     * Get the value stored for a block in the id arrays<br>
+     * - Air is stored as 1 (0 means unchanged)<br>
+     * - Blocks which don't use data have it removed
+     *
+     * @param id
+     * @param data
+     * @return
+     */
+    public static char getStoredId(int id, int data) {
         switch (id) {
             case 0:
-                this.air[i]++;
-                vs[j] = (char) 1;
-                return;
+                return (char) 1;
             case 39:
             case 40:
             case 51:
@@ -318,9 +335,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 190:
             case 191:
             case 192:
-                vs[j] = (char) (id << 4);
-                heightMap[z << 4 | x] = (byte) y;
-                return;
+                return (char) (id << 4);
             case 130:
             case 76:
             case 62:
@@ -335,9 +350,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 65:
             case 68: // removed
             default:
-                vs[j] = (char) ((id << 4) + data);
-                heightMap[z << 4 | x] = (byte) y;
-                return;
+                return (char) ((id << 4) + data);
         }
     }
 
@@ -0,0 +1,146 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.object.collection.StripedLong2ObjectMap;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.SetQueue;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A queue map which can be written to by multiple threads without a global lock
+ * - Chunks are created atomically (no get-put-reput race)
+ * - Use when an EditSession is populated from multiple threads at once
+ */
+public class ConcurrentFaweQueueMap implements IFaweQueueMap {
+
+    private final MappedFaweQueue parent;
+    private final StripedLong2ObjectMap<FaweChunk> blocks = new StripedLong2ObjectMap<>();
+
+    public ConcurrentFaweQueueMap(MappedFaweQueue parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public Collection<FaweChunk> getFaweCunks() {
+        return new HashSet<>(blocks.values());
+    }
+
+    @Override
+    public void forEachChunk(RunnableVal<FaweChunk> onEach) {
+        blocks.forEach(onEach::run);
+    }
+
+    @Override
+    public FaweChunk getFaweChunk(int cx, int cz) {
+        long pair = MathMan.pairInt(cx, cz);
+        FaweChunk chunk = blocks.get(pair);
+        if (chunk != null) {
+            return chunk;
+        }
+        chunk = blocks.computeIfAbsent(pair, key -> parent.getQueuedFaweChunk(cx, cz));
+        if (parent.getProgressTask() != null) {
+            try {
+                parent.getProgressTask().run(FaweQueue.ProgressType.QUEUE, blocks.size());
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public FaweChunk getCachedFaweChunk(int cx, int cz) {
+        FaweChunk chunk = blocks.get(MathMan.pairInt(cx, cz));
+        lastWrappedChunk = chunk;
+        return chunk;
+    }
+
+    @Override
+    public void add(FaweChunk chunk) {
+        blocks.putIfAbsent(MathMan.pairInt(chunk.getX(), chunk.getZ()), chunk);
+    }
+
+    @Override
+    public void clear() {
+        blocks.clear();
+    }
+
+    @Override
+    public int size() {
+        return blocks.size();
+    }
+
+    private volatile FaweChunk lastWrappedChunk;
+
+    @Override
+    public boolean next(int amount, long time) {
+        try {
+            // Don't dispatch the chunk which is still being written to by an unfinished edit
+            Predicate<FaweChunk> skip = null;
+            if (parent.getStage() == SetQueue.QueueStage.INACTIVE) {
+                FaweChunk last = lastWrappedChunk;
+                if (last != null) {
+                    skip = chunk -> chunk == last;
+                }
+            }
+            if (amount == 1) {
+                long start = System.currentTimeMillis();
+                do {
+                    FaweChunk chunk = blocks.poll(skip);
+                    if (chunk == null) {
+                        break;
+                    }
+                    parent.start(chunk);
+                    parent.end(chunk.call());
+                } while (System.currentTimeMillis() - start < time);
+            } else {
+                ExecutorCompletionService service = SetQueue.IMP.getCompleterService();
+                ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+                boolean result = true;
+                for (int i = 0; i < amount; i++) {
+                    FaweChunk chunk = blocks.poll(skip);
+                    if (chunk == null) {
+                        result = false;
+                        break;
+                    }
+                    parent.start(chunk);
+                    service.submit(chunk);
+                }
+                // if result, then submitted = amount
+                if (result) {
+                    long start = System.currentTimeMillis();
+                    while (System.currentTimeMillis() - start < time) {
+                        FaweChunk chunk = blocks.poll(skip);
+                        if (chunk == null) {
+                            break;
+                        }
+                        parent.start(chunk);
+                        service.submit(chunk);
+                        Future future = service.poll(50, TimeUnit.MILLISECONDS);
+                        if (future != null) {
+                            FaweChunk fc = (FaweChunk) future.get();
+                            parent.end(fc);
+                        }
+                    }
+                }
+                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                Future future;
+                while ((future = service.poll()) != null) {
+                    FaweChunk fc = (FaweChunk) future.get();
+                    parent.end(fc);
+                }
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        return !blocks.isEmpty();
+    }
+}
@@ -111,7 +111,7 @@ public class DefaultFaweQueueMap implements IFaweQueueMap {
     }
 
     private FaweChunk getNewFaweChunk(int cx, int cz) {
-        return parent.getFaweChunk(cx, cz);
+        return parent.getQueuedFaweChunk(cx, cz);
     }
 
     private volatile FaweChunk lastWrappedChunk;
@@ -135,8 +135,7 @@ public class DefaultFaweQueueMap implements IFaweQueueMap {
                             }
                             iter.remove();
                             parent.start(chunk);
-                            chunk.call();
-                            parent.end(chunk);
+                            parent.end(chunk.call());
                         } else {
                             break;
                         }
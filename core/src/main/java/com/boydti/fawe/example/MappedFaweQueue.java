@@ -71,13 +71,13 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
 
     public MappedFaweQueue(final String world) {
         this.world = world;
-        map = getSettings().PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+        map = createQueueMap();
     }
 
     public MappedFaweQueue(final String world, IFaweQueueMap map) {
         this.world = world;
         if (map == null) {
-            map = getSettings().PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+            map = createQueueMap();
         }
         this.map = map;
     }
@@ -86,11 +86,21 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         this.weWorld = world;
         if (world != null) this.world = Fawe.imp().getWorldName(world);
         if (map == null) {
-            map = getSettings().PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+            map = createQueueMap();
         }
         this.map = map;
     }
 
+    private IFaweQueueMap createQueueMap() {
+        if (getSettings().PREVENT_CRASHES) {
+            return new WeakFaweQueueMap(this);
+        }
+        if (getSettings().QUEUE.MAP.equalsIgnoreCase("CONCURRENT")) {
+            return new ConcurrentFaweQueueMap(this);
+        }
+        return new DefaultFaweQueueMap(this);
+    }
+
     @Override
     public int getMaxY() {
         return weWorld == null ? 255 : weWorld.getMaxY();
@@ -129,6 +139,21 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
     @Override
     public abstract FaweChunk getFaweChunk(int x, int z);
 
+    /**
+     * Create the chunk used to hold queued changes (see {@link Settings.QUEUE#CHUNK})<br>
+     * - It is converted to {@link #getFaweChunk(int, int)} when dispatched
+     *
+     * @param x
+     * @param z
+     * @return
+     */
+    public FaweChunk getQueuedFaweChunk(int x, int z) {
+        if (getSettings().QUEUE.CHUNK.equalsIgnoreCase("PALETTE")) {
+            return new PaletteFaweChunk(this, x, z);
+        }
+        return getFaweChunk(x, z);
+    }
+
     public abstract CHUNK loadChunk(WORLD world, int x, int z, boolean generate);
 
     public abstract CHUNKSECTIONS getSections(CHUNK chunk);
@@ -385,11 +410,23 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
     }
 
     public SECTION getCachedSection(CHUNKSECTIONS chunk, int cy) {
-        return (SECTION) lastChunkSections;
+        return (SECTION) chunk;
     }
 
     public abstract int getCombinedId4Data(SECTION section, int x, int y, int z);
 
+    /**
+     * Get the combined ids of a section (id << 4 | data), if it's stored that way<br>
+     * - The array must not be modified
+     *
+     * @param section
+     * @param layer
+     * @return the ids, or null if the section needs to be read with {@link #getCombinedId4Data(Object, int, int, int)}
+     */
+    public char[] getIdArray(SECTION section, int layer) {
+        return null;
+    }
+
     public int getLocalCombinedId4Data(CHUNK chunk, int x, int y, int z) {
         CHUNKSECTIONS sections = getSections(lastChunk);
         SECTION section = getCachedSection(sections, y >> 4);
@@ -7,6 +7,8 @@ import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.IntegerTrio;
 import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.LongRingBuffer;
+import com.boydti.fawe.object.collection.SectionBitSet;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.TaskManager;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -14,20 +16,21 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class NMSRelighter implements Relighter {
     private final NMSMappedFaweQueue queue;
 
     private final Map<Long, RelightSkyEntry> skyToRelight;
-    private final Object present = new Object();
+    private final Object loadLock = new Object();
     private final Map<Long, Integer> chunksToSend;
     private final ConcurrentLinkedQueue<RelightSkyEntry> queuedSkyToRelight = new ConcurrentLinkedQueue<>();
 
@@ -152,131 +155,253 @@ public class NMSRelighter implements Relighter {
         if (size == 0) {
             return;
         }
-        Queue<IntegerTrio> lightPropagationQueue = new ArrayDeque<>();
-        Queue<Object[]> lightRemovalQueue = new ArrayDeque<>();
-        Map<IntegerTrio, Object> visited = new HashMap<>();
-        Map<IntegerTrio, Object> removalVisited = new HashMap<>();
-
+        // Copy the keys, as fastutil entries are views of a slot, which removing other keys can shift
+        long[] indexes = new long[size];
+        long[][][][] values = new long[size][][][];
+        int count = 0;
         Iterator<Map.Entry<Long, long[][][]>> iter = map.entrySet().iterator();
-        while (iter.hasNext() && size-- > 0) {
+        while (iter.hasNext() && count < size) {
             Map.Entry<Long, long[][][]> entry = iter.next();
-            long index = entry.getKey();
-            long[][][] blocks = entry.getValue();
-            int chunkX = MathMan.unpairIntX(index);
-            int chunkZ = MathMan.unpairIntY(index);
-            int bx = chunkX << 4;
-            int bz = chunkZ << 4;
-            for (int lz = 0; lz < blocks.length; lz++) {
-                long[][] m1 = blocks[lz];
-                if (m1 == null) continue;
-                for (int lx = 0; lx < m1.length; lx++) {
-                    long[] m2 = m1[lx];
-                    if (m2 == null) continue;
-                    for (int i = 0; i < m2.length; i++) {
-                        int yStart = i << 6;
-                        long value = m2[i];
-                        if (value != 0) {
-                            for (int j = 0; j < 64; j++) {
-                                if (((value >> j) & 1) == 1) {
-                                    int x = lx + bx;
-                                    int y = yStart + j;
-                                    int z = lz + bz;
-                                    int oldLevel = queue.getEmmittedLight(x, y, z);
-                                    int newLevel = queue.getBrightness(x, y, z);
-                                    if (oldLevel != newLevel) {
-                                        queue.setBlockLight(x, y, z, newLevel);
-                                        IntegerTrio node = new IntegerTrio(x, y, z);
-                                        if (newLevel < oldLevel) {
-                                            removalVisited.put(node, present);
-                                            lightRemovalQueue.add(new Object[]{node, oldLevel});
-                                        } else {
-                                            visited.put(node, present);
-                                            lightPropagationQueue.add(node);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+            indexes[count] = entry.getKey();
+            values[count] = entry.getValue();
+            count++;
+        }
+        // Each chunk only reads and writes its own blocks, so the changed light sources are found in parallel
+        BlockLightSeed[] seeds = new BlockLightSeed[count];
+        if (seeds.length > 1) {
+            ForkJoinPool pool = TaskManager.IMP.getPublicForkJoinPool();
+            ArrayList<ForkJoinTask<BlockLightSeed>> tasks = new ArrayList<>(seeds.length);
+            for (int i = 0; i < count; i++) {
+                long index = indexes[i];
+                long[][][] blocks = values[i];
+                tasks.add(pool.submit(() -> seedBlockLight(index, blocks)));
             }
-            iter.remove();
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = tasks.get(i).join();
+            }
+        } else {
+            seeds[0] = seedBlockLight(indexes[0], values[0]);
+        }
+        for (int i = 0; i < count; i++) {
+            map.remove(indexes[i]);
         }
 
-        while (!lightRemovalQueue.isEmpty()) {
-            Object[] val = lightRemovalQueue.poll();
-            IntegerTrio node = (IntegerTrio) val[0];
-            int lightLevel = (int) val[1];
+        // Merge in chunk order so the light spreads the same as it would serially
+        LongRingBuffer lightRemovalQueue = new LongRingBuffer(1024);
+        LongRingBuffer lightPropagationQueue = new LongRingBuffer(1024);
+        SectionBitSet removalVisited = new SectionBitSet();
+        SectionBitSet visited = new SectionBitSet();
+        for (BlockLightSeed seed : seeds) {
+            lightRemovalQueue.addAll(seed.removal);
+            lightPropagationQueue.addAll(seed.propagation);
+            removalVisited.addAll(seed.removalVisited);
+            visited.addAll(seed.visited);
+        }
 
-            this.computeRemoveBlockLight(node.x - 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(node.x + 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            if (node.y > 0) {
-                this.computeRemoveBlockLight(node.x, node.y - 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+        SectionCursor cursor = new SectionCursor();
+        while (!lightRemovalQueue.isEmpty()) {
+            long val = lightRemovalQueue.poll();
+            int x = (int) MathMan.untripleWorldCoordX(val);
+            int y = (int) MathMan.untripleWorldCoordY(val);
+            int z = (int) MathMan.untripleWorldCoordZ(val);
+            int lightLevel = (int) (val >>> 60);
+
+            this.computeRemoveBlockLight(cursor, x - 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(cursor, x + 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            if (y > 0) {
+                this.computeRemoveBlockLight(cursor, x, y - 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
             }
-            if (node.y < 255) {
-                this.computeRemoveBlockLight(node.x, node.y + 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            if (y < 255) {
+                this.computeRemoveBlockLight(cursor, x, y + 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
             }
-            this.computeRemoveBlockLight(node.x, node.y, node.z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(node.x, node.y, node.z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(cursor, x, y, z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(cursor, x, y, z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
         }
 
         while (!lightPropagationQueue.isEmpty()) {
-            IntegerTrio node = lightPropagationQueue.poll();
-            int lightLevel = queue.getEmmittedLight(node.x, node.y, node.z);
+            long node = lightPropagationQueue.poll();
+            int x = (int) MathMan.untripleWorldCoordX(node);
+            int y = (int) MathMan.untripleWorldCoordY(node);
+            int z = (int) MathMan.untripleWorldCoordZ(node);
+            int lightLevel = cursor.getEmmittedLight(x, y, z);
             if (lightLevel > 1) {
-                this.computeSpreadBlockLight(node.x - 1, node.y, node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(node.x + 1, node.y, node.z, lightLevel, lightPropagationQueue, visited);
-                if (node.y > 0) {
-                    this.computeSpreadBlockLight(node.x, node.y - 1, node.z, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(cursor, x - 1, y, z, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(cursor, x + 1, y, z, lightLevel, lightPropagationQueue, visited);
+                if (y > 0) {
+                    this.computeSpreadBlockLight(cursor, x, y - 1, z, lightLevel, lightPropagationQueue, visited);
+                }
+                if (y < 255) {
+                    this.computeSpreadBlockLight(cursor, x, y + 1, z, lightLevel, lightPropagationQueue, visited);
                 }
-                if (node.y < 255) {
-                    this.computeSpreadBlockLight(node.x, node.y + 1, node.z, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(cursor, x, y, z - 1, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(cursor, x, y, z + 1, lightLevel, lightPropagationQueue, visited);
+            }
+        }
+    }
+
+    /**
+     * Find the blocks in a chunk whose emitted light changed, and queue them for removal or spreading
+     */
+    private BlockLightSeed seedBlockLight(long index, long[][][] blocks) {
+        BlockLightSeed seed = new BlockLightSeed();
+        SectionCursor cursor = new SectionCursor();
+        int chunkX = MathMan.unpairIntX(index);
+        int chunkZ = MathMan.unpairIntY(index);
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        for (int lz = 0; lz < blocks.length; lz++) {
+            long[][] m1 = blocks[lz];
+            if (m1 == null) continue;
+            for (int lx = 0; lx < m1.length; lx++) {
+                long[] m2 = m1[lx];
+                if (m2 == null) continue;
+                for (int i = 0; i < m2.length; i++) {
+                    int yStart = i << 6;
+                    long value = m2[i];
+                    if (value != 0) {
+                        for (int j = 0; j < 64; j++) {
+                            if (((value >> j) & 1) == 1) {
+                                int x = lx + bx;
+                                int y = yStart + j;
+                                int z = lz + bz;
+                                int oldLevel = cursor.getEmmittedLight(x, y, z);
+                                int newLevel = cursor.getBrightness(x, y, z);
+                                if (oldLevel != newLevel) {
+                                    cursor.setBlockLight(x, y, z, newLevel);
+                                    long node = MathMan.tripleWorldCoord(x, y, z);
+                                    if (newLevel < oldLevel) {
+                                        seed.removalVisited.add(x, y, z);
+                                        seed.removal.add(node | ((long) oldLevel << 60));
+                                    } else {
+                                        seed.visited.add(x, y, z);
+                                        seed.propagation.add(node);
+                                    }
+                                }
+                            }
+                        }
+                    }
                 }
-                this.computeSpreadBlockLight(node.x, node.y, node.z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(node.x, node.y, node.z + 1, lightLevel, lightPropagationQueue, visited);
             }
         }
+        return seed;
     }
 
-    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue, Queue<IntegerTrio> spreadQueue, Map<IntegerTrio, Object> visited,
-                                         Map<IntegerTrio, Object> spreadVisited) {
-        int current = this.queue.getEmmittedLight(x, y, z);
+    private void computeRemoveBlockLight(SectionCursor cursor, int x, int y, int z, int currentLight, LongRingBuffer queue, LongRingBuffer spreadQueue, SectionBitSet visited,
+                                         SectionBitSet spreadVisited) {
+        int current = cursor.getEmmittedLight(x, y, z);
         if (current != 0 && current < currentLight) {
-            this.queue.setBlockLight(x, y, z, 0);
+            cursor.setBlockLight(x, y, z, 0);
             if (current > 1) {
-                if (!visited.containsKey(mutableBlockPos)) {
-                    IntegerTrio index = new IntegerTrio(x, y, z);
-                    visited.put(index, present);
-                    queue.add(new Object[]{index, current});
+                if (visited.add(x, y, z)) {
+                    queue.add(MathMan.tripleWorldCoord(x, y, z) | ((long) current << 60));
                 }
             }
         } else if (current >= currentLight) {
-            mutableBlockPos.set(x, y, z);
-            if (!spreadVisited.containsKey(mutableBlockPos)) {
-                IntegerTrio index = new IntegerTrio(x, y, z);
-                spreadVisited.put(index, present);
-                spreadQueue.add(index);
+            if (spreadVisited.add(x, y, z)) {
+                spreadQueue.add(MathMan.tripleWorldCoord(x, y, z));
             }
         }
     }
 
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<IntegerTrio> queue, Map<IntegerTrio, Object> visited) {
-        currentLight = currentLight - Math.max(1, this.queue.getOpacity(x, y, z));
+    private void computeSpreadBlockLight(SectionCursor cursor, int x, int y, int z, int currentLight, LongRingBuffer queue, SectionBitSet visited) {
+        currentLight = currentLight - Math.max(1, cursor.getOpacity(x, y, z));
         if (currentLight > 0) {
-            int current = this.queue.getEmmittedLight(x, y, z);
+            int current = cursor.getEmmittedLight(x, y, z);
             if (current < currentLight) {
-                this.queue.setBlockLight(x, y, z, currentLight);
-                mutableBlockPos.set(x, y, z);
-                if (!visited.containsKey(mutableBlockPos)) {
-                    visited.put(new IntegerTrio(x, y, z), present);
+                cursor.setBlockLight(x, y, z, currentLight);
+                if (visited.add(x, y, z)) {
                     if (currentLight > 1) {
-                        queue.add(new IntegerTrio(x, y, z));
+                        queue.add(MathMan.tripleWorldCoord(x, y, z));
                     }
                 }
             }
         }
     }
 
+    private static final class BlockLightSeed {
+        private final LongRingBuffer removal = new LongRingBuffer();
+        private final LongRingBuffer propagation = new LongRingBuffer();
+        private final SectionBitSet removalVisited = new SectionBitSet();
+        private final SectionBitSet visited = new SectionBitSet();
+    }
+
+    /**
+     * Caches the last accessed section for one thread<br>
+     * - The queue's own section cache is shared, so it can't be used from multiple threads
+     */
+    private final class SectionCursor {
+        private int lastX = Integer.MIN_VALUE;
+        private int lastZ = Integer.MIN_VALUE;
+        private int lastY = Integer.MIN_VALUE;
+        private Object sections;
+        private Object section;
+
+        private Object getSection(int x, int y, int z) {
+            int cx = x >> 4;
+            int cz = z >> 4;
+            int cy = y >> 4;
+            if (cx != lastX || cz != lastZ) {
+                lastX = cx;
+                lastZ = cz;
+                lastY = cy;
+                Object chunk = queue.getCachedChunk(queue.getWorld(), cx, cz);
+                if (chunk == null) {
+                    // Loading asynchronously uses shared state in the queue
+                    synchronized (loadLock) {
+                        chunk = queue.ensureChunkLoaded(cx, cz);
+                    }
+                }
+                sections = chunk == null ? null : queue.getSections(chunk);
+                section = sections == null ? null : queue.getCachedSection(sections, cy);
+            } else if (cy != lastY) {
+                lastY = cy;
+                section = sections == null ? null : queue.getCachedSection(sections, cy);
+            }
+            return section;
+        }
+
+        private int getSkyLight(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            if (section == null) {
+                if (sections == null) {
+                    return 0;
+                }
+                // Use the next section above (like the queue does)
+                int max = FaweChunk.HEIGHT >> 4;
+                int cy = y >> 4;
+                do {
+                    if (++cy >= max) {
+                        return 15;
+                    }
+                    section = queue.getCachedSection(sections, cy);
+                } while (section == null);
+            }
+            return queue.getSkyLight(section, x, y, z);
+        }
+
+        private int getEmmittedLight(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            return section == null ? 0 : queue.getEmmittedLight(section, x, y, z);
+        }
+
+        private int getBrightness(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            return section == null ? 0 : queue.getBrightness(section, x, y, z);
+        }
+
+        private int getOpacity(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            return section == null ? 0 : queue.getOpacity(section, x, y, z);
+        }
+
+        private void setBlockLight(int x, int y, int z, int value) {
+            Object section = getSection(x, y, z);
+            if (section != null) {
+                queue.setBlockLight(section, x, y, z, value);
+            }
+        }
+    }
+
     public void fixLightingSafe(boolean sky) {
         if (isEmpty()) return;
         try {
@@ -351,12 +476,14 @@ public class NMSRelighter implements Relighter {
         }
         Collections.sort(chunksList);
         int size = chunksList.size();
-        if (size > DISPATCH_SIZE) {
+        if (Settings.IMP.LIGHTING.PARALLEL_SKY && size > 1) {
+            fixSkyLightingParallel(chunksList);
+        } else if (size > DISPATCH_SIZE) {
             int amount = (size + DISPATCH_SIZE - 1) / DISPATCH_SIZE;
             for (int i = 0; i < amount; i++) {
-                int start = i * DISPATCH_SIZE;
-                int end = Math.min(size, start + DISPATCH_SIZE);
-                List<RelightSkyEntry> sub = chunksList.subList(start, end);
+                int startIndex = i * DISPATCH_SIZE;
+                int end = Math.min(size, startIndex + DISPATCH_SIZE);
+                List<RelightSkyEntry> sub = chunksList.subList(startIndex, end);
                 fixSkyLighting(sub);
             }
         } else {
@@ -365,6 +492,10 @@ public class NMSRelighter implements Relighter {
     }
 
     public void fill(byte[] mask, int chunkX, int y, int chunkZ, byte reason) {
+        fill(null, mask, chunkX, y, chunkZ, reason);
+    }
+
+    private void fill(SectionCursor cursor, byte[] mask, int chunkX, int y, int chunkZ, byte reason) {
         if (y >= FaweChunk.HEIGHT) {
             Arrays.fill(mask, (byte) 15);
             return;
@@ -380,111 +511,44 @@ public class NMSRelighter implements Relighter {
                 int index = 0;
                 for (int z = 0; z < 16; z++) {
                     for (int x = 0; x < 16; x++) {
-                        mask[index++] = (byte) queue.getSkyLight(bx + x, y, bz + z);
+                        mask[index++] = (byte) getSkyLight(cursor, bx + x, y, bz + z);
                     }
                 }
             }
         }
     }
 
+    private int getSkyLight(SectionCursor cursor, int x, int y, int z) {
+        return cursor == null ? queue.getSkyLight(x, y, z) : cursor.getSkyLight(x, y, z);
+    }
+
+    /**
+     * Get the chunks in the middle of the provided chunks (which can have their light removed)
+     */
+    private BlockVectorSet getSurroundedChunks(RelightSkyEntry[] chunks) {
+        BlockVectorSet chunkSet = new BlockVectorSet();
+        BlockVectorSet tmpSet = new BlockVectorSet();
+        for (RelightSkyEntry chunk : chunks) {
+            tmpSet.add(chunk.x, 0, chunk.z);
+        }
+        for (RelightSkyEntry chunk : chunks) {
+            int x = chunk.x;
+            int z = chunk.z;
+            if (tmpSet.contains(x + 1, 0, z) && tmpSet.contains(x - 1, 0, z) && tmpSet.contains(x, 0, z + 1) && tmpSet.contains(x, 0, z - 1)) {
+                chunkSet.add(x, 0, z);
+            }
+        }
+        return chunkSet;
+    }
+
     private void fixSkyLighting(List<RelightSkyEntry> sorted) {
         RelightSkyEntry[] chunks = sorted.toArray(new RelightSkyEntry[sorted.size()]);
         boolean remove = this.removeFirst;
-        BlockVectorSet chunkSet = null;
-        if (remove) {
-            chunkSet = new BlockVectorSet();
-            BlockVectorSet tmpSet = new BlockVectorSet();
-            for (RelightSkyEntry chunk : chunks) {
-                tmpSet.add(chunk.x, 0, chunk.z);
-            }
-            for (RelightSkyEntry chunk : chunks) {
-                int x = chunk.x;
-                int z = chunk.z;
-                if (tmpSet.contains(x + 1, 0, z) && tmpSet.contains(x - 1, 0, z) && tmpSet.contains(x, 0, z + 1) && tmpSet.contains(x, 0, z - 1)) {
-                    chunkSet.add(x, 0, z);
-                }
-            }
-        }
+        BlockVectorSet chunkSet = remove ? getSurroundedChunks(chunks) : null;
 
-        byte[] cacheX = FaweCache.CACHE_X[0];
-        byte[] cacheZ = FaweCache.CACHE_Z[0];
         for (int y = FaweChunk.HEIGHT - 1; y > 0; y--) {
             for (RelightSkyEntry chunk : chunks) { // Propogate skylight
-                int layer = y >> 4;
-                byte[] mask = chunk.mask;
-                if (chunk.fix[layer] != SkipReason.NONE) {
-                    if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
-                        fill(mask, chunk.x, y, chunk.z, chunk.fix[layer]);
-                    }
-                    continue;
-                }
-                int bx = chunk.x << 4;
-                int bz = chunk.z << 4;
-                Object chunkObj = queue.ensureChunkLoaded(chunk.x, chunk.z);
-                Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
-                if (sections == null) continue;
-                Object section = queue.getCachedSection(sections, layer);
-                if (section == null) continue;
-                chunk.smooth = false;
-
-                if (remove && (y & 15) == 15 && chunkSet.contains(chunk.x, 0, chunk.z)) {
-                    queue.removeSectionLighting(section, y >> 4, true);
-                }
-
-                for (int j = 0; j <= maxY; j++) {
-                    int x = cacheX[j];
-                    int z = cacheZ[j];
-                    byte value = mask[j];
-                    byte pair = (byte) queue.getOpacityBrightnessPair(section, x, y, z);
-                    int opacity = MathMan.unpair16x(pair);
-                    int brightness = MathMan.unpair16y(pair);
-                    if (brightness > 1 && (brightness != 15 || opacity != 15)) {
-                        addLightUpdate(bx + x, y, bz + z);
-                    }
-                    switch (value) {
-                        case 0:
-                            if (opacity > 1) {
-                                queue.setSkyLight(section, x, y, z, 0);
-                                continue;
-                            }
-                            break;
-                        case 1:
-                        case 2:
-                        case 3:
-                        case 4:
-                        case 5:
-                        case 6:
-                        case 7:
-                        case 8:
-                        case 9:
-                        case 10:
-                        case 11:
-                        case 12:
-                        case 13:
-                        case 14:
-                            if (opacity >= value) {
-                                mask[j] = 0;
-                                queue.setSkyLight(section, x, y, z, 0);
-                                continue;
-                            }
-                            if (opacity <= 1) {
-                                mask[j] = --value;
-                            } else {
-                                mask[j] = value = (byte) Math.max(0, value - opacity);
-                            }
-                            break;
-                        case 15:
-                            if (opacity > 1) {
-                                value -= opacity;
-                                mask[j] = value;
-                            }
-                            queue.setSkyLight(section, x, y, z, value);
-                            continue;
-                    }
-                    chunk.smooth = true;
-                    queue.setSkyLight(section, x, y, z, value);
-                }
-                queue.saveChunk(chunkObj);
+                propagateSkyLight(null, chunk, y, remove, chunkSet);
             }
             for (RelightSkyEntry chunk : chunks) { // Smooth forwards
                 if (chunk.smooth) {
@@ -500,11 +564,220 @@ public class NMSRelighter implements Relighter {
         }
     }
 
+    /**
+     * Relight sky light with each layer split into checkerboard waves<br>
+     * - Smoothing a chunk only reads from adjacent chunks, so chunks of the same color (2 apart) are relit in parallel<br>
+     * - Propagating a chunk only touches itself, so it's done in the same wave as the last smoothing of its neighbours (7 waves per layer)<br>
+     * - Each wave is split into a few tasks per thread, each relighting a range of chunks<br>
+     * - The chunks are smoothed in a different order than {@link #fixSkyLighting(List)}, so light values can differ slightly
+     *
+     * @param sorted
+     */
+    private void fixSkyLightingParallel(List<RelightSkyEntry> sorted) {
+        RelightSkyEntry[] chunks = sorted.toArray(new RelightSkyEntry[sorted.size()]);
+        boolean remove = this.removeFirst;
+        BlockVectorSet chunkSet = remove ? getSurroundedChunks(chunks) : null;
+
+        // Chunks are loaded up front as loading can't be done in parallel
+        ArrayList<RelightSkyEntry>[] waves = new ArrayList[4];
+        for (int i = 0; i < waves.length; i++) {
+            waves[i] = new ArrayList<>();
+        }
+        for (RelightSkyEntry chunk : chunks) {
+            queue.ensureChunkLoaded(chunk.x, chunk.z);
+            chunk.lightUpdates = new LongRingBuffer();
+            waves[(chunk.x & 1) + ((chunk.z & 1) << 1)].add(chunk);
+        }
+
+        ForkJoinPool pool = TaskManager.IMP.getPublicForkJoinPool();
+        int bands = pool.getParallelism() * 4;
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(bands * 3);
+        for (int i = 1; i < waves.length; i++) { // Propogate the top layer
+            submit(pool, tasks, waves[i], bands, chunk -> propagateSkyLight(chunk.getCursor(), chunk, FaweChunk.HEIGHT - 1, remove, chunkSet));
+        }
+        join(tasks);
+        for (int y = FaweChunk.HEIGHT - 1; y > 0; y--) {
+            final int layer = y;
+            // The first color is propogated here, the others were with the last wave of the layer above
+            submit(pool, tasks, waves[0], bands, chunk -> {
+                propagateSkyLight(chunk.getCursor(), chunk, layer, remove, chunkSet);
+                if (chunk.smooth) {
+                    smoothSkyLight(chunk.getCursor(), chunk, layer, true);
+                }
+            });
+            join(tasks);
+            for (int i = 1; i < waves.length - 1; i++) { // Smooth forwards
+                submit(pool, tasks, waves[i], bands, chunk -> {
+                    if (chunk.smooth) {
+                        smoothSkyLight(chunk.getCursor(), chunk, layer, true);
+                    }
+                });
+                join(tasks);
+            }
+            // The last color is smoothed forwards then backwards by the same task
+            submit(pool, tasks, waves[waves.length - 1], bands, chunk -> {
+                if (chunk.smooth) {
+                    smoothSkyLight(chunk.getCursor(), chunk, layer, true);
+                    smoothSkyLight(chunk.getCursor(), chunk, layer, false);
+                }
+            });
+            join(tasks);
+            for (int i = waves.length - 2; i > 0; i--) { // Smooth backwards
+                submit(pool, tasks, waves[i], bands, chunk -> {
+                    if (chunk.smooth) {
+                        smoothSkyLight(chunk.getCursor(), chunk, layer, false);
+                    }
+                });
+                join(tasks);
+            }
+            submit(pool, tasks, waves[0], bands, chunk -> {
+                if (chunk.smooth) {
+                    smoothSkyLight(chunk.getCursor(), chunk, layer, false);
+                }
+            });
+            if (layer > 1) { // Only the light of this layer is read by the first color, so the others can propogate the layer below
+                for (int i = 1; i < waves.length; i++) {
+                    submit(pool, tasks, waves[i], bands, chunk -> propagateSkyLight(chunk.getCursor(), chunk, layer - 1, remove, chunkSet));
+                }
+            }
+            join(tasks);
+        }
+        for (RelightSkyEntry chunk : chunks) {
+            LongRingBuffer updates = chunk.lightUpdates;
+            while (!updates.isEmpty()) {
+                long pos = updates.poll();
+                addLightUpdate((int) MathMan.untripleWorldCoordX(pos), (int) MathMan.untripleWorldCoordY(pos), (int) MathMan.untripleWorldCoordZ(pos));
+            }
+            chunk.lightUpdates = null;
+            chunk.cursor = null;
+        }
+    }
+
+    /**
+     * Submit a task for each range of chunks (at most the number of bands)
+     */
+    private void submit(ForkJoinPool pool, List<ForkJoinTask<?>> tasks, List<RelightSkyEntry> chunks, int bands, Consumer<RelightSkyEntry> task) {
+        int size = chunks.size();
+        int perBand = Math.max(1, (size + bands - 1) / bands);
+        for (int start = 0; start < size; start += perBand) {
+            List<RelightSkyEntry> band = chunks.subList(start, Math.min(size, start + perBand));
+            tasks.add(pool.submit(() -> {
+                for (RelightSkyEntry chunk : band) {
+                    task.accept(chunk);
+                }
+            }));
+        }
+    }
+
+    private void join(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Propagate the sky light of a chunk down one block
+     *
+     * @param cursor the section cursor for the current thread (null = use the queue, and it must be loaded)
+     */
+    private void propagateSkyLight(SectionCursor cursor, RelightSkyEntry chunk, int y, boolean remove, BlockVectorSet chunkSet) {
+        byte[] cacheX = FaweCache.CACHE_X[0];
+        byte[] cacheZ = FaweCache.CACHE_Z[0];
+        int layer = y >> 4;
+        byte[] mask = chunk.mask;
+        if (chunk.fix[layer] != SkipReason.NONE) {
+            if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
+                fill(cursor, mask, chunk.x, y, chunk.z, chunk.fix[layer]);
+            }
+            return;
+        }
+        int bx = chunk.x << 4;
+        int bz = chunk.z << 4;
+        Object chunkObj = cursor == null ? queue.ensureChunkLoaded(chunk.x, chunk.z) : queue.getCachedChunk(queue.getWorld(), chunk.x, chunk.z);
+        Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+        if (sections == null) return;
+        Object section = queue.getCachedSection(sections, layer);
+        if (section == null) return;
+        chunk.smooth = false;
+
+        if (remove && (y & 15) == 15 && chunkSet.contains(chunk.x, 0, chunk.z)) {
+            queue.removeSectionLighting(section, y >> 4, true);
+        }
+
+        for (int j = 0; j <= maxY; j++) {
+            int x = cacheX[j];
+            int z = cacheZ[j];
+            byte value = mask[j];
+            byte pair = (byte) queue.getOpacityBrightnessPair(section, x, y, z);
+            int opacity = MathMan.unpair16x(pair);
+            int brightness = MathMan.unpair16y(pair);
+            if (brightness > 1 && (brightness != 15 || opacity != 15)) {
+                if (cursor == null) {
+                    addLightUpdate(bx + x, y, bz + z);
+                } else {
+                    chunk.lightUpdates.add(MathMan.tripleWorldCoord(bx + x, y, bz + z));
+                }
+            }
+            switch (value) {
+                case 0:
+                    if (opacity > 1) {
+                        queue.setSkyLight(section, x, y, z, 0);
+                        continue;
+                    }
+                    break;
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                case 8:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 13:
+                case 14:
+                    if (opacity >= value) {
+                        mask[j] = 0;
+                        queue.setSkyLight(section, x, y, z, 0);
+                        continue;
+                    }
+                    if (opacity <= 1) {
+                        mask[j] = --value;
+                    } else {
+                        mask[j] = value = (byte) Math.max(0, value - opacity);
+                    }
+                    break;
+                case 15:
+                    if (opacity > 1) {
+                        value -= opacity;
+                        mask[j] = value;
+                    }
+                    queue.setSkyLight(section, x, y, z, value);
+                    continue;
+            }
+            chunk.smooth = true;
+            queue.setSkyLight(section, x, y, z, value);
+        }
+        if (chunkObj != null) {
+            queue.saveChunk(chunkObj);
+        }
+    }
+
     public void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
+        smoothSkyLight(null, chunk, y, direction);
+    }
+
+    private void smoothSkyLight(SectionCursor cursor, RelightSkyEntry chunk, int y, boolean direction) {
         byte[] mask = chunk.mask;
         int bx = chunk.x << 4;
         int bz = chunk.z << 4;
-        queue.ensureChunkLoaded(chunk.x, chunk.z);
+        if (cursor == null) {
+            queue.ensureChunkLoaded(chunk.x, chunk.z);
+        }
         Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
         if (sections == null) return;
         Object section = queue.getCachedSection(sections, y >> 4);
@@ -517,8 +790,8 @@ public class NMSRelighter implements Relighter {
                     continue;
                 }
                 byte value = mask[j];
-                if ((value = (byte) Math.max(queue.getSkyLight(bx + x - 1, y, bz + z) - 1, value)) >= 14) ;
-                else if ((value = (byte) Math.max(queue.getSkyLight(bx + x, y, bz + z - 1) - 1, value)) >= 14) ;
+                if ((value = (byte) Math.max(getSkyLight(cursor, bx + x - 1, y, bz + z) - 1, value)) >= 14) ;
+                else if ((value = (byte) Math.max(getSkyLight(cursor, bx + x, y, bz + z - 1) - 1, value)) >= 14) ;
                 if (value > mask[j]) queue.setSkyLight(section, x, y, z, mask[j] = value);
             }
         } else {
@@ -529,8 +802,8 @@ public class NMSRelighter implements Relighter {
                     continue;
                 }
                 byte value = mask[j];
-                if ((value = (byte) Math.max(queue.getSkyLight(bx + x + 1, y, bz + z) - 1, value)) >= 14) ;
-                else if ((value = (byte) Math.max(queue.getSkyLight(bx + x, y, bz + z + 1) - 1, value)) >= 14) ;
+                if ((value = (byte) Math.max(getSkyLight(cursor, bx + x + 1, y, bz + z) - 1, value)) >= 14) ;
+                else if ((value = (byte) Math.max(getSkyLight(cursor, bx + x, y, bz + z + 1) - 1, value)) >= 14) ;
                 if (value > mask[j]) queue.setSkyLight(section, x, y, z, mask[j] = value);
             }
         }
@@ -552,6 +825,8 @@ public class NMSRelighter implements Relighter {
         public final byte[] fix;
         public int bitmask;
         public boolean smooth;
+        private LongRingBuffer lightUpdates;
+        private SectionCursor cursor;
 
         public RelightSkyEntry(int x, int z, byte[] fix, int bitmask) {
             this.x = x;
@@ -568,6 +843,13 @@ public class NMSRelighter implements Relighter {
             }
         }
 
+        private SectionCursor getCursor() {
+            if (cursor == null) {
+                cursor = new SectionCursor();
+            }
+            return cursor;
+        }
+
         @Override
         public String toString() {
             return x + "," + z;
@@ -0,0 +1,322 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.collection.PaletteCharArray;
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.jnbt.CompoundTag;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A queued chunk which stores each section as a palette instead of a char[4096]<br>
+ * - Uses far less memory for large edits with few distinct blocks<br>
+ * - Converted to the queue's own chunk type (see {@link FaweQueue#getFaweChunk(int, int)}) when dispatched<br>
+ * - Stored values are the same as {@link CharFaweChunk} (0 = unchanged, 1 = air)
+ *
+ * @param <T>
+ */
+public class PaletteFaweChunk<T> extends FaweChunk<T> {
+
+    public final PaletteCharArray[] sections;
+    public final byte[] heightMap;
+
+    public byte[] biomes;
+    public HashMap<Short, CompoundTag> tiles;
+    public HashSet<CompoundTag> entities;
+    public HashSet<UUID> entityRemoves;
+
+    private FaweChunk inflated;
+
+    public PaletteFaweChunk(FaweQueue parent, int x, int z) {
+        this(parent, x, z, new PaletteCharArray[HEIGHT >> 4], new byte[256]);
+    }
+
+    public PaletteFaweChunk(FaweQueue parent, int x, int z, PaletteCharArray[] sections, byte[] heightMap) {
+        super(parent, x, z);
+        this.sections = sections;
+        this.heightMap = heightMap;
+    }
+
+    /**
+     * Get the chunk this will be dispatched as (created on first use)<br>
+     * - Modifications to this chunk after it has been inflated are ignored
+     *
+     * @return
+     */
+    public FaweChunk inflate() {
+        FaweChunk chunk = inflated;
+        if (chunk != null) {
+            return chunk;
+        }
+        chunk = getParent().getFaweChunk(getX(), getZ());
+        if (chunk instanceof CharFaweChunk) {
+            CharFaweChunk cfc = (CharFaweChunk) chunk;
+            for (int i = 0; i < sections.length; i++) {
+                PaletteCharArray section = sections[i];
+                if (section == null) {
+                    continue;
+                }
+                char[] ids = cfc.ids[i] = section.toArray(true);
+                int count = 0;
+                int air = 0;
+                for (char value : ids) {
+                    if (value != 0) {
+                        count++;
+                        if (value == 1) {
+                            air++;
+                        }
+                    }
+                }
+                cfc.count[i] = (short) count;
+                cfc.air[i] = (short) air;
+                sections[i] = null;
+            }
+            System.arraycopy(heightMap, 0, cfc.heightMap, 0, heightMap.length);
+            cfc.biomes = biomes;
+            cfc.tiles = tiles;
+            cfc.entities = entities;
+            cfc.entityRemoves = entityRemoves;
+        } else {
+            for (int i = 0; i < sections.length; i++) {
+                PaletteCharArray section = sections[i];
+                if (section == null) {
+                    continue;
+                }
+                byte[] xs = FaweCache.CACHE_X[i];
+                short[] ys = FaweCache.CACHE_Y[i];
+                byte[] zs = FaweCache.CACHE_Z[i];
+                for (int j = 0; j < PaletteCharArray.SIZE; j++) {
+                    char value = section.get(j);
+                    switch (value) {
+                        case 0:
+                            continue;
+                        case 1:
+                            chunk.setBlock(xs[j], ys[j], zs[j], 0, 0);
+                            continue;
+                        default:
+                            chunk.setBlock(xs[j], ys[j], zs[j], value >> 4, value & 0xF);
+                    }
+                }
+                sections[i] = null;
+            }
+            if (biomes != null) {
+                for (int index = 0; index < biomes.length; index++) {
+                    byte biome = biomes[index];
+                    if (biome != 0) {
+                        chunk.setBiome(index & 15, index >> 4, biome == -1 ? 0 : biome);
+                    }
+                }
+            }
+            if (tiles != null) {
+                for (Map.Entry<Short, CompoundTag> entry : tiles.entrySet()) {
+                    short pair = entry.getKey();
+                    chunk.setTile(MathMan.untripleBlockCoordX(pair), MathMan.untripleBlockCoordY(pair), MathMan.untripleBlockCoordZ(pair), entry.getValue());
+                }
+            }
+            if (entities != null) {
+                for (CompoundTag entity : entities) {
+                    chunk.setEntity(entity);
+                }
+            }
+            if (entityRemoves != null) {
+                for (UUID uuid : entityRemoves) {
+                    chunk.removeEntity(uuid);
+                }
+            }
+        }
+        if (hasNotifyTasks()) {
+            chunk.addNotifyTask(this::executeNotifyTasks);
+        }
+        return inflated = chunk;
+    }
+
+    @Override
+    public int getBitMask() {
+        if (inflated != null) {
+            return inflated.getBitMask();
+        }
+        int bitMask = 0;
+        for (int section = 0; section < sections.length; section++) {
+            if (sections[section] != null) {
+                bitMask += 1 << section;
+            }
+        }
+        return bitMask;
+    }
+
+    @Override
+    public int getBlockCombinedId(int x, int y, int z) {
+        if (inflated != null) {
+            return inflated.getBlockCombinedId(x, y, z);
+        }
+        PaletteCharArray section = sections[FaweCache.CACHE_I[y][z][x]];
+        if (section == null) {
+            return 0;
+        }
+        return section.get(FaweCache.CACHE_J[y][z][x]);
+    }
+
+    @Override
+    public char[] getIdArray(int layer) {
+        if (inflated != null) {
+            return inflated.getIdArray(layer);
+        }
+        PaletteCharArray section = sections[layer];
+        return section == null ? null : section.toArray(false);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, int id, int data) {
+        int i = FaweCache.CACHE_I[y][z][x];
+        PaletteCharArray section = sections[i];
+        if (section == null) {
+            section = sections[i] = new PaletteCharArray();
+        }
+        section.set(FaweCache.CACHE_J[y][z][x], CharFaweChunk.getStoredId(id, data));
+        if (id != 0) {
+            heightMap[z << 4 | x] = (byte) y;
+        }
+    }
+
+    @Override
+    public void fillCuboid(int x1, int x2, int y1, int y2, int z1, int z2, int id, byte data) {
+        if (x1 != 0 || x2 != 15 || z1 != 0 || z2 != 15) {
+            super.fillCuboid(x1, x2, y1, y2, z1, z2, id, data);
+            return;
+        }
+        char value = CharFaweChunk.getStoredId(id, data);
+        for (int layer = y1 >> 4; layer <= y2 >> 4; layer++) {
+            int minY = Math.max(y1, layer << 4);
+            int maxY = Math.min(y2, (layer << 4) + 15);
+            if (minY == layer << 4 && maxY == (layer << 4) + 15) {
+                PaletteCharArray section = sections[layer];
+                if (section == null) {
+                    sections[layer] = new PaletteCharArray(value);
+                } else {
+                    section.fill(value);
+                }
+            } else {
+                super.fillCuboid(0, 15, minY, maxY, 0, 15, id, data);
+            }
+        }
+        if (id != 0) {
+            byte top = (byte) y2;
+            for (int i = 0; i < heightMap.length; i++) {
+                if ((heightMap[i] & 0xFF) < y2) {
+                    heightMap[i] = top;
+                }
+            }
+        }
+    }
+
+    @Override
+    public byte[] getBiomeArray() {
+        return biomes;
+    }
+
+    @Override
+    public void setBiome(int x, int z, byte biome) {
+        if (this.biomes == null) {
+            this.biomes = new byte[256];
+        }
+        if (biome == 0) biome = -1;
+        biomes[((z & 15) << 4) + (x & 15)] = biome;
+    }
+
+    @Override
+    public void setTile(int x, int y, int z, CompoundTag tile) {
+        if (tiles == null) {
+            tiles = new HashMap<>();
+        }
+        tiles.put(MathMan.tripleBlockCoord(x, y, z), tile);
+    }
+
+    @Override
+    public CompoundTag getTile(int x, int y, int z) {
+        if (tiles == null) {
+            return null;
+        }
+        return tiles.get(MathMan.tripleBlockCoord(x, y, z));
+    }
+
+    @Override
+    public Map<Short, CompoundTag> getTiles() {
+        return tiles == null ? new HashMap<Short, CompoundTag>() : tiles;
+    }
+
+    @Override
+    public Set<CompoundTag> getEntities() {
+        return entities == null ? Collections.emptySet() : entities;
+    }
+
+    @Override
+    public void setEntity(CompoundTag tag) {
+        if (entities == null) {
+            entities = new HashSet<>();
+        }
+        entities.add(tag);
+    }
+
+    @Override
+    public void removeEntity(UUID uuid) {
+        if (entityRemoves == null) {
+            entityRemoves = new HashSet<>();
+        }
+        entityRemoves.add(uuid);
+    }
+
+    @Override
+    public Set<UUID> getEntityRemoves() {
+        return entityRemoves == null ? new HashSet<UUID>() : entityRemoves;
+    }
+
+    @Override
+    public T getChunk() {
+        return (T) inflate().getChunk();
+    }
+
+    @Override
+    public PaletteFaweChunk<T> copy(boolean shallow) {
+        PaletteFaweChunk<T> copy;
+        if (shallow) {
+            copy = new PaletteFaweChunk<>(getParent(), getX(), getZ(), sections, heightMap);
+            copy.biomes = biomes;
+        } else {
+            PaletteCharArray[] sectionsCopy = new PaletteCharArray[sections.length];
+            for (int i = 0; i < sections.length; i++) {
+                if (sections[i] != null) {
+                    sectionsCopy[i] = sections[i].copy();
+                }
+            }
+            copy = new PaletteFaweChunk<>(getParent(), getX(), getZ(), sectionsCopy, heightMap.clone());
+            copy.biomes = biomes != null ? biomes.clone() : null;
+        }
+        copy.tiles = tiles;
+        copy.entities = entities;
+        copy.entityRemoves = entityRemoves;
+        return copy;
+    }
+
+    @Override
+    public void start() {
+        inflate().start();
+    }
+
+    @Override
+    public void end() {
+        if (inflated != null) {
+            inflated.end();
+        }
+    }
+
+    @Override
+    public FaweChunk call() {
+        return inflate().call();
+    }
+}
@@ -0,0 +1,197 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.util.TaskManager;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Count the blocks in a region by reading whole chunk sections<br>
+ * - Chunks are loaded in batches on the calling thread (loading can't be done in parallel)<br>
+ * - Each batch is counted in parallel, with one histogram per task merged at the end<br>
+ * - Sections fully inside the region are counted without checking each position<br>
+ * - Only the world is read (queued changes are ignored, same as {@link MappedFaweQueue#getCombinedId4Data(int, int, int)})
+ */
+public class ParallelBlockCounter {
+    // Chunks to load before counting them
+    private static final int BATCH_SIZE = 256;
+
+    private final MappedFaweQueue queue;
+
+    public ParallelBlockCounter(MappedFaweQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Count the blocks in a region
+     *
+     * @param region
+     * @return the number of each combined id (id << 4 | data) in the region
+     */
+    public int[] count(Region region) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = min.getBlockX();
+        int minZ = min.getBlockZ();
+        int maxX = max.getBlockX();
+        int maxZ = max.getBlockZ();
+        int minY = Math.max(0, min.getBlockY());
+        int maxY = Math.min(queue.getMaxY(), max.getBlockY());
+
+        ForkJoinPool pool = TaskManager.IMP.getPublicForkJoinPool();
+        int parallelism = Math.max(1, pool.getParallelism());
+        int[][] histograms = new int[parallelism][];
+
+        int[] batchX = new int[BATCH_SIZE];
+        int[] batchZ = new int[BATCH_SIZE];
+        Object[] batchSections = new Object[BATCH_SIZE];
+        int size = 0;
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                Object chunk = queue.ensureChunkLoaded(cx, cz);
+                batchX[size] = cx;
+                batchZ[size] = cz;
+                batchSections[size] = chunk == null ? null : queue.getSections(chunk);
+                if (++size == BATCH_SIZE) {
+                    countBatch(pool, histograms, batchX, batchZ, batchSections, size, region, minY, maxY);
+                    size = 0;
+                }
+            }
+        }
+        if (size != 0) {
+            countBatch(pool, histograms, batchX, batchZ, batchSections, size, region, minY, maxY);
+        }
+
+        int[] total = new int[Character.MAX_VALUE + 1];
+        for (int[] histogram : histograms) {
+            if (histogram == null) {
+                continue;
+            }
+            for (int i = 0; i < histogram.length; i++) {
+                total[i] += histogram[i];
+            }
+        }
+        return total;
+    }
+
+    private void countBatch(ForkJoinPool pool, int[][] histograms, int[] batchX, int[] batchZ, Object[] batchSections, int size, Region region, int minY, int maxY) {
+        int tasks = Math.min(histograms.length, size);
+        List<ForkJoinTask<?>> submitted = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            if (histograms[i] == null) {
+                histograms[i] = new int[Character.MAX_VALUE + 1];
+            }
+            final int[] histogram = histograms[i];
+            final int start = i;
+            submitted.add(pool.submit(() -> {
+                for (int j = start; j < size; j += tasks) {
+                    countChunk(histogram, batchX[j], batchZ[j], batchSections[j], region, minY, maxY);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : submitted) {
+            task.join();
+        }
+        Arrays.fill(batchSections, null);
+    }
+
+    private void countChunk(int[] histogram, int cx, int cz, Object sections, Region region, int minY, int maxY) {
+        int bx = cx << 4;
+        int bz = cz << 4;
+        for (int cy = minY >> 4; cy <= maxY >> 4; cy++) {
+            int by = cy << 4;
+            Object section = sections == null ? null : queue.getCachedSection(sections, cy);
+            if (isInside(region, bx, by, bz, minY, maxY)) {
+                countSection(histogram, section, cy, by);
+            } else {
+                countBoundary(histogram, section, region, bx, by, bz, minY, maxY);
+            }
+        }
+    }
+
+    /**
+     * Count every block in a section
+     */
+    private void countSection(int[] histogram, Object section, int cy, int by) {
+        if (section == null) {
+            histogram[0] += 4096;
+            return;
+        }
+        char[] ids = queue.getIdArray(section, cy);
+        if (ids != null) {
+            for (char combined : ids) {
+                histogram[combined]++;
+            }
+            return;
+        }
+        for (int y = by; y < by + 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    histogram[queue.getCombinedId4Data(section, x, y, z)]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the blocks in a section which are in the region
+     */
+    private void countBoundary(int[] histogram, Object section, Region region, int bx, int by, int bz, int minY, int maxY) {
+        int yStart = Math.max(minY, by);
+        int yEnd = Math.min(maxY, by + 15);
+        char[] ids = section == null ? null : queue.getIdArray(section, by >> 4);
+        for (int y = yStart; y <= yEnd; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    if (!region.contains(bx + x, y, bz + z)) {
+                        continue;
+                    }
+                    int combined;
+                    if (section == null) {
+                        combined = 0;
+                    } else if (ids != null) {
+                        combined = ids[FaweCache.CACHE_J[y][z][x]];
+                    } else {
+                        combined = queue.getCombinedId4Data(section, x, y, z);
+                    }
+                    histogram[combined]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return if every block in a section is in the region (only checked for convex regions)
+     */
+    private boolean isInside(Region region, int bx, int by, int bz, int minY, int maxY) {
+        if (by < minY || by + 15 > maxY) {
+            return false;
+        }
+        if (region instanceof CuboidRegion) {
+            Vector min = region.getMinimumPoint();
+            Vector max = region.getMaximumPoint();
+            return bx >= min.getBlockX() && bx + 15 <= max.getBlockX() && bz >= min.getBlockZ() && bz + 15 <= max.getBlockZ();
+        }
+        if (region instanceof EllipsoidRegion || region instanceof CylinderRegion) {
+            // Convex, so the section is inside if all of its corners are
+            for (int i = 0; i < 8; i++) {
+                int x = bx + ((i & 1) == 0 ? 0 : 15);
+                int y = by + ((i & 2) == 0 ? 0 : 15);
+                int z = bz + ((i & 4) == 0 ? 0 : 15);
+                if (!region.contains(x, y, z)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
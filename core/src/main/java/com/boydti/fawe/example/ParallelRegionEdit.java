@@ -0,0 +1,275 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.changeset.FaweChangeSet;
+import com.boydti.fawe.object.pattern.PatternCompiler;
+import com.boydti.fawe.object.visitor.FaweChunkVisitor;
+import com.boydti.fawe.util.TaskManager;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Generate the blocks of an edit on all threads, split into chunk columns<br>
+ * - Chunks are loaded in batches on the calling thread (which can't be done in parallel)<br>
+ * - Each chunk column is written by a single task, into a chunk outside the queue (so no locking is needed)<br>
+ * - The chunks are only queued once the batch is done, so the queue can't send a chunk that is half written<br>
+ * - Each task records the changes of its columns into a separate history segment<br>
+ * - The segments are added to the change set on the calling thread, in the same order as a sequential edit<br>
+ * - Only the world is read (queued changes are ignored, same as {@link MappedFaweQueue#getCombinedId4Data(int, int, int)})
+ */
+public class ParallelRegionEdit {
+    // Chunks to load before editing them
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * The blocks of an edit (must be safe to call from multiple threads)
+     */
+    public interface Shape {
+        boolean contains(int x, int y, int z);
+    }
+
+    private final MappedFaweQueue queue;
+    private final FaweChangeSet changeSet;
+
+    /**
+     * @param queue
+     * @param changeSet the change set to record history to, or null
+     */
+    public ParallelRegionEdit(MappedFaweQueue queue, FaweChangeSet changeSet) {
+        this.queue = queue;
+        this.changeSet = changeSet;
+    }
+
+    /**
+     * @param pattern
+     * @return if a pattern only places blocks without NBT, and can be used from multiple threads (see {@link #copy(Pattern)})
+     */
+    public static boolean isParallel(Pattern pattern) {
+        return PatternCompiler.isConstant(pattern);
+    }
+
+    /**
+     * @param region
+     * @return if a region can be tested from multiple threads
+     */
+    public static boolean isParallel(Region region) {
+        return region instanceof CuboidRegion || region instanceof EllipsoidRegion || region instanceof CylinderRegion;
+    }
+
+    private static Pattern copy(Pattern pattern) {
+        if (pattern instanceof PatternCompiler.WeightedPattern) {
+            return ((PatternCompiler.WeightedPattern) pattern).copy();
+        }
+        return pattern;
+    }
+
+    /**
+     * Set the blocks in a region
+     *
+     * @param region a region where {@link #isParallel(Region)} is true
+     * @param filter the combined ids to replace, or null for all
+     * @param pattern a pattern where {@link #isParallel(Pattern)} is true
+     * @return the number of blocks set
+     */
+    public int edit(Region region, boolean[] filter, Pattern pattern) {
+        Shape shape = region instanceof CuboidRegion ? null : region::contains;
+        return edit(region.getMinimumPoint(), region.getMaximumPoint(), shape, filter, pattern);
+    }
+
+    /**
+     * Set the blocks in a shape
+     *
+     * @param min the minimum point of the shape
+     * @param max the maximum point of the shape
+     * @param shape the shape, or null for every block between min and max
+     * @param filter the combined ids to replace, or null for all
+     * @param pattern a pattern where {@link #isParallel(Pattern)} is true
+     * @return the number of blocks set
+     */
+    public int edit(Vector min, Vector max, Shape shape, boolean[] filter, Pattern pattern) {
+        int minX = min.getBlockX();
+        int minZ = min.getBlockZ();
+        int maxX = max.getBlockX();
+        int maxZ = max.getBlockZ();
+        int minY = Math.max(0, min.getBlockY());
+        int maxY = Math.min(queue.getMaxY(), max.getBlockY());
+        if (minY > maxY) {
+            return 0;
+        }
+
+        ForkJoinPool pool = TaskManager.IMP.getPublicForkJoinPool();
+        int parallelism = Math.max(1, pool.getParallelism());
+        Pattern[] patterns = new Pattern[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            patterns[i] = copy(pattern);
+        }
+        Batch batch = new Batch();
+        int count = 0;
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                int i = batch.size;
+                Object chunk = queue.ensureChunkLoaded(cx, cz);
+                batch.chunkX[i] = cx;
+                batch.chunkZ[i] = cz;
+                batch.sections[i] = chunk == null ? null : queue.getSections(chunk);
+                batch.chunks[i] = queue.getQueuedFaweChunk(cx, cz);
+                if (++batch.size == BATCH_SIZE) {
+                    count += editBatch(pool, patterns, batch, shape, filter, minX, minY, minZ, maxX, maxY, maxZ);
+                }
+            }
+        }
+        if (batch.size != 0) {
+            count += editBatch(pool, patterns, batch, shape, filter, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        return count;
+    }
+
+    private static final class Batch {
+        private final int[] chunkX = new int[BATCH_SIZE];
+        private final int[] chunkZ = new int[BATCH_SIZE];
+        private final Object[] sections = new Object[BATCH_SIZE];
+        private final FaweChunk[] chunks = new FaweChunk[BATCH_SIZE];
+        // The history segment of each chunk (index << 32 | from << 16 | to)
+        private final LongArrayList[] segments = new LongArrayList[BATCH_SIZE];
+        private final int[] counts = new int[BATCH_SIZE];
+        private int size;
+    }
+
+    private int editBatch(ForkJoinPool pool, Pattern[] patterns, Batch batch, Shape shape, boolean[] filter, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int size = batch.size;
+        int tasks = Math.min(patterns.length, size);
+        List<ForkJoinTask<?>> submitted = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            final Pattern pattern = patterns[i];
+            final int start = i;
+            submitted.add(pool.submit(() -> {
+                for (int j = start; j < size; j += tasks) {
+                    LongArrayList segment = null;
+                    if (changeSet != null) {
+                        segment = batch.segments[j];
+                        if (segment == null) {
+                            segment = batch.segments[j] = new LongArrayList();
+                        } else {
+                            segment.clear();
+                        }
+                    }
+                    batch.counts[j] = editChunk(batch.chunks[j], batch.sections[j], segment, batch.chunkX[j], batch.chunkZ[j], shape, filter, pattern, minX, minY, minZ, maxX, maxY, maxZ);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : submitted) {
+            task.join();
+        }
+        IFaweQueueMap map = queue.getFaweQueueMap();
+        int count = 0;
+        for (int j = 0; j < size; j++) {
+            count += batch.counts[j];
+            if (batch.counts[j] != 0) {
+                queueChunk(map, batch.chunks[j]);
+            }
+            if (changeSet != null) {
+                addHistory(batch.segments[j], batch.chunkX[j] << 4, batch.chunkZ[j] << 4);
+            }
+        }
+        Arrays.fill(batch.sections, null);
+        Arrays.fill(batch.chunks, null);
+        batch.size = 0;
+        return count;
+    }
+
+    private int editChunk(FaweChunk chunk, Object sections, LongArrayList segment, int cx, int cz, Shape shape, boolean[] filter, Pattern pattern, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int bx = cx << 4;
+        int bz = cz << 4;
+        int xStart = Math.max(minX, bx) - bx;
+        int xEnd = Math.min(maxX, bx + 15) - bx;
+        int zStart = Math.max(minZ, bz) - bz;
+        int zEnd = Math.min(maxZ, bz + 15) - bz;
+        int count = 0;
+        for (int cy = minY >> 4; cy <= maxY >> 4; cy++) {
+            int by = cy << 4;
+            int yStart = Math.max(minY, by);
+            int yEnd = Math.min(maxY, by + 15);
+            Object section = sections == null ? null : queue.getCachedSection(sections, cy);
+            char[] ids = section == null ? null : queue.getIdArray(section, cy);
+            for (int y = yStart; y <= yEnd; y++) {
+                for (int z = zStart; z <= zEnd; z++) {
+                    for (int x = xStart; x <= xEnd; x++) {
+                        if (shape != null && !shape.contains(bx + x, y, bz + z)) {
+                            continue;
+                        }
+                        int from;
+                        if (section == null) {
+                            from = 0;
+                        } else if (ids != null) {
+                            from = ids[FaweCache.CACHE_J[y][z][x]];
+                        } else {
+                            from = queue.getCombinedId4Data(section, x, y, z);
+                        }
+                        if (filter != null && !filter[from]) {
+                            continue;
+                        }
+                        int to = pattern.applyCombined(bx + x, y, bz + z);
+                        chunk.setBlock(x, y, z, FaweCache.getId(to), FaweCache.getData(to));
+                        count++;
+                        if (segment != null && to != from) {
+                            segment.add(((long) ((y << 8) | (z << 4) | x) << 32) | ((long) from << 16) | to);
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add a finished chunk to the queue, or copy it into the chunk already queued there (which it overrides)
+     */
+    private void queueChunk(IFaweQueueMap map, FaweChunk chunk) {
+        FaweChunk queued = map.getCachedFaweChunk(chunk.getX(), chunk.getZ());
+        if (queued == null) {
+            map.add(chunk);
+            return;
+        }
+        chunk.forEachQueuedBlock(new FaweChunkVisitor() {
+            @Override
+            public void run(int localX, int y, int localZ, int combined) {
+                queued.setBlock(localX, y, localZ, FaweCache.getId(combined), FaweCache.getData(combined));
+            }
+        });
+    }
+
+    /**
+     * Add a history segment to the change set
+     */
+    private void addHistory(LongArrayList segment, int bx, int bz) {
+        for (int i = 0; i < segment.size(); i++) {
+            long change = segment.getLong(i);
+            int index = (int) (change >>> 32);
+            int x = bx + (index & 15);
+            int z = bz + ((index >> 4) & 15);
+            int y = index >> 8;
+            int from = (int) ((change >> 16) & 0xFFFF);
+            int to = (int) (change & 0xFFFF);
+            int fromId = FaweCache.getId(from);
+            if (FaweCache.hasNBT(fromId)) {
+                CompoundTag tag = queue.getTileEntity(x, y, z);
+                changeSet.add(x, y, z, new BaseBlock(fromId, FaweCache.getData(from), tag), FaweCache.getBlock(FaweCache.getId(to), FaweCache.getData(to)));
+            } else {
+                changeSet.add(x, y, z, from, to);
+            }
+        }
+    }
+}
@@ -144,7 +144,7 @@ public class WeakFaweQueueMap implements IFaweQueueMap {
     }
 
     private FaweChunk getNewFaweChunk(int cx, int cz) {
-        return parent.getFaweChunk(cx, cz);
+        return parent.getQueuedFaweChunk(cx, cz);
     }
 
     private FaweChunk lastWrappedChunk;
@@ -171,8 +171,7 @@ public class WeakFaweQueueMap implements IFaweQueueMap {
                             iter.remove();
                             if (chunk != null) {
                                 parent.start(chunk);
-                                chunk.call();
-                                parent.end(chunk);
+                                parent.end(chunk.call());
                             } else {
                                 Fawe.debug("Skipped modifying chunk due to low memory (3)");
                             }
@@ -87,4 +87,26 @@ public class NBTStreamer {
 
         public abstract void run(int index, int byteValue);
     }
+
+    /**
+     * Reads a byte array a slice at a time, rather than a byte at a time<br>
+     * - The slice is only valid until the method returns
+     */
+    public static abstract class ByteArrayReader extends ByteReader {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void run(int index, int byteValue) {
+            single[0] = (byte) byteValue;
+            run(index, single, 0, 1);
+        }
+
+        /**
+         * @param index the index of the first byte in the array
+         * @param slice
+         * @param offset
+         * @param length
+         */
+        public abstract void run(int index, byte[] slice, int offset, int length);
+    }
 }
@@ -16,6 +16,8 @@ import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class SchematicStreamer extends NBTStreamer {
     private final UUID uuid;
@@ -30,79 +32,80 @@ public class SchematicStreamer extends NBTStreamer {
         NBTStreamReader initializer = new NBTStreamReader<Integer, Integer>() {
             @Override
             public void run(Integer length, Integer type) {
-                setupClipboard(length);
+                loader.submit(() -> setupClipboard(length));
             }
         };
         NBTStreamReader initializer2 = new NBTStreamReader<Integer, Integer>() {
             @Override
             public void run(Integer length, Integer type) {
-                setupClipboard(length*2);
+                loader.submit(() -> setupClipboard(length * 2));
             }
         };
         addReader("Schematic.Blocks.?", initializer);
         addReader("Schematic.Data.?", initializer);
         addReader("Schematic.AddBlocks.?", initializer2);
-        addReader("Schematic.Blocks.#", new ByteReader() {
+        addReader("Schematic.Blocks.#", loader.new SliceReader() {
             @Override
-            public void run(int index, int value) {
-                if (value != 0) fc.setId(index, value);
+            public void apply(int index, byte[] slice, int length) {
+                fc.setIds(index, slice, 0, length);
             }
         });
-        addReader("Schematic.Data.#", new ByteReader() {
+        addReader("Schematic.Data.#", loader.new SliceReader() {
             @Override
-            public void run(int index, int value) {
-                if (value != 0) fc.setData(index, value);
+            public void apply(int index, byte[] slice, int length) {
+                fc.setDatas(index, slice, 0, length);
             }
         });
-        addReader("Schematic.AddBlocks.#", new ByteReader() {
+        addReader("Schematic.AddBlocks.#", loader.new SliceReader() {
             @Override
-            public void run(int index, int value) {
-                if (value != 0) {
-                    int first = value & 0x0F;
-                    int second = (value & 0xF0) >> 4;
-                    int gIndex = index << 1;
-                    if (first != 0) fc.setAdd(gIndex, first);
-                    if (second != 0) fc.setAdd(gIndex + 1, second);
-                }
+            public void apply(int index, byte[] slice, int length) {
+                fc.setAdds(index << 1, slice, 0, length);
             }
         });
-        ByteReader biomeReader = new ByteReader() {
-            @Override
-            public void run(int index, int value) {
-                fc.setBiome(index, value);
-            }
-        };
         NBTStreamReader<Integer, Integer> initializer23 = new NBTStreamReader<Integer, Integer>() {
             @Override
             public void run(Integer value1, Integer value2) {
-                if (fc == null) setupClipboard(length * width * height);
+                loader.submit(() -> {
+                    if (fc == null) setupClipboard(length * width * height);
+                });
             }
         };
         addReader("Schematic.AWEBiomes.?", initializer23);
         addReader("Schematic.Biomes.?", initializer23);
-        addReader("Schematic.AWEBiomes.#", biomeReader); // AWE stores as an int[]
-        addReader("Schematic.Biomes.#", biomeReader); // FAWE stores as a byte[] (4x smaller)
+        addReader("Schematic.AWEBiomes.#", new ByteReader() { // AWE stores as an int[]
+            @Override
+            public void run(int index, int value) {
+                loader.submit(() -> fc.setBiome(index, value));
+            }
+        });
+        addReader("Schematic.Biomes.#", loader.new SliceReader() { // FAWE stores as a byte[] (4x smaller)
+            @Override
+            public void apply(int index, byte[] slice, int length) {
+                for (int i = 0; i < length; i++) {
+                    fc.setBiome(index + i, slice[i] & 0xFF);
+                }
+            }
+        });
 
         // Tiles
         addReader("Schematic.TileEntities.#", new RunnableVal2<Integer, CompoundTag>() {
             @Override
             public void run(Integer index, CompoundTag value) {
-                if (fc == null) {
-                    setupClipboard(0);
-                }
-                int x = value.getInt("x");
-                int y = value.getInt("y");
-                int z = value.getInt("z");
-                fc.setTile(x, y, z, value);
+                loader.submit(() -> {
+                    if (fc == null) {
+                        setupClipboard(0);
+                    }
+                    int x = value.getInt("x");
+                    int y = value.getInt("y");
+                    int z = value.getInt("z");
+                    fc.setTile(x, y, z, value);
+                });
             }
         });
         // Entities
         addReader("Schematic.Entities.#", new RunnableVal2<Integer, CompoundTag>() {
             @Override
             public void run(Integer index, CompoundTag compound) {
-                if (fc == null) {
-                    setupClipboard(0);
-                }
                 String id = compound.getString("id");
                 if (id.isEmpty()) {
                     return;
@@ -110,7 +113,12 @@ public class SchematicStreamer extends NBTStreamer {
                 ListTag positionTag = compound.getListTag("Pos");
                 ListTag directionTag = compound.getListTag("Rotation");
                 BaseEntity state = new BaseEntity(id, compound);
-                fc.createEntity(clipboard, positionTag.asDouble(0), positionTag.asDouble(1), positionTag.asDouble(2), (float) directionTag.asDouble(0), (float) directionTag.asDouble(1), state);
+                loader.submit(() -> {
+                    if (fc == null) {
+                        setupClipboard(0);
+                    }
+                    fc.createEntity(clipboard, positionTag.asDouble(0), positionTag.asDouble(1), positionTag.asDouble(2), (float) directionTag.asDouble(0), (float) directionTag.asDouble(1), state);
+                });
             }
         });
     }
@@ -186,6 +194,7 @@ public class SchematicStreamer extends NBTStreamer {
 
     private BlockArrayClipboard clipboard;
     private FaweClipboard fc;
+    private final Loader loader = new Loader();
 
     private FaweClipboard setupClipboard(int size) {
         if (fc != null) {
@@ -224,6 +233,7 @@ public class SchematicStreamer extends NBTStreamer {
             addDimensionReaders();
             addBlockReaders();
             readFully();
+            loader.finish();
             Vector min = new Vector(originX, originY, originZ);
             Vector offset = new Vector(offsetX, offsetY, offsetZ);
             Vector origin = min.subtract(offset);
@@ -234,10 +244,158 @@ public class SchematicStreamer extends NBTStreamer {
             clipboard.setOrigin(origin);
             return clipboard;
         } catch (Throwable e) {
+            loader.stop();
             if (fc != null) {
                 fc.close();
             }
             throw e;
         }
     }
+
+    private static final Runnable STOP = () -> {};
+
+    /**
+     * Applies everything read to the clipboard on a second thread, so NBT decoding overlaps with copying blocks<br>
+     * - The clipboard is only used by this thread until loading finishes<br>
+     * - Byte array slices are copied into a fixed pool of buffers, which bounds the memory used
+     */
+    private final class Loader {
+        private static final int BUFFERS = 16;
+
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(BUFFERS * 2);
+        private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(BUFFERS);
+        private Thread thread;
+        private int allocated;
+        private volatile Throwable error;
+
+
+        private void poll() {
+            try {
+                while (true) {
+                    Runnable task = queue.take();
+                    if (task == STOP) {
+                        return;
+                    }
+                    try {
+                        if (error == null) {
+                            task.run();
+                        }
+                    } catch (Throwable e) {
+                        error = e;
+                    } finally {
+                        if (task instanceof Slice) {
+                            buffers.offer(((Slice) task).buffer);
+                        }
+                    }
+                }
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        /**
+         * Add work for the loader thread, waiting if the queue is full
+         */
+        private void submit(Runnable task) {
+            if (error != null) {
+                throw new RuntimeException("Failed to load schematic", error);
+            }
+            if (thread == null) {
+                thread = new Thread(this::poll, "FAWE Schematic loader");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Get a free buffer, waiting for one to be released once the pool is used up
+         */
+        private byte[] getBuffer(int size) {
+            byte[] buffer = buffers.poll();
+            if (buffer == null) {
+                if (allocated < BUFFERS) {
+                    allocated++;
+                    return new byte[size];
+                }
+                try {
+                    buffer = buffers.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            return buffer.length >= size ? buffer : new byte[size];
+        }
+
+        /**
+         * Wait for the queued work, and rethrow anything that failed
+         */
+        private void finish() throws IOException {
+            stop();
+            Throwable e = error;
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            if (e != null) {
+                throw new IOException(e);
+            }
+        }
+
+        private void stop() {
+            if (thread == null) {
+                return;
+            }
+            try {
+                queue.put(STOP);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+
+        private final class Slice implements Runnable {
+            private final SliceReader reader;
+            private final int index;
+            private final byte[] buffer;
+            private final int length;
+
+            private Slice(SliceReader reader, int index, byte[] buffer, int length) {
+                this.reader = reader;
+                this.index = index;
+                this.buffer = buffer;
+                this.length = length;
+            }
+
+            @Override
+            public void run() {
+                reader.apply(index, buffer, length);
+            }
+        }
+
+        /**
+         * Copies each slice of a byte array, to be applied by the loader thread
+         */
+        private abstract class SliceReader extends ByteArrayReader {
+            @Override
+            public void run(int index, byte[] slice, int offset, int length) {
+                byte[] buffer = getBuffer(length);
+                System.arraycopy(slice, offset, buffer, 0, length);
+                submit(new Slice(this, index, buffer, length));
+            }
+
+            public abstract void apply(int index, byte[] slice, int length);
+        }
+    }
 }
@@ -7,6 +7,7 @@ import com.boydti.fawe.object.*;
 import com.boydti.fawe.object.brush.visualization.VirtualWorld;
 import com.boydti.fawe.object.change.StreamChange;
 import com.boydti.fawe.object.changeset.CFIChangeSet;
+import com.boydti.fawe.object.brush.heightmap.HeightMapSmoother;
 import com.boydti.fawe.object.collection.*;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.object.queue.LazyFaweChunk;
@@ -391,10 +392,9 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         int tableLength = (maxZ - minZ + 1);
         int smoothArea = tableWidth * tableLength;
 
-        long[] copy = new long[smoothArea];
         char[] layers = new char[smoothArea];
 
-        SummedAreaTable table = new SummedAreaTable(copy, layers, tableWidth, radius);
+        HeightMapSmoother smoother = new HeightMapSmoother(tableWidth, tableLength);
         for (int j = 0; j < iterations; j++) {
 
             { // Copy to table
@@ -413,17 +413,14 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                     }
                 }
             }
-            // Process table
-            table.processSummedAreaTable();
+            smoother.blur(layers, layers, radius);
             { // Copy from table
                 int localIndex = 0;
                 int zIndex = (minZ * getWidth());
-                for (int z = minZ, localZ = 0; z <= maxZ; z++, localZ++, zIndex += getWidth()) {
+                for (int z = minZ; z <= maxZ; z++, zIndex += getWidth()) {
                     int index = zIndex + minX;
-                    for (int x = minX, localX = 0; x <= maxX; x++, localX++, index++, localIndex++) {
-                        int y = heights[index] & 0xFF;
-                        int newHeight = table.average(localX, localZ, localIndex);
-                        setLayerHeight(index, newHeight);
+                    for (int x = minX; x <= maxX; x++, index++, localIndex++) {
+                        setLayerHeight(index, layers[localIndex]);
                     }
                 }
             }
@@ -479,13 +476,10 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         char[] floor = this.floor.get();
         byte[] heights = this.heights.get();
 
-        long[] copy = new long[heights.length];
         char[] layers = new char[heights.length];
 
         this.floor.record(() -> HeightMapMCAGenerator.this.heights.record(() -> {
-            int width = getWidth();
-            int length = getLength();
-            SummedAreaTable table = new SummedAreaTable(copy, layers, width, radius);
+            HeightMapSmoother smoother = new HeightMapSmoother(getWidth(), getLength());
             for (int j = 0; j < iterations; j++) {
                 for (int i = 0; i < heights.length; i++) {
                     char combined = floor[i];
@@ -497,14 +491,13 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                     }
                 }
                 int index = 0;
-                table.processSummedAreaTable();
+                smoother.blur(layers, layers, radius);
                 if (img != null) {
                     for (int z = 0; z < getLength(); z++) {
                         for (int x = 0; x < getWidth(); x++, index++) {
                             int height = img.getRGB(x, z) & 0xFF;
                             if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                                int newHeight = table.average(x, z, index);
-                                setLayerHeightRaw(index, newHeight);
+                                setLayerHeightRaw(index, layers[index]);
                             }
                         }
                     }
@@ -516,16 +509,14 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                             mutable.mutX(x);
                             mutable.mutY(y);
                             if (mask.test(mutable)) {
-                                int newHeight = table.average(x, z, index);
-                                setLayerHeightRaw(index, newHeight);
+                                setLayerHeightRaw(index, layers[index]);
                             }
                         }
                     }
                 } else {
                     for (int z = 0; z < getLength(); z++) {
                         for (int x = 0; x < getWidth(); x++, index++) {
-                            int newHeight = table.average(x, z, index);
-                            setLayerHeightRaw(index, newHeight);
+                            setLayerHeightRaw(index, layers[index]);
                         }
                     }
                 }
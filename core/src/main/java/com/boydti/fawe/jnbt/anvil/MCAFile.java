@@ -1,6 +1,7 @@
 package com.boydti.fawe.jnbt.anvil;
 
 import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.jnbt.NBTStreamer;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.RunnableVal;
@@ -19,6 +20,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -51,6 +55,7 @@ public class MCAFile {
     private final FaweQueue queue;
     private final File file;
     private RandomAccessFile raf;
+    private MappedByteBuffer mapped;
     private byte[] locations;
     private boolean deleted;
     private final int X, Z;
@@ -74,6 +79,18 @@ public class MCAFile {
             return new byte[1024];
         }
     };
+    final ThreadLocal<byte[]> compressedStore = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+    private static final ThreadLocal<Inflater> inflaterStore = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
 
     public MCAFile(FaweQueue parent, File file) {
         this.queue = parent;
@@ -98,6 +115,7 @@ public class MCAFile {
     }
 
     public void clear() {
+        unmap();
         if (raf != null) {
             try {
                 raf.close();
@@ -112,6 +130,7 @@ public class MCAFile {
         IterableThreadLocal.clean(byteStore1);
         IterableThreadLocal.clean(byteStore2);
         IterableThreadLocal.clean(byteStore3);
+        IterableThreadLocal.clean(compressedStore);
     }
 
     @Override
@@ -119,6 +138,7 @@ public class MCAFile {
         IterableThreadLocal.clean(byteStore1);
         IterableThreadLocal.clean(byteStore2);
         IterableThreadLocal.clean(byteStore3);
+        IterableThreadLocal.clean(compressedStore);
         super.finalize();
     }
 
@@ -145,6 +165,11 @@ public class MCAFile {
                     this.raf = new RandomAccessFile(file, "rw");
                     if (raf.length() < 8192) {
                         raf.setLength(8192);
+                    } else if (Settings.IMP.ANVIL.MEMORY_MAPPED_READS) {
+                        // Map the header and every used sector
+                        mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                        ByteBuffer header = mapped.duplicate();
+                        header.get(locations);
                     } else {
                         raf.seek(0);
                         raf.readFully(locations);
@@ -164,6 +189,38 @@ public class MCAFile {
         return Z;
     }
 
+    /**
+     * Release the mapped buffer (must be done before the file is written to)
+     */
+    private void unmap() {
+        MappedByteBuffer buffer = mapped;
+        if (buffer != null) {
+            mapped = null;
+            MainUtil.closeDirectBuffer(buffer);
+        }
+    }
+
+    /**
+     * @return the length of the compressed data of a chunk in the mapped buffer, or -1 if it can't be read from it
+     */
+    private static int getMappedLength(ByteBuffer mapped, int offset) {
+        if (offset + 5 > mapped.limit()) {
+            return -1;
+        }
+        // The length includes the compression type
+        int length = mapped.getInt(offset) - 1;
+        if (length < 0 || offset + 5 + length > mapped.limit()) {
+            return -1;
+        }
+        return length;
+    }
+
+    private static void copyMapped(ByteBuffer mapped, int offset, byte[] data, int length) {
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position(offset + 5);
+        buffer.get(data, 0, length);
+    }
+
     public RandomAccessFile getRandomAccessFile() {
         return raf;
     }
@@ -204,7 +261,33 @@ public class MCAFile {
         if (offset == 0) {
             return null;
         }
-        NBTInputStream nis = getChunkIS(offset);
+        if (mapped != null) {
+            NBTInputStream nis = getMappedChunkIS(offset);
+            if (nis != null) {
+                return readChunk(cx, cz, nis);
+            }
+        }
+        return readChunk(cx, cz, getChunkCompressedBytes(offset));
+    }
+
+    /**
+     * Decompress and cache a chunk from data read by {@link #getChunkCompressedBytes(int)}<br>
+     * - Allows the disk read to happen on a different thread to the decompression
+     *
+     * @param cx
+     * @param cz
+     * @param data
+     * @return the chunk, or null if there is no data
+     * @throws IOException
+     */
+    public MCAChunk readChunk(int cx, int cz, byte[] data) throws IOException {
+        if (data == null) {
+            return null;
+        }
+        return readChunk(cx, cz, getChunkIS(data, data.length));
+    }
+
+    private MCAChunk readChunk(int cx, int cz, NBTInputStream nis) throws IOException {
         MCAChunk chunk = new MCAChunk(nis, queue, cx, cz, false);
         nis.close();
         int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
@@ -310,6 +393,15 @@ public class MCAFile {
             return null;
         }
         synchronized (raf) {
+            MappedByteBuffer mapped = this.mapped;
+            if (mapped != null) {
+                int length = getMappedLength(mapped, offset);
+                if (length >= 0) {
+                    byte[] data = new byte[length];
+                    copyMapped(mapped, offset, data, length);
+                    return data;
+                }
+            }
             raf.seek(offset);
             int size = raf.readInt();
             int compression = raf.read();
@@ -319,11 +411,42 @@ public class MCAFile {
         }
     }
 
-    private NBTInputStream getChunkIS(int offset) throws IOException {
+    /**
+     * Get a stream for a chunk by copying it from the mapped file into a reused buffer
+     *
+     * @param offset
+     * @return the stream, or null if the chunk isn't in the mapped buffer
+     * @throws IOException
+     */
+    private NBTInputStream getMappedChunkIS(int offset) throws IOException {
+        byte[] data;
+        int length;
+        synchronized (raf) {
+            MappedByteBuffer mapped = this.mapped;
+            if (mapped == null) {
+                return null;
+            }
+            length = getMappedLength(mapped, offset);
+            if (length < 0) {
+                return null;
+            }
+            data = compressedStore.get();
+            if (data.length < length) {
+                data = new byte[Math.max(length, data.length << 1)];
+                compressedStore.set(data);
+            }
+            copyMapped(mapped, offset, data, length);
+        }
+        return getChunkIS(data, length);
+    }
+
+    private NBTInputStream getChunkIS(byte[] data, int length) throws IOException {
         try {
-            byte[] data = getChunkCompressedBytes(offset);
-            FastByteArrayInputStream bais = new FastByteArrayInputStream(data);
-            InflaterInputStream iis = new InflaterInputStream(bais, new Inflater(), 1);
+            FastByteArrayInputStream bais = new FastByteArrayInputStream(data, 0, length);
+            // The stream is read fully before the next chunk is read on this thread, so the inflater can be reused
+            Inflater inflater = inflaterStore.get();
+            inflater.reset();
+            InflaterInputStream iis = new InflaterInputStream(bais, inflater, 1);
             fieldBuf2.set(iis, byteStore2.get());
             BufferedInputStream bis = new BufferedInputStream(iis);
             NBTInputStream nis = new NBTInputStream(bis);
@@ -478,6 +601,7 @@ public class MCAFile {
      */
     public void flush(ForkJoinPool pool) {
         synchronized (raf) {
+            unmap();
             // If the file is marked as deleted, nothing is written
             if (isDeleted()) {
                 clear();
@@ -675,5 +799,6 @@ public class MCAFile {
         IterableThreadLocal.clean(byteStore1);
         IterableThreadLocal.clean(byteStore2);
         IterableThreadLocal.clean(byteStore3);
+        IterableThreadLocal.clean(compressedStore);
     }
 }
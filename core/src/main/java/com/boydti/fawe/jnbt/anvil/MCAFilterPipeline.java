@@ -0,0 +1,270 @@
+package com.boydti.fawe.jnbt.anvil;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.RunnableVal2;
+import com.boydti.fawe.object.RunnableVal4;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Filters region files in 3 stages, each with its own threads and bounded queue:
+ * - Read: fetch the compressed chunk bytes from disk
+ * - Process: decompress the chunk and apply the filter
+ * - Write: save the finished region file
+ * <p>
+ * Files are still passed to the filter (applyFile / finishFile) one at a time and in order,
+ * but saving a file overlaps with reading and processing the next one.
+ *
+ * @param <G>
+ */
+public class MCAFilterPipeline<G> extends RunnableVal2<Path, BasicFileAttributes> {
+    private final MCAQueue queue;
+    private final MCAFilter<G> filter;
+    private final ForkJoinPool pool;
+
+    private final Stage<ChunkTask> reader;
+    private final Stage<ChunkTask> processor;
+    private final Stage<Runnable> writer;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final long start;
+    private long end;
+    private int files;
+
+    public MCAFilterPipeline(MCAQueue queue, MCAFilter<G> filter) {
+        this.queue = queue;
+        this.filter = filter;
+        this.pool = new ForkJoinPool();
+        filter.withPool(pool, queue);
+        Settings.ANVIL settings = Settings.IMP.ANVIL;
+        int size = Math.max(1, settings.QUEUE_SIZE);
+        int processThreads = settings.PROCESS_THREADS > 0 ? settings.PROCESS_THREADS : Runtime.getRuntime().availableProcessors();
+        this.processor = new Stage<>("process", processThreads, size, this::process);
+        this.reader = new Stage<>("read", Math.max(1, settings.READ_THREADS), size, this::read);
+        this.writer = new Stage<>("write", Math.max(1, settings.WRITE_THREADS), size, Runnable::run);
+        this.start = System.nanoTime();
+    }
+
+    private static final class ChunkTask {
+        private final MCAFile file;
+        private final int cx, cz, offset;
+        private final CountDownLatch done;
+        private byte[] data;
+
+        private ChunkTask(MCAFile file, int cx, int cz, int offset, CountDownLatch done) {
+            this.file = file;
+            this.cx = cx;
+            this.cz = cz;
+            this.offset = offset;
+            this.done = done;
+        }
+    }
+
+    @Override
+    public void run(Path path, BasicFileAttributes attr) {
+        try {
+            String name = path.getFileName().toString();
+            if (!name.endsWith(".mca") && !name.endsWith(".mcapm")) {
+                return;
+            }
+            if (!filter.appliesFile(path, attr)) {
+                return;
+            }
+            String[] split = name.split("\\.");
+            final int mcaX = Integer.parseInt(split[1]);
+            final int mcaZ = Integer.parseInt(split[2]);
+            if (!filter.appliesFile(mcaX, mcaZ)) {
+                return;
+            }
+            files++;
+            File file = path.toFile();
+            final MCAFile original = new MCAFile(queue, file);
+            final MCAFile finalFile = filter.applyFile(original);
+            if (finalFile != null && !finalFile.isDeleted()) {
+                finalFile.init();
+                final int cbx = mcaX << 5;
+                final int cbz = mcaZ << 5;
+                final List<int[]> chunks = new ArrayList<>();
+                finalFile.forEachSortedChunk(new RunnableVal4<Integer, Integer, Integer, Integer>() {
+                    @Override
+                    public void run(Integer rcx, Integer rcz, Integer offset, Integer size) {
+                        int cx = cbx + rcx;
+                        int cz = cbz + rcz;
+                        if (filter.appliesChunk(cx, cz)) {
+                            chunks.add(new int[]{cx, cz, offset});
+                        }
+                    }
+                });
+                CountDownLatch done = new CountDownLatch(chunks.size());
+                for (int[] chunk : chunks) {
+                    reader.submit(new ChunkTask(finalFile, chunk[0], chunk[1], chunk[2], done));
+                }
+                done.await();
+                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                filter.finishFile(finalFile, filter.get());
+            } else {
+                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            writer.submit(() -> {
+                original.close(pool);
+                if (original.isDeleted()) {
+                    file.delete();
+                }
+            });
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void read(ChunkTask task) {
+        try {
+            if (task.file.getCachedChunk(task.cx, task.cz) == null) {
+                task.data = task.file.getChunkCompressedBytes(task.offset);
+                if (task.data != null) {
+                    bytesRead.addAndGet(task.data.length);
+                }
+            }
+            processor.submit(task);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            task.done.countDown();
+        }
+    }
+
+    private void process(ChunkTask task) {
+        try {
+            MCAChunk chunk = task.file.getCachedChunk(task.cx, task.cz);
+            if (chunk == null) {
+                chunk = task.file.readChunk(task.cx, task.cz, task.data);
+                task.data = null;
+            }
+            if (chunk != null) {
+                queue.filterChunk(filter, chunk, task.cx, task.cz);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            task.done.countDown();
+        }
+    }
+
+    /**
+     * Wait for every file to be saved and stop the threads
+     */
+    public void close() {
+        reader.close();
+        processor.close();
+        writer.close();
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        end = System.nanoTime();
+    }
+
+    /**
+     * @return the number of chunks processed per second, and how busy each stage was
+     */
+    public String getReport() {
+        long elapsed = Math.max(1, (end != 0 ? end : System.nanoTime()) - start);
+        double seconds = elapsed / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append("[Anvil] ").append(files).append(" files, ").append(processor.count.get()).append(" chunks in ")
+                .append(String.format("%.1f", seconds)).append("s (")
+                .append(String.format("%.0f", processor.count.get() / seconds)).append(" chunks/s, ")
+                .append(String.format("%.1f", bytesRead.get() / seconds / (1 << 20))).append(" MB/s read)");
+        for (Stage<?> stage : new Stage<?>[]{reader, processor, writer}) {
+            report.append(" | ").append(stage.getReport(elapsed));
+        }
+        return report.toString();
+    }
+
+    /**
+     * A fixed number of threads taking work from a bounded queue
+     */
+    private static final class Stage<T> {
+        private static final Object STOP = new Object();
+
+        private final String name;
+        private final BlockingQueue<Object> queue;
+        private final Consumer<T> task;
+        private final Thread[] threads;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong busy = new AtomicLong();
+        private final AtomicLong blocked = new AtomicLong();
+
+        private Stage(String name, int threads, int capacity, Consumer<T> task) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.task = task;
+            this.threads = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                Thread thread = this.threads[i] = new Thread(this::poll, "FAWE Anvil " + name + " #" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        private void poll() {
+            try {
+                while (true) {
+                    Object value = queue.take();
+                    if (value == STOP) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        task.accept((T) value);
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                    }
+                    busy.addAndGet(System.nanoTime() - start);
+                    count.incrementAndGet();
+                }
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        /**
+         * Add work to this stage, waiting if the queue is full
+         */
+        private void submit(T value) throws InterruptedException {
+            if (!queue.offer(value)) {
+                long start = System.nanoTime();
+                queue.put(value);
+                blocked.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        private void close() {
+            try {
+                for (int i = 0; i < threads.length; i++) {
+                    queue.put(STOP);
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private String getReport(long elapsed) {
+            long utilization = (100 * busy.get()) / (elapsed * threads.length);
+            long full = (100 * blocked.get()) / elapsed;
+            return name + ": " + threads.length + " threads, " + utilization + "% busy, " + full + "% full";
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.boydti.fawe.jnbt.anvil;
 
 import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.example.NMSMappedFaweQueue;
 import com.boydti.fawe.example.NullFaweChunk;
@@ -526,37 +527,7 @@ public class MCAQueue extends NMSMappedFaweQueue<FaweQueue, FaweChunk, FaweChunk
                                                 int cz = cbz + rcz;
                                                 if (filter.appliesChunk(cx, cz)) {
                                                     MCAChunk chunk = finalFile.getChunk(cx, cz);
-                                                    try {
-                                                        final G value = filter.get();
-                                                        chunk = filter.applyChunk(chunk, value);
-                                                        if (chunk != null) {
-                                                            final MutableMCABackedBaseBlock mutableBlock = blockStore.get();
-                                                            mutableBlock.setChunk(chunk);
-                                                            int bx = cx << 4;
-                                                            int bz = cz << 4;
-                                                            for (int layer = 0; layer < 16; layer++) {
-                                                                if (chunk.doesSectionExist(layer)) {
-                                                                    mutableBlock.setArrays(layer);
-                                                                    int yStart = layer << 4;
-                                                                    int index = 0;
-                                                                    for (int y = yStart; y < yStart + 16; y++) {
-                                                                        mutableBlock.setY(y);
-                                                                        for (int z = bz; z < bz + 16; z++) {
-                                                                            mutableBlock.setZ(z);
-                                                                            for (int x = bx; x < bx + 16; x++, index++) {
-                                                                                mutableBlock.setX(x);
-                                                                                mutableBlock.setIndex(index);
-                                                                                filter.applyBlock(x, y, z, mutableBlock, value);
-                                                                            }
-                                                                        }
-                                                                    }
-                                                                }
-                                                            }
-                                                            filter.finishChunk(chunk, value);
-                                                        }
-                                                    } catch (Throwable e) {
-                                                        e.printStackTrace();
-                                                    }
+                                                    filterChunk(filter, chunk, cx, cz);
                                                 }
                                             } catch (Throwable e) {
                                                 e.printStackTrace();
@@ -590,7 +561,53 @@ public class MCAQueue extends NMSMappedFaweQueue<FaweQueue, FaweChunk, FaweChunk
         };
     }
 
+    /**
+     * Apply a filter to a chunk and each of its blocks
+     */
+    <G> void filterChunk(MCAFilter<G> filter, MCAChunk chunk, int cx, int cz) {
+        try {
+            final G value = filter.get();
+            chunk = filter.applyChunk(chunk, value);
+            if (chunk != null) {
+                final MutableMCABackedBaseBlock mutableBlock = blockStore.get();
+                mutableBlock.setChunk(chunk);
+                int bx = cx << 4;
+                int bz = cz << 4;
+                for (int layer = 0; layer < 16; layer++) {
+                    if (chunk.doesSectionExist(layer)) {
+                        mutableBlock.setArrays(layer);
+                        int yStart = layer << 4;
+                        int index = 0;
+                        for (int y = yStart; y < yStart + 16; y++) {
+                            mutableBlock.setY(y);
+                            for (int z = bz; z < bz + 16; z++) {
+                                mutableBlock.setZ(z);
+                                for (int x = bx; x < bx + 16; x++, index++) {
+                                    mutableBlock.setX(x);
+                                    mutableBlock.setIndex(index);
+                                    filter.applyBlock(x, y, z, mutableBlock, value);
+                                }
+                            }
+                        }
+                    }
+                }
+                filter.finishChunk(chunk, value);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
     private <G, T extends MCAFilter<G>> T filterWorld(final T filter, RunnableVal2<Path, RunnableVal2<Path, BasicFileAttributes>> traverser) {
+        if (Settings.IMP.ANVIL.PIPELINE) {
+            MCAFilterPipeline<G> pipeline = new MCAFilterPipeline<>(this, filter);
+            traverser.run(getSaveFolder().toPath(), pipeline);
+            pipeline.close();
+            if (Settings.IMP.ANVIL.REPORT) {
+                Fawe.debug(pipeline.getReport());
+            }
+            return filter;
+        }
         File folder = getSaveFolder();
         final ForkJoinPool pool = new ForkJoinPool();
         filter.withPool(pool, this);
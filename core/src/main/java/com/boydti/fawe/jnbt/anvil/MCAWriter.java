@@ -1,20 +1,32 @@
 package com.boydti.fawe.jnbt.anvil;
 
+import com.boydti.fawe.object.RunnableVal3;
 import com.boydti.fawe.object.collection.IterableThreadLocal;
-import com.boydti.fawe.object.io.BufferedRandomAccessFile;
 import com.boydti.fawe.util.MainUtil;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinTask;
 import java.util.zip.Deflater;
 
 public abstract class MCAWriter {
+    private static final byte[] EMPTY_SECTOR = new byte[4096];
+
     private File folder;
     private final int length;
     private final int width;
     private final int area;
     private int OX, OZ;
+    private RunnableVal3<Integer, Integer, Double> progressTask;
 
 
     public MCAWriter(int width, int length, File regionFolder) {
@@ -69,15 +81,31 @@ public abstract class MCAWriter {
 
     public abstract MCAChunk write(MCAChunk input, int startX, int endX, int startZ, int endZ);
 
+    /**
+     * Set the task to run after each region file is written (called from the writing thread)<br>
+     * - value1: region files written<br>
+     * - value2: total region files<br>
+     * - value3: region files written per second
+     *
+     * @param progressTask
+     */
+    public void setWriteProgressTask(RunnableVal3<Integer, Integer, Double> progressTask) {
+        this.progressTask = progressTask;
+    }
+
+    /**
+     * Write the region files<br>
+     * - Chunks are generated and compressed on all threads, in a bounded window of tasks (a few per thread)<br>
+     * - The calling thread takes the chunks in order, and streams each region file (512x512 blocks) to disk, so memory use doesn't depend on the map size<br>
+     * - A region file is written to a temporary file, and only moved to its final name once complete
+     *
+     * @throws IOException
+     */
     public void generate() throws IOException {
         if (!folder.exists()) {
             folder.mkdirs();
         }
         final ForkJoinPool pool = new ForkJoinPool();
-        int bcx = 0;
-        int bcz = 0;
-        int tcx = (width - 1) >> 4;
-        int tcz = (length - 1) >> 4;
         final ThreadLocal<MCAChunk> chunkStore = new ThreadLocal<MCAChunk>() {
             @Override
             protected MCAChunk initialValue() {
@@ -105,117 +133,229 @@ public abstract class MCAWriter {
                 return deflater;
             }
         };
-        byte[] fileBuf = new byte[1 << 16];
-        int mcaXMin = 0;
-        int mcaZMin = 0;
-        int mcaXMax = mcaXMin + ((width - 1) >> 9);
-        int mcaZMax = mcaZMin + ((length - 1) >> 9);
-
-        for (int mcaZ = mcaXMin; mcaZ <= mcaZMax; mcaZ++) {
-            for (int mcaX = mcaXMin; mcaX <= mcaXMax; mcaX++) {
-                final int fmcaX = mcaX;
-                final int fmcaZ = mcaZ;
-                File file = new File(folder, "r." + (mcaX + (getOffsetX() >> 9)) + "." + (mcaZ + (getOffsetZ() >> 9)) + ".mca");
-                if (!file.exists()) {
-                    file.createNewFile();
+        int mcaXMax = (width - 1) >> 9;
+        int mcaZMax = (length - 1) >> 9;
+        int total = (mcaXMax + 1) * (mcaZMax + 1);
+        int window = pool.getParallelism() * 4;
+        long start = System.currentTimeMillis();
+        ChunkCursor cursor = new ChunkCursor(mcaXMax, mcaZMax);
+        ArrayDeque<ChunkTask> pending = new ArrayDeque<>(window);
+        RegionOutput output = null;
+        int written = 0;
+        try {
+            while (true) {
+                while (pending.size() < window && cursor.next()) {
+                    ChunkTask task = new ChunkTask(cursor.mcaX, cursor.mcaZ, cursor.cx, cursor.cz);
+                    if (task.cx != -1) {
+                        final int cx = task.cx;
+                        final int cz = task.cz;
+                        task.compressed = pool.submit(new Callable<byte[]>() {
+                            @Override
+                            public byte[] call() {
+                                return writeChunk(cx, cz, chunkStore.get(), byteStore1.get(), byteStore2.get(), deflateStore.get());
+                            }
+                        });
+                    }
+                    pending.add(task);
+                }
+                ChunkTask task = pending.poll();
+                if (task == null) {
+                    break;
                 }
-                final BufferedRandomAccessFile raf = new BufferedRandomAccessFile(file, "rw", fileBuf);
-                final byte[] header = new byte[4096];
-                final byte[][] compressed = new byte[1024][];
-                int bx = mcaX << 9;
-                int bz = mcaZ << 9;
-                int scx = bx >> 4;
-                int ecx = Math.min(scx + 31, tcx);
-                int scz = bz >> 4;
-                int ecz = Math.min(scz + 31, tcz);
-                for (int cz = scz; cz <= ecz; cz++) {
-                    final int csz = cz << 4;
-                    final int cez = Math.min(csz + 15, length - 1);
-                    for (int cx = scx; cx <= ecx; cx++) {
-                        final int csx = cx << 4;
-                        final int cex = Math.min(csx + 15, width - 1);
-                        final int fcx = cx;
-                        final int fcz = cz;
-                        if (shouldWrite(cx, cz)) {
-                            pool.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    try {
-                                        MCAChunk chunk = chunkStore.get();
-                                        chunk.setLoc(null, fcx, fcz);
-                                        chunk = write(chunk, csx, cex, csz, cez);
-                                        if (chunk != null) {
-                                            // Generation offset
-                                            chunk.setLoc(null, fcx + (getOffsetX() >> 4), fcz + (getOffsetZ() >> 4));
-                                            // Compress
-                                            byte[] bytes = chunk.toBytes(byteStore1.get());
-                                            byte[] compressedBytes = MainUtil.compress(bytes, byteStore2.get(), deflateStore.get());
-                                            int blocks = (compressed.length + 4095) >> 12;
-                                            compressed[((fcx & 31)) + ((fcz & 31) << 5)] = compressedBytes.clone();
-                                        }
-                                    } catch (Throwable e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-                            });
+                if (output == null) {
+                    output = new RegionOutput(task.mcaX, task.mcaZ);
+                }
+                if (task.cx != -1) {
+                    output.write(task.cx, task.cz, get(task.compressed));
+                    continue;
+                }
+                // The end of a region
+                output.finish();
+                output = null;
+                written++;
+                RunnableVal3<Integer, Integer, Double> progress = progressTask;
+                if (progress != null) {
+                    double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000d;
+                    progress.run(written, total, written / seconds);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            if (output != null) {
+                output.abort();
+            }
+            IterableThreadLocal.clean(chunkStore);
+            IterableThreadLocal.clean(byteStore1);
+            IterableThreadLocal.clean(byteStore2);
+            IterableThreadLocal.clean(deflateStore);
+        }
+    }
+
+    private static byte[] get(ForkJoinTask<byte[]> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Generate and compress a chunk
+     *
+     * @return the compressed chunk, or null if it's not written
+     */
+    private byte[] writeChunk(int cx, int cz, MCAChunk chunk, byte[] buffer1, byte[] buffer2, Deflater deflater) {
+        int csx = cx << 4;
+        int cex = Math.min(csx + 15, width - 1);
+        int csz = cz << 4;
+        int cez = Math.min(csz + 15, length - 1);
+        try {
+            chunk.setLoc(null, cx, cz);
+            MCAChunk result = write(chunk, csx, cex, csz, cez);
+            if (result == null) {
+                return null;
+            }
+            // Generation offset
+            result.setLoc(null, cx + (getOffsetX() >> 4), cz + (getOffsetZ() >> 4));
+            return MainUtil.compress(result.toBytes(buffer1), buffer2, deflater);
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+            return null;
+        }
+    }
+
+    private static class ChunkTask {
+        private final int mcaX, mcaZ;
+        // The chunk, or -1 for the end of the region
+        private final int cx, cz;
+        private ForkJoinTask<byte[]> compressed;
+
+        private ChunkTask(int mcaX, int mcaZ, int cx, int cz) {
+            this.mcaX = mcaX;
+            this.mcaZ = mcaZ;
+            this.cx = cx;
+            this.cz = cz;
+        }
+    }
+
+    /**
+     * Iterate the chunks to write, in file order (region z, region x, then chunk z, chunk x)<br>
+     * - After the chunks of each region, there is an entry with a chunk of -1 (so empty regions are still written)
+     */
+    private class ChunkCursor {
+        private final int mcaXMax, mcaZMax;
+        private final int tcx = (width - 1) >> 4;
+        private final int tcz = (length - 1) >> 4;
+        private int mcaX, mcaZ = -1;
+        private int cx, cz;
+        private boolean regionEnd = true;
+
+        private ChunkCursor(int mcaXMax, int mcaZMax) {
+            this.mcaXMax = mcaXMax;
+            this.mcaZMax = mcaZMax;
+            this.mcaX = mcaXMax;
+        }
+
+        private boolean next() {
+            while (true) {
+                if (regionEnd) {
+                    if (++mcaX > mcaXMax) {
+                        mcaX = 0;
+                        if (++mcaZ > mcaZMax) {
+                            return false;
                         }
                     }
+                    regionEnd = false;
+                    cx = (mcaX << 5) - 1;
+                    cz = mcaZ << 5;
                 }
-                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-                pool.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            int totalLength = 8192;
-                            for (int i = 0; i < compressed.length; i++) {
-                                byte[] compressedBytes = compressed[i];
-                                if (compressedBytes != null) {
-                                    int blocks = ((4095 + compressedBytes.length + 5) / 4096) * 4096;
-                                    totalLength += blocks;
-                                }
-                            }
-                            raf.setLength(totalLength);
-                            int offset = 8192;
-                            for (int i = 0; i < compressed.length; i++) {
-                                byte[] compressedBytes = compressed[i];
-                                if (compressedBytes != null) {
-                                    // Set header
-                                    int index = i << 2;
-                                    int offsetMedium = offset >> 12;
-                                    int blocks = ((4095 + compressedBytes.length + 5) / 4096);
-                                    header[index] = (byte) (offsetMedium >> 16);
-                                    header[index + 1] = (byte) ((offsetMedium >> 8));
-                                    header[index + 2] = (byte) ((offsetMedium >> 0));
-                                    header[index + 3] = (byte) (blocks);
-                                    // Write bytes
-                                    int cx = (fmcaX << 5) + (i & 31);
-                                    int cz = (fmcaZ << 5) + (i >> 5);
-                                    raf.seek(offset);
-                                    raf.writeInt(compressedBytes.length + 1);
-                                    raf.write(2);
-                                    raf.write(compressedBytes);
-                                    offset += blocks * 4096;
-                                }
-                            }
-                            raf.seek(0);
-                            raf.write(header);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        } finally {
-                            try {
-                                raf.close();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
+                if (++cx > Math.min((mcaX << 5) + 31, tcx)) {
+                    cx = mcaX << 5;
+                    if (++cz > Math.min((mcaZ << 5) + 31, tcz)) {
+                        regionEnd = true;
+                        cx = -1;
+                        cz = -1;
+                        return true;
                     }
-                });
+                }
+                if (shouldWrite(cx, cz)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * A region file being written<br>
+     * - The chunks are streamed to a temporary file, and the locations are written once all of them have been
+     */
+    private class RegionOutput {
+        private final File file;
+        private final File tmp;
+        private final DataOutputStream out;
+        private final byte[] header = new byte[4096];
+        private int offset = 8192;
+
+        private RegionOutput(int mcaX, int mcaZ) throws IOException {
+            this.file = new File(folder, "r." + (mcaX + (getOffsetX() >> 9)) + "." + (mcaZ + (getOffsetZ() >> 9)) + ".mca");
+            this.tmp = new File(folder, file.getName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+            // Locations and timestamps are written once the chunks have been
+            out.write(EMPTY_SECTOR);
+            out.write(EMPTY_SECTOR);
+        }
+
+        private void write(int cx, int cz, byte[] compressed) throws IOException {
+            if (compressed == null) {
+                return;
+            }
+            int sectors = (4095 + compressed.length + 5) >> 12;
+            int index = ((cx & 31) + ((cz & 31) << 5)) << 2;
+            int offsetMedium = offset >> 12;
+            header[index] = (byte) (offsetMedium >> 16);
+            header[index + 1] = (byte) (offsetMedium >> 8);
+            header[index + 2] = (byte) (offsetMedium);
+            header[index + 3] = (byte) sectors;
+            out.writeInt(compressed.length + 1);
+            out.write(2);
+            out.write(compressed);
+            // Pad to the next sector
+            out.write(EMPTY_SECTOR, 0, (sectors << 12) - (compressed.length + 5));
+            offset += sectors << 12;
+        }
+
+        private void finish() throws IOException {
+            boolean moved = false;
+            try {
+                out.close();
+                try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+                    raf.write(header);
+                }
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            } finally {
+                // Don't leave a partial region file behind if writing failed
+                if (!moved) {
+                    tmp.delete();
+                }
+            }
+        }
+
+        /**
+         * Delete the temporary file, after a failure
+         */
+        private void abort() {
+            try {
+                out.close();
+            } catch (IOException ignore) {
             }
+            tmp.delete();
         }
-        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-        pool.shutdown();
-        IterableThreadLocal.clean(byteStore1);
-        IterableThreadLocal.clean(byteStore2);
-        IterableThreadLocal.clean(deflateStore);
     }
 }
@@ -7,6 +7,7 @@ import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.database.DBHandler;
 import com.boydti.fawe.database.RollbackDatabase;
 import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.object.RegionWrapper;
 import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.change.MutableFullBlockChange;
 import com.boydti.fawe.object.changeset.DiskStorageHistory;
@@ -79,6 +80,7 @@ public class InspectBrush extends BrushTool implements DoubleActionTraceTool {
             @Override
             public void run(DiskStorageHistory value) {
                 try {
+                    value.setReadRegions(new RegionWrapper(x, x, z, z));
                     Iterator<MutableFullBlockChange> iter = value.getFullBlockIterator(null, 0, false);
                     while (iter.hasNext()) {
                         MutableFullBlockChange change = iter.next();
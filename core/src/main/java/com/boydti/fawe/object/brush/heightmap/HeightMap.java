@@ -1,7 +1,6 @@
 package com.boydti.fawe.object.brush.heightmap;
 
 import com.boydti.fawe.object.PseudoRandom;
-import com.boydti.fawe.util.MainUtil;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
@@ -9,8 +8,6 @@ import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.WorldVector;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.internal.LocalWorldAdapter;
-import com.sk89q.worldedit.math.convolution.GaussianKernel;
-import com.sk89q.worldedit.math.convolution.HeightMapFilter;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 
@@ -35,12 +32,7 @@ public interface HeightMap {
         Region region = new CuboidRegion(session.getWorld(), min, max);
         com.sk89q.worldedit.math.convolution.HeightMap heightMap = new com.sk89q.worldedit.math.convolution.HeightMap(session, region, data[0], layers);
         if (smooth) {
-            try {
-                HeightMapFilter filter = (HeightMapFilter) HeightMapFilter.class.getConstructors()[0].newInstance(GaussianKernel.class.getConstructors()[0].newInstance(5, 1));
-                data[1] = filter.filter(data[1], diameter, diameter);
-            } catch (Throwable e) {
-                MainUtil.handleError(e);
-            }
+            new HeightMapSmoother(diameter, diameter).gaussian(data[1], 1);
         }
         try {
             if (layers) {
@@ -0,0 +1,158 @@
+package com.boydti.fawe.object.brush.heightmap;
+
+import com.boydti.fawe.object.collection.SummedAreaTable;
+import com.boydti.fawe.util.TaskManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Smooth a height map using a summed area table<br>
+ * - Each pass is a box blur which is O(1) per cell for any radius<br>
+ * - A gaussian blur (sigma 1) is two [1, 2, 1] passes, which are also O(1) per cell<br>
+ * - The table and the averages are computed in parallel (by row bands)
+ */
+public class HeightMapSmoother {
+    // Tasks per thread, so uneven bands still spread over the pool
+    private static final int BANDS_PER_THREAD = 4;
+
+    private final int width;
+    private final int length;
+    private final long[] summed;
+    private final ForkJoinPool pool;
+    private final int bands;
+
+    public HeightMapSmoother(int width, int length) {
+        this.width = width;
+        this.length = length;
+        this.summed = new long[width * length];
+        this.pool = TaskManager.IMP.getPublicForkJoinPool();
+        this.bands = Math.max(1, pool.getParallelism() * BANDS_PER_THREAD);
+    }
+
+    /**
+     * Write the box average of each cell to the output
+     *
+     * @param source the values to average
+     * @param output the averages (may be the same array as the source)
+     * @param radius
+     */
+    public void blur(char[] source, char[] output, int radius) {
+        final SummedAreaTable table = new SummedAreaTable(summed, source, width);
+        table.processSummedAreaTable(pool, bands);
+        int rowsPerBand = Math.max(1, (length + bands - 1) / bands);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(bands);
+        for (int start = 0; start < length; start += rowsPerBand) {
+            final int minZ = start;
+            final int maxZ = Math.min(length, start + rowsPerBand);
+            tasks.add(pool.submit(() -> {
+                for (int z = minZ; z < maxZ; z++) {
+                    int index = z * width;
+                    for (int x = 0; x < width; x++, index++) {
+                        output[index] = (char) table.getAverage(x, z, radius);
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Box blur the values
+     *
+     * @param data
+     * @param radius
+     * @param passes
+     */
+    public void smooth(char[] data, int radius, int passes) {
+        if (radius <= 0) {
+            return;
+        }
+        for (int i = 0; i < passes; i++) {
+            blur(data, data, radius);
+        }
+    }
+
+    /**
+     * Write the [1, 2, 1] x [1, 2, 1] weighted average of each cell to the output<br>
+     * - The weights are the 3x3 box + the 3x1 row + the 1x3 column + the cell, so it's O(1) from the table<br>
+     * - Cells outside the table are left out (and their weight)
+     *
+     * @param source the values to average
+     * @param output the averages (may be the same array as the source)
+     */
+    public void binomial(char[] source, char[] output) {
+        final SummedAreaTable table = new SummedAreaTable(summed, source, width);
+        table.processSummedAreaTable(pool, bands);
+        int rowsPerBand = Math.max(1, (length + bands - 1) / bands);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(bands);
+        for (int start = 0; start < length; start += rowsPerBand) {
+            final int minRow = start;
+            final int maxRow = Math.min(length, start + rowsPerBand);
+            tasks.add(pool.submit(() -> {
+                for (int z = minRow; z < maxRow; z++) {
+                    int minZ = Math.max(0, z - 1);
+                    int maxZ = Math.min(length - 1, z + 1);
+                    int index = z * width;
+                    for (int x = 0; x < width; x++, index++) {
+                        int minX = Math.max(0, x - 1);
+                        int maxX = Math.min(width - 1, x + 1);
+                        long total = table.getSum(minX, minZ, maxX, maxZ)
+                                + table.getSum(minX, z, maxX, z)
+                                + table.getSum(x, minZ, x, maxZ)
+                                + source[index];
+                        long weight = (long) (maxX - minX + 2) * (maxZ - minZ + 2);
+                        output[index] = (char) ((total + (weight >> 1)) / weight);
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * A gaussian blur with a standard deviation of 1<br>
+     * - Two [1, 2, 1] passes are the 5 wide [1, 4, 6, 4, 1] / 16 kernel, which has a variance of exactly 1<br>
+     * - So it has the same standard deviation as the GaussianKernel(5, 1) filter it replaces
+     *
+     * @param data
+     * @param passes the number of times to blur
+     */
+    public void gaussian(char[] data, int passes) {
+        for (int i = 0; i < passes; i++) {
+            binomial(data, data);
+            binomial(data, data);
+        }
+    }
+
+    public void smooth(int[] data, int radius, int passes) {
+        char[] values = toChars(data);
+        smooth(values, radius, passes);
+        fromChars(values, data);
+    }
+
+    public void gaussian(int[] data, int passes) {
+        char[] values = toChars(data);
+        gaussian(values, passes);
+        fromChars(values, data);
+    }
+
+    private static char[] toChars(int[] data) {
+        char[] values = new char[data.length];
+        for (int i = 0; i < data.length; i++) {
+            values[i] = (char) Math.max(0, Math.min(Character.MAX_VALUE, data[i]));
+        }
+        return values;
+    }
+
+    private static void fromChars(char[] values, int[] data) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = values[i];
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.boydti.fawe.object.changeset;
+
+import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.object.io.FastByteArrayOutputStream;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Block changes grouped by chunk, with each group compressed separately<br>
+ * - An index at the end of the file maps each chunk to its blocks<br>
+ * - A region can be read without decompressing the rest of the file<br>
+ * <br>
+ * [header] byte magic, byte level, byte mode, int originX, int originZ<br>
+ * [blocks] int cx, int cz, int length, int compressedLength, byte[] compressed<br>
+ * - Each change is: byte (x << 4 | z), byte y, short from, short to (if redo is stored)<br>
+ * [end] int 0, int 0, int -1, int 0<br>
+ * [index] int chunks, { int cx, int cz, int blocks, long offset... }, long indexOffset
+ */
+public class ChunkIndexedBlockFile {
+    public static final int MAGIC = 127;
+    public static final int HEADER_SIZE = 11;
+    private static final int BLOCK_HEADER_SIZE = 16;
+    // Uncompressed bytes to buffer for a chunk before it's written
+    private static final int BLOCK_SIZE = 1 << 15;
+    // Chunks to buffer before the least recently used one is written
+    private static final int MAX_OPEN = 256;
+
+    /**
+     * @param file
+     * @return if the file is in this format (rather than a single compressed stream)
+     */
+    public static boolean isIndexed(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            return fis.read() == MAGIC;
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Get the compression level to use for each block
+     *
+     * @param compression the history compression level (0-9)
+     * @return 0 = none, 1 = fast, 2-17 = high
+     */
+    public static int getLevel(int compression) {
+        if (compression <= 0) {
+            return 0;
+        }
+        if (compression <= 3) {
+            return 1;
+        }
+        return Math.min(17, compression * 2);
+    }
+
+    public static boolean storesRedo(int mode) {
+        return mode == 3 || mode == 4;
+    }
+
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int level;
+        private final int changeSize;
+        // Access ordered, so the first entry is the least recently used
+        private final LinkedHashMap<Long, FastByteArrayOutputStream> open = new LinkedHashMap<>(16, 0.75f, true);
+        private final Long2ObjectOpenHashMap<LongArrayList> index = new Long2ObjectOpenHashMap<>();
+        private long position;
+        private byte[] buffer;
+
+        private long lastPair = Long.MIN_VALUE;
+        private FastByteArrayOutputStream lastBlock;
+
+        /**
+         * The rest of the header (mode and origin) must be written to {@link #getHeaderOS()} before any changes are added
+         *
+         * @see FaweStreamChangeSet#writeHeader(OutputStream, int, int, int)
+         */
+        public Writer(File file, int mode, int level) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            this.level = level;
+            this.changeSize = storesRedo(mode) ? 6 : 4;
+            out.write(MAGIC);
+            out.write(level);
+            position = HEADER_SIZE;
+        }
+
+        public OutputStream getHeaderOS() {
+            return out;
+        }
+
+        public void add(int x, int y, int z, int combinedFrom, int combinedTo) throws IOException {
+            long pair = MathMan.pairInt(x >> 4, z >> 4);
+            FastByteArrayOutputStream block;
+            if (pair == lastPair) {
+                block = lastBlock;
+            } else {
+                block = open.get(pair);
+                if (block == null) {
+                    if (open.size() >= MAX_OPEN) {
+                        Iterator<Map.Entry<Long, FastByteArrayOutputStream>> iter = open.entrySet().iterator();
+                        Map.Entry<Long, FastByteArrayOutputStream> eldest = iter.next();
+                        iter.remove();
+                        writeBlock(eldest.getKey(), eldest.getValue());
+                    }
+                    block = new FastByteArrayOutputStream(Math.min(BLOCK_SIZE, 1024));
+                    open.put(pair, block);
+                }
+                lastPair = pair;
+                lastBlock = block;
+            }
+            block.write(((x & 15) << 4) | (z & 15));
+            block.write(y);
+            block.write(combinedFrom);
+            block.write(combinedFrom >> 8);
+            if (changeSize == 6) {
+                block.write(combinedTo);
+                block.write(combinedTo >> 8);
+            }
+            if (block.getSize() >= BLOCK_SIZE) {
+                open.remove(pair);
+                lastPair = Long.MIN_VALUE;
+                lastBlock = null;
+                writeBlock(pair, block);
+            }
+        }
+
+        private void writeBlock(long pair, FastByteArrayOutputStream block) throws IOException {
+            byte[] raw = block.toByteArray();
+            if (raw.length == 0) {
+                return;
+            }
+            if (level != 0) {
+                int max = MainUtil.getMaxCompressedLength(raw.length);
+                if (buffer == null || buffer.length < max) {
+                    buffer = new byte[max];
+                }
+            }
+            byte[] compressed = MainUtil.compress(raw, buffer, level);
+            LongArrayList offsets = index.get(pair);
+            if (offsets == null) {
+                index.put(pair, offsets = new LongArrayList(1));
+            }
+            offsets.add(position);
+            out.writeInt(MathMan.unpairIntX(pair));
+            out.writeInt(MathMan.unpairIntY(pair));
+            out.writeInt(raw.length);
+            out.writeInt(compressed.length);
+            out.write(compressed);
+            position += BLOCK_HEADER_SIZE + compressed.length;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Write any buffered chunks and the index
+         */
+        @Override
+        public void close() throws IOException {
+            for (Map.Entry<Long, FastByteArrayOutputStream> entry : open.entrySet()) {
+                writeBlock(entry.getKey(), entry.getValue());
+            }
+            open.clear();
+            lastBlock = null;
+            // Marks the end of the blocks, in case the index is not fully written
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(-1);
+            out.writeInt(0);
+            long indexOffset = position + BLOCK_HEADER_SIZE;
+            out.writeInt(index.size());
+            for (Long2ObjectMap.Entry<LongArrayList> entry : index.long2ObjectEntrySet()) {
+                long pair = entry.getLongKey();
+                LongArrayList offsets = entry.getValue();
+                out.writeInt(MathMan.unpairIntX(pair));
+                out.writeInt(MathMan.unpairIntY(pair));
+                out.writeInt(offsets.size());
+                for (int i = 0; i < offsets.size(); i++) {
+                    out.writeLong(offsets.getLong(i));
+                }
+            }
+            out.writeLong(indexOffset);
+            out.close();
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final RandomAccessFile file;
+        private final int mode;
+        private final int level;
+        private final int originX;
+        private final int originZ;
+        private final Long2ObjectOpenHashMap<long[]> index = new Long2ObjectOpenHashMap<>();
+
+        private int blockX, blockZ;
+
+        public Reader(File file) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+            try {
+                if (this.file.read() != MAGIC) {
+                    throw new IOException("Not a chunk indexed file: " + file);
+                }
+                this.level = this.file.read();
+                this.mode = this.file.read();
+                this.originX = this.file.readInt();
+                this.originZ = this.file.readInt();
+                readIndex();
+            } catch (IOException e) {
+                this.file.close();
+                throw e;
+            }
+        }
+
+        private void readIndex() throws IOException {
+            long length = file.length();
+            if (length >= HEADER_SIZE + 12) {
+                file.seek(length - 8);
+                long indexOffset = file.readLong();
+                if (indexOffset >= HEADER_SIZE && indexOffset <= length - 12) {
+                    file.seek(indexOffset);
+                    int chunks = file.readInt();
+                    for (int i = 0; i < chunks; i++) {
+                        int cx = file.readInt();
+                        int cz = file.readInt();
+                        long[] offsets = new long[file.readInt()];
+                        for (int j = 0; j < offsets.length; j++) {
+                            offsets[j] = file.readLong();
+                        }
+                        index.put(MathMan.pairInt(cx, cz), offsets);
+                    }
+                    return;
+                }
+            }
+            // The edit was not closed properly, find the blocks which were written
+            long position = HEADER_SIZE;
+            while (position + BLOCK_HEADER_SIZE <= length) {
+                file.seek(position);
+                int cx = file.readInt();
+                int cz = file.readInt();
+                int rawLength = file.readInt();
+                int compressedLength = file.readInt();
+                if (rawLength <= 0 || compressedLength < 0 || position + BLOCK_HEADER_SIZE + compressedLength > length) {
+                    break;
+                }
+                long pair = MathMan.pairInt(cx, cz);
+                long[] offsets = index.get(pair);
+                offsets = offsets == null ? new long[1] : Arrays.copyOf(offsets, offsets.length + 1);
+                offsets[offsets.length - 1] = position;
+                index.put(pair, offsets);
+                position += BLOCK_HEADER_SIZE + compressedLength;
+            }
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public int getOriginX() {
+            return originX;
+        }
+
+        public int getOriginZ() {
+            return originZ;
+        }
+
+        public int getChangeSize() {
+            return storesRedo(mode) ? 6 : 4;
+        }
+
+        public Long2ObjectOpenHashMap<long[]> getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the offsets of the blocks in any of the regions, in file order
+         *
+         * @param regions the regions to read, or null for all
+         * @return
+         */
+        public long[] getOffsets(RegionWrapper[] regions) {
+            LongArrayList result = new LongArrayList();
+            for (Long2ObjectMap.Entry<long[]> entry : index.long2ObjectEntrySet()) {
+                if (regions != null) {
+                    long pair = entry.getLongKey();
+                    int cx = MathMan.unpairIntX(pair);
+                    int cz = MathMan.unpairIntY(pair);
+                    boolean contains = false;
+                    for (RegionWrapper region : regions) {
+                        if (region.isInChunk(cx, cz)) {
+                            contains = true;
+                            break;
+                        }
+                    }
+                    if (!contains) {
+                        continue;
+                    }
+                }
+                result.addElements(result.size(), entry.getValue());
+            }
+            long[] offsets = result.toLongArray();
+            Arrays.sort(offsets);
+            return offsets;
+        }
+
+        /**
+         * Read and decompress the block at an offset<br>
+         * - Sets {@link #getBlockX()} and {@link #getBlockZ()} to the chunk's block position
+         *
+         * @param offset
+         * @return the changes
+         */
+        public byte[] readBlock(long offset) throws IOException {
+            file.seek(offset);
+            blockX = file.readInt() << 4;
+            blockZ = file.readInt() << 4;
+            int length = file.readInt();
+            byte[] compressed = new byte[file.readInt()];
+            file.readFully(compressed);
+            return MainUtil.decompress(compressed, null, length, level);
+        }
+
+        public int getBlockX() {
+            return blockX;
+        }
+
+        public int getBlockZ() {
+            return blockZ;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -8,10 +8,14 @@ import com.boydti.fawe.object.FaweInputStream;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.IntegerPair;
 import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.object.change.MutableBlockChange;
+import com.boydti.fawe.object.change.MutableFullBlockChange;
 import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -21,7 +25,9 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 /**
@@ -51,6 +57,11 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
      * { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }
      */
     private OutputStream osBD;
+    // Block data grouped by chunk (see ChunkIndexedBlockFile)
+    private ChunkIndexedBlockFile.Writer indexedBD;
+    private final boolean indexed = Settings.IMP.HISTORY.CHUNK_INDEX;
+    // Only read block changes in these chunks (if indexed)
+    private RegionWrapper[] readRegions;
     // biome
     private OutputStream osBIO;
     // NBT From
@@ -137,13 +148,39 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
         enttFile.delete();
     }
 
+    /**
+     * Only read block changes in chunks which intersect these regions<br>
+     * - Only applies to chunk indexed history (see {@link ChunkIndexedBlockFile})<br>
+     * - Changes outside the regions may still be returned
+     *
+     * @param regions the regions, or null to read everything
+     */
+    public void setReadRegions(RegionWrapper... regions) {
+        this.readRegions = regions;
+    }
+
+    private void setReadRegions(Region[] regions) {
+        if (regions == null) {
+            readRegions = null;
+            return;
+        }
+        RegionWrapper[] wrapped = new RegionWrapper[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            Region region = regions[i];
+            wrapped[i] = region instanceof RegionWrapper ? (RegionWrapper) region : new RegionWrapper(region.getMinimumPoint(), region.getMaximumPoint());
+        }
+        readRegions = wrapped;
+    }
+
     public void undo(FawePlayer fp, Region[] regions) {
+        setReadRegions(regions);
         EditSession session = toEditSession(fp, regions);
         session.undo(session);
         deleteFiles();
     }
 
     public void redo(FawePlayer fp, Region[] regions) {
+        setReadRegions(regions);
         EditSession session = toEditSession(fp, regions);
         session.redo(session);
     }
@@ -172,9 +209,10 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     public boolean flush() {
         super.flush();
         synchronized (this) {
-            boolean flushed = osBD != null || osBIO != null || osNBTF != null || osNBTT != null && osENTCF != null || osENTCT != null;
+            boolean flushed = osBD != null || indexedBD != null || osBIO != null || osNBTF != null || osNBTT != null && osENTCF != null || osENTCT != null;
             try {
                 if (osBD != null) osBD.flush();
+                if (indexedBD != null) indexedBD.flush();
                 if (osBIO != null) osBIO.flush();
                 if (osNBTF != null) osNBTF.flush();
                 if (osNBTT != null) osNBTT.flush();
@@ -191,12 +229,16 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     public boolean close() {
         super.close();
         synchronized (this) {
-            boolean flushed = osBD != null || osBIO != null || osNBTF != null || osNBTT != null && osENTCF != null || osENTCT != null;
+            boolean flushed = osBD != null || indexedBD != null || osBIO != null || osNBTF != null || osNBTT != null && osENTCF != null || osENTCT != null;
             try {
                 if (osBD != null) {
                     osBD.close();
                     osBD = null;
                 }
+                if (indexedBD != null) {
+                    indexedBD.close();
+                    indexedBD = null;
+                }
                 if (osBIO != null) {
                     osBIO.close();
                     osBIO = null;
@@ -266,12 +308,160 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
         synchronized (this) {
             bdFile.getParentFile().mkdirs();
             bdFile.createNewFile();
-            osBD = getCompressedOS(new FileOutputStream(bdFile));
+            osBD = getCompressedOS(new FileOutputStream(bdFile), true);
             writeHeader(osBD, x, y, z);
             return osBD;
         }
     }
 
+    @Override
+    public void add(int x, int y, int z, int combinedFrom, int combinedTo) {
+        if (!indexed) {
+            super.add(x, y, z, combinedFrom, combinedTo);
+            return;
+        }
+        blockSize++;
+        try {
+            getIndexedBD(x, y, z).add(x, y, z, combinedFrom, combinedTo);
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    private ChunkIndexedBlockFile.Writer getIndexedBD(int x, int y, int z) throws IOException {
+        ChunkIndexedBlockFile.Writer writer = indexedBD;
+        if (writer != null) {
+            return writer;
+        }
+        synchronized (this) {
+            if (indexedBD == null) {
+                bdFile.getParentFile().mkdirs();
+                bdFile.createNewFile();
+                writer = new ChunkIndexedBlockFile.Writer(bdFile, getMode(), ChunkIndexedBlockFile.getLevel(getCompression()));
+                writeHeader(writer.getHeaderOS(), x, y, z);
+                indexedBD = writer;
+            }
+            return indexedBD;
+        }
+    }
+
+    /**
+     * @return a reader if the block changes are chunk indexed, else null
+     */
+    private ChunkIndexedBlockFile.Reader getIndexedReader() throws IOException {
+        if (!ChunkIndexedBlockFile.isIndexed(bdFile)) {
+            return null;
+        }
+        ChunkIndexedBlockFile.Reader reader = new ChunkIndexedBlockFile.Reader(bdFile);
+        setOrigin(reader.getOriginX(), reader.getOriginZ());
+        return reader;
+    }
+
+    @Override
+    public Iterator<MutableBlockChange> getBlockIterator(final boolean dir) throws IOException {
+        final ChunkIndexedBlockFile.Reader reader = getIndexedReader();
+        if (reader == null) {
+            return super.getBlockIterator(dir);
+        }
+        final MutableBlockChange change = new MutableBlockChange(0, 0, 0, (short) 0, (byte) 0);
+        return new IndexedIterator<MutableBlockChange>(reader) {
+            @Override
+            public MutableBlockChange read(byte[] block, int i, int x, int y, int z) {
+                change.x = x;
+                change.y = y;
+                change.z = z;
+                int combined = (dir && reader.getChangeSize() == 6) ? getCombined(block, i + 4) : getCombined(block, i + 2);
+                change.id = (short) (combined >> 4);
+                change.data = (byte) (combined & 0xF);
+                return change;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<MutableFullBlockChange> getFullBlockIterator(BlockBag blockBag, int inventory, final boolean dir) throws IOException {
+        final ChunkIndexedBlockFile.Reader reader = getIndexedReader();
+        if (reader == null) {
+            return super.getFullBlockIterator(blockBag, inventory, dir);
+        }
+        final MutableFullBlockChange change = new MutableFullBlockChange(blockBag, inventory, dir);
+        return new IndexedIterator<MutableFullBlockChange>(reader) {
+            @Override
+            public MutableFullBlockChange read(byte[] block, int i, int x, int y, int z) {
+                change.x = x;
+                change.y = y;
+                change.z = z;
+                change.from = getCombined(block, i + 2);
+                change.to = reader.getChangeSize() == 6 ? getCombined(block, i + 4) : 0;
+                return change;
+            }
+        };
+    }
+
+    private static int getCombined(byte[] block, int i) {
+        return (block[i] & 0xFF) + ((block[i + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * Iterate over the changes in the chunks intersecting {@link #readRegions}
+     */
+    private abstract class IndexedIterator<T> implements Iterator<T> {
+        private final ChunkIndexedBlockFile.Reader reader;
+        private final long[] offsets;
+        private final int changeSize;
+        private int offsetIndex;
+        private byte[] block;
+        private int index;
+
+        private IndexedIterator(ChunkIndexedBlockFile.Reader reader) {
+            this.reader = reader;
+            this.offsets = reader.getOffsets(readRegions);
+            this.changeSize = reader.getChangeSize();
+        }
+
+        public abstract T read(byte[] block, int i, int x, int y, int z);
+
+        @Override
+        public boolean hasNext() {
+            while (block == null || index >= block.length) {
+                if (offsetIndex >= offsets.length) {
+                    close();
+                    return false;
+                }
+                try {
+                    block = reader.readBlock(offsets[offsetIndex++]);
+                    index = 0;
+                } catch (IOException e) {
+                    MainUtil.handleError(e);
+                    close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int i = index;
+            index += changeSize;
+            int xz = block[i] & 0xFF;
+            return read(block, i, reader.getBlockX() + (xz >> 4), block[i + 1] & 0xFF, reader.getBlockZ() + (xz & 15));
+        }
+
+        private void close() {
+            offsetIndex = offsets.length;
+            block = null;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                MainUtil.handleError(e);
+            }
+        }
+    }
+
     @Override
     public OutputStream getBiomeOS() throws IOException {
         if (osBIO != null) {
@@ -331,7 +521,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     @Override
     public FaweInputStream getBlockIS() throws IOException {
-        if (!bdFile.exists()) {
+        if (!bdFile.exists() || ChunkIndexedBlockFile.isIndexed(bdFile)) {
             return null;
         }
         FaweInputStream is = MainUtil.getCompressedIS(new FileInputStream(bdFile));
@@ -381,6 +571,9 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     }
 
     public DiskStorageSummary summarize(RegionWrapper requiredRegion, boolean shallow) {
+        if (ChunkIndexedBlockFile.isIndexed(bdFile)) {
+            return summarizeIndexed(requiredRegion, shallow);
+        }
         if (bdFile.exists()) {
             int ox = getOriginX();
             int oz = getOriginZ();
@@ -424,10 +617,55 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
         return null;
     }
 
+    private DiskStorageSummary summarizeIndexed(RegionWrapper requiredRegion, boolean shallow) {
+        try (ChunkIndexedBlockFile.Reader reader = getIndexedReader()) {
+            int ox = reader.getOriginX();
+            int oz = reader.getOriginZ();
+            DiskStorageSummary summary = new DiskStorageSummary(ox, oz);
+            if (!requiredRegion.isIn(ox, oz)) {
+                return summary;
+            }
+            // The bounds come from the index, so only a sample of the blocks needs to be read
+            for (long pair : reader.getIndex().keySet()) {
+                int bx = MathMan.unpairIntX(pair) << 4;
+                int bz = MathMan.unpairIntY(pair) << 4;
+                summary.minX = Math.min(summary.minX, bx);
+                summary.minZ = Math.min(summary.minZ, bz);
+                summary.maxX = Math.max(summary.maxX, bx + 15);
+                summary.maxZ = Math.max(summary.maxZ, bz + 15);
+            }
+            if (!shallow) {
+                int changeSize = reader.getChangeSize();
+                int amount = (Settings.IMP.HISTORY.BUFFER_SIZE - HEADER_SIZE) / 9;
+                for (long offset : reader.getOffsets(null)) {
+                    byte[] block = reader.readBlock(offset);
+                    for (int i = 0; i < block.length && amount-- > 0; i += changeSize) {
+                        int xz = block[i] & 0xFF;
+                        summary.add(reader.getBlockX() + (xz >> 4), reader.getBlockZ() + (xz & 15), getCombined(block, i + 2) >> 4);
+                    }
+                    if (amount <= 0) {
+                        break;
+                    }
+                }
+            }
+            return summary;
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+        return null;
+    }
+
     public IntegerPair readHeader() {
         int ox = getOriginX();
         int oz = getOriginZ();
-        if (ox == 0 && oz == 0 && bdFile.exists()) {
+        if (ox == 0 && oz == 0 && ChunkIndexedBlockFile.isIndexed(bdFile)) {
+            try (ChunkIndexedBlockFile.Reader reader = getIndexedReader()) {
+                ox = reader.getOriginX();
+                oz = reader.getOriginZ();
+            } catch (IOException e) {
+                MainUtil.handleError(e);
+            }
+        } else if (ox == 0 && oz == 0 && bdFile.exists()) {
             try (FileInputStream fis = new FileInputStream(bdFile)) {
                 final FaweInputStream gis = MainUtil.getCompressedIS(fis);
                 // skip mode
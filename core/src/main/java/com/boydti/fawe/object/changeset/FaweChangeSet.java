@@ -26,10 +26,15 @@ import com.sk89q.worldedit.history.changeset.ChangeSet;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class FaweChangeSet implements ChangeSet {
@@ -250,119 +255,30 @@ public abstract class FaweChangeSet implements ChangeSet {
         }
     }
 
+    /**
+     * Record the changes of each chunk the queue dispatches<br>
+     * - Each chunk is diffed on its own (in parallel) into a {@link ChangeSegment}<br>
+     * - Segments are added to this change set in the order the chunks were dispatched, by whichever thread is committing<br>
+     * - Only adding a segment is synchronized, so chunk writes no longer wait on each other's diff
+     *
+     * @param queue
+     */
     public void addChangeTask(FaweQueue queue) {
         queue.setChangeTask(new RunnableVal2<FaweChunk, FaweChunk>() {
             @Override
             public void run(final FaweChunk previous, final FaweChunk next) {
                 FaweChangeSet.this.waitingCombined.incrementAndGet();
+                final int sequence = FaweChangeSet.this.sequence.getAndIncrement();
                 Runnable run = new Runnable() {
                     @Override
                     public void run() {
+                        ChangeSegment segment = new ChangeSegment(previous.getX() << 4, previous.getZ() << 4);
                         try {
-                            int cx = previous.getX();
-                            int cz = previous.getZ();
-                            int bx = cx << 4;
-                            int bz = cz << 4;
-                            synchronized (FaweChangeSet.this) {
-                                // Biome changes
-                                {
-                                    byte[] nextBiomes = next.getBiomeArray();
-                                    if (nextBiomes != null) {
-                                        byte[] previousBiomes = previous.getBiomeArray();
-                                        if (previousBiomes != null) {
-
-                                            int index = 0;
-                                            for (int z = 0; z < 16; z++) {
-                                                int zz = bz + z;
-                                                for (int x = 0; x < 16; x++) {
-                                                    byte idFrom = previousBiomes[index];
-                                                    byte idTo = nextBiomes[index];
-                                                    if (idFrom != idTo && idTo != 0) {
-                                                        addBiomeChange(bx + x, zz, FaweCache.getBiome(idFrom & 0xFF), FaweCache.getBiome(idTo & 0xFF));
-                                                    }
-                                                    index++;
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                // Block changes
-                                for (int layer = 0; layer < layers; layer++) {
-                                    char[] currentLayer = next.getIdArray(layer);
-                                    if (currentLayer == null) {
-                                        continue;
-                                    }
-                                    char[] previousLayer = previous.getIdArray(layer);
-                                    int startY = layer << 4;
-                                    int index = 0;
-                                    for (int y = 0; y < 16; y++) {
-                                        int yy = y + startY;
-                                        for (int z = 0; z < 16; z++) {
-                                            int zz = z + bz;
-                                            for (int x = 0; x < 16; x++, index++) {
-                                                int xx = x + bx;
-                                                int combinedIdCurrent = currentLayer[index];
-                                                switch (combinedIdCurrent) {
-                                                    case 0:
-                                                        continue;
-                                                    case 1:
-                                                        combinedIdCurrent = 0;
-                                                    default:
-                                                        char combinedIdPrevious = previousLayer != null ? previousLayer[index] : 0;
-                                                        if (combinedIdCurrent != combinedIdPrevious) {
-                                                            add(xx, yy, zz, combinedIdPrevious, combinedIdCurrent);
-                                                        }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                // Tile changes
-                                {
-                                    // Tiles created
-                                    Map<Short, CompoundTag> tiles = next.getTiles();
-                                    if (!tiles.isEmpty()) {
-                                        for (Map.Entry<Short, CompoundTag> entry : tiles.entrySet()) {
-                                            addTileCreate(entry.getValue());
-                                        }
-                                    }
-                                    // Tiles removed
-                                    tiles = previous.getTiles();
-                                    if (!tiles.isEmpty()) {
-                                        for (Map.Entry<Short, CompoundTag> entry : tiles.entrySet()) {
-                                            addTileRemove(entry.getValue());
-                                        }
-                                    }
-                                }
-                                // Entity changes
-                                {
-                                    // Entities created
-                                    Set<CompoundTag> entities = next.getEntities();
-                                    if (!entities.isEmpty()) {
-                                        for (CompoundTag entityTag : entities) {
-                                            addEntityCreate(entityTag);
-                                        }
-                                    }
-                                    // Entities removed
-                                    entities = previous.getEntities();
-                                    if (!entities.isEmpty()) {
-                                        for (CompoundTag entityTag : entities) {
-                                            addEntityRemove(entityTag);
-                                        }
-                                    }
-                                }
-                            }
+                            segment.diff(previous, next, layers);
                         } catch (Throwable e) {
                             MainUtil.handleError(e);
                         } finally {
-                            if (FaweChangeSet.this.waitingCombined.decrementAndGet() <= 0) {
-                                synchronized (FaweChangeSet.this.waitingAsync) {
-                                    FaweChangeSet.this.waitingAsync.notifyAll();
-                                }
-                                synchronized (FaweChangeSet.this.waitingCombined) {
-                                    FaweChangeSet.this.waitingCombined.notifyAll();
-                                }
-                            }
+                            commit(sequence, segment);
                         }
                     }
                 };
@@ -374,4 +290,162 @@ public abstract class FaweChangeSet implements ChangeSet {
             }
         });
     }
-}
\ No newline at end of file
+
+    // The next segment number to dispatch, and to commit
+    private final AtomicInteger sequence = new AtomicInteger();
+    private int committed;
+    private final AtomicBoolean committing = new AtomicBoolean();
+    private final Int2ObjectOpenHashMap<ChangeSegment> pending = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Queue a diffed segment, then add every segment which is next in order<br>
+     * - If another thread is already committing, it will pick up this segment
+     */
+    private void commit(int sequence, ChangeSegment segment) {
+        synchronized (pending) {
+            pending.put(sequence, segment);
+        }
+        while (committing.compareAndSet(false, true)) {
+            try {
+                while (true) {
+                    ChangeSegment next;
+                    synchronized (pending) {
+                        next = pending.remove(committed);
+                        if (next == null) {
+                            break;
+                        }
+                        committed++;
+                    }
+                    try {
+                        synchronized (this) {
+                            next.addTo(this);
+                        }
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    } finally {
+                        if (waitingCombined.decrementAndGet() <= 0) {
+                            synchronized (waitingAsync) {
+                                waitingAsync.notifyAll();
+                            }
+                            synchronized (waitingCombined) {
+                                waitingCombined.notifyAll();
+                            }
+                        }
+                    }
+                }
+            } finally {
+                committing.set(false);
+            }
+            // A segment may have been queued after the last check, but before committing was released
+            synchronized (pending) {
+                if (!pending.containsKey(committed)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The changes of a single chunk, which can be diffed without a lock
+     */
+    private static final class ChangeSegment {
+        private final int bx;
+        private final int bz;
+        // (y << 8 | z << 4 | x) << 32 | from << 16 | to
+        private final LongArrayList blocks = new LongArrayList();
+        // (z << 4 | x) << 16 | from << 8 | to
+        private final LongArrayList biomes = new LongArrayList();
+        private final List<CompoundTag> tilesCreated = new ArrayList<>();
+        private final List<CompoundTag> tilesRemoved = new ArrayList<>();
+        private final List<CompoundTag> entitiesCreated = new ArrayList<>();
+        private final List<CompoundTag> entitiesRemoved = new ArrayList<>();
+
+        private ChangeSegment(int bx, int bz) {
+            this.bx = bx;
+            this.bz = bz;
+        }
+
+        private void diff(FaweChunk previous, FaweChunk next, int layers) {
+            // Biome changes
+            byte[] nextBiomes = next.getBiomeArray();
+            if (nextBiomes != null) {
+                byte[] previousBiomes = previous.getBiomeArray();
+                if (previousBiomes != null) {
+                    for (int index = 0; index < 256; index++) {
+                        byte idFrom = previousBiomes[index];
+                        byte idTo = nextBiomes[index];
+                        if (idFrom != idTo && idTo != 0) {
+                            biomes.add(((long) index << 16) | ((idFrom & 0xFF) << 8) | (idTo & 0xFF));
+                        }
+                    }
+                }
+            }
+            // Block changes
+            for (int layer = 0; layer < layers; layer++) {
+                char[] currentLayer = next.getIdArray(layer);
+                if (currentLayer == null) {
+                    continue;
+                }
+                char[] previousLayer = previous.getIdArray(layer);
+                long offset = (long) (layer << 12) << 32;
+                // A flat scan (0 is unchanged, 1 is air), the position is only decoded for a change
+                for (int index = 0; index < 4096; index++) {
+                    int combinedIdCurrent = currentLayer[index];
+                    if (combinedIdCurrent == 0) {
+                        continue;
+                    }
+                    if (combinedIdCurrent == 1) {
+                        combinedIdCurrent = 0;
+                    }
+                    int combinedIdPrevious = previousLayer != null ? previousLayer[index] : 0;
+                    if (combinedIdCurrent != combinedIdPrevious) {
+                        blocks.add(offset | ((long) index << 32) | ((long) combinedIdPrevious << 16) | combinedIdCurrent);
+                    }
+                }
+            }
+            // Tile changes
+            Map<Short, CompoundTag> tiles = next.getTiles();
+            if (!tiles.isEmpty()) {
+                tilesCreated.addAll(tiles.values());
+            }
+            tiles = previous.getTiles();
+            if (!tiles.isEmpty()) {
+                tilesRemoved.addAll(tiles.values());
+            }
+            // Entity changes
+            Set<CompoundTag> entities = next.getEntities();
+            if (!entities.isEmpty()) {
+                entitiesCreated.addAll(entities);
+            }
+            entities = previous.getEntities();
+            if (!entities.isEmpty()) {
+                entitiesRemoved.addAll(entities);
+            }
+        }
+
+        private void addTo(FaweChangeSet changeSet) {
+            for (int i = 0; i < biomes.size(); i++) {
+                long change = biomes.getLong(i);
+                int index = (int) (change >> 16);
+                changeSet.addBiomeChange(bx + (index & 15), bz + (index >> 4), FaweCache.getBiome((int) (change >> 8) & 0xFF), FaweCache.getBiome((int) change & 0xFF));
+            }
+            for (int i = 0; i < blocks.size(); i++) {
+                long change = blocks.getLong(i);
+                int index = (int) (change >>> 32);
+                changeSet.add(bx + (index & 15), index >> 8, bz + ((index >> 4) & 15), (int) (change >> 16) & 0xFFFF, (int) change & 0xFFFF);
+            }
+            for (CompoundTag tag : tilesCreated) {
+                changeSet.addTileCreate(tag);
+            }
+            for (CompoundTag tag : tilesRemoved) {
+                changeSet.addTileRemove(tag);
+            }
+            for (CompoundTag tag : entitiesCreated) {
+                changeSet.addEntityCreate(tag);
+            }
+            for (CompoundTag tag : entitiesRemoved) {
+                changeSet.addEntityRemove(tag);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.boydti.fawe.object.change.MutableBlockChange;
 import com.boydti.fawe.object.change.MutableEntityChange;
 import com.boydti.fawe.object.change.MutableFullBlockChange;
 import com.boydti.fawe.object.change.MutableTileChange;
+import com.boydti.fawe.object.io.codec.CompressionCodecs;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
 import com.sk89q.jnbt.CompoundTag;
@@ -233,6 +234,17 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         setupStreamDelegates(mode);
     }
 
+    /**
+     * @return the format of the block changes (see {@link #writeHeader(OutputStream, int, int, int)})
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
     public void readHeader(InputStream is) throws IOException {
         // skip mode
         int mode = is.read();
@@ -244,6 +256,19 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
     }
 
     public FaweOutputStream getCompressedOS(OutputStream os) throws IOException {
+        return getCompressedOS(os, false);
+    }
+
+    /**
+     * @param os
+     * @param blocks if the stream is block changes (which can be compressed with a trained dictionary)
+     * @return the stream, compressed with the configured codec (or the compression level)
+     * @throws IOException
+     */
+    public FaweOutputStream getCompressedOS(OutputStream os, boolean blocks) throws IOException {
+        if (CompressionCodecs.isConfigured()) {
+            return CompressionCodecs.getHistoryOS(os, blocks);
+        }
         return MainUtil.getCompressedOS(os, compression);
     }
 
@@ -298,7 +323,7 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
 
     public abstract NBTInputStream getTileRemoveIS() throws IOException;
 
-    private int blockSize;
+    protected int blockSize;
     public int entityCreateSize;
     public int entityRemoveSize;
     public int tileCreateSize;
@@ -72,6 +72,21 @@ public class AbstractDelegateFaweClipboard extends FaweClipboard {
         parent.setAdd(index, id);
     }
 
+    @Override
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        parent.setIds(index, ids, offset, length);
+    }
+
+    @Override
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        parent.setDatas(index, datas, offset, length);
+    }
+
+    @Override
+    public void setAdds(int index, byte[] adds, int offset, int length) {
+        parent.setAdds(index, adds, offset, length);
+    }
+
     @Override
     public boolean setTile(int x, int y, int z, CompoundTag tag) {
         return parent.setTile(x, y, z, tag);
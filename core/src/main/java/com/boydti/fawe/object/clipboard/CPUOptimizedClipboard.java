@@ -161,6 +161,32 @@ public class CPUOptimizedClipboard extends FaweClipboard {
         datas[index] = (byte) value;
     }
 
+    @Override
+    public void setIds(int index, byte[] values, int offset, int length) {
+        System.arraycopy(values, offset, ids, index, length);
+    }
+
+    @Override
+    public void setDatas(int index, byte[] values, int offset, int length) {
+        System.arraycopy(values, offset, datas, index, length);
+    }
+
+    @Override
+    public void setAdds(int index, byte[] values, int offset, int length) {
+        for (int i = 0; i < length; i++, index += 2) {
+            int value = values[offset + i];
+            if (value != 0 || add != null) {
+                if (add == null) {
+                    add = new byte[volume];
+                }
+                add[index] = (byte) (value & 0x0F);
+                if (index + 1 < volume) {
+                    add[index + 1] = (byte) ((value >> 4) & 0x0F);
+                }
+            }
+        }
+    }
+
     private int ylast;
     private int ylasti;
     private int zlast;
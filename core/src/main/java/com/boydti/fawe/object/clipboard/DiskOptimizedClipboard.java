@@ -4,11 +4,12 @@ import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.jnbt.NBTStreamer;
-import com.boydti.fawe.object.IntegerTrio;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.ReflectionUtils;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.Vector;
@@ -19,17 +20,17 @@ import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -38,57 +39,93 @@ import java.util.UUID;
 /**
  * A clipboard with disk backed storage. (lower memory + loads on crash)
  * - Uses an auto closable RandomAccessFile for getting / setting id / data
- * - I don't know how to reduce nbt / entities to O(2) complexity, so it is stored in memory.
+ * - The file is mapped lazily in segments, so clipboards aren't limited to 2GB
+ * - Tile NBT is stored in a sidecar file (only the offsets are kept in memory)
+ * - Entities are stored in memory.
  */
 public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     public static int COMPRESSION = 0;
     public static int MODE = 0;
     public static int HEADER_SIZE = 14;
+    /**
+     * The size of each mapped segment (256MB)<br>
+     * - Must be even so that a block never spans two segments
+     */
+    public static int SEGMENT_BITS = 28;
+    /**
+     * The maximum number of segments to keep mapped at once
+     */
+    public static int MAX_SEGMENTS = 8;
 
     protected int length;
     protected int height;
     protected int width;
-    protected int area;
-    protected int volume;
+    protected long area;
+    protected long volume;
 
-    private final HashMap<IntegerTrio, CompoundTag> nbtMap;
+    private final Long2ObjectOpenHashMap<Long> nbtIndex;
     private final HashSet<ClipboardEntity> entities;
     private final File file;
+    private final File nbtFile;
 
     private RandomAccessFile braf;
-    private MappedByteBuffer mbb;
+    private RandomAccessFile nbtRaf;
 
     private FileChannel fc;
     private boolean hasBiomes;
 
+    private final int segmentSize = 1 << SEGMENT_BITS;
+    private final int segmentMask = segmentSize - 1;
+    private Segment[] segments = new Segment[0];
+    private int mapped;
+    private long clock;
+    private volatile Segment last;
+
+    private static final class Segment {
+        private final int index;
+        private final MappedByteBuffer buffer;
+        private long lastUsed;
+
+        private Segment(int index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+
     public DiskOptimizedClipboard(int width, int height, int length, UUID uuid) {
         this(width, height, length, MainUtil.getFile(Fawe.get() != null ? Fawe.imp().getDirectory() : new File("."), Settings.IMP.PATHS.CLIPBOARD + File.separator + uuid + ".bd"));
     }
 
     public DiskOptimizedClipboard(File file) {
         try {
-            nbtMap = new HashMap<>();
+            nbtIndex = new Long2ObjectOpenHashMap<>();
             entities = new HashSet<>();
             this.file = file;
+            this.nbtFile = getNbtFile(file);
             this.braf = new RandomAccessFile(file, "rw");
             braf.setLength(file.length());
             init();
-            width = (int) mbb.getChar(2);
-            height = (int) mbb.getChar(4);
-            length = (int) mbb.getChar(6);
-            area = width * length;
-            this.volume = length * width * height;
+            width = (int) getChar(2);
+            height = (int) getChar(4);
+            length = (int) getChar(6);
+            area = (long) width * length;
+            this.volume = area * height;
 
             if ((braf.length() - HEADER_SIZE) == (volume << 1) + area) {
                 hasBiomes = true;
             }
+            loadNbtIndex();
             autoCloseTask();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static File getNbtFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".nbt");
+    }
+
     public File getFile() {
         return file;
     }
@@ -96,7 +133,160 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     private void init() throws IOException {
         if (this.fc == null) {
             this.fc = braf.getChannel();
-            this.mbb = fc.map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            long size = fc.size();
+            this.segments = new Segment[(int) ((size + segmentMask) >> SEGMENT_BITS)];
+            this.mapped = 0;
+            this.last = null;
+        }
+    }
+
+    private ByteBuffer getSegment(long pos) {
+        int index = (int) (pos >> SEGMENT_BITS);
+        Segment segment = last;
+        if (segment == null || segment.index != index) {
+            segment = index < segments.length ? segments[index] : null;
+            if (segment == null) {
+                segment = map(index);
+            }
+            segment.lastUsed = ++clock;
+            last = segment;
+        }
+        return segment.buffer;
+    }
+
+    private synchronized Segment map(int index) {
+        Segment segment = segments[index];
+        if (segment != null) {
+            return segment;
+        }
+        try {
+            if (mapped >= MAX_SEGMENTS) {
+                // Unmap the least recently used segment
+                Segment oldest = null;
+                for (Segment other : segments) {
+                    if (other != null && (oldest == null || other.lastUsed < oldest.lastUsed)) {
+                        oldest = other;
+                    }
+                }
+                if (oldest != null) {
+                    oldest.buffer.force();
+                    segments[oldest.index] = null;
+                    mapped--;
+                    // The buffer isn't cleaned directly as another thread may still be reading it
+                }
+            }
+            long start = (long) index << SEGMENT_BITS;
+            long size = Math.min(segmentSize, fc.size() - start);
+            segment = new Segment(index, fc.map(FileChannel.MapMode.READ_WRITE, start, size));
+            segments[index] = segment;
+            mapped++;
+            return segment;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private char getChar(long pos) {
+        return getSegment(pos).getChar((int) (pos & segmentMask));
+    }
+
+    private void putChar(long pos, char value) {
+        getSegment(pos).putChar((int) (pos & segmentMask), value);
+    }
+
+    private short getShort(long pos) {
+        return getSegment(pos).getShort((int) (pos & segmentMask));
+    }
+
+    private void putShort(long pos, short value) {
+        getSegment(pos).putShort((int) (pos & segmentMask), value);
+    }
+
+    private byte get(long pos) {
+        return getSegment(pos).get((int) (pos & segmentMask));
+    }
+
+    private void put(long pos, byte value) {
+        getSegment(pos).put((int) (pos & segmentMask), value);
+    }
+
+    private void force() {
+        for (Segment segment : segments) {
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    private static long getNbtKey(int x, int y, int z) {
+        return (x & 0xFFFFL) | ((y & 0xFFFFL) << 16) | ((z & 0xFFFFL) << 32);
+    }
+
+    private RandomAccessFile getNbtRaf() throws IOException {
+        if (nbtRaf == null) {
+            nbtRaf = new RandomAccessFile(nbtFile, "rw");
+        }
+        return nbtRaf;
+    }
+
+    /**
+     * Read the offsets of the tiles in the sidecar file<br>
+     * - Each entry is [long position][int length][nbt], later entries replace earlier ones
+     */
+    private void loadNbtIndex() throws IOException {
+        if (!nbtFile.exists()) {
+            return;
+        }
+        RandomAccessFile raf = getNbtRaf();
+        long size = raf.length();
+        long pos = 0;
+        while (pos + 12 <= size) {
+            raf.seek(pos);
+            long key = raf.readLong();
+            int len = raf.readInt();
+            if (pos + 12 + len > size) {
+                break;
+            }
+            nbtIndex.put(key, (Long) pos);
+            pos += 12 + len;
+        }
+    }
+
+    private synchronized CompoundTag readTile(long key) {
+        Long offset = nbtIndex.get(key);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            RandomAccessFile raf = getNbtRaf();
+            raf.seek(offset + 8);
+            byte[] bytes = new byte[raf.readInt()];
+            raf.readFully(bytes);
+            try (NBTInputStream nis = new NBTInputStream(new ByteArrayInputStream(bytes))) {
+                return (CompoundTag) nis.readNamedTag().getTag();
+            }
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+            return null;
+        }
+    }
+
+    private synchronized void writeTile(long key, CompoundTag tag) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (NBTOutputStream nos = new NBTOutputStream(baos)) {
+                nos.writeNamedTag("", tag);
+            }
+            byte[] bytes = baos.toByteArray();
+            RandomAccessFile raf = getNbtRaf();
+            long pos = raf.length();
+            raf.seek(pos);
+            raf.writeLong(key);
+            raf.writeInt(bytes.length);
+            raf.write(bytes);
+            nbtIndex.put(key, (Long) pos);
+        } catch (IOException e) {
+            MainUtil.handleError(e);
         }
     }
 
@@ -123,23 +313,31 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     @Override
     public boolean setBiome(int x, int z, int biome) {
-        setBiome(getIndex(x, 0, z), biome);
+        setBiome(x + (long) z * width, biome);
         return true;
     }
 
     @Override
     public void setBiome(int index, int biome) {
+        setBiome((long) index, biome);
+    }
+
+    private void setBiome(long index, int biome) {
         if (initBiome()) {
-            mbb.put(HEADER_SIZE + (volume << 1) + index, (byte) biome);
+            put(HEADER_SIZE + (volume << 1) + index, (byte) biome);
         }
     }
 
     @Override
     public BaseBiome getBiome(int index) {
+        return getBiome((long) index);
+    }
+
+    private BaseBiome getBiome(long index) {
         if (!hasBiomes()) {
             return EditSession.nullBiome;
         }
-        int biomeId = mbb.get(HEADER_SIZE + (volume << 1) + index) & 0xFF;
+        int biomeId = get(HEADER_SIZE + (volume << 1) + index) & 0xFF;
         return FaweCache.CACHE_BIOME[biomeId];
     }
 
@@ -147,10 +345,10 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     public void streamBiomes(NBTStreamer.ByteReader task) {
         if (!hasBiomes()) return;
         int index = 0;
-        int mbbIndex = HEADER_SIZE + (volume << 1);
+        long mbbIndex = HEADER_SIZE + (volume << 1);
         for (int z = 0; z < length; z++) {
             for (int x = 0; x < width; x++, index++, mbbIndex++) {
-                int biome = mbb.get(mbbIndex) & 0xFF;
+                int biome = get(mbbIndex) & 0xFF;
                 task.run(index, biome);
             }
         }
@@ -158,7 +356,7 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     @Override
     public BaseBiome getBiome(int x, int z) {
-        return getBiome(getIndex(x, 0, z));
+        return getBiome(x + (long) z * width);
     }
 
     @Override
@@ -169,9 +367,9 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     public BlockArrayClipboard toClipboard() {
         try {
             CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(width - 1, height - 1, length - 1));
-            int ox = mbb.getShort(8);
-            int oy = mbb.getShort(10);
-            int oz = mbb.getShort(12);
+            int ox = getShort(8);
+            int oy = getShort(10);
+            int oz = getShort(12);
             BlockArrayClipboard clipboard = new BlockArrayClipboard(region, this);
             clipboard.setOrigin(new Vector(ox, oy, oz));
             return clipboard;
@@ -183,14 +381,15 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     public DiskOptimizedClipboard(int width, int height, int length, File file) {
         try {
-            nbtMap = new HashMap<>();
+            nbtIndex = new Long2ObjectOpenHashMap<>();
             entities = new HashSet<>();
             this.file = file;
+            this.nbtFile = getNbtFile(file);
             this.width = width;
             this.height = height;
             this.length = length;
-            this.area = width * length;
-            this.volume = width * length * height;
+            this.area = (long) width * length;
+            this.volume = area * height;
             try {
                 if (!file.exists()) {
                     File parent = file.getParentFile();
@@ -206,12 +405,16 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
             long volume = (long) width * (long) height * (long) length * 2l + (long) HEADER_SIZE;
             braf.setLength(0);
             braf.setLength(volume);
-            if (width * height * length != 0) {
+            // Tiles from a previous clipboard in this file would otherwise be read back
+            if (nbtFile.exists()) {
+                getNbtRaf().setLength(0);
+            }
+            if (this.volume != 0) {
                 init();
                 // write length etc
-                mbb.putChar(2, (char) width);
-                mbb.putChar(4, (char) height);
-                mbb.putChar(6, (char) length);
+                putChar(2, (char) width);
+                putChar(4, (char) height);
+                putChar(6, (char) length);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -221,9 +424,9 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void setOrigin(Vector offset) {
         try {
-            mbb.putShort(8, (short) offset.getBlockX());
-            mbb.putShort(10, (short) offset.getBlockY());
-            mbb.putShort(12, (short) offset.getBlockZ());
+            putShort(8, (short) offset.getBlockX());
+            putShort(10, (short) offset.getBlockY());
+            putShort(12, (short) offset.getBlockZ());
         } catch (Throwable e) {
             MainUtil.handleError(e);
         }
@@ -235,18 +438,18 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
             width = dimensions.getBlockX();
             height = dimensions.getBlockY();
             length = dimensions.getBlockZ();
-            area = width * length;
-            volume = width * length * height;
-            long size = width * height * length * 2l + HEADER_SIZE + (hasBiomes() ? area : 0);
-            if (braf.length() < size) {
+            area = (long) width * length;
+            volume = area * height;
+            long size = volume * 2l + HEADER_SIZE + (hasBiomes() ? area : 0);
+            if (braf == null || braf.length() < size) {
                 close();
                 this.braf = new RandomAccessFile(file, "rw");
                 braf.setLength(size);
                 init();
             }
-            mbb.putChar(2, (char) width);
-            mbb.putChar(4, (char) height);
-            mbb.putChar(6, (char) length);
+            putChar(2, (char) width);
+            putChar(4, (char) height);
+            putChar(6, (char) length);
         } catch (IOException e) {
             MainUtil.handleError(e);
         }
@@ -254,63 +457,65 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     @Override
     public void flush() {
-        mbb.force();
+        force();
     }
 
     public DiskOptimizedClipboard(int width, int height, int length) {
         this(width, height, length, MainUtil.getFile(Fawe.imp() != null ? Fawe.imp().getDirectory() : new File("."), Settings.IMP.PATHS.CLIPBOARD + File.separator + UUID.randomUUID() + ".bd"));
     }
 
-    private void closeDirectBuffer(ByteBuffer cb) {
-        if (cb == null || !cb.isDirect()) return;
-
-        // we could use this type cast and call functions without reflection code,
-        // but static import from sun.* package is risky for non-SUN virtual machine.
-        //try { ((sun.nio.ch.DirectBuffer)cb).cleaner().clean(); } catch (Exception ex) { }
-        try {
-            Method cleaner = cb.getClass().getMethod("cleaner");
-            cleaner.setAccessible(true);
-            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
-            clean.setAccessible(true);
-            clean.invoke(cleaner.invoke(cb));
-        } catch (Exception ex) {
-            try {
-                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
-                final Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
-                theUnsafeField.setAccessible(true);
-                final Object theUnsafe = theUnsafeField.get(null);
-                final Method invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
-                invokeCleanerMethod.invoke(theUnsafe, cb);
-            } catch (Exception e) {
-                System.gc();
-            }
-        }
-        cb = null;
-    }
-
     @Override
     protected void finalize() throws Throwable {
         close();
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
         try {
-            if (mbb != null) {
-                mbb.force();
-                fc.close();
+            if (braf != null) {
+                force();
+                if (fc != null) {
+                    fc.close();
+                }
                 braf.close();
                 file.setWritable(true);
-                closeDirectBuffer(mbb);
-                mbb = null;
+                for (Segment segment : segments) {
+                    if (segment != null) {
+                        MainUtil.closeDirectBuffer(segment.buffer);
+                    }
+                }
+                segments = new Segment[0];
+                mapped = 0;
+                last = null;
                 fc = null;
                 braf = null;
             }
+            if (nbtRaf != null) {
+                nbtRaf.close();
+                nbtRaf = null;
+            }
+            closeNbtFile();
         } catch (IOException e) {
             MainUtil.handleError(e);
         }
     }
 
+    /**
+     * Keep the tile sidecar file with the clipboard file<br>
+     * - An empty sidecar (or one without a clipboard file) is deleted<br>
+     * - Otherwise it gets the same last modified time, so the clipboard cleanup deletes both at once
+     */
+    private void closeNbtFile() {
+        if (!nbtFile.exists()) {
+            return;
+        }
+        if (nbtIndex.isEmpty() || !file.exists()) {
+            nbtFile.delete();
+        } else {
+            nbtFile.setLastModified(file.lastModified());
+        }
+    }
+
     private void autoCloseTask() {
 //        TaskManager.IMP.laterAsync(new Runnable() {
 //            @Override
@@ -326,21 +531,15 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 //        }, 200);
     }
 
-    private int ylast;
-    private int ylasti;
-    private int zlast;
-    private int zlasti;
-
     @Override
     public void streamIds(NBTStreamer.ByteReader task) {
         try {
-            mbb.force();
-            int pos = HEADER_SIZE;
+            long pos = HEADER_SIZE;
             int index = 0;
             for (int y = 0; y < height; y++) {
                 for (int z = 0; z < length; z++) {
                     for (int x = 0; x < width; x++, pos += 2) {
-                        int combinedId = mbb.getChar(pos);
+                        int combinedId = getChar(pos);
                         task.run(index++, FaweCache.getId(combinedId));
                     }
                 }
@@ -353,13 +552,12 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void streamDatas(NBTStreamer.ByteReader task) {
         try {
-            mbb.force();
-            int pos = HEADER_SIZE;
+            long pos = HEADER_SIZE;
             int index = 0;
             for (int y = 0; y < height; y++) {
                 for (int z = 0; z < length; z++) {
                     for (int x = 0; x < width; x++, pos += 2) {
-                        int combinedId = mbb.getChar(pos);
+                        int combinedId = getChar(pos);
                         task.run(index++, FaweCache.getData(combinedId));
                     }
                 }
@@ -370,26 +568,30 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     }
 
     @Override
-    public List<CompoundTag> getTileEntities() {
-        return new ArrayList<>(nbtMap.values());
+    public synchronized List<CompoundTag> getTileEntities() {
+        ArrayList<CompoundTag> tiles = new ArrayList<>(nbtIndex.size());
+        for (long key : nbtIndex.keySet()) {
+            CompoundTag tag = readTile(key);
+            if (tag != null) {
+                tiles.add(tag);
+            }
+        }
+        return tiles;
     }
 
     @Override
     public void forEach(final BlockReader task, boolean air) {
-        mbb.force();
-        int pos = HEADER_SIZE;
-        IntegerTrio trio = new IntegerTrio();
-        final boolean hasTile = !nbtMap.isEmpty();
+        long pos = HEADER_SIZE;
+        final boolean hasTile = !nbtIndex.isEmpty();
         if (air) {
             if (hasTile) {
                 for (int y = 0; y < height; y++) {
                     for (int z = 0; z < length; z++) {
                         for (int x = 0; x < width; x++, pos += 2) {
-                            char combinedId = mbb.getChar(pos);
+                            char combinedId = getChar(pos);
                             BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
                             if (block.canStoreNBTData()) {
-                                trio.set(x, y, z);
-                                CompoundTag nbt = nbtMap.get(trio);
+                                CompoundTag nbt = readTile(getNbtKey(x, y, z));
                                 if (nbt != null) {
                                     block = new BaseBlock(block.getId(), block.getData());
                                     block.setNbtData(nbt);
@@ -403,7 +605,7 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
                 for (int y = 0; y < height; y++) {
                     for (int z = 0; z < length; z++) {
                         for (int x = 0; x < width; x++, pos += 2) {
-                            char combinedId = mbb.getChar(pos);
+                            char combinedId = getChar(pos);
                             BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
                             task.run(x, y, z, block);
                         }
@@ -414,12 +616,11 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
             for (int y = 0; y < height; y++) {
                 for (int z = 0; z < length; z++) {
                     for (int x = 0; x < width; x++, pos += 2) {
-                        int combinedId = mbb.getChar(pos);
+                        int combinedId = getChar(pos);
                         if (combinedId != 0) {
                             BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
                             if (block.canStoreNBTData()) {
-                                trio.set(x, y, z);
-                                CompoundTag nbt = nbtMap.get(trio);
+                                CompoundTag nbt = readTile(getNbtKey(x, y, z));
                                 if (nbt != null) {
                                     block = new BaseBlock(block.getId(), block.getData());
                                     block.setNbtData(nbt);
@@ -434,17 +635,24 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     }
 
     public int getIndex(int x, int y, int z) {
-        return x + ((ylast == y) ? ylasti : (ylasti = (ylast = y) * area)) + ((zlast == z) ? zlasti : (zlasti = (zlast = z) * width));
+        return (int) getLongIndex(x, y, z);
+    }
+
+    private long getLongIndex(int x, int y, int z) {
+        return x + y * area + (long) z * width;
     }
 
     @Override
     public BaseBlock getBlock(int x, int y, int z) {
         try {
-            int index = HEADER_SIZE + (getIndex(x, y, z) << 1);
-            int combinedId = mbb.getChar(index);
+            if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= length) {
+                return EditSession.nullBlock;
+            }
+            long index = HEADER_SIZE + (getLongIndex(x, y, z) << 1);
+            int combinedId = getChar(index);
             BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
-            if (block.canStoreNBTData() && !nbtMap.isEmpty()) {
-                CompoundTag nbt = nbtMap.get(new IntegerTrio(x, y, z));
+            if (block.canStoreNBTData() && !nbtIndex.isEmpty()) {
+                CompoundTag nbt = readTile(getNbtKey(x, y, z));
                 if (nbt != null) {
                     block = new BaseBlock(block.getId(), block.getData());
                     block.setNbtData(nbt);
@@ -461,29 +669,16 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public BaseBlock getBlock(int i) {
         try {
-            int diskIndex = (HEADER_SIZE) + (i << 1);
-            int combinedId = mbb.getChar(diskIndex);
+            long diskIndex = (HEADER_SIZE) + ((long) i << 1);
+            int combinedId = getChar(diskIndex);
             BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
-            if (block.canStoreNBTData() && !nbtMap.isEmpty()) {
-                CompoundTag nbt;
-                if (nbtMap.size() < 4) {
-                    nbt = null;
-                    for (Map.Entry<IntegerTrio, CompoundTag> entry : nbtMap.entrySet()) {
-                        IntegerTrio key = entry.getKey();
-                        int index = getIndex(key.x, key.y, key.z);
-                        if (index == i) {
-                            nbt = entry.getValue();
-                            break;
-                        }
-                    }
-                } else {
-                    // x + z * width + y * area;
-                    int y = i / area;
-                    int newI = (i - (y * area));
-                    int z = newI / width;
-                    int x = newI - z * width;
-                    nbt = nbtMap.get(new IntegerTrio(x, y, z));
-                }
+            if (block.canStoreNBTData() && !nbtIndex.isEmpty()) {
+                // x + z * width + y * area;
+                int y = (int) (i / area);
+                int newI = (int) (i - (y * area));
+                int z = newI / width;
+                int x = newI - z * width;
+                CompoundTag nbt = readTile(getNbtKey(x, y, z));
                 if (nbt != null) {
                     block = new BaseBlock(block.getId(), block.getData());
                     block.setNbtData(nbt);
@@ -499,22 +694,22 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     @Override
     public boolean setTile(int x, int y, int z, CompoundTag tag) {
-        nbtMap.put(new IntegerTrio(x, y, z), tag);
         Map<String, Tag> values = ReflectionUtils.getMap(tag.getValue());
         values.put("x", new IntTag(x));
         values.put("y", new IntTag(y));
         values.put("z", new IntTag(z));
+        writeTile(getNbtKey(x, y, z), tag);
         return true;
     }
 
     @Override
     public boolean setBlock(int x, int y, int z, BaseBlock block) {
         try {
-            int index = (HEADER_SIZE) + (getIndex(x, y, z) << 1);
+            long index = (HEADER_SIZE) + (getLongIndex(x, y, z) << 1);
             final int id = block.getId();
             final int data = block.getData();
             int combined = (id << 4) + data;
-            mbb.putChar(index, (char) combined);
+            putChar(index, (char) combined);
             CompoundTag tile = block.getNbtData();
             if (tile != null) {
                 setTile(x, y, z, tile);
@@ -527,31 +722,83 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     @Override
     public void setId(int i, int id) {
-        int index = (HEADER_SIZE) + (i << 1);
+        long index = (HEADER_SIZE) + ((long) i << 1);
         // 00000000 00000000
         // [    id     ]data
-        char combined = mbb.getChar(index);
-        mbb.putChar(index, (char) ((combined & 0xF00F) + (id << 4)));
+        char combined = getChar(index);
+        putChar(index, (char) ((combined & 0xF00F) + (id << 4)));
     }
 
     public void setCombined(int i, int combined) {
-        mbb.putChar((HEADER_SIZE) + (i << 1), (char) combined);
+        putChar((HEADER_SIZE) + ((long) i << 1), (char) combined);
     }
 
     @Override
     public void setAdd(int i, int add) {
-        int index = (HEADER_SIZE) + (i << 1);
+        long index = (HEADER_SIZE) + ((long) i << 1);
         // 00000000 00000000
         // [    id     ]data
-        char combined = mbb.getChar(index);
-        mbb.putChar(index, (char) ((combined & 0x0FFF) + (add << 12)));
+        char combined = getChar(index);
+        putChar(index, (char) ((combined & 0x0FFF) + (add << 12)));
     }
 
     @Override
     public void setData(int i, int data) {
-        int index = (HEADER_SIZE) + (i << 1) + 1;
-        byte id = mbb.get(index);
-        mbb.put(index, (byte) ((id & 0xF0) + data));
+        long index = (HEADER_SIZE) + ((long) i << 1) + 1;
+        byte id = get(index);
+        put(index, (byte) ((id & 0xF0) + data));
+    }
+
+    @Override
+    public void setIds(int i, byte[] ids, int offset, int length) {
+        long pos = HEADER_SIZE + ((long) i << 1);
+        while (length > 0) {
+            ByteBuffer buffer = getSegment(pos);
+            int local = (int) (pos & segmentMask);
+            int amount = Math.min(length, (buffer.limit() - local) >> 1);
+            for (int end = offset + amount; offset < end; offset++, local += 2) {
+                char combined = buffer.getChar(local);
+                buffer.putChar(local, (char) ((combined & 0xF00F) + ((ids[offset] & 0xFF) << 4)));
+            }
+            pos += (long) amount << 1;
+            length -= amount;
+        }
+    }
+
+    @Override
+    public void setDatas(int i, byte[] datas, int offset, int length) {
+        long pos = HEADER_SIZE + ((long) i << 1);
+        while (length > 0) {
+            ByteBuffer buffer = getSegment(pos);
+            int local = (int) (pos & segmentMask) + 1;
+            int amount = Math.min(length, (buffer.limit() - local + 1) >> 1);
+            for (int end = offset + amount; offset < end; offset++, local += 2) {
+                byte id = buffer.get(local);
+                buffer.put(local, (byte) ((id & 0xF0) + (datas[offset] & 0x0F)));
+            }
+            pos += (long) amount << 1;
+            length -= amount;
+        }
+    }
+
+    @Override
+    public void setAdds(int i, byte[] adds, int offset, int length) {
+        long pos = HEADER_SIZE + ((long) i << 1);
+        // two blocks per byte, the last of which may be past the end of the clipboard
+        long limit = Math.min(HEADER_SIZE + (volume << 1), pos + ((long) length << 2));
+        int j = 0;
+        while (pos < limit) {
+            ByteBuffer buffer = getSegment(pos);
+            int local = (int) (pos & segmentMask);
+            int blocks = (int) (Math.min(buffer.limit() - local, limit - pos) >> 1);
+            for (int end = j + blocks; j < end; j++, local += 2) {
+                int value = adds[offset + (j >> 1)];
+                int add = (j & 1) == 0 ? value & 0x0F : (value >> 4) & 0x0F;
+                char combined = buffer.getChar(local);
+                buffer.putChar(local, (char) ((combined & 0x0FFF) + (add << 12)));
+            }
+            pos += (long) blocks << 1;
+        }
     }
 
     @Override
@@ -43,6 +43,51 @@ public abstract class FaweClipboard {
 
     public abstract void setAdd(int index, int id);
 
+    /**
+     * Set the ids of a range of blocks (e.g. from a schematic's Blocks array)
+     *
+     * @param index the index of the first block
+     * @param ids
+     * @param offset
+     * @param length the number of blocks
+     */
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            setId(index + i, ids[offset + i] & 0xFF);
+        }
+    }
+
+    /**
+     * Set the data of a range of blocks (e.g. from a schematic's Data array)
+     *
+     * @param index the index of the first block
+     * @param datas
+     * @param offset
+     * @param length the number of blocks
+     */
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            setData(index + i, datas[offset + i] & 0xFF);
+        }
+    }
+
+    /**
+     * Set the add ids of a range of blocks, packed two per byte (e.g. from a schematic's AddBlocks array)<br>
+     * - The low nibble is the even block, the high nibble the odd one
+     *
+     * @param index the index of the first block (even)
+     * @param adds
+     * @param offset
+     * @param length the number of bytes
+     */
+    public void setAdds(int index, byte[] adds, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            int value = adds[offset + i];
+            setAdd(index + (i << 1), value & 0x0F);
+            setAdd(index + (i << 1) + 1, (value >> 4) & 0x0F);
+        }
+    }
+
     public abstract boolean setTile(int x, int y, int z, CompoundTag tag);
 
     public abstract Entity createEntity(Extent world, double x, double y, double z, float yaw, float pitch, BaseEntity entity);
@@ -325,6 +325,110 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
         saveAdd = true;
     }
 
+    @Override
+    public void setIds(int index, byte[] values, int offset, int length) {
+        while (length > 0) {
+            int i = index >> BLOCK_SHIFT;
+            int localIndex = index & BLOCK_MASK;
+            int amount = Math.min(length, BLOCK_SIZE - localIndex);
+            if (i != lastIdsI) {
+                saveIds();
+                byte[] compressed = ids[lastIdsI = i];
+                if (compressed != null) {
+                    lastIds = MainUtil.decompress(compressed, lastIds, BLOCK_SIZE, compressionLevel);
+                } else {
+                    lastIds = null;
+                }
+            }
+            if (lastIds == null && !isEmpty(values, offset, amount)) {
+                lastIds = new byte[BLOCK_SIZE];
+            }
+            if (lastIds != null) {
+                System.arraycopy(values, offset, lastIds, localIndex, amount);
+                saveIds = true;
+            }
+            index += amount;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
+    @Override
+    public void setDatas(int index, byte[] values, int offset, int length) {
+        while (length > 0) {
+            int i = index >> BLOCK_SHIFT;
+            int localIndex = index & BLOCK_MASK;
+            int amount = Math.min(length, BLOCK_SIZE - localIndex);
+            if (i != lastDatasI) {
+                saveDatas();
+                byte[] compressed = datas[lastDatasI = i];
+                if (compressed != null) {
+                    lastDatas = MainUtil.decompress(compressed, lastDatas, BLOCK_SIZE, compressionLevel);
+                } else {
+                    lastDatas = null;
+                }
+            }
+            if (lastDatas == null && !isEmpty(values, offset, amount)) {
+                lastDatas = new byte[BLOCK_SIZE];
+            }
+            if (lastDatas != null) {
+                System.arraycopy(values, offset, lastDatas, localIndex, amount);
+                saveDatas = true;
+            }
+            index += amount;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
+    @Override
+    public void setAdds(int index, byte[] values, int offset, int length) {
+        while (length > 0) {
+            int i = index >> BLOCK_SHIFT;
+            int localIndex = index & BLOCK_MASK;
+            // two blocks per byte (the block size is even, so a byte never spans two blocks)
+            int amount = Math.min(length, (BLOCK_SIZE - localIndex) >> 1);
+            boolean empty = isEmpty(values, offset, amount);
+            if (add == null && !empty) {
+                add = new byte[1 + (volume >> BLOCK_SHIFT)][];
+            }
+            if (add != null) {
+                if (i != lastAddI) {
+                    saveAdd();
+                    byte[] compressed = add[lastAddI = i];
+                    if (compressed != null) {
+                        lastAdd = MainUtil.decompress(compressed, lastAdd, BLOCK_SIZE, compressionLevel);
+                    } else {
+                        lastAdd = null;
+                    }
+                }
+                if (lastAdd == null && !empty) {
+                    lastAdd = new byte[BLOCK_SIZE];
+                }
+                if (lastAdd != null) {
+                    for (int j = 0, k = localIndex; j < amount; j++) {
+                        int value = values[offset + j];
+                        lastAdd[k++] = (byte) (value & 0x0F);
+                        lastAdd[k++] = (byte) ((value >> 4) & 0x0F);
+                    }
+                    saveAdd = true;
+                }
+            }
+            index += amount << 1;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
+    private static boolean isEmpty(byte[] values, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (values[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void streamIds(NBTStreamer.ByteReader task) {
         int index = 0;
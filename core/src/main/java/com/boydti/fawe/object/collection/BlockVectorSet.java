@@ -22,6 +22,21 @@ import java.util.Set;
  */
 public class BlockVectorSet extends AbstractCollection<Vector> implements Set<Vector> {
     private Int2ObjectMap<LocalBlockVectorSet> localSets = new Int2ObjectOpenHashMap<>();
+    // Searches tend to stay within the same 2048x2048 region
+    private int lastPair = Integer.MIN_VALUE;
+    private LocalBlockVectorSet lastSet;
+
+    private LocalBlockVectorSet getLocalSet(int pair) {
+        if (pair == lastPair) {
+            return lastSet;
+        }
+        LocalBlockVectorSet localMap = localSets.get(pair);
+        if (localMap != null) {
+            lastPair = pair;
+            lastSet = localMap;
+        }
+        return localMap;
+    }
 
     @Override
     public int size() {
@@ -69,7 +84,7 @@ public class BlockVectorSet extends AbstractCollection<Vector> implements Set<Ve
 
     public boolean contains(int x, int y, int z) {
         int pair = MathMan.pair((short) (x >> 11), (short) (z >> 11));
-        LocalBlockVectorSet localMap = localSets.get(pair);
+        LocalBlockVectorSet localMap = getLocalSet(pair);
         return localMap != null && localMap.contains(x & 2047, y, z & 2047);
     }
 
@@ -128,22 +143,26 @@ public class BlockVectorSet extends AbstractCollection<Vector> implements Set<Ve
 
     public boolean add(int x, int y, int z) {
         int pair = MathMan.pair((short) (x >> 11), (short) (z >> 11));
-        LocalBlockVectorSet localMap = localSets.get(pair);
+        LocalBlockVectorSet localMap = getLocalSet(pair);
         if (localMap == null) {
             localMap = new LocalBlockVectorSet();
             localMap.setOffset(1024, 1024);
             localSets.put(pair, localMap);
+            lastPair = pair;
+            lastSet = localMap;
         }
         return localMap.add(x & 2047, y, z & 2047);
     }
 
     public boolean remove(int x, int y, int z) {
         int pair = MathMan.pair((short) (x >> 11), (short) (z >> 11));
-        LocalBlockVectorSet localMap = localSets.get(pair);
+        LocalBlockVectorSet localMap = getLocalSet(pair);
         if (localMap != null) {
             if (localMap.remove(x & 2047, y, z & 2047)) {
                 if (localMap.isEmpty()) {
                     localSets.remove(pair);
+                    lastPair = Integer.MIN_VALUE;
+                    lastSet = null;
                 }
                 return true;
             }
@@ -207,5 +226,7 @@ public class BlockVectorSet extends AbstractCollection<Vector> implements Set<Ve
     @Override
     public void clear() {
         localSets.clear();
+        lastPair = Integer.MIN_VALUE;
+        lastSet = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.Arrays;
+
+/**
+ * A growable FIFO queue of primitive longs backed by a ring buffer
+ * - No allocation per element (unlike Queue<Long>)
+ * - Not thread safe
+ */
+public final class LongRingBuffer {
+    private long[] buffer;
+    private int mask;
+    private int head;
+    private int tail;
+
+    public LongRingBuffer() {
+        this(64);
+    }
+
+    public LongRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.buffer = new long[size];
+        this.mask = size - 1;
+    }
+
+    public void add(long value) {
+        buffer[tail] = value;
+        tail = (tail + 1) & mask;
+        if (tail == head) {
+            grow();
+        }
+    }
+
+    /**
+     * Remove the first value (check {@link #isEmpty()} first)
+     *
+     * @return
+     */
+    public long poll() {
+        long value = buffer[head];
+        head = (head + 1) & mask;
+        return value;
+    }
+
+    public long peek() {
+        return buffer[head];
+    }
+
+    /**
+     * Get a value without removing it
+     *
+     * @param index from the head [0, size)
+     * @return
+     */
+    public long get(int index) {
+        return buffer[(head + index) & mask];
+    }
+
+    public void addAll(LongRingBuffer other) {
+        for (int i = other.head; i != other.tail; i = (i + 1) & other.mask) {
+            add(other.buffer[i]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int size() {
+        return (tail - head) & mask;
+    }
+
+    public void clear() {
+        head = tail = 0;
+    }
+
+    private void grow() {
+        int length = buffer.length;
+        long[] newBuffer = Arrays.copyOf(buffer, length << 1);
+        // Move the wrapped part [0, tail) after the old end
+        System.arraycopy(buffer, 0, newBuffer, length, tail);
+        tail += length;
+        buffer = newBuffer;
+        mask = newBuffer.length - 1;
+    }
+}
@@ -0,0 +1,201 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.Arrays;
+
+/**
+ * A char[4096] (one chunk section) stored as a palette plus bit packed indices
+ * - A section with a single value uses no index array
+ * - Indices use 1, 2, 4 or 8 bits (so they never span two longs)
+ * - Above 256 distinct values a plain char[] is used instead
+ * - Not thread safe
+ */
+public final class PaletteCharArray {
+    public static final int SIZE = 4096;
+    private static final int MAX_PALETTE = 256;
+
+    private char[] palette;
+    private int paletteSize;
+    private int bits;
+    private long[] data;
+    private char[] raw;
+
+    private int lastValue = -1;
+    private int lastIndex;
+
+    public PaletteCharArray() {
+        this((char) 0);
+    }
+
+    public PaletteCharArray(char value) {
+        fill(value);
+    }
+
+    public char get(int index) {
+        if (raw != null) {
+            return raw[index];
+        }
+        if (bits == 0) {
+            return palette[0];
+        }
+        int bitIndex = index * bits;
+        return palette[(int) (data[bitIndex >> 6] >>> (bitIndex & 63)) & ((1 << bits) - 1)];
+    }
+
+    public void set(int index, char value) {
+        if (raw != null) {
+            raw[index] = value;
+            return;
+        }
+        int paletteIndex = indexOf(value);
+        if (paletteIndex < 0) {
+            paletteIndex = add(value);
+            if (raw != null) {
+                raw[index] = value;
+                return;
+            }
+        }
+        if (bits != 0) {
+            write(data, bits, index, paletteIndex);
+        }
+    }
+
+    /**
+     * Set every value (this also releases the index array)
+     *
+     * @param value
+     */
+    public void fill(char value) {
+        palette = new char[]{value};
+        paletteSize = 1;
+        bits = 0;
+        data = null;
+        raw = null;
+        lastValue = value;
+        lastIndex = 0;
+    }
+
+    /**
+     * @return if every value is the same
+     */
+    public boolean isUniform() {
+        return raw == null && bits == 0;
+    }
+
+    /**
+     * The number of bytes used by this array (roughly)
+     *
+     * @return
+     */
+    public int getMemoryUsage() {
+        if (raw != null) {
+            return raw.length << 1;
+        }
+        return (palette.length << 1) + (data == null ? 0 : data.length << 3);
+    }
+
+    /**
+     * Write the values to a char[]
+     *
+     * @param reuse if the backing array may be returned (only if this object is discarded afterwards)
+     * @return
+     */
+    public char[] toArray(boolean reuse) {
+        if (raw != null) {
+            return reuse ? raw : raw.clone();
+        }
+        char[] array = new char[SIZE];
+        if (bits == 0) {
+            if (palette[0] != 0) {
+                Arrays.fill(array, palette[0]);
+            }
+            return array;
+        }
+        int mask = (1 << bits) - 1;
+        int perLong = 64 / bits;
+        int index = 0;
+        for (long word : data) {
+            for (int i = 0; i < perLong; i++, word >>>= bits) {
+                array[index++] = palette[(int) word & mask];
+            }
+        }
+        return array;
+    }
+
+    public PaletteCharArray copy() {
+        PaletteCharArray copy = new PaletteCharArray();
+        copy.palette = palette == null ? null : palette.clone();
+        copy.paletteSize = paletteSize;
+        copy.bits = bits;
+        copy.data = data == null ? null : data.clone();
+        copy.raw = raw == null ? null : raw.clone();
+        copy.lastValue = lastValue;
+        copy.lastIndex = lastIndex;
+        return copy;
+    }
+
+    private int indexOf(char value) {
+        if (value == lastValue) {
+            return lastIndex;
+        }
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == value) {
+                lastValue = value;
+                lastIndex = i;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int add(char value) {
+        if (paletteSize == MAX_PALETTE) {
+            char[] array = toArray(false);
+            palette = null;
+            data = null;
+            raw = array;
+            return -1;
+        }
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, paletteSize << 1);
+        }
+        int paletteIndex = paletteSize++;
+        palette[paletteIndex] = value;
+        int newBits = getBits(paletteSize);
+        if (newBits != bits) {
+            resize(newBits);
+        }
+        lastValue = value;
+        lastIndex = paletteIndex;
+        return paletteIndex;
+    }
+
+    private static int getBits(int size) {
+        if (size <= 2) return 1;
+        if (size <= 4) return 2;
+        if (size <= 16) return 4;
+        return 8;
+    }
+
+    private void resize(int newBits) {
+        long[] newData = new long[(SIZE * newBits) >> 6];
+        if (bits != 0) {
+            int mask = (1 << bits) - 1;
+            for (int i = 0; i < SIZE; i++) {
+                int bitIndex = i * bits;
+                int paletteIndex = (int) (data[bitIndex >> 6] >>> (bitIndex & 63)) & mask;
+                write(newData, newBits, i, paletteIndex);
+            }
+        }
+        // If it was a single value, every index is already 0
+        data = newData;
+        bits = newBits;
+    }
+
+    private static void write(long[] data, int bits, int index, int paletteIndex) {
+        int bitIndex = index * bits;
+        int shift = bitIndex & 63;
+        int i = bitIndex >> 6;
+        long mask = ((1L << bits) - 1) << shift;
+        data[i] = (data[i] & ~mask) | (((long) paletteIndex << shift) & mask);
+    }
+}
@@ -0,0 +1,94 @@
+package com.boydti.fawe.object.collection;
+
+import com.boydti.fawe.util.MathMan;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.Map;
+
+/**
+ * A set of world block positions stored as one 4096 bit array per 16x16x16 section
+ * - Uses 512 bytes per touched section and no allocation per block
+ * - Not thread safe
+ */
+public final class SectionBitSet {
+    private final Long2ObjectOpenHashMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+    private long lastKey = Long.MIN_VALUE;
+    private long[] lastBits;
+
+    private long[] getBits(int x, int y, int z, boolean create) {
+        long key = MathMan.tripleWorldCoord(x >> 4, y >> 4, z >> 4);
+        if (key == lastKey) {
+            return lastBits;
+        }
+        long[] bits = sections.get(key);
+        if (bits == null) {
+            if (!create) {
+                return null;
+            }
+            bits = new long[64];
+            sections.put(key, bits);
+        }
+        lastKey = key;
+        lastBits = bits;
+        return bits;
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Add a position
+     *
+     * @return true if the position wasn't already in the set
+     */
+    public boolean add(int x, int y, int z) {
+        long[] bits = getBits(x, y, z, true);
+        int index = index(x, y, z);
+        long bit = 1L << index;
+        int word = index >> 6;
+        long value = bits[word];
+        if ((value & bit) != 0) {
+            return false;
+        }
+        bits[word] = value | bit;
+        return true;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        long[] bits = getBits(x, y, z, false);
+        if (bits == null) {
+            return false;
+        }
+        int index = index(x, y, z);
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Add all the positions from another set
+     *
+     * @param other
+     */
+    public void addAll(SectionBitSet other) {
+        for (Map.Entry<Long, long[]> entry : other.sections.entrySet()) {
+            long[] bits = sections.get((long) entry.getKey());
+            long[] otherBits = entry.getValue();
+            if (bits == null) {
+                sections.put((long) entry.getKey(), otherBits.clone());
+            } else {
+                for (int i = 0; i < bits.length; i++) {
+                    bits[i] |= otherBits[i];
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    public void clear() {
+        sections.clear();
+        lastKey = Long.MIN_VALUE;
+        lastBits = null;
+    }
+}
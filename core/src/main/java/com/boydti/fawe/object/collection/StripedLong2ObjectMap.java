@@ -0,0 +1,367 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent long -> Object map for many threads reading and writing at once
+ * - Keys are spread over a number of stripes, each an open addressing table with its own lock
+ * - Reads are optimistic and don't lock unless a write happened at the same time
+ * - Iteration is weakly consistent (per stripe)
+ *
+ * @param <V>
+ */
+public class StripedLong2ObjectMap<V> {
+    private final Stripe<V>[] stripes;
+    private final int stripeMask;
+    private int pollIndex;
+
+    public StripedLong2ObjectMap() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public StripedLong2ObjectMap(int concurrency) {
+        int size = Integer.highestOneBit(Math.max(1, Math.min(256, concurrency) - 1) << 1);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = size - 1;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h ^= h >>> 16;
+        return (int) h;
+    }
+
+    private Stripe<V> stripe(int hash) {
+        return stripes[(hash >>> 24) & stripeMask];
+    }
+
+    public V get(long key) {
+        int hash = mix(key);
+        return stripe(hash).get(key, hash);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get the value for a key, or atomically create it if there is none
+     *
+     * @param key
+     * @param create called (at most once) under the stripe lock if the key is absent
+     * @return the existing or created value
+     */
+    public V computeIfAbsent(long key, LongFunction<V> create) {
+        int hash = mix(key);
+        Stripe<V> stripe = stripe(hash);
+        V value = stripe.get(key, hash);
+        if (value != null) {
+            return value;
+        }
+        return stripe.computeIfAbsent(key, hash, create);
+    }
+
+    public V putIfAbsent(long key, V value) {
+        int hash = mix(key);
+        return stripe(hash).put(key, hash, value, true);
+    }
+
+    public V put(long key, V value) {
+        int hash = mix(key);
+        return stripe(hash).put(key, hash, value, false);
+    }
+
+    public V remove(long key) {
+        int hash = mix(key);
+        return stripe(hash).remove(key, hash, null);
+    }
+
+    public boolean remove(long key, V value) {
+        int hash = mix(key);
+        return stripe(hash).remove(key, hash, value) != null;
+    }
+
+    /**
+     * Remove and return any value which doesn't match the filter
+     *
+     * @param skip values to leave in the map (may be null)
+     * @return a removed value, or null if there are none
+     */
+    public V poll(Predicate<V> skip) {
+        int start = pollIndex;
+        for (int i = 0; i < stripes.length; i++) {
+            int index = (start + i) & stripeMask;
+            V value = stripes[index].poll(skip);
+            if (value != null) {
+                pollIndex = index;
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Stripe<V> stripe : stripes) {
+            if (stripe.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    public void forEach(Consumer<V> onEach) {
+        for (Stripe<V> stripe : stripes) {
+            for (V value : stripe.values()) {
+                onEach.accept(value);
+            }
+        }
+    }
+
+    public List<V> values() {
+        ArrayList<V> list = new ArrayList<>(size());
+        for (Stripe<V> stripe : stripes) {
+            list.addAll(stripe.values());
+        }
+        return list;
+    }
+
+    private static final class Stripe<V> {
+        private static final int MIN_CAPACITY = 16;
+
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[MIN_CAPACITY];
+        private Object[] values = new Object[MIN_CAPACITY];
+        private volatile int size;
+        private int pollIndex;
+
+        private V get(long key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long[] keys = this.keys;
+                Object[] values = this.values;
+                Object value = find(keys, values, key, hash);
+                if (lock.validate(stamp)) {
+                    return (V) value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return (V) find(keys, values, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static Object find(long[] keys, Object[] values, long key, int hash) {
+            // Arrays are read as a pair, a concurrent resize can leave them with different lengths
+            int mask = Math.min(keys.length, values.length) - 1;
+            int i = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private int indexOf(long key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return ~i;
+        }
+
+        private V computeIfAbsent(long key, int hash, LongFunction<V> create) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(key, hash);
+                if (index >= 0) {
+                    return (V) values[index];
+                }
+                V value = create.apply(key);
+                if (value != null) {
+                    insert(~index, key, value);
+                }
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private V put(long key, int hash, V value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(key, hash);
+                if (index >= 0) {
+                    V previous = (V) values[index];
+                    if (!onlyIfAbsent) {
+                        values[index] = value;
+                    }
+                    return previous;
+                }
+                insert(~index, key, value);
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void insert(int index, long key, Object value) {
+            keys[index] = key;
+            values[index] = value;
+            int newSize = size + 1;
+            size = newSize;
+            if (newSize > (keys.length >> 1) + (keys.length >> 2)) {
+                rehash(keys.length << 1);
+            }
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                Object value = oldValues[i];
+                if (value != null) {
+                    long key = oldKeys[i];
+                    int j = mix(key) & mask;
+                    while (newValues[j] != null) {
+                        j = (j + 1) & mask;
+                    }
+                    newKeys[j] = key;
+                    newValues[j] = value;
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private V remove(long key, int hash, V expected) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(key, hash);
+                if (index < 0) {
+                    return null;
+                }
+                V previous = (V) values[index];
+                if (expected != null && previous != expected) {
+                    return null;
+                }
+                delete(index);
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private V poll(Predicate<V> skip) {
+            if (size == 0) {
+                return null;
+            }
+            long stamp = lock.writeLock();
+            try {
+                int length = values.length;
+                int mask = length - 1;
+                for (int i = 0; i < length; i++) {
+                    int index = (pollIndex + i) & mask;
+                    V value = (V) values[index];
+                    if (value != null && (skip == null || !skip.test(value))) {
+                        delete(index);
+                        pollIndex = index;
+                        return value;
+                    }
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Remove the entry at an index, shifting back any entries in the same probe sequence
+         */
+        private void delete(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            int i = index;
+            while (true) {
+                i = (i + 1) & mask;
+                Object value = values[i];
+                if (value == null) {
+                    break;
+                }
+                int ideal = mix(keys[i]) & mask;
+                // Move the entry back if the hole is between its ideal slot and its current slot
+                if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = value;
+                    hole = i;
+                }
+            }
+            values[hole] = null;
+            size = size - 1;
+        }
+
+        private void clear() {
+            long stamp = lock.writeLock();
+            try {
+                keys = new long[MIN_CAPACITY];
+                values = new Object[MIN_CAPACITY];
+                size = 0;
+                pollIndex = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private List<V> values() {
+            long stamp = lock.readLock();
+            try {
+                ArrayList<V> list = new ArrayList<>(size);
+                for (Object value : values) {
+                    if (value != null) {
+                        list.add((V) value);
+                    }
+                }
+                return list;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
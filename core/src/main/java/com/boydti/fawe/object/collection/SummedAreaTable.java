@@ -1,6 +1,10 @@
 package com.boydti.fawe.object.collection;
 
 import com.boydti.fawe.util.MathMan;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class SummedAreaTable {
     private final char[] source;
@@ -12,6 +16,17 @@ public class SummedAreaTable {
     private final float areaInverse;
     private final float[] areaInverses;
 
+    /**
+     * A table for any radius (see {@link #getAverage(int, int, int)})
+     *
+     * @param buffer
+     * @param matrix
+     * @param width
+     */
+    public SummedAreaTable(long[] buffer, char[] matrix, int width) {
+        this(buffer, matrix, width, 0);
+    }
+
     public SummedAreaTable(long[] buffer, char[] matrix, int width, int radius) {
         this.source = matrix;
         this.summed = buffer;
@@ -20,7 +35,7 @@ public class SummedAreaTable {
         this.radius = radius;
         this.area = MathMan.sqr(radius * 2 + 1);
         this.areaInverse = 1f / area;
-        this.areaInverses = new float[area - 2];
+        this.areaInverses = new float[Math.max(0, area - 2)];
         for (int area = 2; area < this.area; area++) {
             this.areaInverses[area - 2] = 1f / area;
         }
@@ -38,6 +53,92 @@ public class SummedAreaTable {
         }
     }
 
+    /**
+     * Build the table using a pool<br>
+     * - Each row band sums its rows, then each column band sums its columns
+     *
+     * @param pool
+     * @param bands the number of tasks for each step
+     */
+    public void processSummedAreaTable(ForkJoinPool pool, int bands) {
+        int rowSize = source.length / width;
+        int rowsPerBand = Math.max(1, (rowSize + bands - 1) / bands);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(bands);
+        for (int start = 0; start < rowSize; start += rowsPerBand) {
+            final int minRow = start;
+            final int maxRow = Math.min(rowSize, start + rowsPerBand);
+            tasks.add(pool.submit(() -> {
+                for (int row = minRow; row < maxRow; row++) {
+                    int index = row * width;
+                    long total = 0;
+                    for (int col = 0; col < width; col++, index++) {
+                        total += source[index];
+                        summed[index] = total;
+                    }
+                }
+            }));
+        }
+        join(tasks);
+        int colsPerBand = Math.max(1, (width + bands - 1) / bands);
+        for (int start = 0; start < width; start += colsPerBand) {
+            final int minCol = start;
+            final int maxCol = Math.min(width, start + colsPerBand);
+            tasks.add(pool.submit(() -> {
+                for (int row = 1; row < rowSize; row++) {
+                    int index = row * width + minCol;
+                    for (int col = minCol; col < maxCol; col++, index++) {
+                        summed[index] += summed[index - width];
+                    }
+                }
+            }));
+        }
+        join(tasks);
+    }
+
+    private static void join(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Get the sum of a rectangle (inclusive)
+     */
+    public long getSum(int minX, int minZ, int maxX, int maxZ) {
+        int maxRow = maxZ * width;
+        long total = summed[maxRow + maxX];
+        if (minX > 0) {
+            total -= summed[maxRow + minX - 1];
+        }
+        if (minZ > 0) {
+            int minRow = (minZ - 1) * width;
+            total -= summed[minRow + maxX];
+            if (minX > 0) {
+                total += summed[minRow + minX - 1];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the average of the values within a radius (the square is clipped to the table)<br>
+     * - O(1) for any radius
+     *
+     * @param x
+     * @param z
+     * @param radius
+     * @return the rounded average
+     */
+    public int getAverage(int x, int z, int radius) {
+        int minX = Math.max(0, x - radius);
+        int minZ = Math.max(0, z - radius);
+        int maxX = Math.min(width - 1, x + radius);
+        int maxZ = Math.min(length - 1, z + radius);
+        long area = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        return (int) ((getSum(minX, minZ, maxX, maxZ) + (area >> 1)) / area);
+    }
+
     private long getSum(int index) {
         if (index < 0) return 0;
         return summed[index];
@@ -1,15 +1,19 @@
 package com.boydti.fawe.object.extent;
 
 import com.boydti.fawe.object.FaweLimit;
+import com.boydti.fawe.regions.RegionIndex;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.regions.Region;
 import java.util.Arrays;
 import java.util.Collection;
 
 public class MultiRegionExtent extends FaweRegionExtent {
+    // Regions to have before a block is looked up by chunk instead of testing each region
+    private static final int INDEX_REGIONS = 8;
 
     private Region region;
     private final Region[] regions;
+    private final RegionIndex regionIndex;
     private int index;
 
     /**
@@ -22,10 +26,14 @@ public class MultiRegionExtent extends FaweRegionExtent {
         this.index = 0;
         this.region = regions[0];
         this.regions = regions;
+        this.regionIndex = regions.length >= INDEX_REGIONS ? new RegionIndex(regions) : null;
     }
 
     @Override
     public boolean contains(int x, int y, int z) {
+        if (regionIndex != null) {
+            return regionIndex.contains(x, y, z);
+        }
         if (region.contains(x, y, z)) {
             return true;
         }
@@ -44,6 +52,9 @@ public class MultiRegionExtent extends FaweRegionExtent {
 
     @Override
     public boolean contains(int x, int z) {
+        if (regionIndex != null) {
+            return regionIndex.contains(x, z);
+        }
         if (region.contains(x, z)) {
             return true;
         }
@@ -23,6 +23,11 @@ public class AbstractDelegateMask extends AbstractMask {
         return mask.test(vector);
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        return mask.test(x, y, z);
+    }
+
     @Nullable
     @Override
     public Mask2D toMask2D() {
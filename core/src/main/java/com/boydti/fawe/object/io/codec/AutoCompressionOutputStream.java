@@ -0,0 +1,165 @@
+package com.boydti.fawe.object.io.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffer the start of a stream, then compress it with the codec which best fits the sample<br>
+ * - Each candidate compresses the sample, and the smallest which is faster than the target speed is used (or else the fastest)<br>
+ * - With a fixed codec, the sample is only used to train a zstd dictionary<br>
+ * - Block change samples are given to {@link ZstdDictionaries} until a dictionary has been trained
+ */
+public class AutoCompressionOutputStream extends OutputStream {
+    // The codec and level of each candidate, from best ratio to fastest
+    private static final CompressionCodec[] CODECS = {CompressionCodecs.ZSTD, CompressionCodecs.ZSTD, CompressionCodecs.LZ4_HIGH, CompressionCodecs.LZ4, CompressionCodecs.NONE};
+    private static final int[] LEVELS = {9, 3, 9, 1, 0};
+
+    private final OutputStream parent;
+    private final int targetMBps;
+    private final boolean dictionary;
+    private final int bufferSize;
+    private final CompressionCodec fixedCodec;
+    private final int fixedLevel;
+
+    private byte[] sample;
+    private int count;
+    private OutputStream out;
+
+    /**
+     * @param parent
+     * @param sampleSize the bytes to buffer before picking a codec
+     * @param targetMBps the minimum compression speed
+     * @param dictionary if the stream can use (and train) a zstd dictionary
+     * @param bufferSize
+     */
+    public AutoCompressionOutputStream(OutputStream parent, int sampleSize, int targetMBps, boolean dictionary, int bufferSize) {
+        this(parent, sampleSize, targetMBps, dictionary, bufferSize, null, 0);
+    }
+
+    /**
+     * @param fixedCodec the codec to use, or null to pick one from the sample
+     * @param fixedLevel the level of the fixed codec
+     */
+    public AutoCompressionOutputStream(OutputStream parent, int sampleSize, int targetMBps, boolean dictionary, int bufferSize, CompressionCodec fixedCodec, int fixedLevel) {
+        this.parent = parent;
+        this.sample = new byte[Math.max(1, sampleSize)];
+        this.targetMBps = targetMBps;
+        this.dictionary = dictionary;
+        this.bufferSize = bufferSize;
+        this.fixedCodec = fixedCodec;
+        this.fixedLevel = fixedLevel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out != null) {
+            out.write(b);
+            return;
+        }
+        sample[count++] = (byte) b;
+        if (count == sample.length) {
+            start();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (out == null && len > 0) {
+            int amount = Math.min(len, sample.length - count);
+            System.arraycopy(b, off, sample, count, amount);
+            count += amount;
+            off += amount;
+            len -= amount;
+            if (count == sample.length) {
+                start();
+            }
+        }
+        if (len > 0) {
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Pick a codec using whatever has been sampled
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out == null) {
+            start();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            start();
+        }
+        out.close();
+    }
+
+    private void start() throws IOException {
+        int dictionaryId = 0;
+        byte[] dict = null;
+        if (dictionary) {
+            dictionaryId = ZstdDictionaries.getCurrent();
+            if (dictionaryId == 0) {
+                ZstdDictionaries.addSample(sample, 0, count);
+            } else {
+                dict = ZstdDictionaries.get(dictionaryId);
+            }
+        }
+        CompressionCodec codec = fixedCodec;
+        int level = fixedLevel;
+        if (codec == null) {
+            int best = -1;
+            long bestSize = Long.MAX_VALUE;
+            int fastest = CODECS.length - 1;
+            long fastestTime = Long.MAX_VALUE;
+            for (int i = 0; i < CODECS.length; i++) {
+                CompressionCodec candidate = CODECS[i];
+                if (!candidate.isAvailable()) {
+                    continue;
+                }
+                CountingOutputStream counter = new CountingOutputStream();
+                long start = System.nanoTime();
+                try (OutputStream os = candidate.compress(counter, LEVELS[i], candidate == CompressionCodecs.ZSTD ? dict : null, bufferSize)) {
+                    os.write(sample, 0, count);
+                }
+                long time = Math.max(1, System.nanoTime() - start);
+                // bytes per nanosecond * 1000 = MB/s
+                if (count * 1000L >= (long) targetMBps * time && counter.size < bestSize) {
+                    best = i;
+                    bestSize = counter.size;
+                }
+                if (time < fastestTime) {
+                    fastest = i;
+                    fastestTime = time;
+                }
+            }
+            int index = best != -1 ? best : fastest;
+            codec = CODECS[index];
+            level = LEVELS[index];
+        }
+        if (codec != CompressionCodecs.ZSTD) {
+            dictionaryId = 0;
+        }
+        out = CompressionCodecs.compress(parent, codec, level, dictionaryId, bufferSize);
+        out.write(sample, 0, count);
+        sample = null;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long size;
+
+        @Override
+        public void write(int b) {
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            size += len;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.boydti.fawe.object.io.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression algorithm which can be used for history and clipboard streams<br>
+ * - Codecs are looked up by id when a stream is read (see {@link CompressionCodecs})<br>
+ * - The id is written to each stream, so it must never change once released
+ */
+public abstract class CompressionCodec {
+    private final int id;
+    private final String name;
+    private final int minLevel;
+    private final int maxLevel;
+
+    public CompressionCodec(int id, String name, int minLevel, int maxLevel) {
+        this.id = id;
+        this.name = name;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int clampLevel(int level) {
+        return Math.max(minLevel, Math.min(maxLevel, level));
+    }
+
+    /**
+     * @return if the codec can be used on this platform (e.g. the native library loaded)
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    public boolean supportsDictionary() {
+        return false;
+    }
+
+    /**
+     * @param os
+     * @param level a level between the min and max level
+     * @param dictionary the dictionary, or null (only if {@link #supportsDictionary()})
+     * @param buffer the block size
+     * @return
+     * @throws IOException
+     */
+    public abstract OutputStream compress(OutputStream os, int level, byte[] dictionary, int buffer) throws IOException;
+
+    /**
+     * @param is
+     * @param dictionary the dictionary the stream was written with, or null
+     * @param buffer the block size
+     * @return
+     * @throws IOException
+     */
+    public abstract InputStream decompress(InputStream is, byte[] dictionary, int buffer) throws IOException;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,289 @@
+package com.boydti.fawe.object.io.codec;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
+import com.boydti.fawe.object.io.PGZIPOutputStream;
+import com.boydti.fawe.object.io.zstd.ZstdFrameInputStream;
+import com.boydti.fawe.object.io.zstd.ZstdFrameOutputStream;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * The registered compression codecs, and the header written before a codec stream<br>
+ * - Header: {@link #HEADER}, version, codec id, level, dictionary id (int, 0 for none)<br>
+ * - Streams written by {@link com.boydti.fawe.util.MainUtil#getCompressedOS(OutputStream, int, int)} start with a byte from 0 to 19, so both can be read by {@link com.boydti.fawe.util.MainUtil#getCompressedIS(InputStream)}
+ */
+public class CompressionCodecs {
+    public static final int HEADER = 64;
+    public static final int VERSION = 1;
+
+    private static final Map<Integer, CompressionCodec> BY_ID = new ConcurrentHashMap<>();
+    private static final Map<String, CompressionCodec> BY_NAME = new ConcurrentHashMap<>();
+
+    public static final CompressionCodec NONE = new CompressionCodec(0, "none", 0, 0) {
+        @Override
+        public OutputStream compress(OutputStream os, int level, byte[] dictionary, int buffer) {
+            return os;
+        }
+
+        @Override
+        public InputStream decompress(InputStream is, byte[] dictionary, int buffer) {
+            return is;
+        }
+    };
+
+    public static final CompressionCodec LZ4 = new CompressionCodec(1, "lz4", 1, 1) {
+        @Override
+        public OutputStream compress(OutputStream os, int level, byte[] dictionary, int buffer) {
+            return new LZ4BlockOutputStream(os, buffer, LZ4Factory.fastestInstance().fastCompressor());
+        }
+
+        @Override
+        public InputStream decompress(InputStream is, byte[] dictionary, int buffer) {
+            return new LZ4BlockInputStream(is);
+        }
+    };
+
+    public static final CompressionCodec LZ4_HIGH = new CompressionCodec(2, "lz4-high", 1, 17) {
+        @Override
+        public OutputStream compress(OutputStream os, int level, byte[] dictionary, int buffer) {
+            return new LZ4BlockOutputStream(os, buffer, LZ4Factory.fastestInstance().highCompressor(level));
+        }
+
+        @Override
+        public InputStream decompress(InputStream is, byte[] dictionary, int buffer) {
+            return new LZ4BlockInputStream(is);
+        }
+    };
+
+    private static Boolean nativeZstd;
+
+    // The most the java zstd stream buffers per frame (one zstd block), so legacy history streams don't each hold ~1MB
+    private static final int JAVA_ZSTD_FRAME_SIZE = 1 << 17;
+
+    /**
+     * Zstd uses the native library if it loads, otherwise the pure java {@link ZstdFrameOutputStream} / {@link ZstdFrameInputStream}<br>
+     * - Dictionaries need the native library<br>
+     * - The java decoder can't read native streams with a window over 8MB (levels above ~18)
+     */
+    public static final CompressionCodec ZSTD = new CompressionCodec(3, "zstd", 1, 22) {
+        @Override
+        public boolean supportsDictionary() {
+            return isNativeZstd();
+        }
+
+        @Override
+        public OutputStream compress(OutputStream os, int level, byte[] dictionary, int buffer) throws IOException {
+            if (!isNativeZstd()) {
+                if (dictionary != null) {
+                    throw new IOException("Zstd dictionaries need the native library");
+                }
+                return new ZstdFrameOutputStream(os, level, Math.max(1 << 16, Math.min(buffer, JAVA_ZSTD_FRAME_SIZE)));
+            }
+            ZstdOutputStream zstd = new ZstdOutputStream(os, level);
+            if (dictionary != null) {
+                zstd.setDict(dictionary);
+            }
+            return zstd;
+        }
+
+        @Override
+        public InputStream decompress(InputStream is, byte[] dictionary, int buffer) throws IOException {
+            if (!isNativeZstd()) {
+                if (dictionary != null) {
+                    throw new IOException("Zstd dictionaries need the native library");
+                }
+                return new ZstdFrameInputStream(is);
+            }
+            ZstdInputStream zstd = new ZstdInputStream(is);
+            if (dictionary != null) {
+                zstd.setDict(dictionary);
+            }
+            return zstd;
+        }
+    };
+
+    public static final CompressionCodec GZIP = new CompressionCodec(4, "gzip", 1, 9) {
+        @Override
+        public OutputStream compress(OutputStream os, int level, byte[] dictionary, int buffer) throws IOException {
+            PGZIPOutputStream gzip = new PGZIPOutputStream(os);
+            gzip.setLevel(level);
+            return gzip;
+        }
+
+        @Override
+        public InputStream decompress(InputStream is, byte[] dictionary, int buffer) throws IOException {
+            return new BufferedInputStream(new GZIPInputStream(is, buffer), buffer);
+        }
+    };
+
+    static {
+        register(NONE);
+        register(LZ4);
+        register(LZ4_HIGH);
+        register(ZSTD);
+        register(GZIP);
+    }
+
+    /**
+     * Register a codec
+     *
+     * @param codec
+     * @throws IllegalArgumentException if the id or name is already used
+     */
+    public static synchronized void register(CompressionCodec codec) {
+        String name = codec.getName().toLowerCase(Locale.ROOT);
+        if (BY_ID.containsKey(codec.getId()) || BY_NAME.containsKey(name)) {
+            throw new IllegalArgumentException("Codec already registered: " + codec.getId() + "/" + name);
+        }
+        BY_ID.put(codec.getId(), codec);
+        BY_NAME.put(name, codec);
+    }
+
+    public static CompressionCodec get(int id) {
+        return BY_ID.get(id);
+    }
+
+    /**
+     * @param name the name (case insensitive, `_` is the same as `-`)
+     * @return the codec, or null
+     */
+    public static CompressionCodec get(String name) {
+        return BY_NAME.get(name.toLowerCase(Locale.ROOT).replace('_', '-'));
+    }
+
+    public static Collection<CompressionCodec> getCodecs() {
+        return Collections.unmodifiableCollection(BY_ID.values());
+    }
+
+    /**
+     * @return if the native zstd library loaded (and natives aren't disabled)
+     */
+    public static boolean isNativeZstd() {
+        Boolean value = nativeZstd;
+        if (value == null) {
+            if (Settings.IMP.EXPERIMENTAL.DISABLE_NATIVES) {
+                value = false;
+            } else {
+                try {
+                    com.github.luben.zstd.util.Native.load();
+                    value = true;
+                } catch (Throwable ignore) {
+                    value = false;
+                }
+            }
+            nativeZstd = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return if history uses a codec, rather than the legacy compression level
+     */
+    public static boolean isConfigured() {
+        return !"legacy".equalsIgnoreCase(Settings.IMP.HISTORY.COMPRESSION_CODEC);
+    }
+
+    /**
+     * Get a history stream compressed with the configured codec
+     *
+     * @param os
+     * @param blocks if the stream is block changes (which can use a trained dictionary)
+     * @return
+     * @throws IOException
+     */
+    public static FaweOutputStream getHistoryOS(OutputStream os, boolean blocks) throws IOException {
+        Settings.HISTORY settings = Settings.IMP.HISTORY;
+        int buffer = settings.BUFFER_SIZE;
+        boolean dictionary = blocks && settings.ZSTD_DICTIONARY && isNativeZstd();
+        if ("auto".equalsIgnoreCase(settings.COMPRESSION_CODEC)) {
+            AutoCompressionOutputStream auto = new AutoCompressionOutputStream(os, settings.AUTO_SAMPLE_KB << 10, settings.AUTO_TARGET_MBPS, dictionary, buffer);
+            return new FaweOutputStream(new BufferedOutputStream(auto, buffer));
+        }
+        CompressionCodec codec = get(settings.COMPRESSION_CODEC);
+        if (codec == null || !codec.isAvailable()) {
+            codec = LZ4;
+        }
+        if (dictionary && codec == ZSTD) {
+            int dictionaryId = ZstdDictionaries.getCurrent();
+            if (dictionaryId == 0) {
+                // Sample the stream to train a dictionary
+                AutoCompressionOutputStream sampled = new AutoCompressionOutputStream(os, settings.AUTO_SAMPLE_KB << 10, 0, true, buffer, codec, settings.CODEC_LEVEL);
+                return new FaweOutputStream(new BufferedOutputStream(sampled, buffer));
+            }
+            return getCompressedOS(os, codec, settings.CODEC_LEVEL, dictionaryId, buffer);
+        }
+        return getCompressedOS(os, codec, settings.CODEC_LEVEL, 0, buffer);
+    }
+
+    /**
+     * Write a codec header, and get the compressed stream
+     *
+     * @param os
+     * @param codec
+     * @param level
+     * @param dictionary the dictionary id, or 0
+     * @param buffer
+     * @return
+     * @throws IOException
+     */
+    public static FaweOutputStream getCompressedOS(OutputStream os, CompressionCodec codec, int level, int dictionary, int buffer) throws IOException {
+        return new FaweOutputStream(new BufferedOutputStream(compress(os, codec, level, dictionary, buffer), buffer));
+    }
+
+    static OutputStream compress(OutputStream os, CompressionCodec codec, int level, int dictionary, int buffer) throws IOException {
+        level = codec.clampLevel(level);
+        os.write(HEADER);
+        os.write(VERSION);
+        os.write(codec.getId());
+        os.write(level);
+        os.write(dictionary >>> 24);
+        os.write(dictionary >>> 16);
+        os.write(dictionary >>> 8);
+        os.write(dictionary);
+        byte[] dict = dictionary == 0 ? null : ZstdDictionaries.get(dictionary);
+        return codec.compress(new BufferedOutputStream(os, buffer), level, dict, buffer);
+    }
+
+    /**
+     * Read a stream with a codec header
+     *
+     * @param is a stream where the {@link #HEADER} byte has already been read
+     * @param buffer
+     * @return
+     * @throws IOException
+     */
+    public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws IOException {
+        DataInputStream header = new DataInputStream(is);
+        int version = header.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported compression header version: " + version);
+        }
+        int id = header.readUnsignedByte();
+        CompressionCodec codec = get(id);
+        if (codec == null) {
+            throw new IOException("Unknown compression codec: " + id);
+        }
+        header.readUnsignedByte(); // level
+        int dictionary = header.readInt();
+        byte[] dict = dictionary == 0 ? null : ZstdDictionaries.get(dictionary);
+        is = new BufferedInputStream(is, buffer);
+        return new FaweInputStream(codec.decompress(is, dict, buffer));
+    }
+}
@@ -0,0 +1,160 @@
+package com.boydti.fawe.object.io.codec;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.TaskManager;
+import com.github.luben.zstd.ZstdDictTrainer;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Zstd dictionaries trained from the start of block change streams<br>
+ * - Small streams (e.g. a brush stroke) compress much better with a dictionary<br>
+ * - A dictionary is saved as `<id>.zdict` and is needed to read any stream written with it, so they are never deleted<br>
+ * - The newest dictionary is used for new streams
+ */
+public class ZstdDictionaries {
+    private static final int DICTIONARY_SIZE = 1 << 16;
+    // Zstd recommends about 100x the dictionary size of samples
+    private static final int SAMPLE_BYTES = DICTIONARY_SIZE * 100;
+    private static final String EXTENSION = ".zdict";
+
+    private static final Map<Integer, byte[]> LOADED = new ConcurrentHashMap<>();
+    private static final List<byte[]> SAMPLES = new ArrayList<>();
+    private static int sampled;
+    private static boolean training;
+    // The dictionary for new streams, 0 for none, or -1 if the folder hasn't been checked
+    private static volatile int current = -1;
+
+    public static File getFolder() {
+        return MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.DICTIONARIES);
+    }
+
+    /**
+     * @param id
+     * @return the dictionary
+     * @throws IOException if it can't be read
+     */
+    public static byte[] get(int id) throws IOException {
+        byte[] dictionary = LOADED.get(id);
+        if (dictionary == null) {
+            File file = new File(getFolder(), id + EXTENSION);
+            if (!file.exists()) {
+                throw new FileNotFoundException("Missing zstd dictionary: " + file);
+            }
+            dictionary = Files.readAllBytes(file.toPath());
+            LOADED.put(id, dictionary);
+        }
+        return dictionary;
+    }
+
+    /**
+     * @return the id of the dictionary to use for new streams, or 0 if none has been trained
+     */
+    public static int getCurrent() {
+        int id = current;
+        if (id == -1) {
+            synchronized (ZstdDictionaries.class) {
+                id = current;
+                if (id == -1) {
+                    id = 0;
+                    long modified = Long.MIN_VALUE;
+                    File[] files = getFolder().listFiles((dir, name) -> name.endsWith(EXTENSION));
+                    if (files != null) {
+                        for (File file : files) {
+                            if (file.lastModified() > modified) {
+                                try {
+                                    id = Integer.parseInt(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+                                    modified = file.lastModified();
+                                } catch (NumberFormatException ignore) {}
+                            }
+                        }
+                    }
+                    current = id;
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Add a sample to train the first dictionary from (ignored once enough have been added)
+     *
+     * @param data
+     * @param off
+     * @param len
+     */
+    public static void addSample(byte[] data, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        final List<byte[]> samples;
+        synchronized (ZstdDictionaries.class) {
+            if (training || sampled >= SAMPLE_BYTES) {
+                return;
+            }
+            SAMPLES.add(Arrays.copyOfRange(data, off, off + len));
+            sampled += len;
+            if (sampled < SAMPLE_BYTES) {
+                return;
+            }
+            training = true;
+            samples = new ArrayList<>(SAMPLES);
+            SAMPLES.clear();
+        }
+        TaskManager.IMP.async(() -> {
+            boolean trained = false;
+            try {
+                current = train(samples);
+                trained = true;
+            } catch (Throwable e) {
+                MainUtil.handleError(e);
+            } finally {
+                synchronized (ZstdDictionaries.class) {
+                    training = false;
+                    if (!trained) {
+                        // Sample again, so training is retried
+                        sampled = 0;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Train a dictionary and save it
+     *
+     * @param samples
+     * @return the dictionary id
+     * @throws IOException
+     */
+    public static int train(List<byte[]> samples) throws IOException {
+        int size = 0;
+        for (byte[] sample : samples) {
+            size += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer(size, DICTIONARY_SIZE);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        byte[] dictionary = trainer.trainSamples();
+        CRC32 crc = new CRC32();
+        crc.update(dictionary);
+        // Positive and non zero, so it can't be confused with no dictionary
+        int id = Math.max(1, (int) (crc.getValue() & Integer.MAX_VALUE));
+        File folder = getFolder();
+        folder.mkdirs();
+        Files.write(new File(folder, id + EXTENSION).toPath(), dictionary);
+        LOADED.put(id, dictionary);
+        return id;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import static com.boydti.fawe.object.io.zstd.UnsafeUtil.UNSAFE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * Writes a bit stream which {@link BitStream} reads backwards<br>
+ * - Bits are added to a 64 bit container and written a long at a time<br>
+ * - At most 56 bits can be added between calls to {@link #flush()}
+ */
+class BitOutputStream
+{
+    private final Object outputBase;
+    private final long outputAddress;
+    private final long outputLimit;
+
+    private long container;
+    private int bitCount;
+    private long currentAddress;
+    private boolean overflow;
+
+    /**
+     * @param outputSize must be at least 8
+     */
+    public BitOutputStream(Object outputBase, long outputAddress, int outputSize)
+    {
+        this.outputBase = outputBase;
+        this.outputAddress = outputAddress;
+        this.outputLimit = outputAddress + outputSize - SIZE_OF_LONG;
+        this.currentAddress = outputAddress;
+        this.overflow = outputSize < SIZE_OF_LONG;
+    }
+
+    public void addBits(long value, int bits)
+    {
+        container |= (value & ((1L << bits) - 1)) << bitCount;
+        bitCount += bits;
+    }
+
+    public void flush()
+    {
+        int bytes = bitCount >>> 3;
+        if (overflow) {
+            return;
+        }
+        UNSAFE.putLong(outputBase, currentAddress, container);
+        currentAddress += bytes;
+        if (currentAddress > outputLimit) {
+            overflow = true;
+        }
+        bitCount &= 7;
+        container = bytes == SIZE_OF_LONG ? 0 : container >>> (bytes << 3);
+    }
+
+    /**
+     * Add the end mark, and write the remaining bits
+     *
+     * @return the size of the stream, or 0 if it didn't fit
+     */
+    public int close()
+    {
+        addBits(1, 1);
+        flush();
+        if (overflow) {
+            return 0;
+        }
+        return (int) (currentAddress - outputAddress) + (bitCount > 0 ? 1 : 0);
+    }
+}
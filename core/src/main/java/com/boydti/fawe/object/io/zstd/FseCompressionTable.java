@@ -0,0 +1,234 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import java.util.Arrays;
+
+import static com.boydti.fawe.object.io.zstd.Util.highestBit;
+
+/**
+ * Encodes symbols with an FSE decoding table, so the encoder and decoder can never disagree<br>
+ * - Encoding symbol S from state T moves to the state of S whose range of next states contains T<br>
+ * - Symbols are encoded in reverse, so the first state the decoder reads is the last one written
+ */
+class FseCompressionTable
+{
+    private static final int MIN_TABLE_LOG = 5;
+    private static final int MAX_TABLE_LOG = 12;
+
+    private final int log2Size;
+    private final int[] newState;
+    private final byte[] numberOfBits;
+    // the state to move to, indexed by symbol << log2Size | current state
+    private final short[] transitions;
+    private final short[] initialStates;
+    private final int[] stateCounts;
+
+    public FseCompressionTable(FiniteStateEntropy.Table table, int maxSymbol)
+    {
+        int size = 1 << table.log2Size;
+        this.log2Size = table.log2Size;
+        this.newState = table.newState;
+        this.numberOfBits = table.numberOfBits;
+        this.transitions = new short[(maxSymbol + 1) << log2Size];
+        this.initialStates = new short[maxSymbol + 1];
+        this.stateCounts = new int[maxSymbol + 1];
+        Arrays.fill(initialStates, (short) -1);
+        for (int state = 0; state < size; state++) {
+            int symbol = table.symbol[state] & 0xFF;
+            if (symbol > maxSymbol) {
+                continue;
+            }
+            stateCounts[symbol]++;
+            int bits = numberOfBits[state];
+            int from = newState[state];
+            int offset = symbol << log2Size;
+            for (int next = from; next < from + (1 << bits); next++) {
+                transitions[offset + next] = (short) state;
+            }
+            // the decoder stops on the first state which reads past the stream, so start on a state which reads bits
+            int initial = initialStates[symbol];
+            if (initial == -1 || bits > numberOfBits[initial]) {
+                initialStates[symbol] = (short) state;
+            }
+        }
+    }
+
+    public int getLog2Size()
+    {
+        return log2Size;
+    }
+
+    public boolean canEncode(int symbol)
+    {
+        return symbol < stateCounts.length && stateCounts[symbol] != 0;
+    }
+
+    public int begin(int symbol)
+    {
+        return initialStates[symbol];
+    }
+
+    public int encode(BitOutputStream stream, int state, int symbol)
+    {
+        int next = transitions[(symbol << log2Size) | state];
+        stream.addBits(state - newState[next], numberOfBits[next]);
+        return next;
+    }
+
+    public void finish(BitOutputStream stream, int state)
+    {
+        stream.addBits(state, log2Size);
+    }
+
+    /**
+     * @return the approximate size in bits of encoding the symbols, or Long.MAX_VALUE if a symbol can't be encoded
+     */
+    public long estimateBits(int[] counts, int maxSymbol)
+    {
+        double bits = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            int count = counts[symbol];
+            if (count == 0) {
+                continue;
+            }
+            if (!canEncode(symbol)) {
+                return Long.MAX_VALUE;
+            }
+            bits += count * (log2Size - Math.log(stateCounts[symbol]) / Math.log(2));
+        }
+        return (long) Math.ceil(bits);
+    }
+
+    public static int optimalTableLog(int maxTableLog, int total, int maxSymbol)
+    {
+        int sourceBits = highestBit(total - 1) + 1;
+        int symbolBits = highestBit(maxSymbol) + 2;
+        int tableLog = Math.min(maxTableLog, sourceBits - 2);
+        tableLog = Math.max(tableLog, Math.min(sourceBits, symbolBits));
+        return Math.max(MIN_TABLE_LOG, Math.min(MAX_TABLE_LOG, Math.min(maxTableLog, tableLog)));
+    }
+
+    /**
+     * Scale the counts so they add up to the table size, keeping every used symbol at least 1
+     *
+     * @return the normalized counts
+     */
+    public static short[] normalize(int[] counts, int maxSymbol, int total, int tableLog)
+    {
+        short[] normalized = new short[maxSymbol + 1];
+        int size = 1 << tableLog;
+        int distributed = 0;
+        int largest = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            int count = counts[symbol];
+            if (count == 0) {
+                continue;
+            }
+            int value = Math.max(1, (int) ((long) count * size / total));
+            normalized[symbol] = (short) value;
+            distributed += value;
+            if (value > normalized[largest]) {
+                largest = symbol;
+            }
+        }
+        int remaining = size - distributed;
+        if (remaining >= 0 || normalized[largest] + remaining > 1) {
+            normalized[largest] += remaining;
+            return normalized;
+        }
+        // too many symbols were rounded up to 1, take the excess from every symbol above 1
+        while (remaining < 0) {
+            for (int symbol = 0; symbol <= maxSymbol && remaining < 0; symbol++) {
+                if (normalized[symbol] > 1) {
+                    normalized[symbol]--;
+                    remaining++;
+                }
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Write normalized counts in the format read by {@link FseTableReader}
+     *
+     * @return the number of bytes written
+     */
+    public static int writeNormalizedCounts(byte[] output, int outputOffset, short[] normalized, int maxSymbol, int tableLog)
+    {
+        int output0 = outputOffset;
+        int size = 1 << tableLog;
+        long bitStream = tableLog - MIN_TABLE_LOG;
+        int bitCount = 4;
+        int remaining = size + 1;
+        int threshold = size;
+        int bits = tableLog + 1;
+        int symbol = 0;
+        boolean previousIsZero = false;
+
+        while (symbol <= maxSymbol && remaining > 1) {
+            if (previousIsZero) {
+                int start = symbol;
+                while (normalized[symbol] == 0) {
+                    symbol++;
+                }
+                while (symbol >= start + 24) {
+                    start += 24;
+                    bitStream |= 0xFFFFL << bitCount;
+                    bitCount += 16;
+                    while (bitCount >= 8) {
+                        output[outputOffset++] = (byte) bitStream;
+                        bitStream >>>= 8;
+                        bitCount -= 8;
+                    }
+                }
+                while (symbol >= start + 3) {
+                    start += 3;
+                    bitStream |= 3L << bitCount;
+                    bitCount += 2;
+                }
+                bitStream |= (long) (symbol - start) << bitCount;
+                bitCount += 2;
+            }
+
+            int count = normalized[symbol++];
+            int max = (2 * threshold - 1) - remaining;
+            remaining -= Math.abs(count);
+            count++;
+            if (count >= threshold) {
+                count += max;
+            }
+            bitStream |= (long) count << bitCount;
+            bitCount += bits;
+            if (count < max) {
+                bitCount--;
+            }
+            previousIsZero = count == 1;
+            while (remaining < threshold) {
+                bits--;
+                threshold >>= 1;
+            }
+
+            while (bitCount >= 8) {
+                output[outputOffset++] = (byte) bitStream;
+                bitStream >>>= 8;
+                bitCount -= 8;
+            }
+        }
+        if (bitCount > 0) {
+            output[outputOffset++] = (byte) bitStream;
+        }
+        return outputOffset - output0;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import java.util.Arrays;
+
+import static com.boydti.fawe.object.io.zstd.UnsafeUtil.UNSAFE;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * A length limited canonical Huffman code, in the layout {@link Huffman} reads<br>
+ * - Codes are ordered by weight (longest first), then by symbol<br>
+ * - The weight of the last symbol isn't written, as the decoder can work it out
+ */
+class HuffmanCompressionTable
+{
+    public static final int MAX_CODE_LENGTH = 11;
+    private static final int MAX_FSE_WEIGHTS_LOG = 6;
+    private static final int MAX_DIRECT_WEIGHTS = 128;
+    private static final int MAX_FSE_WEIGHTS_SIZE = 127;
+
+    private final byte[] lengths = new byte[256];
+    private final int[] codes = new int[256];
+    private final byte[] weights = new byte[256];
+    private int maxSymbol;
+    private int maxLength;
+
+    private final FseTableReader reader = new FseTableReader();
+    private final FiniteStateEntropy.Table weightsTable = new FiniteStateEntropy.Table(MAX_FSE_WEIGHTS_LOG);
+    private final byte[] scratch = new byte[512];
+    private final int[] weightCounts = new int[MAX_CODE_LENGTH + 2];
+
+    // used while building the code
+    private final int[] sorted = new int[256];
+    private final long[] nodes = new long[512];
+    private final int[] parents = new int[512];
+    private final int[] bitCounts = new int[64];
+
+    /**
+     * Build a code for the symbols (at least two symbols must be used)
+     */
+    public void build(int[] counts, int maxSymbol)
+    {
+        this.maxSymbol = maxSymbol;
+        Arrays.fill(lengths, (byte) 0);
+
+        // symbols sorted by count, with the count in the high bits
+        int symbolCount = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (counts[symbol] != 0) {
+                nodes[symbolCount++] = ((long) counts[symbol] << 9) | symbol;
+            }
+        }
+        Arrays.sort(nodes, 0, symbolCount);
+        for (int i = 0; i < symbolCount; i++) {
+            sorted[i] = (int) (nodes[i] & 0x1FF);
+            nodes[i] >>>= 9;
+        }
+
+        // two queue Huffman: leaves are 0 .. symbolCount - 1, internal nodes follow in order of weight
+        int leaf = 0;
+        int internal = symbolCount;
+        int next = symbolCount;
+        while (next < 2 * symbolCount - 1) {
+            int a = leaf < symbolCount && (internal >= next || nodes[leaf] <= nodes[internal]) ? leaf++ : internal++;
+            int b = leaf < symbolCount && (internal >= next || nodes[leaf] <= nodes[internal]) ? leaf++ : internal++;
+            nodes[next] = nodes[a] + nodes[b];
+            parents[a] = next;
+            parents[b] = next;
+            next++;
+        }
+        int root = next - 1;
+        int[] depth = parents;
+        depth[root] = 0;
+        Arrays.fill(bitCounts, 0);
+        for (int node = root - 1; node >= 0; node--) {
+            depth[node] = depth[parents[node]] + 1;
+            if (node < symbolCount) {
+                bitCounts[depth[node]]++;
+            }
+        }
+
+        // limit the lengths, then repair the Kraft sum (as zlib does)
+        for (int length = bitCounts.length - 1; length > MAX_CODE_LENGTH; length--) {
+            bitCounts[MAX_CODE_LENGTH] += bitCounts[length];
+            bitCounts[length] = 0;
+        }
+        long kraft = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            kraft += (long) bitCounts[length] << (MAX_CODE_LENGTH - length);
+        }
+        for (long overflow = kraft - (1L << MAX_CODE_LENGTH); overflow > 0; overflow--) {
+            // a shorter leaf becomes the parent of itself and a leaf from the longest length
+            int length = MAX_CODE_LENGTH - 1;
+            while (bitCounts[length] == 0) {
+                length--;
+            }
+            bitCounts[length]--;
+            bitCounts[length + 1] += 2;
+            bitCounts[MAX_CODE_LENGTH]--;
+        }
+
+        // the most frequent symbols get the shortest codes
+        int index = symbolCount;
+        maxLength = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            for (int i = 0; i < bitCounts[length]; i++) {
+                lengths[sorted[--index]] = (byte) length;
+                maxLength = length;
+            }
+        }
+
+        // canonical codes, from the longest length (lowest weight) and lowest symbol
+        int start = 0;
+        for (int length = maxLength; length >= 1; length--) {
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (lengths[symbol] == length) {
+                    codes[symbol] = start >>> (maxLength - length);
+                    start += 1 << (maxLength - length);
+                }
+            }
+        }
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            weights[symbol] = (byte) (lengths[symbol] == 0 ? 0 : maxLength + 1 - lengths[symbol]);
+        }
+    }
+
+    /**
+     * @return the size in bits of the encoded literals
+     */
+    public long estimateBits(int[] counts)
+    {
+        long bits = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            bits += (long) counts[symbol] * lengths[symbol];
+        }
+        return bits;
+    }
+
+    /**
+     * Write the weights of every symbol but the last
+     *
+     * @return the number of bytes written, or 0 if the table couldn't be written
+     */
+    public int writeTable(Object outputBase, long outputAddress, int outputSize)
+    {
+        int count = maxSymbol;
+        if (count <= MAX_DIRECT_WEIGHTS) {
+            int size = 1 + (count + 1) / 2;
+            if (size > outputSize) {
+                return 0;
+            }
+            UNSAFE.putByte(outputBase, outputAddress, (byte) (127 + count));
+            for (int i = 0; i < count; i += 2) {
+                int value = weights[i] << 4 | (i + 1 < count ? weights[i + 1] : 0);
+                UNSAFE.putByte(outputBase, outputAddress + 1 + i / 2, (byte) value);
+            }
+            return size;
+        }
+        int size = compressWeights(count);
+        if (size == 0 || size + 1 > outputSize) {
+            return 0;
+        }
+        UNSAFE.putByte(outputBase, outputAddress, (byte) size);
+        UNSAFE.copyMemory(scratch, ARRAY_BYTE_BASE_OFFSET, outputBase, outputAddress + 1, size);
+        return size + 1;
+    }
+
+    // FSE with two interleaved states, written to scratch
+    private int compressWeights(int count)
+    {
+        Arrays.fill(weightCounts, 0);
+        int maxWeight = 0;
+        for (int i = 0; i < count; i++) {
+            weightCounts[weights[i]]++;
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        for (int weight = 0; weight <= maxWeight; weight++) {
+            if (weightCounts[weight] == count) {
+                // a single weight can't be encoded with FSE
+                return 0;
+            }
+        }
+        int tableLog = FseCompressionTable.optimalTableLog(MAX_FSE_WEIGHTS_LOG, count, maxWeight);
+        short[] normalized = FseCompressionTable.normalize(weightCounts, maxWeight, count, tableLog);
+        Arrays.fill(scratch, (byte) 0);
+        int headerSize = FseCompressionTable.writeNormalizedCounts(scratch, 0, normalized, maxWeight, tableLog);
+        reader.readFseTable(weightsTable, scratch, ARRAY_BYTE_BASE_OFFSET, ARRAY_BYTE_BASE_OFFSET + headerSize + 8, maxWeight, MAX_FSE_WEIGHTS_LOG);
+        FseCompressionTable table = new FseCompressionTable(weightsTable, maxWeight);
+
+        int streamSize = MAX_FSE_WEIGHTS_SIZE + 1 - headerSize;
+        if (streamSize < 8) {
+            return 0;
+        }
+        BitOutputStream stream = new BitOutputStream(scratch, ARRAY_BYTE_BASE_OFFSET + headerSize, streamSize + 8);
+        // the first state reads the even weights, the second the odd ones
+        int state1;
+        int state2;
+        if ((count & 1) == 0) {
+            state1 = table.begin(weights[count - 2]);
+            state2 = table.begin(weights[count - 1]);
+        }
+        else {
+            state1 = table.begin(weights[count - 1]);
+            state2 = table.begin(weights[count - 2]);
+        }
+        for (int i = count - 3; i >= 0; i--) {
+            if ((i & 1) == 0) {
+                state1 = table.encode(stream, state1, weights[i]);
+            }
+            else {
+                state2 = table.encode(stream, state2, weights[i]);
+            }
+            stream.flush();
+        }
+        table.finish(stream, state2);
+        table.finish(stream, state1);
+        int size = stream.close();
+        if (size == 0 || headerSize + size > MAX_FSE_WEIGHTS_SIZE) {
+            return 0;
+        }
+        return headerSize + size;
+    }
+
+    /**
+     * Encode the symbols as a single stream
+     *
+     * @return the compressed size, or 0 if it didn't fit
+     */
+    public int encode(Object outputBase, long outputAddress, int outputSize, byte[] input, int offset, int length)
+    {
+        BitOutputStream stream = new BitOutputStream(outputBase, outputAddress, outputSize);
+        int i = offset + length - 1;
+        // 4 symbols of at most 11 bits between each flush
+        int fast = offset + (length & 3) + 3;
+        while (i >= fast) {
+            int symbol = input[i] & 0xFF;
+            stream.addBits(codes[symbol], lengths[symbol]);
+            symbol = input[i - 1] & 0xFF;
+            stream.addBits(codes[symbol], lengths[symbol]);
+            symbol = input[i - 2] & 0xFF;
+            stream.addBits(codes[symbol], lengths[symbol]);
+            symbol = input[i - 3] & 0xFF;
+            stream.addBits(codes[symbol], lengths[symbol]);
+            stream.flush();
+            i -= 4;
+        }
+        while (i >= offset) {
+            int symbol = input[i--] & 0xFF;
+            stream.addBits(codes[symbol], lengths[symbol]);
+        }
+        return stream.close();
+    }
+}
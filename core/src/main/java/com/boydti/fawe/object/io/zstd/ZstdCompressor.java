@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.boydti.fawe.object.io.zstd.UnsafeUtil.getAddress;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * A pure Java zstd compressor, for when the native library isn't available<br>
+ * - Each call writes one frame, which {@link ZstdDecompressor} or native zstd can read<br>
+ * - Levels 1 and 2 use the fast strategy, higher levels search further with the greedy strategy<br>
+ * - Not thread safe (the match tables are reused between calls)
+ */
+public class ZstdCompressor
+{
+    public static final int DEFAULT_LEVEL = 3;
+    public static final int MAX_LEVEL = 22;
+
+    public enum Strategy
+    {
+        /**
+         * Only the last position with the same hash is tried
+         */
+        FAST,
+        /**
+         * Positions with the same hash are chained, and the longest match is used
+         */
+        GREEDY
+    }
+
+    private final ZstdFrameCompressor compressor;
+
+    public ZstdCompressor()
+    {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level 1 to {@link #MAX_LEVEL}
+     */
+    public ZstdCompressor(int level)
+    {
+        this(level <= 2 ? Strategy.FAST : Strategy.GREEDY, 1 << Math.min(8, (Math.max(1, Math.min(MAX_LEVEL, level)) + 1) / 2));
+    }
+
+    /**
+     * @param strategy
+     * @param searchDepth the most positions to try for each match (only used by {@link Strategy#GREEDY})
+     */
+    public ZstdCompressor(Strategy strategy, int searchDepth)
+    {
+        if (strategy == Strategy.FAST) {
+            compressor = new ZstdFrameCompressor(false, 16, 0, 1);
+        }
+        else {
+            compressor = new ZstdFrameCompressor(true, 16, searchDepth > 16 ? 17 : 16, Math.max(1, searchDepth));
+        }
+    }
+
+    public static int maxCompressedLength(int uncompressedSize)
+    {
+        return ZstdFrameCompressor.maxCompressedLength(uncompressedSize);
+    }
+
+    /**
+     * @return the compressed size
+     * @throws IllegalArgumentException if maxOutputLength is less than {@link #maxCompressedLength(int)}
+     */
+    public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+    {
+        verifyRange(input, inputOffset, inputLength);
+        verifyRange(output, outputOffset, maxOutputLength);
+
+        long inputAddress = ARRAY_BYTE_BASE_OFFSET + inputOffset;
+        long outputAddress = ARRAY_BYTE_BASE_OFFSET + outputOffset;
+
+        return compressor.compress(input, inputAddress, inputAddress + inputLength, output, outputAddress, outputAddress + maxOutputLength);
+    }
+
+    /**
+     * Compress the remaining input into the output (direct buffers are read and written in place)
+     */
+    public void compress(ByteBuffer input, ByteBuffer output)
+    {
+        Object inputBase;
+        long inputAddress;
+        long inputLimit;
+        if (input.isDirect()) {
+            inputBase = null;
+            long address = getAddress(input);
+            inputAddress = address + input.position();
+            inputLimit = address + input.limit();
+        }
+        else if (input.hasArray()) {
+            inputBase = input.array();
+            inputAddress = ARRAY_BYTE_BASE_OFFSET + input.arrayOffset() + input.position();
+            inputLimit = ARRAY_BYTE_BASE_OFFSET + input.arrayOffset() + input.limit();
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported input ByteBuffer implementation " + input.getClass().getName());
+        }
+
+        Object outputBase;
+        long outputAddress;
+        long outputLimit;
+        if (output.isDirect()) {
+            outputBase = null;
+            long address = getAddress(output);
+            outputAddress = address + output.position();
+            outputLimit = address + output.limit();
+        }
+        else if (output.hasArray()) {
+            outputBase = output.array();
+            outputAddress = ARRAY_BYTE_BASE_OFFSET + output.arrayOffset() + output.position();
+            outputLimit = ARRAY_BYTE_BASE_OFFSET + output.arrayOffset() + output.limit();
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported output ByteBuffer implementation " + output.getClass().getName());
+        }
+
+        // HACK: Assure JVM does not collect Slice wrappers while compressing (see ZstdDecompressor)
+        synchronized (input) {
+            synchronized (output) {
+                int written = compressor.compress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit);
+                input.position(input.limit());
+                output.position(output.position() + written);
+            }
+        }
+    }
+
+    private static void verifyRange(byte[] data, int offset, int length)
+    {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException("Invalid offset or length (" + offset + ", " + length + ") in array of length " + data.length);
+        }
+    }
+}
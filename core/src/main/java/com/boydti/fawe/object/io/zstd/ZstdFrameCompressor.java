@@ -0,0 +1,696 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import java.util.Arrays;
+
+import static com.boydti.fawe.object.io.zstd.UnsafeUtil.UNSAFE;
+import static com.boydti.fawe.object.io.zstd.Util.highestBit;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.COMPRESSED_BLOCK;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.COMPRESSED_LITERALS_BLOCK;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.DEFAULT_LITERALS_LENGTH_TABLE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.DEFAULT_MATCH_LENGTH_TABLE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.DEFAULT_OFFSET_CODES_TABLE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.LITERALS_LENGTH_BASE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.LITERALS_LENGTH_BITS;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.LITERALS_LENGTH_FSE_LOG;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.LONG_NUMBER_OF_SEQUENCES;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAGIC_NUMBER;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MATCH_LENGTH_BASE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MATCH_LENGTH_BITS;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MATCH_LENGTH_FSE_LOG;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAX_LITERALS_LENGTH_SYMBOL;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAX_MATCH_LENGTH_SYMBOL;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAX_OFFSET_CODE_SYMBOL;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.OFFSET_CODES_FSE_LOG;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.RAW_BLOCK;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.RAW_LITERALS_BLOCK;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.RLE_LITERALS_BLOCK;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SET_BASIC;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SET_COMPRESSED;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SET_RLE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Compresses single segment frames (the content size is always written, there is no checksum or dictionary)<br>
+ * - Matches are found with a hash table (fast) or hash chains (greedy)<br>
+ * - Only the most recent offset is repeated, and only after literals, so the offset history stays simple<br>
+ * - Blocks which don't compress are stored raw
+ */
+class ZstdFrameCompressor
+{
+    private static final int MAX_FRAME_HEADER_SIZE = 14;
+    private static final int MIN_MATCH = 4;
+    // a new offset costs more than repeating the last one, so short matches aren't worth it
+    private static final int MIN_GREEDY_MATCH = 6;
+    // keeps offset codes within the predefined table, and the frame readable by the native decoder's default limit
+    private static final int MAX_OFFSET = 1 << 27;
+    // bytes at the end of a block which aren't searched, so a long can always be read
+    private static final int SEARCH_MARGIN = SIZE_OF_LONG;
+    private static final int MIN_LITERALS_TO_COMPRESS = 64;
+    private static final int MAX_SINGLE_STREAM_LITERALS = 256;
+    private static final int MAX_SEQUENCES = MAX_BLOCK_SIZE / MIN_MATCH + 1;
+
+    private static final long PRIME_5_BYTES = 889523592379L;
+
+    private static final byte[] LITERALS_LENGTH_CODES = new byte[64];
+    private static final byte[] MATCH_LENGTH_CODES = new byte[128];
+
+    private static final FseCompressionTable DEFAULT_LITERALS_LENGTH = new FseCompressionTable(DEFAULT_LITERALS_LENGTH_TABLE, MAX_LITERALS_LENGTH_SYMBOL);
+    private static final FseCompressionTable DEFAULT_MATCH_LENGTH = new FseCompressionTable(DEFAULT_MATCH_LENGTH_TABLE, MAX_MATCH_LENGTH_SYMBOL);
+    private static final FseCompressionTable DEFAULT_OFFSET_CODES = new FseCompressionTable(DEFAULT_OFFSET_CODES_TABLE, MAX_OFFSET_CODE_SYMBOL);
+
+    static {
+        for (int code = 0, length = 0; length < LITERALS_LENGTH_CODES.length; length++) {
+            while (LITERALS_LENGTH_BASE[code + 1] <= length) {
+                code++;
+            }
+            LITERALS_LENGTH_CODES[length] = (byte) code;
+        }
+        for (int code = 0, length = 0; length < MATCH_LENGTH_CODES.length; length++) {
+            while (MATCH_LENGTH_BASE[code + 1] - 3 <= length) {
+                code++;
+            }
+            MATCH_LENGTH_CODES[length] = (byte) code;
+        }
+    }
+
+    private final boolean greedy;
+    private final int hashLog;
+    private final int chainLog;
+    private final int searchDepth;
+
+    private final int[] hashTable;
+    private final int[] chainTable;
+    private int nextToUpdate;
+    private int repeatOffset;
+    private int repeatOffsetBefore;
+
+    // the sequences of the current block
+    private final int[] literalLengths = new int[MAX_SEQUENCES];
+    private final int[] matchLengths = new int[MAX_SEQUENCES];
+    private final int[] offsetValues = new int[MAX_SEQUENCES];
+    private final byte[] literalLengthCodes = new byte[MAX_SEQUENCES];
+    private final byte[] matchLengthCodes = new byte[MAX_SEQUENCES];
+    private final byte[] offsetCodes = new byte[MAX_SEQUENCES];
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE + SIZE_OF_LONG];
+    private int sequenceCount;
+    private int literalCount;
+
+    private final int[] counts = new int[256];
+    private final byte[] scratch = new byte[512];
+    private final HuffmanCompressionTable huffman = new HuffmanCompressionTable();
+    private final FseTableReader reader = new FseTableReader();
+    private final FiniteStateEntropy.Table literalsLengthTable = new FiniteStateEntropy.Table(LITERALS_LENGTH_FSE_LOG);
+    private final FiniteStateEntropy.Table offsetCodesTable = new FiniteStateEntropy.Table(OFFSET_CODES_FSE_LOG);
+    private final FiniteStateEntropy.Table matchLengthTable = new FiniteStateEntropy.Table(MATCH_LENGTH_FSE_LOG);
+    // the literals length, offset code and match length tables picked for the current block
+    private final FseCompressionTable[] selected = new FseCompressionTable[3];
+    private long descriptionOutput;
+    private long descriptionLimit;
+
+    /**
+     * @param greedy if hash chains are searched, rather than only the last position with the same hash
+     * @param hashLog
+     * @param chainLog (only used when greedy)
+     * @param searchDepth the most positions to try from a chain (only used when greedy)
+     */
+    public ZstdFrameCompressor(boolean greedy, int hashLog, int chainLog, int searchDepth)
+    {
+        this.greedy = greedy;
+        this.hashLog = hashLog;
+        this.chainLog = chainLog;
+        this.searchDepth = searchDepth;
+        this.hashTable = new int[1 << hashLog];
+        this.chainTable = greedy ? new int[1 << chainLog] : null;
+    }
+
+    public static int maxCompressedLength(int uncompressedSize)
+    {
+        int blocks = Math.max(1, (uncompressedSize + MAX_BLOCK_SIZE - 1) / MAX_BLOCK_SIZE);
+        return MAX_FRAME_HEADER_SIZE + uncompressedSize + blocks * (int) SIZE_OF_BLOCK_HEADER;
+    }
+
+    /**
+     * @return the compressed size
+     */
+    public int compress(Object inputBase, long inputAddress, long inputLimit, Object outputBase, long outputAddress, long outputLimit)
+    {
+        int inputSize = (int) (inputLimit - inputAddress);
+        if (outputLimit - outputAddress < maxCompressedLength(inputSize)) {
+            throw new IllegalArgumentException("Max output length must be at least " + maxCompressedLength(inputSize));
+        }
+        Arrays.fill(hashTable, -1);
+        nextToUpdate = 0;
+        repeatOffset = 1;
+
+        long output = outputAddress;
+        output += writeFrameHeader(outputBase, output, inputSize);
+
+        long blockStart = inputAddress;
+        do {
+            int blockSize = (int) Math.min(MAX_BLOCK_SIZE, inputLimit - blockStart);
+            boolean lastBlock = blockStart + blockSize == inputLimit;
+            repeatOffsetBefore = repeatOffset;
+
+            int compressedSize = 0;
+            if (blockSize > MIN_MATCH + SEARCH_MARGIN) {
+                findSequences(inputBase, inputAddress, blockStart, blockStart + blockSize);
+                // only worth it if smaller than a raw block
+                compressedSize = encodeBlock(outputBase, output + SIZE_OF_BLOCK_HEADER, blockSize - 1);
+            }
+            int header;
+            if (compressedSize > 0) {
+                header = (lastBlock ? 1 : 0) | (COMPRESSED_BLOCK << 1) | (compressedSize << 3);
+            }
+            else {
+                header = (lastBlock ? 1 : 0) | (RAW_BLOCK << 1) | (blockSize << 3);
+                UNSAFE.copyMemory(inputBase, blockStart, outputBase, output + SIZE_OF_BLOCK_HEADER, blockSize);
+                compressedSize = blockSize;
+                // the offsets are only updated when the block is compressed
+                repeatOffset = repeatOffsetBefore;
+            }
+            putInt24(outputBase, output, header);
+            output += SIZE_OF_BLOCK_HEADER + compressedSize;
+            blockStart += blockSize;
+        }
+        while (blockStart < inputLimit);
+
+        return (int) (output - outputAddress);
+    }
+
+    private static int writeFrameHeader(Object outputBase, long output, long contentSize)
+    {
+        UNSAFE.putInt(outputBase, output, MAGIC_NUMBER);
+        int contentSizeDescriptor;
+        int contentSizeBytes;
+        if (contentSize < 256) {
+            contentSizeDescriptor = 0;
+            contentSizeBytes = 1;
+        }
+        else if (contentSize < 65536 + 256) {
+            contentSizeDescriptor = 1;
+            contentSizeBytes = 2;
+            contentSize -= 256;
+        }
+        else if (contentSize <= 0xFFFF_FFFFL) {
+            contentSizeDescriptor = 2;
+            contentSizeBytes = 4;
+        }
+        else {
+            contentSizeDescriptor = 3;
+            contentSizeBytes = 8;
+        }
+        // single segment, no checksum, no dictionary
+        UNSAFE.putByte(outputBase, output + SIZE_OF_INT, (byte) (contentSizeDescriptor << 6 | 1 << 5));
+        for (int i = 0; i < contentSizeBytes; i++) {
+            UNSAFE.putByte(outputBase, output + SIZE_OF_INT + 1 + i, (byte) (contentSize >>> (i << 3)));
+        }
+        return SIZE_OF_INT + 1 + contentSizeBytes;
+    }
+
+    private static void putInt24(Object outputBase, long output, int value)
+    {
+        UNSAFE.putByte(outputBase, output, (byte) value);
+        UNSAFE.putShort(outputBase, output + 1, (short) (value >>> 8));
+    }
+
+    private void findSequences(Object base, long frameAddress, long blockStart, long blockEnd)
+    {
+        sequenceCount = 0;
+        literalCount = 0;
+        if (greedy) {
+            findGreedy(base, frameAddress, blockStart, blockEnd);
+        }
+        else {
+            findFast(base, frameAddress, blockStart, blockEnd);
+        }
+    }
+
+    private void findFast(Object base, long frameAddress, long blockStart, long blockEnd)
+    {
+        int[] hashTable = this.hashTable;
+        int hashShift = 64 - hashLog;
+        long limit = blockEnd - SEARCH_MARGIN;
+        long anchor = blockStart;
+        long input = blockStart;
+        while (input < limit) {
+            int position = (int) (input - frameAddress);
+            int hash = hash5(base, input, hashShift);
+            int candidate = hashTable[hash];
+            hashTable[hash] = position;
+
+            int value = UNSAFE.getInt(base, input);
+            int offset;
+            int matchLength;
+            if (input > anchor && repeatOffset <= position && UNSAFE.getInt(base, input - repeatOffset) == value) {
+                offset = repeatOffset;
+                matchLength = MIN_MATCH + count(base, input + MIN_MATCH, input + MIN_MATCH - offset, blockEnd);
+            }
+            else if (candidate >= 0 && position - candidate < MAX_OFFSET && UNSAFE.getInt(base, frameAddress + candidate) == value) {
+                long match = frameAddress + candidate;
+                matchLength = MIN_MATCH + count(base, input + MIN_MATCH, match + MIN_MATCH, blockEnd);
+                while (input > anchor && match > frameAddress && UNSAFE.getByte(base, input - 1) == UNSAFE.getByte(base, match - 1)) {
+                    input--;
+                    match--;
+                    matchLength++;
+                }
+                offset = (int) (input - match);
+            }
+            else {
+                // skip faster through data which doesn't compress
+                input += ((input - anchor) >> 6) + 1;
+                continue;
+            }
+
+            addSequence(base, anchor, input, offset, matchLength);
+            input += matchLength;
+            anchor = input;
+            if (input - 2 < limit) {
+                long previous = input - 2;
+                hashTable[hash5(base, previous, hashShift)] = (int) (previous - frameAddress);
+            }
+        }
+        addLastLiterals(base, anchor, blockEnd);
+    }
+
+    private void findGreedy(Object base, long frameAddress, long blockStart, long blockEnd)
+    {
+        int[] hashTable = this.hashTable;
+        int[] chainTable = this.chainTable;
+        int chainMask = (1 << chainLog) - 1;
+        int hashShift = 64 - hashLog;
+        long limit = blockEnd - SEARCH_MARGIN;
+        long anchor = blockStart;
+        long input = blockStart;
+        while (input < limit) {
+            int position = (int) (input - frameAddress);
+            // add every position up to this one to the chains, including those inside the last match
+            for (int update = nextToUpdate; update <= position; update++) {
+                int hash = hash5(base, frameAddress + update, hashShift);
+                chainTable[update & chainMask] = hashTable[hash];
+                hashTable[hash] = update;
+            }
+            nextToUpdate = position + 1;
+
+            int value = UNSAFE.getInt(base, input);
+            int bestLength = 0;
+            int bestOffset = 0;
+            int bestGain = 0;
+            if (input > anchor && repeatOffset <= position && UNSAFE.getInt(base, input - repeatOffset) == value) {
+                bestOffset = repeatOffset;
+                bestLength = MIN_MATCH + count(base, input + MIN_MATCH, input + MIN_MATCH - bestOffset, blockEnd);
+                bestGain = gain(bestLength, 1);
+            }
+
+            int maxLength = (int) (blockEnd - input);
+            int lowest = position - chainMask;
+            int candidate = chainTable[position & chainMask];
+            for (int depth = searchDepth; candidate >= 0 && position - candidate < MAX_OFFSET && depth > 0 && bestLength < maxLength; depth--) {
+                long match = frameAddress + candidate;
+                // a longer match must match at the current best length
+                if (UNSAFE.getByte(base, match + bestLength) == UNSAFE.getByte(base, input + bestLength) && UNSAFE.getInt(base, match) == value) {
+                    int length = MIN_MATCH + count(base, input + MIN_MATCH, match + MIN_MATCH, blockEnd);
+                    int offset = position - candidate;
+                    // a longer match isn't always worth a more expensive offset
+                    int gain = gain(length, offset + 3);
+                    if (gain > bestGain && length >= MIN_GREEDY_MATCH) {
+                        bestLength = length;
+                        bestOffset = offset;
+                        bestGain = gain;
+                    }
+                }
+                if (candidate < lowest) {
+                    // the rest of the chain has been overwritten
+                    break;
+                }
+                candidate = chainTable[candidate & chainMask];
+            }
+
+            if (bestLength < MIN_MATCH) {
+                input += ((input - anchor) >> 8) + 1;
+                continue;
+            }
+            long match = input - bestOffset;
+            while (input > anchor && match > frameAddress && UNSAFE.getByte(base, input - 1) == UNSAFE.getByte(base, match - 1)) {
+                input--;
+                match--;
+                bestLength++;
+            }
+            addSequence(base, anchor, input, bestOffset, bestLength);
+            input += bestLength;
+            anchor = input;
+        }
+        addLastLiterals(base, anchor, blockEnd);
+    }
+
+    // roughly the bits saved by a match (as in zstd's lazy matching), a new offset also replaces the repeat offset
+    private static int gain(int matchLength, int offsetValue)
+    {
+        return matchLength * 4 - highestBit(offsetValue) - (offsetValue == 1 ? 0 : 4);
+    }
+
+    private static int hash5(Object base, long address, int hashShift)
+    {
+        return (int) (((UNSAFE.getLong(base, address) << 24) * PRIME_5_BYTES) >>> hashShift);
+    }
+
+    // the number of matching bytes, up to the limit
+    private static int count(Object base, long input, long match, long limit)
+    {
+        long start = input;
+        while (input < limit - (SIZE_OF_LONG - 1)) {
+            long diff = UNSAFE.getLong(base, input) ^ UNSAFE.getLong(base, match);
+            if (diff != 0) {
+                return (int) (input - start) + (Long.numberOfTrailingZeros(diff) >>> 3);
+            }
+            input += SIZE_OF_LONG;
+            match += SIZE_OF_LONG;
+        }
+        while (input < limit && UNSAFE.getByte(base, input) == UNSAFE.getByte(base, match)) {
+            input++;
+            match++;
+        }
+        return (int) (input - start);
+    }
+
+    private void addSequence(Object base, long anchor, long input, int offset, int matchLength)
+    {
+        int literalLength = (int) (input - anchor);
+        UNSAFE.copyMemory(base, anchor, literals, ARRAY_BYTE_BASE_OFFSET + literalCount, literalLength);
+        literalCount += literalLength;
+
+        int index = sequenceCount++;
+        literalLengths[index] = literalLength;
+        matchLengths[index] = matchLength;
+        if (offset == repeatOffset && literalLength > 0) {
+            offsetValues[index] = 1;
+        }
+        else {
+            offsetValues[index] = offset + 3;
+            repeatOffset = offset;
+        }
+    }
+
+    private void addLastLiterals(Object base, long anchor, long blockEnd)
+    {
+        int length = (int) (blockEnd - anchor);
+        UNSAFE.copyMemory(base, anchor, literals, ARRAY_BYTE_BASE_OFFSET + literalCount, length);
+        literalCount += length;
+    }
+
+    /**
+     * @return the size of the block, or 0 if it's larger than the max size
+     */
+    private int encodeBlock(Object outputBase, long outputAddress, int maxSize)
+    {
+        int literalsSize = encodeLiterals(outputBase, outputAddress, maxSize);
+        if (literalsSize == 0) {
+            return 0;
+        }
+        int sequencesSize = encodeSequences(outputBase, outputAddress + literalsSize, maxSize - literalsSize);
+        if (sequencesSize == 0) {
+            return 0;
+        }
+        return literalsSize + sequencesSize;
+    }
+
+    private int encodeLiterals(Object outputBase, long outputAddress, int maxSize)
+    {
+        int size = literalCount;
+        if (size >= MIN_LITERALS_TO_COMPRESS) {
+            Arrays.fill(counts, 0);
+            int maxSymbol = 0;
+            for (int i = 0; i < size; i++) {
+                counts[literals[i] & 0xFF]++;
+            }
+            int symbols = 0;
+            for (int symbol = 0; symbol < counts.length; symbol++) {
+                if (counts[symbol] != 0) {
+                    maxSymbol = symbol;
+                    symbols++;
+                }
+            }
+            if (symbols == 1) {
+                int headerSize = writeLiteralsHeader(outputBase, outputAddress, maxSize - 1, RLE_LITERALS_BLOCK, size);
+                if (headerSize == 0) {
+                    return 0;
+                }
+                UNSAFE.putByte(outputBase, outputAddress + headerSize, literals[0]);
+                return headerSize + 1;
+            }
+            int compressed = encodeHuffmanLiterals(outputBase, outputAddress, maxSize, maxSymbol);
+            if (compressed != 0) {
+                return compressed;
+            }
+        }
+        int headerSize = writeLiteralsHeader(outputBase, outputAddress, maxSize - size, RAW_LITERALS_BLOCK, size);
+        if (headerSize == 0) {
+            return 0;
+        }
+        UNSAFE.copyMemory(literals, ARRAY_BYTE_BASE_OFFSET, outputBase, outputAddress + headerSize, size);
+        return headerSize + size;
+    }
+
+    private static int writeLiteralsHeader(Object outputBase, long outputAddress, int maxSize, int type, int size)
+    {
+        if (size < 32) {
+            if (maxSize < 1) {
+                return 0;
+            }
+            UNSAFE.putByte(outputBase, outputAddress, (byte) (type | size << 3));
+            return 1;
+        }
+        if (size < 4096) {
+            if (maxSize < 2) {
+                return 0;
+            }
+            UNSAFE.putShort(outputBase, outputAddress, (short) (type | 1 << 2 | size << 4));
+            return 2;
+        }
+        if (maxSize < 3) {
+            return 0;
+        }
+        putInt24(outputBase, outputAddress, type | 3 << 2 | size << 4);
+        return 3;
+    }
+
+    private int encodeHuffmanLiterals(Object outputBase, long outputAddress, int maxSize, int maxSymbol)
+    {
+        int size = literalCount;
+        boolean singleStream = size < MAX_SINGLE_STREAM_LITERALS;
+        int headerSize = size < 1024 ? 3 : size < 16384 ? 4 : 5;
+        huffman.build(counts, maxSymbol);
+        // not worth it if the literals barely shrink
+        long estimate = (huffman.estimateBits(counts) + 7) / 8 + (singleStream ? 0 : 6 + 3);
+        if (headerSize + estimate >= size - (size >> 5)) {
+            return 0;
+        }
+
+        long output = outputAddress + headerSize;
+        long limit = outputAddress + Math.min(maxSize, headerSize + size);
+        int tableSize = huffman.writeTable(outputBase, output, (int) (limit - output));
+        if (tableSize == 0) {
+            return 0;
+        }
+        output += tableSize;
+        if (singleStream) {
+            int streamSize = huffman.encode(outputBase, output, (int) (limit - output), literals, 0, size);
+            if (streamSize == 0) {
+                return 0;
+            }
+            output += streamSize;
+        }
+        else {
+            long jumpTable = output;
+            output += 3 * SIZE_OF_SHORT;
+            if (output >= limit) {
+                return 0;
+            }
+            int segmentSize = (size + 3) / 4;
+            for (int i = 0; i < 4; i++) {
+                int offset = i * segmentSize;
+                int length = i == 3 ? size - offset : segmentSize;
+                int streamSize = huffman.encode(outputBase, output, (int) (limit - output), literals, offset, length);
+                if (streamSize == 0 || streamSize > 0xFFFF) {
+                    return 0;
+                }
+                if (i < 3) {
+                    UNSAFE.putShort(outputBase, jumpTable + i * SIZE_OF_SHORT, (short) streamSize);
+                }
+                output += streamSize;
+            }
+        }
+
+        int compressedSize = (int) (output - outputAddress) - headerSize;
+        switch (headerSize) {
+            case 3:
+                putInt24(outputBase, outputAddress, COMPRESSED_LITERALS_BLOCK | (singleStream ? 0 : 1) << 2 | size << 4 | compressedSize << 14);
+                break;
+            case 4:
+                UNSAFE.putInt(outputBase, outputAddress, COMPRESSED_LITERALS_BLOCK | 2 << 2 | size << 4 | compressedSize << 18);
+                break;
+            default:
+                long header = COMPRESSED_LITERALS_BLOCK | 3 << 2 | size << 4 | (long) compressedSize << 22;
+                UNSAFE.putByte(outputBase, outputAddress, (byte) header);
+                UNSAFE.putInt(outputBase, outputAddress + 1, (int) (header >>> 8));
+                break;
+        }
+        return headerSize + compressedSize;
+    }
+
+    private int encodeSequences(Object outputBase, long outputAddress, int maxSize)
+    {
+        int sequenceCount = this.sequenceCount;
+        long output = outputAddress;
+        long limit = outputAddress + maxSize;
+        if (maxSize < 4) {
+            return 0;
+        }
+        if (sequenceCount < 128) {
+            UNSAFE.putByte(outputBase, output++, (byte) sequenceCount);
+        }
+        else if (sequenceCount < LONG_NUMBER_OF_SEQUENCES) {
+            UNSAFE.putByte(outputBase, output++, (byte) ((sequenceCount >>> 8) + 128));
+            UNSAFE.putByte(outputBase, output++, (byte) sequenceCount);
+        }
+        else {
+            UNSAFE.putByte(outputBase, output++, (byte) 255);
+            UNSAFE.putShort(outputBase, output, (short) (sequenceCount - LONG_NUMBER_OF_SEQUENCES));
+            output += SIZE_OF_SHORT;
+        }
+        if (sequenceCount == 0) {
+            return (int) (output - outputAddress);
+        }
+
+        for (int i = 0; i < sequenceCount; i++) {
+            int literalLength = literalLengths[i];
+            literalLengthCodes[i] = literalLength < 64 ? LITERALS_LENGTH_CODES[literalLength] : (byte) (highestBit(literalLength) + 19);
+            int matchLength = matchLengths[i] - 3;
+            matchLengthCodes[i] = matchLength < 128 ? MATCH_LENGTH_CODES[matchLength] : (byte) (highestBit(matchLength) + 36);
+            offsetCodes[i] = (byte) highestBit(offsetValues[i]);
+        }
+
+        long modes = output++;
+        descriptionOutput = output;
+        descriptionLimit = limit;
+        int literalsLengthMode = selectTable(0, literalLengthCodes, MAX_LITERALS_LENGTH_SYMBOL, LITERALS_LENGTH_FSE_LOG, DEFAULT_LITERALS_LENGTH, literalsLengthTable, outputBase);
+        int offsetCodesMode = selectTable(1, offsetCodes, MAX_OFFSET_CODE_SYMBOL, OFFSET_CODES_FSE_LOG, DEFAULT_OFFSET_CODES, offsetCodesTable, outputBase);
+        int matchLengthMode = selectTable(2, matchLengthCodes, MAX_MATCH_LENGTH_SYMBOL, MATCH_LENGTH_FSE_LOG, DEFAULT_MATCH_LENGTH, matchLengthTable, outputBase);
+        if (literalsLengthMode == -1 || offsetCodesMode == -1 || matchLengthMode == -1) {
+            return 0;
+        }
+        UNSAFE.putByte(outputBase, modes, (byte) (literalsLengthMode << 6 | offsetCodesMode << 4 | matchLengthMode << 2));
+        output = descriptionOutput;
+
+        int streamSize = encodeSequenceStream(selected[0], selected[1], selected[2], outputBase, output, (int) (limit - output));
+        if (streamSize == 0) {
+            return 0;
+        }
+        return (int) (output + streamSize - outputAddress);
+    }
+
+    /**
+     * Pick the cheapest table for the codes, and write its description
+     *
+     * @return the mode, or -1 if there wasn't enough space
+     */
+    private int selectTable(int index, byte[] codes, int maxSymbol, int maxLog, FseCompressionTable defaultTable, FiniteStateEntropy.Table table, Object outputBase)
+    {
+        int sequenceCount = this.sequenceCount;
+        Arrays.fill(counts, 0, maxSymbol + 1, 0);
+        int max = 0;
+        int symbols = 0;
+        for (int i = 0; i < sequenceCount; i++) {
+            int code = codes[i];
+            if (counts[code]++ == 0) {
+                symbols++;
+            }
+            max = Math.max(max, code);
+        }
+        if (symbols == 1) {
+            if (descriptionOutput >= descriptionLimit) {
+                return -1;
+            }
+            UNSAFE.putByte(outputBase, descriptionOutput++, (byte) max);
+            FseTableReader.buildRleTable(table, (byte) max);
+            selected[index] = new FseCompressionTable(table, max);
+            return SET_RLE;
+        }
+
+        long basicBits = defaultTable.estimateBits(counts, max);
+
+        int tableLog = FseCompressionTable.optimalTableLog(maxLog, sequenceCount, max);
+        short[] normalized = FseCompressionTable.normalize(counts, max, sequenceCount, tableLog);
+        Arrays.fill(scratch, (byte) 0);
+        int headerSize = FseCompressionTable.writeNormalizedCounts(scratch, 0, normalized, max, tableLog);
+        reader.readFseTable(table, scratch, ARRAY_BYTE_BASE_OFFSET, ARRAY_BYTE_BASE_OFFSET + headerSize + SIZE_OF_LONG, max, maxLog);
+        FseCompressionTable compressed = new FseCompressionTable(table, max);
+        long compressedBits = compressed.estimateBits(counts, max) + headerSize * 8L;
+
+        if (basicBits <= compressedBits) {
+            selected[index] = defaultTable;
+            return SET_BASIC;
+        }
+        if (descriptionOutput + headerSize > descriptionLimit) {
+            return -1;
+        }
+        UNSAFE.copyMemory(scratch, ARRAY_BYTE_BASE_OFFSET, outputBase, descriptionOutput, headerSize);
+        descriptionOutput += headerSize;
+        selected[index] = compressed;
+        return SET_COMPRESSED;
+    }
+
+    private int encodeSequenceStream(FseCompressionTable literalsLength, FseCompressionTable offsetCodes, FseCompressionTable matchLength, Object outputBase, long outputAddress, int maxSize)
+    {
+        BitOutputStream stream = new BitOutputStream(outputBase, outputAddress, maxSize);
+        int last = sequenceCount - 1;
+
+        // the decoder starts from the last sequence written
+        int literalsLengthState = literalsLength.begin(literalLengthCodes[last]);
+        int offsetCodesState = offsetCodes.begin(this.offsetCodes[last]);
+        int matchLengthState = matchLength.begin(matchLengthCodes[last]);
+        addExtraBits(stream, last);
+
+        for (int i = last - 1; i >= 0; i--) {
+            offsetCodesState = offsetCodes.encode(stream, offsetCodesState, this.offsetCodes[i]);
+            matchLengthState = matchLength.encode(stream, matchLengthState, matchLengthCodes[i]);
+            literalsLengthState = literalsLength.encode(stream, literalsLengthState, literalLengthCodes[i]);
+            stream.flush();
+            addExtraBits(stream, i);
+        }
+
+        matchLength.finish(stream, matchLengthState);
+        offsetCodes.finish(stream, offsetCodesState);
+        literalsLength.finish(stream, literalsLengthState);
+        return stream.close();
+    }
+
+    private void addExtraBits(BitOutputStream stream, int index)
+    {
+        int literalsLengthCode = literalLengthCodes[index];
+        int matchLengthCode = matchLengthCodes[index];
+        int offsetCode = offsetCodes[index];
+        stream.addBits(literalLengths[index] - LITERALS_LENGTH_BASE[literalsLengthCode], LITERALS_LENGTH_BITS[literalsLengthCode]);
+        stream.addBits(matchLengths[index] - MATCH_LENGTH_BASE[matchLengthCode], MATCH_LENGTH_BITS[matchLengthCode]);
+        stream.flush();
+        stream.addBits(offsetValues[index] - (1 << offsetCode), offsetCode);
+        stream.flush();
+    }
+}
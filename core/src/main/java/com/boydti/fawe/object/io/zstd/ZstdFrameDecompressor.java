@@ -30,14 +30,14 @@ class ZstdFrameDecompressor
     private static final int[] DEC_32_TABLE = {4, 1, 2, 1, 4, 4, 4, 4};
     private static final int[] DEC_64_TABLE = {0, 0, 0, -1, 0, 1, 2, 3};
 
-    private static final int MAGIC_NUMBER = 0xFD2FB528; // v0.5
+    static final int MAGIC_NUMBER = 0xFD2FB528; // v0.5
 
     private static final int MIN_SEQUENCES_SIZE = 1;
     private static final int MIN_BLOCK_SIZE = 1 // block type tag
             + 1 // min size of raw or rle length header
             + MIN_SEQUENCES_SIZE;
 
-    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+    static final int MAX_BLOCK_SIZE = 128 * 1024;
 
     private static final int MIN_WINDOW_LOG = 10;
     private static final int MAX_WINDOW_SIZE = 1 << 23;
@@ -47,40 +47,40 @@ class ZstdFrameDecompressor
     public static final int SIZE_OF_INT = 4;
     public static final int SIZE_OF_LONG = 8;
 
-    private static final long SIZE_OF_BLOCK_HEADER = 3;
+    static final long SIZE_OF_BLOCK_HEADER = 3;
 
     // block types
-    private static final int RAW_BLOCK = 0;
-    private static final int RLE_BLOCK = 1;
-    private static final int COMPRESSED_BLOCK = 2;
+    static final int RAW_BLOCK = 0;
+    static final int RLE_BLOCK = 1;
+    static final int COMPRESSED_BLOCK = 2;
 
     // literal block types
-    private static final int RAW_LITERALS_BLOCK = 0;
-    private static final int RLE_LITERALS_BLOCK = 1;
-    private static final int COMPRESSED_LITERALS_BLOCK = 2;
+    static final int RAW_LITERALS_BLOCK = 0;
+    static final int RLE_LITERALS_BLOCK = 1;
+    static final int COMPRESSED_LITERALS_BLOCK = 2;
     private static final int REPEAT_STATS_LITERALS_BLOCK = 3;
 
-    private static final int LONG_NUMBER_OF_SEQUENCES = 0x7F00;
+    static final int LONG_NUMBER_OF_SEQUENCES = 0x7F00;
 
-    private static final int MAX_LITERALS_LENGTH_SYMBOL = 35;
-    private static final int MAX_MATCH_LENGTH_SYMBOL = 52;
-    private static final int MAX_OFFSET_CODE_SYMBOL = 28;
+    static final int MAX_LITERALS_LENGTH_SYMBOL = 35;
+    static final int MAX_MATCH_LENGTH_SYMBOL = 52;
+    static final int MAX_OFFSET_CODE_SYMBOL = 28;
 
-    private static final int LITERALS_LENGTH_FSE_LOG = 9;
-    private static final int MATCH_LENGTH_FSE_LOG = 9;
-    private static final int OFFSET_CODES_FSE_LOG = 8;
+    static final int LITERALS_LENGTH_FSE_LOG = 9;
+    static final int MATCH_LENGTH_FSE_LOG = 9;
+    static final int OFFSET_CODES_FSE_LOG = 8;
 
-    private static final int SET_BASIC = 0;
-    private static final int SET_RLE = 1;
-    private static final int SET_COMPRESSED = 2;
+    static final int SET_BASIC = 0;
+    static final int SET_RLE = 1;
+    static final int SET_COMPRESSED = 2;
     private static final int SET_REPEAT = 3;
 
-    private static final int[] LITERALS_LENGTH_BASE = {
+    static final int[] LITERALS_LENGTH_BASE = {
             0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
             16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 0x80, 0x100, 0x200, 0x400, 0x800, 0x1000,
             0x2000, 0x4000, 0x8000, 0x10000};
 
-    private static final int[] MATCH_LENGTH_BASE = {
+    static final int[] MATCH_LENGTH_BASE = {
             3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
             19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
             35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 0x83, 0x103, 0x203, 0x403, 0x803,
@@ -92,18 +92,18 @@ class ZstdFrameDecompressor
             0xFFFD, 0x1FFFD, 0x3FFFD, 0x7FFFD, 0xFFFFD, 0x1FFFFD, 0x3FFFFD, 0x7FFFFD,
             0xFFFFFD, 0x1FFFFFD, 0x3FFFFFD, 0x7FFFFFD, 0xFFFFFFD};
 
-    private static final int[] LITERALS_LENGTH_BITS = {
+    static final int[] LITERALS_LENGTH_BITS = {
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
             1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
             13, 14, 15, 16};
 
-    private static final int[] MATCH_LENGTH_BITS = {
+    static final int[] MATCH_LENGTH_BITS = {
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
             1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
             12, 13, 14, 15, 16};
 
-    private static final FiniteStateEntropy.Table DEFAULT_LITERALS_LENGTH_TABLE = new FiniteStateEntropy.Table(
+    static final FiniteStateEntropy.Table DEFAULT_LITERALS_LENGTH_TABLE = new FiniteStateEntropy.Table(
             6,
             new int[] {
                     0, 16, 32, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 32, 0, 0, 0, 0, 32, 0, 0, 32, 0, 32, 0, 32, 0, 0, 32, 0, 32, 0, 32, 0, 0, 16, 32, 0, 0, 48, 16, 32, 32, 32,
@@ -115,13 +115,13 @@ class ZstdFrameDecompressor
                     4, 4, 5, 5, 5, 5, 5, 5, 5, 5, 6, 5, 5, 5, 5, 5, 5, 5, 5, 6, 6, 6, 4, 4, 5, 5, 5, 5, 5, 5, 5, 6, 5, 5, 5, 5, 5, 5, 4, 4, 5, 6, 6, 4, 4, 5, 5, 5, 5, 5, 5, 5, 5,
                     6, 5, 5, 5, 5, 5, 5, 6, 6, 6, 6});
 
-    private static final FiniteStateEntropy.Table DEFAULT_OFFSET_CODES_TABLE = new FiniteStateEntropy.Table(
+    static final FiniteStateEntropy.Table DEFAULT_OFFSET_CODES_TABLE = new FiniteStateEntropy.Table(
             5,
             new int[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 16, 0, 0, 0, 0, 16, 0, 0, 0, 16, 0, 0, 0, 0, 0, 0, 0},
             new byte[] {0, 6, 9, 15, 21, 3, 7, 12, 18, 23, 5, 8, 14, 20, 2, 7, 11, 17, 22, 4, 8, 13, 19, 1, 6, 10, 16, 28, 27, 26, 25, 24},
             new byte[] {5, 4, 5, 5, 5, 5, 4, 5, 5, 5, 5, 4, 5, 5, 5, 4, 5, 5, 5, 5, 4, 5, 5, 5, 4, 5, 5, 5, 5, 5, 5, 5});
 
-    private static final FiniteStateEntropy.Table DEFAULT_MATCH_LENGTH_TABLE = new FiniteStateEntropy.Table(
+    static final FiniteStateEntropy.Table DEFAULT_MATCH_LENGTH_TABLE = new FiniteStateEntropy.Table(
             6,
             new int[] {
                     0, 0, 32, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 16, 0, 32, 0, 32, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 32, 48, 16, 32, 32, 32, 32,
@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.COMPRESSED_BLOCK;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAGIC_NUMBER;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+import static com.boydti.fawe.object.io.zstd.ZstdFrameDecompressor.RLE_BLOCK;
+
+/**
+ * Reads a zstd stream with {@link ZstdDecompressor}, a frame at a time<br>
+ * - Block headers are read to find the end of each frame, so the whole frame is in memory before it's decoded<br>
+ * - Skippable frames are ignored<br>
+ * - Frames which need a dictionary, or a window over 8MB (e.g. native zstd at high levels), can't be read
+ */
+public class ZstdFrameInputStream extends InputStream
+{
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int SKIPPABLE_MASK = 0xFFFFFFF0;
+
+    private final InputStream in;
+    private final ZstdDecompressor decompressor = new ZstdDecompressor();
+    private byte[] frame = new byte[1 << 16];
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int limit;
+
+    public ZstdFrameInputStream(InputStream in)
+    {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (position == limit && !nextFrame()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !nextFrame()) {
+            return -1;
+        }
+        int amount = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, amount);
+        position += amount;
+        return amount;
+    }
+
+    @Override
+    public int available()
+    {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    private boolean nextFrame() throws IOException
+    {
+        while (true) {
+            if (!fill(0, 4, true)) {
+                return false;
+            }
+            int magic = getInt(0);
+            if ((magic & SKIPPABLE_MASK) == SKIPPABLE_MAGIC) {
+                fill(0, 4, false);
+                skipFrame(getInt(0) & 0xFFFF_FFFFL);
+                continue;
+            }
+            if (magic != MAGIC_NUMBER) {
+                throw new IOException("Invalid zstd magic: " + Integer.toHexString(magic));
+            }
+
+            // the frame header
+            fill(4, 1, false);
+            int descriptor = frame[4] & 0xFF;
+            boolean singleSegment = (descriptor & 0b100000) != 0;
+            boolean checksum = (descriptor & 0b100) != 0;
+            int dictionaryDescriptor = descriptor & 0b11;
+            int contentSizeDescriptor = descriptor >>> 6;
+            int contentSizeBytes = contentSizeDescriptor == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeDescriptor;
+            int headerSize = (singleSegment ? 0 : 1) + (dictionaryDescriptor == 0 ? 0 : 1 << (dictionaryDescriptor - 1)) + contentSizeBytes;
+            int size = 5;
+            fill(size, headerSize, false);
+            size += headerSize;
+            long contentSize = -1;
+            if (contentSizeBytes != 0) {
+                contentSize = 0;
+                for (int i = 0; i < contentSizeBytes; i++) {
+                    contentSize |= (frame[size - contentSizeBytes + i] & 0xFFL) << (i << 3);
+                }
+                if (contentSizeBytes == 2) {
+                    contentSize += 256;
+                }
+            }
+
+            // the blocks, to find the end of the frame
+            long bound = 0;
+            boolean lastBlock;
+            do {
+                fill(size, 3, false);
+                int header = (frame[size] & 0xFF) | (frame[size + 1] & 0xFF) << 8 | (frame[size + 2] & 0xFF) << 16;
+                size += 3;
+                lastBlock = (header & 1) != 0;
+                int type = (header >>> 1) & 0b11;
+                int blockSize = header >>> 3;
+                int length = type == RLE_BLOCK ? 1 : blockSize;
+                fill(size, length, false);
+                size += length;
+                bound += type == COMPRESSED_BLOCK ? MAX_BLOCK_SIZE : blockSize;
+            }
+            while (!lastBlock);
+            if (checksum) {
+                fill(size, 4, false);
+                size += 4;
+            }
+
+            long outputSize = contentSize >= 0 ? contentSize : bound;
+            if (outputSize > Integer.MAX_VALUE - 8) {
+                throw new IOException("Zstd frame too large: " + outputSize);
+            }
+            if (buffer.length < outputSize) {
+                buffer = new byte[(int) outputSize];
+            }
+            try {
+                limit = decompressor.decompress(frame, 0, size, buffer, 0, (int) outputSize);
+            }
+            catch (MalformedInputException e) {
+                throw new IOException(e);
+            }
+            position = 0;
+            if (limit != 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Read into the frame buffer
+     *
+     * @return false if the stream ended before the first byte (when allowed)
+     */
+    private boolean fill(int offset, int length, boolean allowEnd) throws IOException
+    {
+        if (offset + length > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(offset + length, frame.length << 1));
+        }
+        int read = 0;
+        while (read < length) {
+            int amount = in.read(frame, offset + read, length - read);
+            if (amount == -1) {
+                if (read == 0 && allowEnd) {
+                    return false;
+                }
+                throw new EOFException("Truncated zstd frame");
+            }
+            read += amount;
+        }
+        return true;
+    }
+
+    private void skipFrame(long length) throws IOException
+    {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("Truncated zstd skippable frame");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private int getInt(int offset)
+    {
+        return (frame[offset] & 0xFF) | (frame[offset + 1] & 0xFF) << 8 | (frame[offset + 2] & 0xFF) << 16 | (frame[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.boydti.fawe.object.io.zstd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a zstd stream with {@link ZstdCompressor}, as a sequence of frames<br>
+ * - The data is buffered, and each full buffer (or flush) is written as a frame<br>
+ * - Native zstd streams read concatenated frames, so the output can be read by either implementation
+ */
+public class ZstdFrameOutputStream extends OutputStream
+{
+    public static final int DEFAULT_FRAME_SIZE = 1 << 20;
+
+    private final OutputStream out;
+    private final ZstdCompressor compressor;
+    private final byte[] buffer;
+    private final byte[] compressed;
+    private int count;
+    private boolean closed;
+
+    public ZstdFrameOutputStream(OutputStream out)
+    {
+        this(out, ZstdCompressor.DEFAULT_LEVEL, DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * @param out
+     * @param level 1 to {@link ZstdCompressor#MAX_LEVEL}
+     * @param frameSize the most bytes to compress as one frame (larger frames compress better)
+     */
+    public ZstdFrameOutputStream(OutputStream out, int level, int frameSize)
+    {
+        this.out = out;
+        this.compressor = new ZstdCompressor(level);
+        this.buffer = new byte[Math.max(1, frameSize)];
+        this.compressed = new byte[ZstdCompressor.maxCompressedLength(buffer.length)];
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        if (count == buffer.length) {
+            writeFrame();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeFrame();
+            }
+            int amount = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, amount);
+            count += amount;
+            off += amount;
+            len -= amount;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        writeFrame();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeFrame();
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void writeFrame() throws IOException
+    {
+        if (count == 0) {
+            return;
+        }
+        int size = compressor.compress(buffer, 0, count, compressed, 0, compressed.length);
+        out.write(compressed, 0, size);
+        count = 0;
+    }
+}
@@ -29,9 +29,11 @@ public class AdjacentAnyMask extends AbstractMask implements ResettableMask {
 
     @Override
     public boolean test(Vector v) {
-        int x = v.getBlockX();
-        int y = v.getBlockY();
-        int z = v.getBlockZ();
+        return test(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         if (mask.test(x + 1, y, z)) {
             return true;
         }
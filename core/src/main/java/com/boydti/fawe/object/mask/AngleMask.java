@@ -113,9 +113,10 @@ public class AngleMask extends SolidBlockMask implements ResettableMask {
     }
 
     public boolean adjacentAir(Vector v) {
-        int x = v.getBlockX();
-        int y = v.getBlockY();
-        int z = v.getBlockZ();
+        return adjacentAir(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+    }
+
+    public boolean adjacentAir(int x, int y, int z) {
         if (!mask.test(x + 1, y, z)) {
             return true;
         }
@@ -139,9 +140,11 @@ public class AngleMask extends SolidBlockMask implements ResettableMask {
 
     @Override
     public boolean test(Vector vector) {
-        int x = vector.getBlockX();
-        int y = vector.getBlockY();
-        int z = vector.getBlockZ();
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
 
         if ((lastX == (lastX = x) & lastZ == (lastZ = z))) {
             int height = getHeight(x, y, z);
@@ -153,7 +156,7 @@ public class AngleMask extends SolidBlockMask implements ResettableMask {
         }
         if (overlay) {
             if (y < 255 && !mask.test(x, y + 1, z)) return lastValue = false;
-        } else if (!adjacentAir(vector)) {
+        } else if (!adjacentAir(x, y, z)) {
             return false;
         }
         return testSlope(x, y, z);
@@ -23,7 +23,12 @@ public class BiomeMask extends AbstractExtentMask implements ResettableMask {
 
     @Override
     public boolean test(Vector vector) {
-        Vector2D pos = mutable.setComponents(vector.getBlockX(), vector.getBlockZ());
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
+        Vector2D pos = mutable.setComponents(x, z);
         return getExtent().getBiome(pos).getId() == biome.getId();
     }
 }
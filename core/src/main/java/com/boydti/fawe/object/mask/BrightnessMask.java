@@ -19,9 +19,14 @@ public class BrightnessMask extends AbstractExtentMask {
 
     @Override
     public boolean test(Vector vector) {
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         Extent extent = getExtent();
         if (extent instanceof LightingExtent) {
-            int light = ((LightingExtent) extent).getBrightness(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+            int light = ((LightingExtent) extent).getBrightness(x, y, z);
             return light >= min && light <= max;
         }
         return false;
@@ -2,13 +2,11 @@ package com.boydti.fawe.object.mask;
 
 import com.boydti.fawe.object.collection.LocalBlockVectorSet;
 import com.boydti.fawe.object.function.mask.AbstractDelegateMask;
-import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.function.mask.Mask;
 
 public class CachedMask extends AbstractDelegateMask implements ResettableMask {
 
-    private transient MutableBlockVector mutable = new MutableBlockVector();
     private transient LocalBlockVectorSet cache_checked = new LocalBlockVectorSet();
     private transient LocalBlockVectorSet cache_results = new LocalBlockVectorSet();
 
@@ -27,7 +25,6 @@ public class CachedMask extends AbstractDelegateMask implements ResettableMask {
 
     @Override
     public void reset() {
-        mutable = new MutableBlockVector();
         cache_checked = new LocalBlockVectorSet();
         cache_results = new LocalBlockVectorSet();
         resetCache();
@@ -45,17 +42,18 @@ public class CachedMask extends AbstractDelegateMask implements ResettableMask {
         return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
     }
 
+    @Override
     public boolean test(int x, int y, int z) {
         try {
             boolean check = cache_checked.add(x, y, z);
             if (!check) {
                 return cache_results.contains(x, y, z);
             }
-            boolean result = getMask().test(mutable.setComponents(x, y, z));
+            boolean result = getMask().test(x, y, z);
             if (result) cache_results.add(x, y, z);
             return result;
         } catch (UnsupportedOperationException ignore) {
-            boolean result = getMask().test(mutable.setComponents(x, y, z));
+            boolean result = getMask().test(x, y, z);
             if (y < 0 || y > 255) return result;
             resetCache();
             cache_checked.setOffset(x, z);
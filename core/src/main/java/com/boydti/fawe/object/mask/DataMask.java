@@ -25,6 +25,17 @@ public class DataMask extends AbstractExtentMask implements ResettableMask {
         }
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        Extent extent = getExtent();
+        if (data != -1) {
+            return extent.getLazyBlock(x, y, z).getData() == data;
+        } else {
+            data = extent.getLazyBlock(x, y, z).getData();
+            return true;
+        }
+    }
+
     @Override
     public void reset() {
         this.data = -1;
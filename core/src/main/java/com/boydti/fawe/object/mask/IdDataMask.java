@@ -25,6 +25,17 @@ public class IdDataMask extends AbstractExtentMask implements ResettableMask {
         }
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        Extent extent = getExtent();
+        if (combined != -1) {
+            return FaweCache.getCombined(extent.getLazyBlock(x, y, z)) == combined;
+        } else {
+            combined = FaweCache.getCombined(extent.getLazyBlock(x, y, z));
+            return true;
+        }
+    }
+
     @Override
     public void reset() {
         this.combined = -1;
@@ -25,6 +25,17 @@ public class IdMask extends AbstractExtentMask implements ResettableMask {
         }
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        Extent extent = getExtent();
+        if (id != -1) {
+            return extent.getLazyBlock(x, y, z).getId() == id;
+        } else {
+            id = extent.getLazyBlock(x, y, z).getId();
+            return true;
+        }
+    }
+
     @Override
     public void reset() {
         this.id = -1;
@@ -23,20 +23,25 @@ public class RadiusMask extends AbstractMask implements ResettableMask {
 
     @Override
     public boolean test(Vector to) {
+        return test(to.getBlockX(), to.getBlockY(), to.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         if (pos == null) {
-            pos = new MutableBlockVector(to);
+            pos = new MutableBlockVector(x, y, z);
         }
-        int dx = pos.getBlockX() - to.getBlockX();
+        int dx = pos.getBlockX() - x;
         int d = dx * dx;
         if (d > maxSqr) {
             return false;
         }
-        int dz = pos.getBlockZ() - to.getBlockZ();
+        int dz = pos.getBlockZ() - z;
         d += dz * dz;
         if (d > maxSqr) {
             return false;
         }
-        int dy = pos.getBlockY() - to.getBlockY();
+        int dy = pos.getBlockY() - y;
         d += dy * dy;
         if (d < minSqr || d > maxSqr) {
             return false;
@@ -18,6 +18,11 @@ public class RandomMask extends AbstractMask implements ResettableMask {
         return random.nextInt() <= threshold;
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        return random.nextInt() <= threshold;
+    }
+
     @Override
     public void reset() {
         random = new SplittableRandom();
@@ -15,7 +15,12 @@ public class SimplexMask extends AbstractMask {
 
     @Override
     public boolean test(Vector vector) {
-        double value = SimplexNoise.noise(vector.getBlockX() * scale, vector.getBlockY() * scale, vector.getBlockZ() * scale);
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
+        double value = SimplexNoise.noise(x * scale, y * scale, z * scale);
         return value >= min && value <= max;
     }
 }
@@ -19,8 +19,13 @@ public class SkyLightMask extends AbstractExtentMask {
 
     @Override
     public boolean test(Vector vector) {
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         if (getExtent() instanceof LightingExtent) {
-            int light = ((LightingExtent) getExtent()).getSkyLight(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+            int light = ((LightingExtent) getExtent()).getSkyLight(x, y, z);
             return light >= min && light <= max;
         }
         return false;
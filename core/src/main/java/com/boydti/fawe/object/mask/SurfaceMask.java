@@ -22,6 +22,11 @@ public class SurfaceMask extends AdjacentAnyMask {
 
     @Override
     public boolean test(Vector v) {
-        return !getParentMask().test(v.getBlockX(), v.getBlockY(), v.getBlockZ()) && super.test(v);
+        return test(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
+        return !getParentMask().test(x, y, z) && super.test(x, y, z);
     }
 }
@@ -16,32 +16,24 @@ public class WallMask extends AbstractMask {
 
     @Override
     public boolean test(Vector v) {
+        return test(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         int count = 0;
-        double x = v.getX();
-        double y = v.getY();
-        double z = v.getZ();
-        v.mutX(x + 1);
-        if (mask.test(v) && ++count == min && max >= 8) {
-            v.mutX(x);
+        if (mask.test(x + 1, y, z) && ++count == min && max >= 8) {
             return true;
         }
-        v.mutX(x - 1);
-        if (mask.test(v) && ++count == min && max >= 8) {
-            v.mutX(x);
+        if (mask.test(x - 1, y, z) && ++count == min && max >= 8) {
             return true;
         }
-        v.mutX(x);
-        v.mutZ(z + 1);
-        if (mask.test(v) && ++count == min && max >= 8) {
-            v.mutZ(z);
+        if (mask.test(x, y, z + 1) && ++count == min && max >= 8) {
             return true;
         }
-        v.mutZ(z - 1);
-        if (mask.test(v) && ++count == min && max >= 8) {
-            v.mutZ(z);
+        if (mask.test(x, y, z - 1) && ++count == min && max >= 8) {
             return true;
         }
-        v.mutZ(z);
         return count >= min && count <= max;
     }
 }
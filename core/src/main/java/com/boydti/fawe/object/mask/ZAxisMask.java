@@ -14,10 +14,15 @@ public class ZAxisMask extends AbstractMask implements ResettableMask {
 
     @Override
     public boolean test(Vector vector) {
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         if (layer == -1) {
-            layer = vector.getBlockZ();
+            layer = z;
         }
-        return vector.getBlockZ() == layer;
+        return z == layer;
     }
 
     @Override
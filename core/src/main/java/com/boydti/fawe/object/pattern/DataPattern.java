@@ -24,4 +24,14 @@ public class DataPattern extends AbstractExtentPattern {
         BaseBlock newBlock = pattern.apply(position);
         return FaweCache.getBlock(oldBlock.getId(), newBlock.getData());
     }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        int newCombined = pattern.applyCombined(x, y, z);
+        if (newCombined == -1) {
+            return super.applyCombined(x, y, z);
+        }
+        BaseBlock oldBlock = getExtent().getLazyBlock(x, y, z);
+        return FaweCache.getCombined(oldBlock.getId(), FaweCache.getData(newCombined));
+    }
 }
@@ -2,6 +2,7 @@ package com.boydti.fawe.object.pattern;
 
 import com.boydti.fawe.FaweCache;
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.function.pattern.AbstractPattern;
@@ -24,6 +25,7 @@ public class ExpressionPattern extends AbstractPattern {
 
     public String input;
     private transient Expression expression;
+    private transient MutableBlockVector mutable = new MutableBlockVector();
 
     /**
      * Create a new instance.
@@ -64,8 +66,22 @@ public class ExpressionPattern extends AbstractPattern {
         }
     }
 
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        try {
+            if (expression.getEnvironment() instanceof WorldEditExpressionEnvironment) {
+                ((WorldEditExpressionEnvironment) expression.getEnvironment()).setCurrentBlock(mutable.setComponents(x, y, z));
+            }
+            return (char) expression.evaluate(x, y, z);
+        } catch (EvaluationException e) {
+            e.printStackTrace();
+            return EditSession.nullBlock.getCombined();
+        }
+    }
+
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
+        mutable = new MutableBlockVector();
         try {
             this.expression = Expression.compile(input, "x", "y", "z");
         } catch (ExpressionException e) {
@@ -9,11 +9,14 @@ import com.sk89q.worldedit.function.pattern.Pattern;
 public class IdDataMaskPattern extends AbstractExtentPattern {
     private final Pattern pattern;
     private final int bitMask;
+    // If the parent never returns -1 from applyCombined
+    private final boolean constant;
 
     public IdDataMaskPattern(Extent extent, Pattern parent, int bitMask) {
         super(extent);
         this.pattern = parent;
         this.bitMask = bitMask;
+        this.constant = parent instanceof PatternCompiler.WeightedPattern && ((PatternCompiler.WeightedPattern) parent).isConstant();
     }
 
     @Override
@@ -24,4 +27,22 @@ public class IdDataMaskPattern extends AbstractExtentPattern {
         int newData = newBlock.getData() + oldData - (oldData & bitMask);
         return FaweCache.getBlock(newBlock.getId(), newData);
     }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        // The parent is only evaluated once, as a random pattern would pick again
+        int newId;
+        int newData;
+        if (constant) {
+            int newCombined = pattern.applyCombined(x, y, z);
+            newId = FaweCache.getId(newCombined);
+            newData = FaweCache.getData(newCombined);
+        } else {
+            BaseBlock newBlock = pattern.apply(x, y, z);
+            newId = newBlock.getId();
+            newData = newBlock.getData();
+        }
+        int oldData = getExtent().getLazyBlock(x, y, z).getData();
+        return FaweCache.getCombined(newId, newData + oldData - (oldData & bitMask));
+    }
 }
\ No newline at end of file
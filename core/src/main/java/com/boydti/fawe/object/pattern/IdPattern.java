@@ -24,4 +24,14 @@ public class IdPattern extends AbstractExtentPattern {
         BaseBlock newBlock = pattern.apply(position);
         return FaweCache.getBlock(newBlock.getId(), oldBlock.getData());
     }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        int newCombined = pattern.applyCombined(x, y, z);
+        if (newCombined == -1) {
+            return super.applyCombined(x, y, z);
+        }
+        BaseBlock oldBlock = getExtent().getLazyBlock(x, y, z);
+        return FaweCache.getCombined(FaweCache.getId(newCombined), oldBlock.getData());
+    }
 }
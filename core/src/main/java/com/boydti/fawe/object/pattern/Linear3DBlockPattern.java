@@ -24,6 +24,24 @@ public class Linear3DBlockPattern extends AbstractPattern {
         return patternsArray[index].apply(position);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        return patternsArray[getIndex(x, y, z)].apply(x, y, z);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return patternsArray[getIndex(x, y, z)].applyCombined(x, y, z);
+    }
+
+    private int getIndex(int x, int y, int z) {
+        int index = (x + y + z) % patternsArray.length;
+        if (index < 0) {
+            index += patternsArray.length;
+        }
+        return index;
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         int index = (get.getBlockX() + get.getBlockY() + get.getBlockZ()) % patternsArray.length;
@@ -24,6 +24,22 @@ public class LinearBlockPattern extends AbstractPattern implements ResettablePat
         return patternsArray[index++].apply(position);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        if (index == patternsArray.length) {
+            index = 0;
+        }
+        return patternsArray[index++].apply(x, y, z);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        if (index == patternsArray.length) {
+            index = 0;
+        }
+        return patternsArray[index++].applyCombined(x, y, z);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         if (index == patternsArray.length) {
@@ -1,5 +1,6 @@
 package com.boydti.fawe.object.pattern;
 
+import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -7,12 +8,14 @@ import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.pattern.AbstractPattern;
 import com.sk89q.worldedit.function.pattern.Pattern;
+import java.io.IOException;
 
 public class MaskedPattern extends AbstractPattern {
 
     private final PatternExtent patternExtent;
     private final Pattern secondaryPattern;
     private Mask mask;
+    private transient MutableBlockVector mutable = new MutableBlockVector();
 
     public MaskedPattern(Mask mask, PatternExtent primary, Pattern secondary) {
         this.mask = mask;
@@ -20,6 +23,18 @@ public class MaskedPattern extends AbstractPattern {
         this.secondaryPattern = secondary;
     }
 
+    public Mask getMask() {
+        return mask;
+    }
+
+    public PatternExtent getPrimary() {
+        return patternExtent;
+    }
+
+    public Pattern getSecondary() {
+        return secondaryPattern;
+    }
+
 
     @Override
     public BaseBlock apply(Vector position) {
@@ -30,6 +45,16 @@ public class MaskedPattern extends AbstractPattern {
         return secondaryPattern.apply(position);
     }
 
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        patternExtent.setTarget(mutable.setComponents(x, y, z));
+        if (mask.test(x, y, z)) {
+            BaseBlock block = patternExtent.getAndResetTarget();
+            return block.hasNbtData() ? -1 : block.getCombined();
+        }
+        return secondaryPattern.applyCombined(x, y, z);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         patternExtent.setTarget(get);
@@ -38,4 +63,9 @@ public class MaskedPattern extends AbstractPattern {
         }
         return secondaryPattern.apply(extent, set, get);
     }
+
+    private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        mutable = new MutableBlockVector();
+    }
 }
@@ -25,6 +25,16 @@ public class NoXPattern extends AbstractPattern {
         return pattern.apply(mutable);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        return pattern.apply(0, y, z);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return pattern.applyCombined(0, y, z);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         mutable.mutY((get.getY()));
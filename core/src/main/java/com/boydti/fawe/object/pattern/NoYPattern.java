@@ -26,6 +26,16 @@ public class NoYPattern extends AbstractPattern {
         return pattern.apply(mutable);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        return pattern.apply(x, 0, z);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return pattern.applyCombined(x, 0, z);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         mutable.mutX((get.getX()));
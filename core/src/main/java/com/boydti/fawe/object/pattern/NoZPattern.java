@@ -26,6 +26,16 @@ public class NoZPattern extends AbstractPattern {
         return pattern.apply(mutable);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        return pattern.apply(x, y, 0);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return pattern.applyCombined(x, y, 0);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         mutable.mutX((get.getX()));
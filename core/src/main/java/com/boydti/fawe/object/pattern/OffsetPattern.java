@@ -30,6 +30,16 @@ public class OffsetPattern extends AbstractPattern {
         return pattern.apply(mutable);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        return pattern.apply(x + dx, y + dy, z + dz);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return pattern.applyCombined(x + dx, y + dy, z + dz);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         mutable.mutX((get.getX() + dx));
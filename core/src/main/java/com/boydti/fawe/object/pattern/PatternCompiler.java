@@ -0,0 +1,332 @@
+package com.boydti.fawe.object.pattern;
+
+import com.boydti.fawe.object.random.SimpleRandom;
+import com.boydti.fawe.object.random.TrueRandom;
+import com.sk89q.worldedit.MutableBlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.AbstractPattern;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.pattern.RandomPattern;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flatten nested patterns into a single lookup structure<br>
+ * - Nested random patterns become one weighted table, so a block is picked with a single random number<br>
+ * - The table is an alias table for a {@link TrueRandom}, otherwise it's cumulative (so noise picks neighbouring patterns)<br>
+ * - Blocks without NBT are stored as combined ids, so {@link Pattern#applyCombined(int, int, int)} doesn't need a block<br>
+ * - A chain of masked patterns is tested in order, instead of recursing into each secondary pattern
+ */
+public class PatternCompiler {
+
+    /**
+     * Compile a pattern
+     *
+     * @param pattern
+     * @return an equivalent pattern, or the same pattern if it can't be flattened
+     */
+    public static Pattern compile(Pattern pattern) {
+        if (pattern instanceof RandomPattern) {
+            return compileRandom((RandomPattern) pattern);
+        }
+        if (pattern instanceof MaskedPattern) {
+            return compileMasked((MaskedPattern) pattern);
+        }
+        return pattern;
+    }
+
+    private static Pattern compileRandom(RandomPattern pattern) {
+        if (pattern.getCollection() == null) {
+            return pattern;
+        }
+        SimpleRandom random = pattern.getCollection().getRandom();
+        List<Pattern> leaves = new ArrayList<>();
+        List<Double> chances = new ArrayList<>();
+        addLeaves(pattern, 1, random, leaves, chances);
+        if (leaves.isEmpty()) {
+            return pattern;
+        }
+        double[] weights = new double[chances.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = chances.get(i);
+        }
+        return new WeightedPattern(random, leaves.toArray(new Pattern[leaves.size()]), weights);
+    }
+
+    /**
+     * Add the patterns of a random pattern, with nested random patterns expanded<br>
+     * - A nested pattern is only expanded if both pick independently (a {@link TrueRandom}), as noise based randoms depend on the position
+     */
+    private static void addLeaves(RandomPattern pattern, double chance, SimpleRandom root, List<Pattern> leaves, List<Double> chances) {
+        double total = 0;
+        for (Map.Entry<Pattern, Double> entry : pattern.getWeights().entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+            }
+        }
+        for (Map.Entry<Pattern, Double> entry : pattern.getWeights().entrySet()) {
+            double weight = entry.getValue();
+            if (weight <= 0) {
+                continue;
+            }
+            Pattern child = entry.getKey();
+            double childChance = chance * weight / total;
+            if (child instanceof RandomPattern && root instanceof TrueRandom) {
+                RandomPattern random = (RandomPattern) child;
+                if (random.getCollection() != null && random.getCollection().getRandom() instanceof TrueRandom) {
+                    addLeaves(random, childChance, root, leaves, chances);
+                    continue;
+                }
+            }
+            leaves.add(compile(child));
+            chances.add(childChance);
+        }
+    }
+
+    private static Pattern compileMasked(MaskedPattern pattern) {
+        List<Mask> masks = new ArrayList<>();
+        List<PatternExtent> primaries = new ArrayList<>();
+        Pattern current = pattern;
+        while (current instanceof MaskedPattern) {
+            MaskedPattern masked = (MaskedPattern) current;
+            masks.add(masked.getMask());
+            primaries.add(masked.getPrimary());
+            current = masked.getSecondary();
+        }
+        Pattern fallback = compile(current);
+        if (masks.size() == 1 && fallback == current) {
+            return pattern;
+        }
+        return new MaskedPatternChain(masks.toArray(new Mask[masks.size()]), primaries.toArray(new PatternExtent[primaries.size()]), fallback);
+    }
+
+    /**
+     * @param pattern
+     * @return if a pattern only places blocks without NBT, so {@link Pattern#applyCombined(int, int, int)} never returns -1 and doesn't need an extent
+     */
+    public static boolean isConstant(Pattern pattern) {
+        if (pattern instanceof WeightedPattern) {
+            return ((WeightedPattern) pattern).isConstant();
+        }
+        return getCombined(pattern) != -1;
+    }
+
+    private static int getCombined(Pattern pattern) {
+        if (pattern instanceof BlockPattern) {
+            pattern = ((BlockPattern) pattern).getBlock();
+        }
+        if (pattern instanceof BaseBlock) {
+            BaseBlock block = (BaseBlock) pattern;
+            return block.hasNbtData() ? -1 : block.getCombined();
+        }
+        return -1;
+    }
+
+    /**
+     * Pick a pattern by weight<br>
+     * - A {@link TrueRandom} uses an alias table (one random number and at most two lookups)<br>
+     * - Any other random uses a cumulative table, as the alias table isn't monotone (similar noise values would pick unrelated patterns)
+     */
+    public static class WeightedPattern extends AbstractPattern {
+        private final SimpleRandom random;
+        private final Pattern[] patterns;
+        // The combined id of each pattern, or -1 if it isn't a constant block
+        private final int[] combined;
+        // The alias table (TrueRandom), or the cumulative chance of each pattern (other randoms)
+        private final double[] chance;
+        private final int[] alias;
+
+        public WeightedPattern(SimpleRandom random, Pattern[] patterns, double[] weights) {
+            this.random = random;
+            this.patterns = patterns;
+            int size = patterns.length;
+            this.combined = new int[size];
+            for (int i = 0; i < size; i++) {
+                combined[i] = getCombined(patterns[i]);
+            }
+            this.chance = new double[size];
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+            if (!(random instanceof TrueRandom)) {
+                this.alias = null;
+                double sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += weights[i];
+                    chance[i] = sum / total;
+                }
+                return;
+            }
+            this.alias = new int[size];
+            double[] scaled = new double[size];
+            int[] small = new int[size];
+            int[] large = new int[size];
+            int numSmall = 0;
+            int numLarge = 0;
+            for (int i = 0; i < size; i++) {
+                scaled[i] = weights[i] * size / total;
+                if (scaled[i] < 1) {
+                    small[numSmall++] = i;
+                } else {
+                    large[numLarge++] = i;
+                }
+            }
+            while (numSmall > 0 && numLarge > 0) {
+                int less = small[--numSmall];
+                int more = large[--numLarge];
+                chance[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] += scaled[less] - 1;
+                if (scaled[more] < 1) {
+                    small[numSmall++] = more;
+                } else {
+                    large[numLarge++] = more;
+                }
+            }
+            // Any left over are (within rounding) exactly 1
+            while (numLarge > 0) {
+                int index = large[--numLarge];
+                chance[index] = 1;
+                alias[index] = index;
+            }
+            while (numSmall > 0) {
+                int index = small[--numSmall];
+                chance[index] = 1;
+                alias[index] = index;
+            }
+        }
+
+        private WeightedPattern(WeightedPattern other, SimpleRandom random) {
+            this.random = random;
+            this.patterns = other.patterns;
+            this.combined = other.combined;
+            this.chance = other.chance;
+            this.alias = other.alias;
+        }
+
+        /**
+         * @return if every pattern is a block without NBT (so {@link #applyCombined(int, int, int)} never returns -1)
+         */
+        public boolean isConstant() {
+            for (int value : combined) {
+                if (value == -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get a copy which can be used by another thread<br>
+         * - A {@link TrueRandom} has state, so the copy gets its own (position based randoms are shared)
+         *
+         * @return
+         */
+        public WeightedPattern copy() {
+            return new WeightedPattern(this, random instanceof TrueRandom ? new TrueRandom() : random);
+        }
+
+        private int pick(int x, int y, int z) {
+            if (alias == null) {
+                double value = random.nextDouble(x, y, z);
+                int low = 0;
+                int high = patterns.length - 1;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (value < chance[mid]) {
+                        high = mid;
+                    } else {
+                        low = mid + 1;
+                    }
+                }
+                return low;
+            }
+            double value = random.nextDouble(x, y, z) * patterns.length;
+            int index = Math.min(patterns.length - 1, (int) value);
+            return value - index < chance[index] ? index : alias[index];
+        }
+
+        @Override
+        public BaseBlock apply(Vector position) {
+            return patterns[pick(position.getBlockX(), position.getBlockY(), position.getBlockZ())].apply(position);
+        }
+
+        @Override
+        public BaseBlock apply(int x, int y, int z) {
+            return patterns[pick(x, y, z)].apply(x, y, z);
+        }
+
+        @Override
+        public int applyCombined(int x, int y, int z) {
+            int index = pick(x, y, z);
+            int value = combined[index];
+            return value != -1 ? value : patterns[index].applyCombined(x, y, z);
+        }
+
+        @Override
+        public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
+            return patterns[pick(get.getBlockX(), get.getBlockY(), get.getBlockZ())].apply(extent, set, get);
+        }
+    }
+
+    /**
+     * The same as nested {@link MaskedPattern}s, where each is the secondary pattern of the previous
+     */
+    public static class MaskedPatternChain extends AbstractPattern {
+        private final Mask[] masks;
+        private final PatternExtent[] primaries;
+        private final Pattern fallback;
+        private final MutableBlockVector mutable = new MutableBlockVector();
+
+        public MaskedPatternChain(Mask[] masks, PatternExtent[] primaries, Pattern fallback) {
+            this.masks = masks;
+            this.primaries = primaries;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public BaseBlock apply(Vector position) {
+            for (int i = 0; i < masks.length; i++) {
+                PatternExtent primary = primaries[i];
+                primary.setTarget(position);
+                if (masks[i].test(position)) {
+                    return primary.getAndResetTarget();
+                }
+            }
+            return fallback.apply(position);
+        }
+
+        @Override
+        public int applyCombined(int x, int y, int z) {
+            Vector position = mutable.setComponents(x, y, z);
+            for (int i = 0; i < masks.length; i++) {
+                PatternExtent primary = primaries[i];
+                primary.setTarget(position);
+                if (masks[i].test(x, y, z)) {
+                    BaseBlock block = primary.getAndResetTarget();
+                    return block.hasNbtData() ? -1 : block.getCombined();
+                }
+            }
+            return fallback.applyCombined(x, y, z);
+        }
+
+        @Override
+        public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
+            for (int i = 0; i < masks.length; i++) {
+                PatternExtent primary = primaries[i];
+                primary.setTarget(get);
+                if (masks[i].test(get)) {
+                    return primary.getAndResetTarget(extent, set, get);
+                }
+            }
+            return fallback.apply(extent, set, get);
+        }
+    }
+}
@@ -30,6 +30,22 @@ public class RelativePattern extends AbstractPattern implements ResettablePatter
         return pattern.apply(mutable);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        if (origin == null) {
+            origin = new Vector(x, y, z);
+        }
+        return pattern.apply(x - origin.getBlockX(), y - origin.getBlockY(), z - origin.getBlockZ());
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        if (origin == null) {
+            origin = new Vector(x, y, z);
+        }
+        return pattern.applyCombined(x - origin.getBlockX(), y - origin.getBlockY(), z - origin.getBlockZ());
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         if (origin == null) {
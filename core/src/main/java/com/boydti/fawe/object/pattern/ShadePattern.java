@@ -29,6 +29,12 @@ public class ShadePattern extends AbstractPattern {
         return darken ? util.getDarkerBlock(block) : util.getLighterBlock(block);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        BaseBlock block = extent.getLazyBlock(x, y, z);
+        return darken ? util.getDarkerBlock(block) : util.getLighterBlock(block);
+    }
+
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
         util = Fawe.get().getCachedTextureUtil(true, 0, 100);
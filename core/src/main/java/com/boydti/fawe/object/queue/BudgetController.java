@@ -0,0 +1,54 @@
+package com.boydti.fawe.object.queue;
+
+/**
+ * A PID controller for the time (ms) given to block placement each tick<br>
+ * - The measured value is the tick duration, the output is the allocation
+ * - Uses the velocity form, so clamping the output can't cause integral wind-up
+ */
+public class BudgetController {
+    private final double kp, ki, kd;
+    private final double min, max;
+
+    private double output;
+    private double lastError;
+    private double lastError2;
+
+    public BudgetController(double kp, double ki, double kd, double min, double max) {
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+        this.min = Math.max(0, Math.min(min, max));
+        this.max = Math.max(min, max);
+        this.output = this.max;
+    }
+
+    /**
+     * Update the controller with the latest tick duration
+     *
+     * @param target   the desired tick duration (ms)
+     * @param measured the last tick duration (ms)
+     * @return the new allocation (ms)
+     */
+    public long update(double target, double measured) {
+        double error = target - measured;
+        // A tick can't be shorter than 50ms, so keeping up is treated as having some headroom
+        if (error >= 0) {
+            error = Math.max(error, 1);
+        }
+        double delta = kp * (error - lastError) + ki * error + kd * (error - 2 * lastError + lastError2);
+        lastError2 = lastError;
+        lastError = error;
+        output = Math.max(min, Math.min(max, output + delta));
+        return getOutput();
+    }
+
+    public long getOutput() {
+        return Math.round(output);
+    }
+
+    public void reset() {
+        output = max;
+        lastError = 0;
+        lastError2 = 0;
+    }
+}
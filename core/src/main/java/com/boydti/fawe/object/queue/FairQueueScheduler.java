@@ -0,0 +1,152 @@
+package com.boydti.fawe.object.queue;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.util.SetQueue;
+import com.sk89q.worldedit.EditSession;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares each tick between the queued edits of all players using deficit round robin<br>
+ * - Edits are grouped by player (or by queue when there's no player)
+ * - Each group is credited a slice of the tick proportional to its weight
+ * - Unused credit carries over to the next tick, so small edits aren't starved by large ones
+ * - The time per tick is adjusted by a {@link BudgetController} to keep ticks under the target
+ */
+public class FairQueueScheduler implements QueueScheduler {
+
+    private final Map<Object, Flow> flows = new LinkedHashMap<>();
+    private final Map<Object, Integer> weights = new ConcurrentHashMap<>();
+    private final BudgetController controller;
+
+    private static class Flow {
+        private final ArrayDeque<FaweQueue> queues = new ArrayDeque<>();
+        private int weight = 1;
+        private double deficit;
+        private boolean active;
+    }
+
+    public FairQueueScheduler() {
+        Settings.QUEUE.SCHEDULER settings = Settings.IMP.QUEUE.SCHEDULER;
+        this.controller = new BudgetController(settings.P, settings.I, settings.D, settings.MIN_MS, settings.MAX_MS);
+    }
+
+    /**
+     * Set the share of each tick a player (or queue) gets relative to others
+     *
+     * @param key    the player UUID, or the queue
+     * @param weight a positive weight (default 1)
+     */
+    public void setWeight(Object key, int weight) {
+        if (weight <= 1) {
+            weights.remove(key);
+        } else {
+            weights.put(key, weight);
+        }
+    }
+
+    public int getWeight(Object key) {
+        Integer weight = weights.get(key);
+        return weight == null ? 1 : weight;
+    }
+
+    protected Object getKey(FaweQueue queue) {
+        for (EditSession session : queue.getEditSessions()) {
+            FawePlayer player = session.getPlayer();
+            if (player != null) {
+                return player.getUUID();
+            }
+        }
+        return queue;
+    }
+
+    @Override
+    public long getAllocation(long interval, long used) {
+        long allocate = controller.update(Settings.IMP.QUEUE.SCHEDULER.TARGET_MSPT, interval);
+        return Math.max(0, allocate - used);
+    }
+
+    @Override
+    public long run(SetQueue setQueue, Collection<FaweQueue> queues, long time) {
+        long start = System.currentTimeMillis();
+        if (!update(queues)) {
+            return 0;
+        }
+        int totalWeight = 0;
+        for (Flow flow : flows.values()) {
+            totalWeight += flow.weight;
+        }
+        double quantum = Math.max(Settings.IMP.QUEUE.SCHEDULER.QUANTUM_MS, (double) time / totalWeight);
+        long remaining = time;
+        boolean placed = true;
+        while (remaining > 0 && placed && !flows.isEmpty()) {
+            placed = false;
+            Iterator<Flow> iter = flows.values().iterator();
+            while (iter.hasNext() && remaining > 0) {
+                Flow flow = iter.next();
+                flow.deficit = Math.min(flow.deficit + quantum * flow.weight, Math.max(time, quantum * flow.weight));
+                if (flow.deficit < 1) {
+                    continue;
+                }
+                FaweQueue queue = flow.queues.poll();
+                long slice = Math.min((long) flow.deficit, remaining);
+                long queueStart = System.currentTimeMillis();
+                boolean more = setQueue.runQueue(queue, slice);
+                long queueUsed = System.currentTimeMillis() - queueStart;
+                placed = true;
+                flow.deficit -= Math.max(1, queueUsed);
+                if (more && queue.size() > 0) {
+                    flow.queues.add(queue);
+                } else {
+                    setQueue.finish(queue);
+                }
+                if (flow.queues.isEmpty()) {
+                    iter.remove();
+                }
+                remaining = time - (System.currentTimeMillis() - start);
+            }
+        }
+        // Rotate so the same player isn't always first
+        if (flows.size() > 1) {
+            Iterator<Map.Entry<Object, Flow>> iter = flows.entrySet().iterator();
+            Map.Entry<Object, Flow> first = iter.next();
+            iter.remove();
+            flows.put(first.getKey(), first.getValue());
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Group the queues by key, keeping the deficit of existing groups
+     *
+     * @param queues
+     * @return if there is anything to place
+     */
+    private boolean update(Collection<FaweQueue> queues) {
+        for (Flow flow : flows.values()) {
+            flow.active = false;
+            flow.queues.clear();
+        }
+        for (FaweQueue queue : queues) {
+            if (queue.size() <= 0) {
+                continue;
+            }
+            Object key = getKey(queue);
+            Flow flow = flows.get(key);
+            if (flow == null) {
+                flows.put(key, flow = new Flow());
+            }
+            flow.weight = getWeight(key);
+            flow.active = true;
+            flow.queues.add(queue);
+        }
+        flows.values().removeIf(flow -> !flow.active);
+        return !flows.isEmpty();
+    }
+}
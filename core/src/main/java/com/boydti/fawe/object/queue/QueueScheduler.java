@@ -0,0 +1,30 @@
+package com.boydti.fawe.object.queue;
+
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.util.SetQueue;
+import java.util.Collection;
+
+/**
+ * Decides how the time available each tick is shared between the queues waiting to be placed
+ */
+public interface QueueScheduler {
+
+    /**
+     * Get the time (ms) that can be spent placing chunks this tick
+     *
+     * @param interval the time (ms) since the previous tick
+     * @param used     the time (ms) already used by other tasks this tick
+     * @return
+     */
+    long getAllocation(long interval, long used);
+
+    /**
+     * Place chunks from the provided queues
+     *
+     * @param setQueue the queue manager used to run each queue
+     * @param queues   the queues with changes waiting to be placed
+     * @param time     the time (ms) that can be spent
+     * @return the time used (ms)
+     */
+    long run(SetQueue setQueue, Collection<FaweQueue> queues, long time);
+}
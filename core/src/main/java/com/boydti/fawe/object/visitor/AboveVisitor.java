@@ -52,4 +52,9 @@ public class AboveVisitor extends RecursiveVisitor {
     public boolean isVisitable(Vector from, Vector to) {
         return (from.getBlockY() >= baseY) && super.isVisitable(from, to);
     }
+
+    @Override
+    public boolean isVisitable(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        return (fromY >= baseY) && super.isVisitable(fromX, fromY, fromZ, toX, toY, toZ);
+    }
 }
\ No newline at end of file
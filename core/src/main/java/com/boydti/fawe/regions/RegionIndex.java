@@ -0,0 +1,165 @@
+package com.boydti.fawe.regions;
+
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A chunk grid over a set of regions, so a block is only tested against the regions overlapping its chunk<br>
+ * - A chunk column inside a cuboid is marked as full, so its blocks only need a height check<br>
+ * - Regions covering too many chunks aren't indexed, and are tested for every block<br>
+ * - Safe to use from multiple threads once built
+ */
+public class RegionIndex {
+    // Regions covering more chunks than this are tested linearly
+    private static final int MAX_CHUNKS = 1 << 14;
+    private static final Region[] NONE = new Region[0];
+    private static final Cell EMPTY = new Cell();
+
+    private final Region[] regions;
+    private final Region[] unindexed;
+    private final boolean global;
+    private final Long2ObjectOpenHashMap<Cell> cells = new Long2ObjectOpenHashMap<>();
+    private Lookup last = new Lookup(Long.MIN_VALUE, EMPTY);
+
+    private static final class Cell {
+        // The region containing the whole chunk column, and its height range
+        private Region full;
+        private int minY = 1;
+        private int maxY = 0;
+        // The other regions which overlap the chunk
+        private Region[] partial = NONE;
+
+        private void addPartial(Region region) {
+            partial = Arrays.copyOf(partial, partial.length + 1);
+            partial[partial.length - 1] = region;
+        }
+    }
+
+    private static final class Lookup {
+        private final long key;
+        private final Cell cell;
+
+        private Lookup(long key, Cell cell) {
+            this.key = key;
+            this.cell = cell;
+        }
+    }
+
+    public RegionIndex(Region[] regions) {
+        this.regions = regions;
+        List<Region> linear = new ArrayList<>();
+        boolean global = false;
+        for (Region region : regions) {
+            if (region.isGlobal()) {
+                global = true;
+                continue;
+            }
+            Vector min = region.getMinimumPoint();
+            Vector max = region.getMaximumPoint();
+            int minX = min.getBlockX();
+            int minZ = min.getBlockZ();
+            int maxX = max.getBlockX();
+            int maxZ = max.getBlockZ();
+            long chunks = (long) ((maxX >> 4) - (minX >> 4) + 1) * ((maxZ >> 4) - (minZ >> 4) + 1);
+            if (chunks > MAX_CHUNKS) {
+                linear.add(region);
+                continue;
+            }
+            boolean cuboid = region instanceof CuboidRegion;
+            for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+                int bx = cx << 4;
+                for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                    int bz = cz << 4;
+                    long key = MathMan.pairInt(cx, cz);
+                    Cell cell = cells.get(key);
+                    if (cell == null) {
+                        cells.put(key, cell = new Cell());
+                    }
+                    if (cuboid && minX <= bx && maxX >= bx + 15 && minZ <= bz && maxZ >= bz + 15) {
+                        int minY = min.getBlockY();
+                        int maxY = max.getBlockY();
+                        if (cell.full == null) {
+                            cell.full = region;
+                            cell.minY = minY;
+                            cell.maxY = maxY;
+                            continue;
+                        }
+                        // Keep the taller region as the full one
+                        if (maxY - minY > cell.maxY - cell.minY) {
+                            cell.addPartial(cell.full);
+                            cell.full = region;
+                            cell.minY = minY;
+                            cell.maxY = maxY;
+                            continue;
+                        }
+                    }
+                    cell.addPartial(region);
+                }
+            }
+        }
+        this.global = global;
+        this.unindexed = linear.toArray(new Region[linear.size()]);
+    }
+
+    public Region[] getRegions() {
+        return regions;
+    }
+
+    private Cell getCell(int cx, int cz) {
+        long key = MathMan.pairInt(cx, cz);
+        Lookup lookup = last;
+        if (lookup.key != key) {
+            Cell cell = cells.get(key);
+            last = lookup = new Lookup(key, cell == null ? EMPTY : cell);
+        }
+        return lookup.cell;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        if (global) {
+            return true;
+        }
+        Cell cell = getCell(x >> 4, z >> 4);
+        if (y >= cell.minY && y <= cell.maxY) {
+            return true;
+        }
+        for (Region region : cell.partial) {
+            if (region.contains(x, y, z)) {
+                return true;
+            }
+        }
+        for (Region region : unindexed) {
+            if (region.contains(x, y, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(int x, int z) {
+        if (global) {
+            return true;
+        }
+        Cell cell = getCell(x >> 4, z >> 4);
+        if (cell.full != null) {
+            return true;
+        }
+        for (Region region : cell.partial) {
+            if (region.contains(x, z)) {
+                return true;
+            }
+        }
+        for (Region region : unindexed) {
+            if (region.contains(x, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -5,6 +5,7 @@ import com.boydti.fawe.FaweAPI;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.regions.FaweMask;
 import com.boydti.fawe.regions.FaweMaskManager;
+import com.boydti.fawe.regions.RegionIndex;
 import com.boydti.fawe.regions.SimpleRegion;
 import com.boydti.fawe.regions.general.RegionFilter;
 import com.intellectualcrafters.plot.PS;
@@ -136,15 +137,17 @@ public class PlotSquaredFeature extends FaweMaskManager {
         if (regions.size() == 1) {
             maskedRegion = new CuboidRegion(pos1, pos2);
         } else {
+            // Merged plots can have hundreds of regions, so they are looked up by chunk
+            final RegionIndex index = new RegionIndex(faweRegions.toArray(new Region[faweRegions.size()]));
             maskedRegion = new SimpleRegion(FaweAPI.getWorld(area.worldname), pos1, pos2) {
                 @Override
                 public boolean contains(int x, int y, int z) {
-                    return WEManager.maskContains(regions, x, y, z);
+                    return index.contains(x, y, z);
                 }
 
                 @Override
                 public boolean contains(int x, int z) {
-                    return WEManager.maskContains(regions, x, z);
+                    return index.contains(x, z);
                 }
             };
         }
@@ -0,0 +1,228 @@
+package com.boydti.fawe.util;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.util.Arrays;
+
+/**
+ * A k-d tree over the RGB values of a color array (one tree for each alpha value)<br>
+ * - Gives the same result as a linear scan using {@link TextureUtil#colorDistance(int, int, int, int)} (ties go to the lowest index)<br>
+ * - Subtrees are skipped using a lower bound of the distance (the weighted RGB part, without the hue part)<br>
+ * - After many queries, a 2^15 entry table (5 bits per channel) gives each query a close starting match
+ */
+public class ColorIndex {
+    private static final int LEAF_SIZE = 8;
+    // Queries to an alpha value before its lookup table is built
+    private static final int LOOKUP_QUERIES = 1 << 15;
+
+    private final int[] colors;
+    private final TextureUtil util;
+    private final Int2ObjectOpenHashMap<Tree> trees = new Int2ObjectOpenHashMap<>();
+
+    public ColorIndex(int[] colors, TextureUtil util) {
+        this.colors = colors;
+        this.util = util;
+        Int2ObjectOpenHashMap<int[]> byAlpha = new Int2ObjectOpenHashMap<>();
+        int[] counts = new int[256];
+        for (int color : colors) {
+            counts[(color >> 24) & 0xFF]++;
+        }
+        for (int i = 0; i < colors.length; i++) {
+            int alpha = (colors[i] >> 24) & 0xFF;
+            int[] indexes = byAlpha.get(alpha);
+            if (indexes == null) {
+                byAlpha.put(alpha, indexes = new int[counts[alpha]]);
+                counts[alpha] = 0;
+            }
+            indexes[counts[alpha]++] = i;
+        }
+        for (Int2ObjectMap.Entry<int[]> entry : byAlpha.int2ObjectEntrySet()) {
+            trees.put(entry.getIntKey(), new Tree(entry.getValue()));
+        }
+    }
+
+    /**
+     * @param colors
+     * @return if this index was built from the array
+     */
+    public boolean isFor(int[] colors) {
+        return this.colors == colors;
+    }
+
+    /**
+     * Get the nearest color with the same alpha
+     *
+     * @param color
+     * @return the index in the color array, or -1
+     */
+    public int getNearest(int color) {
+        Tree tree = trees.get((color >> 24) & 0xFF);
+        return tree == null ? -1 : tree.getNearest(color, false);
+    }
+
+    /**
+     * Get the nearest color with the same alpha, which is not the color itself
+     *
+     * @param color
+     * @return the index in the color array, or -1
+     */
+    public int getNextNearest(int color) {
+        Tree tree = trees.get((color >> 24) & 0xFF);
+        return tree == null ? -1 : tree.getNearest(color, true);
+    }
+
+    /**
+     * The lowest possible {@link TextureUtil#colorDistance(int, int, int, int)} from a color to any color in a box<br>
+     * - The red and blue weights are at least 512 / 256, and the hue distance is never negative
+     */
+    private static long getMinDistance(int red, int green, int blue, int[] bounds, int offset) {
+        int r = red < bounds[offset] ? bounds[offset] - red : red > bounds[offset + 1] ? red - bounds[offset + 1] : 0;
+        int g = green < bounds[offset + 2] ? bounds[offset + 2] - green : green > bounds[offset + 3] ? green - bounds[offset + 3] : 0;
+        int b = blue < bounds[offset + 4] ? bounds[offset + 4] - blue : blue > bounds[offset + 5] ? blue - bounds[offset + 5] : 0;
+        return 2L * r * r + 4L * g * g + 2L * b * b;
+    }
+
+    private final class Tree {
+        // Indexes into the color array, ordered so each node is a contiguous range
+        private final int[] order;
+        private final int[] start;
+        private final int[] end;
+        // The children of each node (left is -1 for a leaf)
+        private final int[] left;
+        private final int[] right;
+        // min red, max red, min green, max green, min blue, max blue
+        private final int[] bounds;
+        private int nodes;
+
+        private int queries;
+        private volatile int[] lookup;
+
+        private Tree(int[] order) {
+            this.order = order;
+            int maxNodes = Math.max(1, (order.length / LEAF_SIZE + 1) * 4);
+            this.start = new int[maxNodes];
+            this.end = new int[maxNodes];
+            this.left = new int[maxNodes];
+            this.right = new int[maxNodes];
+            this.bounds = new int[maxNodes * 6];
+            build(0, order.length);
+        }
+
+        private int build(int from, int to) {
+            int node = nodes++;
+            start[node] = from;
+            end[node] = to;
+            int offset = node * 6;
+            bounds[offset] = bounds[offset + 2] = bounds[offset + 4] = 255;
+            bounds[offset + 1] = bounds[offset + 3] = bounds[offset + 5] = 0;
+            for (int i = from; i < to; i++) {
+                int color = colors[order[i]];
+                for (int channel = 0; channel < 3; channel++) {
+                    int value = (color >> (16 - channel * 8)) & 0xFF;
+                    bounds[offset + channel * 2] = Math.min(bounds[offset + channel * 2], value);
+                    bounds[offset + channel * 2 + 1] = Math.max(bounds[offset + channel * 2 + 1], value);
+                }
+            }
+            if (to - from <= LEAF_SIZE) {
+                left[node] = -1;
+                return node;
+            }
+            // Split the widest channel at the median
+            int channel = 0;
+            int spread = -1;
+            for (int i = 0; i < 3; i++) {
+                int value = bounds[offset + i * 2 + 1] - bounds[offset + i * 2];
+                if (value > spread) {
+                    spread = value;
+                    channel = i;
+                }
+            }
+            int shift = 16 - channel * 8;
+            long[] keys = new long[to - from];
+            for (int i = from; i < to; i++) {
+                keys[i - from] = ((long) ((colors[order[i]] >> shift) & 0xFF) << 32) | order[i];
+            }
+            Arrays.sort(keys);
+            for (int i = from; i < to; i++) {
+                order[i] = (int) keys[i - from];
+            }
+            int mid = (from + to) >>> 1;
+            left[node] = build(from, mid);
+            right[node] = build(mid, to);
+            return node;
+        }
+
+        private int getNearest(int color, boolean excludeSelf) {
+            int red = (color >> 16) & 0xFF;
+            int green = (color >> 8) & 0xFF;
+            int blue = color & 0xFF;
+            Match match = new Match();
+            int[] table = lookup;
+            if (table == null && ++queries >= LOOKUP_QUERIES) {
+                table = getLookup();
+            }
+            if (table != null) {
+                int seed = table[((red >> 3) << 10) | ((green >> 3) << 5) | (blue >> 3)];
+                if (seed != -1 && !(excludeSelf && colors[seed] == color)) {
+                    match.distance = util.colorDistance(red, green, blue, colors[seed]);
+                    match.index = seed;
+                }
+            }
+            search(match, 0, red, green, blue, color, excludeSelf);
+            return match.index;
+        }
+
+        private void search(Match match, int node, int red, int green, int blue, int exclude, boolean excludeSelf) {
+            if (getMinDistance(red, green, blue, bounds, node * 6) > match.distance) {
+                return;
+            }
+            int first = left[node];
+            if (first == -1) {
+                for (int i = start[node]; i < end[node]; i++) {
+                    int index = order[i];
+                    int other = colors[index];
+                    if (excludeSelf && other == exclude) {
+                        continue;
+                    }
+                    long distance = util.colorDistance(red, green, blue, other);
+                    if (distance < match.distance || (distance == match.distance && index < match.index)) {
+                        match.distance = distance;
+                        match.index = index;
+                    }
+                }
+                return;
+            }
+            int second = right[node];
+            // Search the closer child first so more of the other can be skipped
+            if (getMinDistance(red, green, blue, bounds, second * 6) < getMinDistance(red, green, blue, bounds, first * 6)) {
+                int tmp = first;
+                first = second;
+                second = tmp;
+            }
+            search(match, first, red, green, blue, exclude, excludeSelf);
+            search(match, second, red, green, blue, exclude, excludeSelf);
+        }
+
+        private synchronized int[] getLookup() {
+            int[] table = lookup;
+            if (table != null) {
+                return table;
+            }
+            table = new int[1 << 15];
+            for (int i = 0; i < table.length; i++) {
+                int red = ((i >> 10) << 3) | 4;
+                int green = (((i >> 5) & 31) << 3) | 4;
+                int blue = ((i & 31) << 3) | 4;
+                Match match = new Match();
+                search(match, 0, red, green, blue, 0, false);
+                table[i] = match.index;
+            }
+            return lookup = table;
+        }
+    }
+
+    private static final class Match {
+        private long distance = Long.MAX_VALUE;
+        private int index = -1;
+    }
+}
@@ -7,8 +7,7 @@ import com.boydti.fawe.object.*;
 import com.boydti.fawe.object.changeset.CPUOptimizedChangeSet;
 import com.boydti.fawe.object.changeset.FaweStreamChangeSet;
 import com.boydti.fawe.object.io.AbstractDelegateOutputStream;
-import com.github.luben.zstd.ZstdInputStream;
-import com.github.luben.zstd.ZstdOutputStream;
+import com.boydti.fawe.object.io.codec.CompressionCodecs;
 import com.sk89q.jnbt.*;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
@@ -18,9 +17,11 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.lang.reflect.Array;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
@@ -278,6 +279,39 @@ public class MainUtil {
         return LZ4Utils.maxCompressedLength(size);
     }
 
+    /**
+     * Unmap a direct or memory mapped buffer now rather than waiting for it to be garbage collected<br>
+     * - The buffer must not be used afterwards
+     *
+     * @param cb
+     */
+    public static void closeDirectBuffer(ByteBuffer cb) {
+        if (cb == null || !cb.isDirect()) return;
+
+        // we could use this type cast and call functions without reflection code,
+        // but static import from sun.* package is risky for non-SUN virtual machine.
+        //try { ((sun.nio.ch.DirectBuffer)cb).cleaner().clean(); } catch (Exception ex) { }
+        try {
+            Method cleaner = cb.getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            clean.setAccessible(true);
+            clean.invoke(cleaner.invoke(cb));
+        } catch (Exception ex) {
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafeField.setAccessible(true);
+                final Object theUnsafe = theUnsafeField.get(null);
+                final Method invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleanerMethod.invoke(theUnsafe, cb);
+            } catch (Exception e) {
+                System.gc();
+            }
+        }
+        cb = null;
+    }
+
     public static byte[] compress(byte[] bytes, byte[] buffer, Deflater deflate) throws IOException {
         if (buffer == null) {
             buffer = new byte[8192];
@@ -348,7 +382,7 @@ public class MainUtil {
         }
         int gzipAmount = amount > 6 ? 1 : 0;
         for (int i = 0; i < gzipAmount; i++) {
-            os = new ZstdOutputStream(os, 22);
+            os = CompressionCodecs.ZSTD.compress(os, 22, null, buffer);
         }
         LZ4Factory factory = LZ4Factory.fastestInstance();
         int fastAmount = 1 + ((amount - 1) % 3);
@@ -373,6 +407,9 @@ public class MainUtil {
 
     public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws IOException {
         int mode = (byte) is.read();
+        if (mode == CompressionCodecs.HEADER) {
+            return CompressionCodecs.getCompressedIS(is, buffer);
+        }
         is = new BufferedInputStream(is, buffer);
         if (mode == 0) {
             return new FaweInputStream(is);
@@ -392,7 +429,7 @@ public class MainUtil {
             if (mode > 0) {
                 is = new BufferedInputStream(new GZIPInputStream(is, buffer));
             } else {
-                is = new ZstdInputStream(is);
+                is = CompressionCodecs.ZSTD.decompress(is, null, buffer);
             }
         }
         amountAbs = (1 + ((amountAbs - 1) % 3)) + (amountAbs > 3 ? 1 : 0);
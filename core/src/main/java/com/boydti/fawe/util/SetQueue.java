@@ -3,6 +3,8 @@ package com.boydti.fawe.util;
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.queue.FairQueueScheduler;
+import com.boydti.fawe.object.queue.QueueScheduler;
 import com.boydti.fawe.wrappers.WorldWrapper;
 import com.sk89q.worldedit.world.World;
 import java.util.ArrayList;
@@ -38,6 +40,11 @@ public class SetQueue {
     private long allocate = 50;
     private long lastSuccess;
 
+    /**
+     * Shares each tick between multiple queues (null = one queue per tick)
+     */
+    private QueueScheduler scheduler;
+
     /**
      * A queue of tasks that will run when the queue is empty
      */
@@ -60,6 +67,19 @@ public class SetQueue {
         return pool;
     }
 
+    /**
+     * Set how the time each tick is shared between queues
+     *
+     * @param scheduler the scheduler, or null to place one queue per tick
+     */
+    public void setScheduler(QueueScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public QueueScheduler getScheduler() {
+        return scheduler;
+    }
+
     public void runMiscTasks() {
         while (Fawe.get().getTimer().isAbove(targetTPS)) {
             Runnable task = tasks.poll();
@@ -76,6 +96,9 @@ public class SetQueue {
         activeQueues = new ConcurrentLinkedDeque();
         inactiveQueues = new ConcurrentLinkedDeque<>();
         if (TaskManager.IMP == null) return;
+        if (Settings.IMP.QUEUE.SCHEDULER.MODE.equalsIgnoreCase("FAIR")) {
+            scheduler = new FairQueueScheduler();
+        }
         TaskManager.IMP.repeat(new Runnable() {
             @Override
             public void run() {
@@ -91,9 +114,14 @@ public class SetQueue {
 
                     targetTPS = 18 - Math.max(Settings.IMP.QUEUE.EXTRA_TIME_MS * 0.05, 0);
 
+                    long interval = SetQueue.this.last == 0 ? 50 : now - SetQueue.this.last;
                     long diff = (50 + SetQueue.this.last) - (SetQueue.this.last = now);
                     long absDiff = Math.abs(diff);
-                    if (diff == 0) {
+                    QueueScheduler scheduler = SetQueue.this.scheduler;
+                    if (scheduler != null) {
+                        allocate = scheduler.getAllocation(interval, 0);
+                        absDiff = 0;
+                    } else if (diff == 0) {
                         allocate = Math.min(50, allocate + 1);
                     } else if (diff < 0) {
                         allocate = Math.max(5, allocate + diff);
@@ -152,38 +180,24 @@ public class SetQueue {
                         }
                     }
 
+                    if (scheduler != null) {
+                        Collection<FaweQueue> queues = getReadyQueues();
+                        if (!queues.isEmpty()) {
+                            long time = Settings.IMP.QUEUE.EXTRA_TIME_MS + currentAllocate - System.currentTimeMillis() + now;
+                            scheduler.run(SetQueue.this, queues, time);
+                        }
+                        return;
+                    }
+
                     FaweQueue queue = getNextQueue();
                     if (queue == null) {
                         return;
                     }
 
                     long time = Settings.IMP.QUEUE.EXTRA_TIME_MS + currentAllocate - System.currentTimeMillis() + now;
-                    // Disable the async catcher as it can't discern async vs parallel
-                    boolean parallel = Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
-                    queue.startSet(parallel);
-                    try {
-                        if (!queue.next(Settings.IMP.QUEUE.PARALLEL_THREADS, time) && queue.getStage() == QueueStage.ACTIVE) {
-                            queue.setStage(QueueStage.NONE);
-                            queue.runTasks();
-                        }
-                    } catch (Throwable e) {
-                        pool.awaitQuiescence(Settings.IMP.QUEUE.DISCARD_AFTER_MS, TimeUnit.MILLISECONDS);
-                        completer = new ExecutorCompletionService(pool);
-                        e.printStackTrace();
-                    }
-                    if (pool.getQueuedSubmissionCount() != 0 || pool.getRunningThreadCount() != 0 || pool.getQueuedTaskCount() != 0) {
-//                        if (Fawe.get().isJava8())
-                        {
-                            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-                        }
-//                        else {
-//                            pool.shutdown();
-//                            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-//                            pool = new ForkJoinPool();
-//                            completer = new ExecutorCompletionService(pool);
-//                        }
+                    if (!runQueue(queue, time) && queue.getStage() == QueueStage.ACTIVE) {
+                        finish(queue);
                     }
-                    queue.endSet(parallel);
                 } catch (Throwable e) {
                     e.printStackTrace();
                 }
@@ -191,6 +205,45 @@ public class SetQueue {
         }, 1);
     }
 
+    /**
+     * Place chunks from a queue for up to the provided time
+     *
+     * @param queue
+     * @param time  the time in ms
+     * @return if the queue has more chunks to place
+     */
+    public boolean runQueue(FaweQueue queue, long time) {
+        // Disable the async catcher as it can't discern async vs parallel
+        boolean parallel = Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
+        boolean result = false;
+        queue.startSet(parallel);
+        try {
+            result = queue.next(Settings.IMP.QUEUE.PARALLEL_THREADS, time);
+        } catch (Throwable e) {
+            pool.awaitQuiescence(Settings.IMP.QUEUE.DISCARD_AFTER_MS, TimeUnit.MILLISECONDS);
+            completer = new ExecutorCompletionService(pool);
+            e.printStackTrace();
+        }
+        if (pool.getQueuedSubmissionCount() != 0 || pool.getRunningThreadCount() != 0 || pool.getQueuedTaskCount() != 0) {
+            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        queue.endSet(parallel);
+        return result;
+    }
+
+    /**
+     * Mark a queue as done and run its tasks (if it was active)
+     *
+     * @param queue
+     */
+    public void finish(FaweQueue queue) {
+        if (queue.getStage() == QueueStage.ACTIVE) {
+            queue.setStage(QueueStage.NONE);
+            activeQueues.remove(queue);
+            queue.runTasks();
+        }
+    }
+
     public QueueStage getStage(FaweQueue queue) {
         return queue.getStage();
     }
@@ -337,6 +390,32 @@ public class SetQueue {
         return null;
     }
 
+    /**
+     * Get all the queues which can be placed this tick<br>
+     * - All active queues which aren't empty
+     * - Otherwise, the inactive queue chosen by {@link #getNextQueue()}
+     *
+     * @return
+     */
+    public Collection<FaweQueue> getReadyQueues() {
+        FaweQueue next = getNextQueue();
+        if (next == null) {
+            return Collections.emptyList();
+        }
+        ArrayList<FaweQueue> ready = new ArrayList<>(activeQueues.size() + 1);
+        long now = System.currentTimeMillis();
+        for (FaweQueue queue : activeQueues) {
+            if (queue.size() > 0) {
+                queue.setModified(now);
+                ready.add(queue);
+            }
+        }
+        if (!ready.contains(next)) {
+            ready.add(next);
+        }
+        return ready;
+    }
+
     public boolean next() {
         while (activeQueues.size() > 0) {
             FaweQueue queue = activeQueues.poll();
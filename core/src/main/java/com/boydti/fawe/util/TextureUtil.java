@@ -85,6 +85,9 @@ public class TextureUtil implements TextureHolder {
     protected int[] validLayerColors;
     protected char[][] validLayerBlocks;
 
+    private volatile ColorIndex blockIndex;
+    private volatile ColorIndex layerIndex;
+
     protected int[] validMixBiomeColors;
     protected long[] validMixBiomeIds;
 
@@ -365,24 +368,9 @@ public class TextureUtil implements TextureHolder {
     }
 
     public BaseBlock getNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) return null;
-        return FaweCache.CACHE_BLOCK[closest];
+        int index = getBlockIndex().getNearest(color);
+        if (index == -1) return null;
+        return FaweCache.CACHE_BLOCK[validBlockIds[index]];
     }
 
     public BaseBlock getNearestBlock(BaseBlock block) {
@@ -392,24 +380,9 @@ public class TextureUtil implements TextureHolder {
     }
 
     public BaseBlock getNextNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (other != color && ((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) return null;
-        return FaweCache.CACHE_BLOCK[closest];
+        int index = getBlockIndex().getNextNearest(color);
+        if (index == -1) return null;
+        return FaweCache.CACHE_BLOCK[validBlockIds[index]];
     }
 
     /**
@@ -419,23 +392,33 @@ public class TextureUtil implements TextureHolder {
      * @return
      */
     public char[] getNearestLayer(int color) {
-        char[] closest = null;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validLayerColors.length; i++) {
-            int other = validLayerColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validLayerBlocks[i];
-                }
-            }
+        int index = getLayerIndex().getNearest(color);
+        if (index == -1) return null;
+        return validLayerBlocks[index];
+    }
+
+    /**
+     * Get the index used to find the nearest block color<br>
+     * - Rebuilt if the valid colors have been replaced
+     *
+     * @return
+     */
+    protected ColorIndex getBlockIndex() {
+        ColorIndex index = blockIndex;
+        int[] colors = validColors;
+        if (index == null || !index.isFor(colors)) {
+            blockIndex = index = new ColorIndex(colors, this);
         }
-        return closest;
+        return index;
+    }
+
+    protected ColorIndex getLayerIndex() {
+        ColorIndex index = layerIndex;
+        int[] colors = validLayerColors;
+        if (index == null || !index.isFor(colors)) {
+            layerIndex = index = new ColorIndex(colors, this);
+        }
+        return index;
     }
 
     public BaseBlock getLighterBlock(BaseBlock block) {
@@ -135,6 +135,9 @@ public final class NBTInputStream implements Closeable {
 
     private byte[] buf;
 
+    private static final int SLICE_SIZE = 1 << 16;
+    private byte[] sliceBuf;
+
     public void readTagPaylodLazy(int type, int depth, String node, RunnableVal2<String, RunnableVal2> getReader) throws IOException {
         switch (type) {
             case NBTConstants.TYPE_END:
@@ -172,7 +175,18 @@ public final class NBTInputStream implements Closeable {
                     is.skipBytes(length);
                     return;
                 }
-                if (reader instanceof NBTStreamer.ByteReader) {
+                if (reader instanceof NBTStreamer.ByteArrayReader) {
+                    NBTStreamer.ByteArrayReader arrayReader = (NBTStreamer.ByteArrayReader) reader;
+                    if (sliceBuf == null) {
+                        sliceBuf = new byte[SLICE_SIZE];
+                    }
+                    for (int i = 0; i < length; ) {
+                        int amount = Math.min(SLICE_SIZE, length - i);
+                        is.readFully(sliceBuf, 0, amount);
+                        arrayReader.run(i, sliceBuf, 0, amount);
+                        i += amount;
+                    }
+                } else if (reader instanceof NBTStreamer.ByteReader) {
                     NBTStreamer.ByteReader byteReader = (NBTStreamer.ByteReader) reader;
                     int i = 0;
                     if (is instanceof InputStream) {
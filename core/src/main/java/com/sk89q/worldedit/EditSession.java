@@ -25,6 +25,8 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.MappedFaweQueue;
+import com.boydti.fawe.example.ParallelBlockCounter;
+import com.boydti.fawe.example.ParallelRegionEdit;
 import com.boydti.fawe.jnbt.anvil.MCAQueue;
 import com.boydti.fawe.jnbt.anvil.MCAWorld;
 import com.boydti.fawe.logging.LoggingChangeSet;
@@ -40,6 +42,7 @@ import com.boydti.fawe.object.extent.*;
 import com.boydti.fawe.object.function.SurfaceRegionFunction;
 import com.boydti.fawe.object.mask.ResettableMask;
 import com.boydti.fawe.object.pattern.ExistingPattern;
+import com.boydti.fawe.object.pattern.PatternCompiler;
 import com.boydti.fawe.object.progress.ChatProgressTracker;
 import com.boydti.fawe.object.progress.DefaultProgressTracker;
 import com.boydti.fawe.util.*;
@@ -63,7 +66,6 @@ import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
 import com.sk89q.worldedit.extent.world.SurvivalModeExtent;
 import com.sk89q.worldedit.function.GroundFunction;
 import com.sk89q.worldedit.function.RegionFunction;
-import com.sk89q.worldedit.function.RegionMaskingFilter;
 import com.sk89q.worldedit.function.block.BlockReplace;
 import com.sk89q.worldedit.function.block.Naturalizer;
 import com.sk89q.worldedit.function.generator.GardenPatchGenerator;
@@ -1335,7 +1337,7 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         if (searchIDs.isEmpty()) {
             return 0;
         }
-        if (searchIDs.size() == 1) {
+        if (searchIDs.size() == 1 && getParallelCounter(region) == null) {
             final int id = searchIDs.iterator().next();
             RegionVisitor visitor = new RegionVisitor(region, new RegionFunction() {
                 @Override
@@ -1356,6 +1358,17 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
     }
 
     public int countBlock(final Region region, final boolean[] ids) {
+        ParallelBlockCounter parallel = getParallelCounter(region);
+        if (parallel != null) {
+            int[] counter = parallel.count(region);
+            int total = 0;
+            for (int i = 0; i < counter.length; i++) {
+                if (ids[FaweCache.getId(i)]) {
+                    total += counter[i];
+                }
+            }
+            return total;
+        }
         RegionVisitor visitor = new RegionVisitor(region, new RegionFunction() {
             @Override
             public boolean apply(Vector position) throws WorldEditException {
@@ -1375,6 +1388,17 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
      */
     public int countBlocks(final Region region, final Set<BaseBlock> searchBlocks) {
         final BlockMask mask = new BlockMask(extent, searchBlocks);
+        ParallelBlockCounter parallel = getParallelCounter(region);
+        if (parallel != null) {
+            int[] counter = parallel.count(region);
+            int total = 0;
+            for (int i = 0; i < counter.length; i++) {
+                if (mask.blocks[i]) {
+                    total += counter[i];
+                }
+            }
+            return total;
+        }
         RegionVisitor visitor = new RegionVisitor(region, new RegionFunction() {
             @Override
             public boolean apply(Vector position) throws WorldEditException {
@@ -1573,9 +1597,78 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         return this.replaceBlocks(region, mask, pattern);
     }
 
+    /**
+     * Get a counter which reads the world's chunk sections in parallel<br>
+     * - Only if blocks can be read without going through the extents (see {@link #canBypassAll(Region, boolean, boolean)})
+     *
+     * @param region
+     * @return the counter, or null
+     */
+    private ParallelBlockCounter getParallelCounter(Region region) {
+        if (!(queue instanceof MappedFaweQueue) || queue instanceof MCAQueue) {
+            return null;
+        }
+        Region bounds = region instanceof CuboidRegion ? region : new CuboidRegion(region.getMinimumPoint(), region.getMaximumPoint());
+        if (!canBypassAll(bounds, true, false)) {
+            return null;
+        }
+        return new ParallelBlockCounter((MappedFaweQueue) queue);
+    }
+
+    /**
+     * Get an editor which generates the blocks of an edit on all threads<br>
+     * - Only if blocks can be set without going through the extents, other than history (see {@link #canBypassAll(Region, boolean, boolean)})<br>
+     * - History from a change task is read from the queued chunks, otherwise the editor adds it to the change set
+     *
+     * @param region the bounds of the edit
+     * @param pattern
+     * @return the editor, or null
+     */
+    private ParallelRegionEdit getParallelEdit(Region region, Pattern pattern) {
+        if (!Settings.IMP.QUEUE.PARALLEL_EDITS || !(queue instanceof MappedFaweQueue) || queue instanceof MCAQueue) {
+            return null;
+        }
+        if (!(pattern instanceof com.sk89q.worldedit.function.pattern.Pattern) || !ParallelRegionEdit.isParallel((com.sk89q.worldedit.function.pattern.Pattern) pattern)) {
+            return null;
+        }
+        if (region.getArea() < Settings.IMP.QUEUE.PARALLEL_EDIT_VOLUME) {
+            return null;
+        }
+        Region bounds = region instanceof CuboidRegion ? region : new CuboidRegion(region.getMinimumPoint(), region.getMaximumPoint());
+        if (!canBypassExtents(bounds, true, true)) {
+            return null;
+        }
+        return new ParallelRegionEdit((MappedFaweQueue) queue, history != null ? history.getChangeSet() : null);
+    }
+
+    private Pattern compile(Pattern pattern) {
+        return pattern instanceof com.sk89q.worldedit.function.pattern.Pattern ? PatternCompiler.compile((com.sk89q.worldedit.function.pattern.Pattern) pattern) : pattern;
+    }
+
+    /**
+     * Get the combined ids a mask matches, if it only depends on the block (see {@link #getParallelEdit(Region, Pattern)})
+     *
+     * @param mask
+     * @return the combined ids, or null
+     */
+    private boolean[] getParallelFilter(Mask mask) {
+        if ((mask.getClass() == BlockMask.class || mask.getClass() == FuzzyBlockMask.class) && ((BlockMask) mask).getExtent() == this) {
+            return ((BlockMask) mask).blocks;
+        }
+        return null;
+    }
+
     public boolean canBypassAll(Region region, boolean get, boolean set) {
-        if (wrapped) return false;
         if (history != null) return false;
+        if (getChangeTask() != getChangeSet()) return false;
+        return canBypassExtents(region, get, set);
+    }
+
+    /**
+     * @return if blocks can be read and set directly on the queue, ignoring history
+     */
+    private boolean canBypassExtents(Region region, boolean get, boolean set) {
+        if (wrapped) return false;
         FaweRegionExtent regionExtent = getRegionExtent();
         if (!(region instanceof CuboidRegion)) return false;
         if (regionExtent != null) {
@@ -1595,7 +1688,6 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         FaweLimit left = getLimitLeft();
         if (!left.isUnlimited() && (((get || getChangeTask() != null) && left.MAX_CHECKS <= area) || (set && left.MAX_CHANGES <= area)))
             return false;
-        if (getChangeTask() != getChangeSet()) return false;
         if (!Masks.isNull(getMask()) || !Masks.isNull(getSourceMask())) return false;
         if (getBlockBag() != null) return false;
         return true;
@@ -1620,6 +1712,10 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         if (canBypassAll(region, false, true) && !block.hasNbtData()) {
             return changes = queue.setBlocks((CuboidRegion) region, block.getId(), block.getData());
         }
+        ParallelRegionEdit parallel = ParallelRegionEdit.isParallel(region) ? getParallelEdit(region, block) : null;
+        if (parallel != null) {
+            return this.changes += parallel.edit(region, null, block);
+        }
         try {
             if (hasExtraExtents()) {
                 RegionVisitor visitor = new RegionVisitor(region, new BlockReplace(extent, (block)), this);
@@ -1657,12 +1753,59 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         if (pattern instanceof BaseBlock) {
             return setBlocks(region, (BaseBlock) pattern);
         }
-        final BlockReplace replace = new BlockReplace(EditSession.this, pattern);
+        Pattern compiled = pattern;
+        if (pattern instanceof com.sk89q.worldedit.function.pattern.Pattern) {
+            compiled = PatternCompiler.compile((com.sk89q.worldedit.function.pattern.Pattern) pattern);
+            ParallelRegionEdit parallel = ParallelRegionEdit.isParallel(region) ? getParallelEdit(region, compiled) : null;
+            if (parallel != null) {
+                return this.changes += parallel.edit(region, null, (com.sk89q.worldedit.function.pattern.Pattern) compiled);
+            }
+            if (PatternCompiler.isConstant((com.sk89q.worldedit.function.pattern.Pattern) compiled) && canBypassAll(region, true, true)) {
+                return this.changes = setBlocksCombined((CuboidRegion) region, (com.sk89q.worldedit.function.pattern.Pattern) compiled);
+            }
+        }
+        final BlockReplace replace = new BlockReplace(EditSession.this, compiled);
         final RegionVisitor visitor = new RegionVisitor(region, replace, queue instanceof MappedFaweQueue ? (MappedFaweQueue) queue : null);
         Operations.completeBlindly(visitor);
         return this.changes = visitor.getAffected();
     }
 
+    /**
+     * Set a cuboid directly on the queue, using the combined id from the pattern (so no block is created)<br>
+     * - Only for a constant pattern (see {@link PatternCompiler#isConstant}), as other patterns may need the extent<br>
+     * - Done a chunk at a time (chunk x, then chunk z), which isn't the order of the region iterator
+     */
+    private int setBlocksCombined(CuboidRegion region, com.sk89q.worldedit.function.pattern.Pattern pattern) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = min.getBlockX();
+        int minZ = min.getBlockZ();
+        int maxX = max.getBlockX();
+        int maxZ = max.getBlockZ();
+        int minY = Math.max(0, min.getBlockY());
+        int maxY = Math.min(queue.getMaxY(), max.getBlockY());
+        int count = 0;
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            int bx = Math.max(minX, cx << 4);
+            int tx = Math.min(maxX, (cx << 4) + 15);
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                int bz = Math.max(minZ, cz << 4);
+                int tz = Math.min(maxZ, (cz << 4) + 15);
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = bz; z <= tz; z++) {
+                        for (int x = bx; x <= tx; x++) {
+                            int combined = pattern.applyCombined(x, y, z);
+                            if (queue.setBlock(x, y, z, FaweCache.getId(combined), FaweCache.getData(combined))) {
+                                count++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * Replaces all the blocks matching a given filter, within a given region, to a block
      * returned by a given pattern.
@@ -1722,9 +1865,14 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         checkNotNull(region);
         checkNotNull(mask);
         checkNotNull(pattern);
-        final BlockReplace replace = new BlockReplace(EditSession.this, pattern);
-        final RegionMaskingFilter filter = new RegionMaskingFilter(mask, replace);
-        final RegionVisitor visitor = new RegionVisitor(region, filter, queue instanceof MappedFaweQueue ? (MappedFaweQueue) queue : null);
+        Pattern compiled = compile(pattern);
+        boolean[] filter = ParallelRegionEdit.isParallel(region) ? getParallelFilter(mask) : null;
+        ParallelRegionEdit parallel = filter != null ? getParallelEdit(region, compiled) : null;
+        if (parallel != null) {
+            return this.changes = parallel.edit(region, filter, (com.sk89q.worldedit.function.pattern.Pattern) compiled);
+        }
+        final BlockReplace replace = new BlockReplace(EditSession.this, compiled);
+        final RegionVisitor visitor = new RegionVisitor(region, mask, replace, queue instanceof MappedFaweQueue ? (MappedFaweQueue) queue : null);
         Operations.completeBlindly(visitor);
         return this.changes = visitor.getAffected();
     }
@@ -2199,6 +2347,22 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
 
         final int ceilRadiusX = (int) Math.ceil(radiusX);
         final int ceilRadiusZ = (int) Math.ceil(radiusZ);
+
+        if (thickness == 0 && filled) {
+            Pattern compiled = compile(block);
+            Vector min = new Vector(px - ceilRadiusX, py, pz - ceilRadiusZ);
+            Vector max = new Vector(px + ceilRadiusX, py + height - 1, pz + ceilRadiusZ);
+            ParallelRegionEdit parallel = getParallelEdit(new CuboidRegion(min, max), compiled);
+            if (parallel != null) {
+                this.changes += parallel.edit(min, max, (x, y, z) -> {
+                    double xn = Math.abs(x - px) * invRadiusX;
+                    double zn = Math.abs(z - pz) * invRadiusZ;
+                    return xn * xn + zn * zn <= 1;
+                }, null, (com.sk89q.worldedit.function.pattern.Pattern) compiled);
+                return this.changes;
+            }
+        }
+
         double dx, dxz, dz;
         double nextXn = 0;
 
@@ -2411,6 +2575,22 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         final int ceilRadiusY = (int) Math.ceil(radiusY);
         final int ceilRadiusZ = (int) Math.ceil(radiusZ);
 
+        if (filled) {
+            Pattern compiled = compile(block);
+            Vector min = new Vector(px - ceilRadiusX, py - ceilRadiusY, pz - ceilRadiusZ);
+            Vector max = new Vector(px + ceilRadiusX, py + ceilRadiusY, pz + ceilRadiusZ);
+            ParallelRegionEdit parallel = getParallelEdit(new CuboidRegion(min, max), compiled);
+            if (parallel != null) {
+                this.changes += parallel.edit(min, max, (x, y, z) -> {
+                    double xn = Math.abs(x - px) * invRadiusX;
+                    double yn = Math.abs(y - py) * invRadiusY;
+                    double zn = Math.abs(z - pz) * invRadiusZ;
+                    return xn * xn + yn * yn + zn * zn <= 1;
+                }, null, (com.sk89q.worldedit.function.pattern.Pattern) compiled);
+                return this.changes;
+            }
+        }
+
         double nextXn = 0;
         double dx, dy, dz, dxy, dxyz;
         forX:
@@ -2763,7 +2943,13 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
     public List<Countable<Integer>> getBlockDistribution(final Region region) {
         int[] counter = new int[4096];
 
-        if (region instanceof CuboidRegion) {
+        ParallelBlockCounter parallel = getParallelCounter(region);
+        if (parallel != null) {
+            int[] combined = parallel.count(region);
+            for (int i = 0; i < combined.length; i++) {
+                counter[FaweCache.getId(i)] += combined[i];
+            }
+        } else if (region instanceof CuboidRegion) {
             // Doing this for speed
             final Vector min = region.getMinimumPoint();
             final Vector max = region.getMaximumPoint();
@@ -2824,7 +3010,10 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
     public List<Countable<BaseBlock>> getBlockDistributionWithData(final Region region) {
         int[] counter = new int[Character.MAX_VALUE + 1];
 
-        if (region instanceof CuboidRegion) {
+        ParallelBlockCounter parallel = getParallelCounter(region);
+        if (parallel != null) {
+            counter = parallel.count(region);
+        } else if (region instanceof CuboidRegion) {
             // Doing this for speed
             final Vector min = region.getMinimumPoint();
             final Vector max = region.getMaximumPoint();
@@ -451,6 +451,11 @@ public class BaseBlock implements TileEntityBlock, Pattern, Serializable {
         return this;
     }
 
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return hasNbtData() ? -1 : getCombined();
+    }
+
     @Override
     public boolean apply(Extent extent, Vector setPosition, Vector getPosition) throws WorldEditException {
         return extent.setBlock(setPosition, this);
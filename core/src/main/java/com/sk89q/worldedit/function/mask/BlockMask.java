@@ -156,6 +156,11 @@ public class BlockMask extends AbstractExtentMask {
         return blocks[FaweCache.getCombined(block)];
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        return blocks[FaweCache.getCombined(getExtent().getLazyBlock(x, y, z))];
+    }
+
     @Nullable
     @Override
     public Mask2D toMask2D() {
@@ -42,6 +42,20 @@ public interface Mask extends com.sk89q.worldedit.masks.Mask, Serializable {
      */
     boolean test(Vector vector);
 
+    /**
+     * Int coordinate version of {@link #test(Vector)}<br>
+     * - Masks which only need the block position should override this to avoid creating a vector<br>
+     * - The default reuses a vector for each thread (and nested call), so it doesn't allocate
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return true if the criteria is met
+     */
+    default boolean test(int x, int y, int z) {
+        return MaskVectors.test(this, x, y, z);
+    }
+
     /**
      * Get the 2D version of this mask if one exists.
      *
@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.boydti.fawe.object.function.mask.AbstractDelegateMask;
+import com.boydti.fawe.object.mask.ResettableMask;
 import com.sk89q.worldedit.Vector;
 import java.io.IOException;
 import java.io.Serializable;
@@ -29,6 +31,7 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import javax.annotation.Nullable;
 
 
@@ -40,9 +43,34 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * on a list of masks.
  */
 public class MaskIntersection extends AbstractMask implements Serializable {
+    // Int tests to time before the masks are reordered
+    private static final int SAMPLE_SIZE = 1024;
 
     private transient Set<Mask> masks = new LinkedHashSet<>();
-    private Mask[] masksArray;
+    private volatile Mask[] masksArray;
+
+    // The masks being sampled (null if not sampling), replaced as a whole so other threads never see it half updated
+    private transient volatile Sample sample;
+    private static final AtomicReferenceFieldUpdater<MaskIntersection, Sample> SAMPLE = AtomicReferenceFieldUpdater.newUpdater(MaskIntersection.class, Sample.class, "sample");
+
+    /**
+     * The time spent, tests and passes of each mask while sampling<br>
+     * - Can be updated by several threads at once, which only loses a few counts
+     */
+    private static final class Sample {
+        private final Mask[] masks;
+        private final long[] time;
+        private final int[] tests;
+        private final int[] passes;
+        private int samples;
+
+        private Sample(Mask[] masks) {
+            this.masks = masks;
+            this.time = new long[masks.length];
+            this.tests = new int[masks.length];
+            this.passes = new int[masks.length];
+        }
+    }
 
     /**
      * Create a new intersection.
@@ -56,13 +84,123 @@ public class MaskIntersection extends AbstractMask implements Serializable {
     }
 
     private void formArray() {
+        Mask[] array;
         if (masks.isEmpty()) {
-            masksArray = new Mask[]{Masks.alwaysFalse()};
+            array = new Mask[]{Masks.alwaysFalse()};
+        } else {
+            array = masks.toArray(new Mask[masks.size()]);
+        }
+        masksArray = array;
+        startSampling(array);
+    }
+
+    /**
+     * Time the masks for the next few tests, so the cheapest and most selective can be tested first<br>
+     * - Only done if the result can't depend on which masks were tested before (see {@link #isStateless(Mask)})
+     */
+    private void startSampling(Mask[] array) {
+        if (array.length > 1 && isStateless(this)) {
+            sample = new Sample(array);
         } else {
-            masksArray = masks.toArray(new Mask[masks.size()]);
+            sample = null;
         }
     }
 
+    /**
+     * @param mask
+     * @return if the mask has no state which depends on the positions tested
+     */
+    private static boolean isStateless(Mask mask) {
+        if (mask instanceof MaskIntersection) {
+            for (Mask child : ((MaskIntersection) mask).getMasksArray()) {
+                if (!isStateless(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (mask instanceof OffsetMask) {
+            return isStateless(((OffsetMask) mask).getMask());
+        }
+        if (mask instanceof AbstractDelegateMask) {
+            return isStateless(((AbstractDelegateMask) mask).getMask());
+        }
+        return !(mask instanceof ResettableMask);
+    }
+
+    protected final boolean isSampling() {
+        return sample != null;
+    }
+
+    /**
+     * Test the masks in order while timing each one, then reorder them once enough tests are done
+     *
+     * @param until the result which stops the test (false for an intersection, true for a union)
+     */
+    protected final boolean testAndSample(int x, int y, int z, boolean until) {
+        Sample sample = this.sample;
+        if (sample == null) {
+            // Sampling finished on another thread
+            for (Mask mask : masksArray) {
+                if (mask.test(x, y, z) == until) {
+                    return until;
+                }
+            }
+            return !until;
+        }
+        Mask[] array = sample.masks;
+        boolean result = !until;
+        for (int i = 0; i < array.length; i++) {
+            long start = System.nanoTime();
+            boolean value = array[i].test(x, y, z);
+            sample.time[i] += System.nanoTime() - start;
+            sample.tests[i]++;
+            if (value) {
+                sample.passes[i]++;
+            }
+            if (value == until) {
+                result = until;
+                break;
+            }
+        }
+        if (++sample.samples >= SAMPLE_SIZE) {
+            reorder(sample, until);
+        }
+        return result;
+    }
+
+    /**
+     * Sort the masks by the average time spent for each test which stops early<br>
+     * - For independent masks, this is the order with the lowest expected cost<br>
+     * - Only the thread which ends the sample publishes the new order
+     */
+    private void reorder(Sample sample, boolean until) {
+        if (!SAMPLE.compareAndSet(this, sample, null)) {
+            return;
+        }
+        Mask[] array = sample.masks;
+        double[] rank = new double[array.length];
+        Integer[] order = new Integer[array.length];
+        for (int i = 0; i < array.length; i++) {
+            order[i] = i;
+            int tests = sample.tests[i];
+            if (tests == 0) {
+                rank[i] = Double.MAX_VALUE;
+                continue;
+            }
+            double cost = (double) sample.time[i] / tests;
+            int stops = until ? sample.passes[i] : tests - sample.passes[i];
+            double stopChance = Math.max(stops, 0.5) / tests;
+            rank[i] = cost / stopChance;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(rank[a], rank[b]));
+        Mask[] sorted = new Mask[array.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = array[order[i]];
+        }
+        masksArray = sorted;
+    }
+
     /**
      * Create a new intersection.
      *
@@ -115,6 +253,19 @@ public class MaskIntersection extends AbstractMask implements Serializable {
         return true;
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        if (isSampling()) {
+            return testAndSample(x, y, z, false);
+        }
+        for (Mask mask : masksArray) {
+            if (!mask.test(x, y, z)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Nullable
     @Override
     public Mask2D toMask2D() {
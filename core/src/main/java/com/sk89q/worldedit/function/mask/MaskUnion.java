@@ -61,6 +61,19 @@ public class MaskUnion extends MaskIntersection {
         return false;
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        if (isSampling()) {
+            return testAndSample(x, y, z, true);
+        }
+        for (Mask mask : getMasksArray()) {
+            if (mask.test(x, y, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Nullable
     @Override
     public Mask2D toMask2D() {
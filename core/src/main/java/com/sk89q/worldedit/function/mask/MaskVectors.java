@@ -0,0 +1,60 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.MutableBlockVector;
+import java.util.Arrays;
+
+/**
+ * The vectors used by {@link Mask#test(int, int, int)} for masks which only test a vector<br>
+ * - One vector per thread and per nested call, so a mask testing another mask doesn't change the vector it was given
+ */
+final class MaskVectors {
+    private static final ThreadLocal<MaskVectors> CACHE = new ThreadLocal<MaskVectors>() {
+        @Override
+        protected MaskVectors initialValue() {
+            return new MaskVectors();
+        }
+    };
+
+    private MutableBlockVector[] vectors = new MutableBlockVector[4];
+    private int depth;
+
+    private MaskVectors() {
+    }
+
+    static boolean test(Mask mask, int x, int y, int z) {
+        MaskVectors cache = CACHE.get();
+        int index = cache.depth++;
+        try {
+            MutableBlockVector[] vectors = cache.vectors;
+            if (index == vectors.length) {
+                cache.vectors = vectors = Arrays.copyOf(vectors, index << 1);
+            }
+            MutableBlockVector vector = vectors[index];
+            if (vector == null) {
+                vector = vectors[index] = new MutableBlockVector();
+            }
+            return mask.test(vector.setComponents(x, y, z));
+        } finally {
+            cache.depth--;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sk89q.worldedit.function.mask;
 
+import com.boydti.fawe.object.function.mask.AbstractDelegateMask;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.LocalPlayer;
 import com.sk89q.worldedit.LocalSession;
@@ -61,18 +62,21 @@ public final class Masks {
             return ALWAYS_TRUE;
         }
         checkNotNull(finalMask);
-        return new AbstractMask() {
-            private Mask mask = finalMask;
-
+        return new AbstractDelegateMask(finalMask) {
             @Override
             public boolean test(Vector vector) {
-                return !mask.test(vector);
+                return !getMask().test(vector);
+            }
+
+            @Override
+            public boolean test(int x, int y, int z) {
+                return !getMask().test(x, y, z);
             }
 
             @Nullable
             @Override
             public Mask2D toMask2D() {
-                Mask2D mask2d = mask.toMask2D();
+                Mask2D mask2d = getMask().toMask2D();
                 if (mask2d != null) {
                     return negate(mask2d);
                 } else {
@@ -207,6 +211,11 @@ public final class Masks {
             return true;
         }
 
+        @Override
+        public boolean test(int x, int y, int z) {
+            return true;
+        }
+
         @Override
         public boolean test(Vector2D vector) {
             return true;
@@ -225,6 +234,11 @@ public final class Masks {
             return false;
         }
 
+        @Override
+        public boolean test(int x, int y, int z) {
+            return false;
+        }
+
         @Override
         public boolean test(Vector2D vector) {
             return false;
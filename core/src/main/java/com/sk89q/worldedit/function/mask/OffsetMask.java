@@ -1,5 +1,6 @@
 package com.sk89q.worldedit.function.mask;
 
+import com.boydti.fawe.util.MathMan;
 import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import javax.annotation.Nullable;
@@ -76,6 +77,11 @@ public class OffsetMask extends AbstractMask {
         return getMask().test(mutable);
     }
 
+    @Override
+    public boolean test(int x, int y, int z) {
+        return getMask().test(MathMan.roundInt(x + offset.getX()), MathMan.roundInt(y + offset.getY()), MathMan.roundInt(z + offset.getZ()));
+    }
+
     @Nullable
     @Override
     public Mask2D toMask2D() {
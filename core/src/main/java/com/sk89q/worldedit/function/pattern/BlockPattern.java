@@ -37,6 +37,11 @@ public class BlockPattern implements Pattern {
         return block;
     }
 
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return block.applyCombined(x, y, z);
+    }
+
     /**
      * Get the block.
      *
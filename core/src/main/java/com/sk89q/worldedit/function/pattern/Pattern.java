@@ -43,6 +43,20 @@ public interface Pattern extends com.sk89q.worldedit.patterns.Pattern {
         return apply(MutableBlockVector.get(x, y, z));
     }
 
+    /**
+     * Get the combined id (id << 4 | data) of the block for a position<br>
+     * - Patterns which can produce the id without a {@link BaseBlock} should override this
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the combined id, or -1 if the block has NBT (in which case {@link #apply(int, int, int)} must be used)
+     */
+    default int applyCombined(int x, int y, int z) {
+        BaseBlock block = apply(x, y, z);
+        return block.hasNbtData() ? -1 : block.getCombined();
+    }
+
     @Override
     default BaseBlock next(Vector position) {
         return apply(position);
@@ -55,6 +55,10 @@ public class RandomPattern extends AbstractPattern {
         return patterns;
     }
 
+    public Map<Pattern, Double> getWeights() {
+        return weights;
+    }
+
     public RandomCollection<Pattern> getCollection() {
         return collection;
     }
@@ -64,6 +68,16 @@ public class RandomPattern extends AbstractPattern {
         return collection.next(get.getBlockX(), get.getBlockY(), get.getBlockZ()).apply(get);
     }
 
+    @Override
+    public BaseBlock apply(int x, int y, int z) {
+        return collection.next(x, y, z).apply(x, y, z);
+    }
+
+    @Override
+    public int applyCombined(int x, int y, int z) {
+        return collection.next(x, y, z).applyCombined(x, y, z);
+    }
+
     @Override
     public boolean apply(Extent extent, Vector set, Vector get) throws WorldEditException {
         return collection.next(get.getBlockX(), get.getBlockY(), get.getBlockZ()).apply(extent, set, get);
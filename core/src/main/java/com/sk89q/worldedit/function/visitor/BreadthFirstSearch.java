@@ -5,8 +5,9 @@ import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.MappedFaweQueue;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.HasFaweQueue;
-import com.boydti.fawe.object.IntegerTrio;
 import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.LongRingBuffer;
+import com.boydti.fawe.util.MathMan;
 import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
@@ -58,11 +59,14 @@ public abstract class BreadthFirstSearch implements Operation {
     private List<Vector> directions = new ArrayList<>();
     private BlockVectorSet visited;
     private final MappedFaweQueue mFaweQueue;
-    private BlockVectorSet queue;
+    private final LongRingBuffer queue;
     private int currentDepth = 0;
     private final int maxDepth;
     private int affected = 0;
     private int maxBranch = Integer.MAX_VALUE;
+    private final boolean intPath;
+    private final MutableBlockVector mutableFrom = new MutableBlockVector();
+    private final MutableBlockVector mutableTo = new MutableBlockVector();
 
     public BreadthFirstSearch(final RegionFunction function) {
         this(function, Integer.MAX_VALUE);
@@ -75,15 +79,42 @@ public abstract class BreadthFirstSearch implements Operation {
     public BreadthFirstSearch(final RegionFunction function, int maxDepth, HasFaweQueue faweQueue) {
         FaweQueue fq = faweQueue != null ? faweQueue.getQueue() : null;
         this.mFaweQueue = fq instanceof MappedFaweQueue ? (MappedFaweQueue) fq : null;
-        this.queue = new BlockVectorSet();
+        this.queue = new LongRingBuffer();
         this.visited = new BlockVectorSet();
         this.function = function;
         this.directions.addAll(Arrays.asList(DEFAULT_DIRECTIONS));
         this.maxDepth = maxDepth;
+        this.intPath = hasIntPath(getClass());
+    }
+
+    /**
+     * Check if the int coordinate method can be used instead of the Vector one<br>
+     * - A subclass may only override {@link #isVisitable(Vector, Vector)}, in which case that must be called
+     *
+     * @param clazz
+     * @return
+     */
+    private static boolean hasIntPath(Class<?> clazz) {
+        try {
+            Class<?> vectorMethod = clazz.getMethod("isVisitable", Vector.class, Vector.class).getDeclaringClass();
+            Class<?> intMethod = clazz.getMethod("isVisitable", int.class, int.class, int.class, int.class, int.class, int.class).getDeclaringClass();
+            return vectorMethod.isAssignableFrom(intMethod);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
     }
 
     public abstract boolean isVisitable(Vector from, Vector to);
 
+    /**
+     * Int coordinate version of {@link #isVisitable(Vector, Vector)} which can be overridden to avoid vectors
+     */
+    public boolean isVisitable(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        mutableFrom.setComponents(fromX, fromY, fromZ);
+        mutableTo.setComponents(toX, toY, toZ);
+        return isVisitable(mutableFrom, mutableTo);
+    }
+
     public Collection<Vector> getDirections() {
         return this.directions;
     }
@@ -92,11 +123,16 @@ public abstract class BreadthFirstSearch implements Operation {
         this.directions = directions;
     }
 
-    private IntegerTrio[] getIntDirections() {
-        IntegerTrio[] array = new IntegerTrio[directions.size()];
-        for (int i = 0; i < array.length; i++) {
+    /**
+     * @return the directions as [x, y, z, x, y, z...]
+     */
+    private int[] getIntDirections() {
+        int[] array = new int[directions.size() * 3];
+        for (int i = 0, j = 0; i < directions.size(); i++) {
             Vector dir = directions.get(i);
-            array[i] = new IntegerTrio(dir.getBlockX(), dir.getBlockY(), dir.getBlockZ());
+            array[j++] = dir.getBlockX();
+            array[j++] = dir.getBlockY();
+            array[j++] = dir.getBlockZ();
         }
         return array;
     }
@@ -104,7 +140,7 @@ public abstract class BreadthFirstSearch implements Operation {
     public void visit(final Vector pos) {
         if (!isVisited(pos)) {
             isVisitable(pos, pos); // Ignore this, just to initialize mask on this point
-            queue.add(pos);
+            queue.add(MathMan.tripleWorldCoord(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ()));
             visited.add(pos);
         }
     }
@@ -133,22 +169,29 @@ public abstract class BreadthFirstSearch implements Operation {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        MutableBlockVector mutable = new MutableBlockVector();
-        MutableBlockVector mutable2 = new MutableBlockVector();
-        boolean shouldTrim = false;
-        IntegerTrio[] dirs = getIntDirections();
-        BlockVectorSet tempQueue = new BlockVectorSet();
+        MutableBlockVector from = new MutableBlockVector();
+        MutableBlockVector to = new MutableBlockVector();
+        int[] dirs = getIntDirections();
+        LongRingBuffer queue = this.queue;
+        BlockVectorSet visited = this.visited;
         BlockVectorSet chunkLoadSet = new BlockVectorSet();
+        boolean preload = mFaweQueue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1;
+        // Each layer is appended to the same buffer, so the current layer is the first `layerSize` entries
         for (currentDepth = 0; !queue.isEmpty() && currentDepth <= maxDepth; currentDepth++) {
-            if (mFaweQueue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
+            int layerSize = queue.size();
+            if (preload) {
                 int cx = Integer.MIN_VALUE;
                 int cz = Integer.MIN_VALUE;
-                for (Vector from : queue) {
-                    for (IntegerTrio direction : dirs) {
-                        int x = from.getBlockX() + direction.x;
-                        int z = from.getBlockZ() + direction.z;
+                for (int n = 0; n < layerSize; n++) {
+                    long triple = queue.get(n);
+                    int fromX = (int) MathMan.untripleWorldCoordX(triple);
+                    int fromY = (int) MathMan.untripleWorldCoordY(triple);
+                    int fromZ = (int) MathMan.untripleWorldCoordZ(triple);
+                    for (int i = 0; i < dirs.length; i += 3) {
+                        int x = fromX + dirs[i];
+                        int z = fromZ + dirs[i + 2];
                         if (cx != (cx = x >> 4) || cz != (cz = z >> 4)) {
-                            int y = from.getBlockY() + direction.y;
+                            int y = fromY + dirs[i + 1];
                             if (y < 0 || y >= 256) {
                                 continue;
                             }
@@ -161,39 +204,42 @@ public abstract class BreadthFirstSearch implements Operation {
                 for (Vector chunk : chunkLoadSet) {
                     mFaweQueue.queueChunkLoad(chunk.getBlockX(), chunk.getBlockZ());
                 }
+                chunkLoadSet.clear();
             }
-            for (Vector from : queue) {
+            for (int n = 0; n < layerSize; n++) {
+                long triple = queue.poll();
+                int fromX = (int) MathMan.untripleWorldCoordX(triple);
+                int fromY = (int) MathMan.untripleWorldCoordY(triple);
+                int fromZ = (int) MathMan.untripleWorldCoordZ(triple);
+                from.setComponents(fromX, fromY, fromZ);
                 if (function.apply(from)) affected++;
-                for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i++) {
-                    IntegerTrio direction = dirs[i];
-                    int y = from.getBlockY() + direction.y;
+                for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i += 3) {
+                    int y = fromY + dirs[i + 1];
                     if (y < 0 || y >= 256) {
                         continue;
                     }
-                    int x = from.getBlockX() + direction.x;
-                    int z = from.getBlockZ() + direction.z;
+                    int x = fromX + dirs[i];
+                    int z = fromZ + dirs[i + 2];
                     if (!visited.contains(x, y, z)) {
-                        mutable2.mutX(x);
-                        mutable2.mutY(y);
-                        mutable2.mutZ(z);
-                        if (isVisitable(from, mutable2)) {
+                        boolean visitable;
+                        if (intPath) {
+                            visitable = isVisitable(fromX, fromY, fromZ, x, y, z);
+                        } else {
+                            from.setComponents(fromX, fromY, fromZ);
+                            visitable = isVisitable(from, to.setComponents(x, y, z));
+                        }
+                        if (visitable) {
                             j++;
                             visited.add(x, y, z);
-                            tempQueue.add(x, y, z);
+                            queue.add(MathMan.tripleWorldCoord(x, y, z));
                         }
                     }
                 }
             }
             if (currentDepth == maxDepth) {
+                queue.clear();
                 break;
             }
-            int size = queue.size();
-            BlockVectorSet tmp = queue;
-            queue = tempQueue;
-            tmp.clear();
-            chunkLoadSet.clear();
-            tempQueue = tmp;
-
         }
         return null;
     }
@@ -65,7 +65,15 @@ public class DirectionalVisitor extends RecursiveVisitor {
         int dx = to.getBlockX() - from.getBlockX();
         int dz = to.getBlockZ() - from.getBlockZ();
         int dy = to.getBlockY() - from.getBlockY();
+        return isDirection(dx, dy, dz) && super.isVisitable(from, to);
+    }
+
+    @Override
+    public boolean isVisitable(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        return isDirection(toX - fromX, toY - fromY, toZ - fromZ) && super.isVisitable(fromX, fromY, fromZ, toX, toY, toZ);
+    }
 
+    private boolean isDirection(int dx, int dy, int dz) {
         if (dx != 0) {
             if (dirVec.getBlockX() != 0 && dirVec.getBlockX() != dx) {
                 return false;
@@ -81,6 +89,6 @@ public class DirectionalVisitor extends RecursiveVisitor {
                 return false;
             }
         }
-        return super.isVisitable(from, to);
+        return true;
     }
 }
\ No newline at end of file
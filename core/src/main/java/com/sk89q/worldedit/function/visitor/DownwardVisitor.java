@@ -69,6 +69,11 @@ public class DownwardVisitor extends RecursiveVisitor {
         return ((fromY == this.baseY) || (to.getBlockY() - from.getBlockY() < 0)) && super.isVisitable(from, to);
     }
 
+    @Override
+    public boolean isVisitable(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        return ((fromY == this.baseY) || (toY - fromY < 0)) && super.isVisitable(fromX, fromY, fromZ, toX, toY, toZ);
+    }
+
     public static Class<?> inject() {
         return DownwardVisitor.class;
     }
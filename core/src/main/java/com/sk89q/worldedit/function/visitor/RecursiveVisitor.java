@@ -60,6 +60,11 @@ public class RecursiveVisitor extends BreadthFirstSearch {
         return this.mask.test(to);
     }
 
+    @Override
+    public boolean isVisitable(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        return this.mask.test(toX, toY, toZ);
+    }
+
     public static Class<?> inject() {
         return RecursiveVisitor.class;
     }
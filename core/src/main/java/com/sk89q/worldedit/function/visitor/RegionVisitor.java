@@ -27,12 +27,18 @@ import com.boydti.fawe.object.HasFaweQueue;
 import com.boydti.fawe.object.exception.FaweException;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.ConvexPolyhedralRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
 import com.sk89q.worldedit.regions.Region;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +51,7 @@ public class RegionVisitor implements Operation {
     public final Region region;
     public final Iterable<? extends Vector> iterable;
     public final RegionFunction function;
+    private final Mask mask;
     private final MappedFaweQueue queue;
     private boolean useCuboidIterator = false;
     public int affected = 0;
@@ -68,9 +75,27 @@ public class RegionVisitor implements Operation {
         this((Iterable<BlockVector>) region, function, queue);
     }
 
+    /**
+     * Only apply the function to positions matching a mask<br>
+     * - Same as using a RegionMaskingFilter, but the mask is tested with int coordinates
+     *
+     * @param region
+     * @param mask
+     * @param function
+     * @param queue
+     */
+    public RegionVisitor(Region region, Mask mask, RegionFunction function, FaweQueue queue) {
+        this((Iterable<BlockVector>) region, mask, function, queue);
+    }
+
     public RegionVisitor(Iterable<? extends Vector> iterable, RegionFunction function, HasFaweQueue hasQueue) {
+        this(iterable, null, function, hasQueue);
+    }
+
+    public RegionVisitor(Iterable<? extends Vector> iterable, Mask mask, RegionFunction function, HasFaweQueue hasQueue) {
         region = (iterable instanceof Region) ? (Region) iterable : null;
         this.iterable = iterable;
+        this.mask = mask == Masks.alwaysTrue() ? null : mask;
         this.function = function;
         this.queue = hasQueue != null && hasQueue.getQueue() instanceof MappedFaweQueue ? (MappedFaweQueue) hasQueue.getQueue() : null;
     }
@@ -86,6 +111,14 @@ public class RegionVisitor implements Operation {
 
     @Override
     public Operation resume(final RunContext run) throws WorldEditException {
+        if (isSectionOrdered()) {
+            try {
+                visitSections();
+            } catch (FaweException e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }
         if (queue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
             /*
              * The following is done to reduce iteration cost
@@ -183,7 +216,66 @@ public class RegionVisitor implements Operation {
         return null;
     }
 
+    /**
+     * @return if the region is visited section by section (regions whose iterator tests every position in its bounds)
+     */
+    private boolean isSectionOrdered() {
+        return queue != null && (region instanceof EllipsoidRegion || region instanceof CylinderRegion || region instanceof ConvexPolyhedralRegion);
+    }
+
+    /**
+     * Visit the region section by section (16x16x16 in chunk order) using int coordinates<br>
+     * - Each chunk is queued to load once, {@link Settings.QUEUE#PRELOAD_CHUNKS} ahead of the current chunk<br>
+     * - Blocks in a section are visited together, so the queue's last section cache stays valid<br>
+     * - A single mutable position is passed to the function, the same as the cuboid iterator<br>
+     * - Only positions within the world's height are visited
+     */
+    private void visitSections() throws WorldEditException {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = min.getBlockX();
+        int minZ = min.getBlockZ();
+        int maxX = max.getBlockX();
+        int maxZ = max.getBlockZ();
+        int minY = Math.max(0, min.getBlockY());
+        int maxY = Math.min(queue.getMaxY(), max.getBlockY());
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int lengthZ = (maxZ >> 4) - minChunkZ + 1;
+        int chunks = ((maxX >> 4) - minChunkX + 1) * lengthZ;
+        int preload = Math.max(1, Settings.IMP.QUEUE.PRELOAD_CHUNKS);
+        int loaded = 0;
+        MutableBlockVector mutable = new MutableBlockVector();
+        for (int i = 0; i < chunks; i++) {
+            for (; loaded < chunks && loaded <= i + preload; loaded++) {
+                queue.queueChunkLoad(minChunkX + loaded / lengthZ, minChunkZ + loaded % lengthZ);
+            }
+            int cx = minChunkX + i / lengthZ;
+            int cz = minChunkZ + i % lengthZ;
+            int bx = Math.max(minX, cx << 4);
+            int tx = Math.min(maxX, (cx << 4) + 15);
+            int bz = Math.max(minZ, cz << 4);
+            int tz = Math.min(maxZ, (cz << 4) + 15);
+            for (int cy = minY >> 4; cy <= maxY >> 4; cy++) {
+                int by = Math.max(minY, cy << 4);
+                int ty = Math.min(maxY, (cy << 4) + 15);
+                for (int y = by; y <= ty; y++) {
+                    for (int z = bz; z <= tz; z++) {
+                        for (int x = bx; x <= tx; x++) {
+                            if (region.contains(x, y, z)) {
+                                apply(mutable.setComponents(x, y, z));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     private void apply(Vector pt) throws WorldEditException {
+        if (mask != null && !mask.test(pt.getBlockX(), pt.getBlockY(), pt.getBlockZ())) {
+            return;
+        }
         if (function.apply(pt)) {
             affected++;
         }
@@ -19,11 +19,13 @@
 
 package com.sk89q.worldedit.internal.expression;
 
+import com.boydti.fawe.config.Settings;
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
 import com.sk89q.worldedit.internal.expression.runtime.Constant;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
 import com.sk89q.worldedit.internal.expression.runtime.Functions;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -80,6 +82,8 @@ public class Expression {
     private RValue root;
     private final Functions functions = new Functions();
     private ExpressionEnvironment environment;
+    private volatile ExpressionCompiler.Compiled compiled;
+    private volatile boolean interpreted;
 
     public Expression(double constant) {
         variableNames = null;
@@ -123,6 +127,24 @@ public class Expression {
             Variable var = variableArray[i];
             var.value = values[i];
         }
+        if (Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS) {
+            ExpressionCompiler.Compiled tmp = getCompiled();
+            if (!interpreted) {
+                try {
+                    return tmp.get();
+                } catch (ReturnException e) {
+                    return e.getValue();
+                }
+            }
+            pushInstance();
+            try {
+                return tmp.get();
+            } catch (ReturnException e) {
+                return e.getValue();
+            } finally {
+                popInstance();
+            }
+        }
         pushInstance();
         try {
             return root.getValue();
@@ -139,6 +161,23 @@ public class Expression {
 
     public void optimize() throws EvaluationException {
         root = root.optimize();
+        compiled = null;
+    }
+
+    private ExpressionCompiler.Compiled getCompiled() throws EvaluationException {
+        ExpressionCompiler.Compiled tmp = compiled;
+        if (tmp == null) {
+            synchronized (this) {
+                tmp = compiled;
+                if (tmp == null) {
+                    ExpressionCompiler compiler = new ExpressionCompiler();
+                    tmp = compiler.compile(root);
+                    interpreted = compiler.isInterpreted();
+                    compiled = tmp;
+                }
+            }
+        }
+        return tmp;
     }
 
     @Override
@@ -0,0 +1,475 @@
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles an expression tree into a tree of specialized closures<br>
+ * - Variables are read and written directly, with no wrapper nodes<br>
+ * - Operators and math functions are inlined (no reflection or boxing per call)<br>
+ * - Anything else (e.g. return, break, dynamic functions) is evaluated by the interpreter
+ */
+public final class ExpressionCompiler {
+
+    @FunctionalInterface
+    public interface Compiled {
+        double get() throws EvaluationException;
+    }
+
+    @FunctionalInterface
+    private interface Assign {
+        double apply(double current, double value);
+    }
+
+    // Whether an inlined method behaves the same as the method itself
+    private static final Map<Method, Boolean> VERIFIED = new ConcurrentHashMap<>();
+    private static final double[] SAMPLES = {-3.5, 2, 0, 0, 7, -2, 1.5, 1.5, 2, 3, -1, -1, 0.25, -7};
+
+    private boolean interpreted;
+
+    /**
+     * @return if any part of the compiled tree is evaluated by the interpreter<br>
+     * - The expression instance must then be available (see Expression#getInstance())
+     */
+    public boolean isInterpreted() {
+        return interpreted;
+    }
+
+    public Compiled compile(RValue node) throws EvaluationException {
+        if (node instanceof Constant) {
+            final double value = node.getValue();
+            return () -> value;
+        }
+        if (node instanceof Variable) {
+            final Variable variable = (Variable) node;
+            return () -> variable.value;
+        }
+        Compiled compiled = null;
+        Class<?> clazz = node.getClass();
+        if (clazz == Function.class) {
+            compiled = compileFunction((Function) node);
+        } else if (clazz == For.class) {
+            compiled = compileFor((For) node);
+        } else if (clazz == While.class) {
+            compiled = compileWhile((While) node);
+        } else if (clazz == SimpleFor.class) {
+            compiled = compileSimpleFor((SimpleFor) node);
+        } else {
+            switch (clazz.getSimpleName()) {
+                case "Sequence":
+                    compiled = compileSequence(node);
+                    break;
+                case "Conditional":
+                    compiled = compileConditional(node);
+                    break;
+            }
+        }
+        if (compiled == null) {
+            interpreted = true;
+            return node::getValue;
+        }
+        return compiled;
+    }
+
+    private Compiled[] compile(RValue[] nodes) throws EvaluationException {
+        Compiled[] compiled = new Compiled[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            compiled[i] = compile(nodes[i]);
+        }
+        return compiled;
+    }
+
+    private Compiled compileSequence(RValue node) throws EvaluationException {
+        RValue[] sequence = getField(node, "sequence");
+        if (sequence == null) {
+            return null;
+        }
+        final Compiled[] parts = compile(sequence);
+        switch (parts.length) {
+            case 0:
+                return () -> 0;
+            case 1:
+                return parts[0];
+            case 2: {
+                final Compiled a = parts[0];
+                final Compiled b = parts[1];
+                return () -> {
+                    a.get();
+                    return b.get();
+                };
+            }
+            default:
+                return () -> {
+                    double value = 0;
+                    for (Compiled part : parts) {
+                        value = part.get();
+                    }
+                    return value;
+                };
+        }
+    }
+
+    private Compiled compileConditional(RValue node) throws EvaluationException {
+        RValue condition = getField(node, "condition");
+        RValue truePart = getField(node, "truePart");
+        if (condition == null || truePart == null) {
+            return null;
+        }
+        RValue falsePart = getField(node, "falsePart");
+        final Compiled c = compile(condition);
+        final Compiled t = compile(truePart);
+        if (falsePart == null) {
+            return () -> c.get() > 0 ? t.get() : 0;
+        }
+        final Compiled f = compile(falsePart);
+        return () -> c.get() > 0 ? t.get() : f.get();
+    }
+
+    private Compiled compileFor(final For node) throws EvaluationException {
+        final Compiled init = compile(node.init);
+        final Compiled condition = compile(node.condition);
+        final Compiled increment = compile(node.increment);
+        final Compiled body = compile(node.body);
+        return () -> {
+            int iterations = 0;
+            double ret = 0;
+            for (init.get(); condition.get() > 0; increment.get()) {
+                checkIteration(node, iterations++);
+                try {
+                    ret = body.get();
+                } catch (BreakException e) {
+                    if (!e.doContinue) {
+                        return ret;
+                    }
+                }
+            }
+            return ret;
+        };
+    }
+
+    private Compiled compileWhile(final While node) throws EvaluationException {
+        final Compiled condition = compile(node.condition);
+        final Compiled body = compile(node.body);
+        if (node.footChecked) {
+            return () -> {
+                int iterations = 0;
+                double ret = 0;
+                do {
+                    checkIteration(node, iterations++);
+                    try {
+                        ret = body.get();
+                    } catch (BreakException e) {
+                        if (!e.doContinue) {
+                            break;
+                        }
+                    }
+                } while (condition.get() > 0);
+                return ret;
+            };
+        }
+        return () -> {
+            int iterations = 0;
+            double ret = 0;
+            while (condition.get() > 0) {
+                checkIteration(node, iterations++);
+                try {
+                    ret = body.get();
+                } catch (BreakException e) {
+                    if (!e.doContinue) {
+                        break;
+                    }
+                }
+            }
+            return ret;
+        };
+    }
+
+    private Compiled compileSimpleFor(final SimpleFor node) throws EvaluationException {
+        if (!(node.counter instanceof Variable)) {
+            return null;
+        }
+        final Variable counter = (Variable) node.counter;
+        final Compiled first = compile(node.first);
+        final Compiled last = compile(node.last);
+        final Compiled body = compile(node.body);
+        return () -> {
+            int iterations = 0;
+            double ret = 0;
+            // The same order as SimpleFor (first, then last)
+            double firstValue = first.get();
+            double lastValue = last.get();
+            for (double i = firstValue; i <= lastValue; ++i) {
+                checkIteration(node, iterations++);
+                try {
+                    counter.value = i;
+                    ret = body.get();
+                } catch (BreakException e) {
+                    if (!e.doContinue) {
+                        break;
+                    }
+                }
+            }
+            return ret;
+        };
+    }
+
+    private static void checkIteration(Node node, int iterations) throws EvaluationException {
+        if (iterations > 256) {
+            throw new EvaluationException(node.getPosition(), "Loop exceeded 256 iterations.");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new EvaluationException(node.getPosition(), "Thread has been interrupted.");
+        }
+    }
+
+    private Compiled compileFunction(Function function) throws EvaluationException {
+        Method method = function.method;
+        if (method.isAnnotationPresent(Function.Dynamic.class)) {
+            return null;
+        }
+        RValue[] args = function.args;
+        for (Class<?> param : method.getParameterTypes()) {
+            if (param != RValue.class && param != LValue.class) {
+                return null;
+            }
+        }
+        if (args.length > 0 && method.getParameterTypes()[0] == LValue.class) {
+            // Only plain variables can be assigned directly
+            if (!(args[0] instanceof Variable) || !isVerified(method)) {
+                return null;
+            }
+            Variable variable = (Variable) args[0];
+            return args.length == 1 ? compileIncrement(method.getName(), variable) : compileAssign(method.getName(), variable, compile(args[1]));
+        }
+        if (!isVerified(method)) {
+            return null;
+        }
+        return inline(method, compile(args));
+    }
+
+    private static Compiled inline(Method method, Compiled[] args) {
+        String name = method.getName();
+        if (args.length == 1) {
+            final Compiled x = args[0];
+            switch (name) {
+                case "neg":
+                    return () -> -x.get();
+                case "not":
+                    return () -> x.get() > 0 ? 0 : 1;
+                case "inv":
+                    return () -> ~(long) x.get();
+                case "sin":
+                    return () -> Math.sin(x.get());
+                case "cos":
+                    return () -> Math.cos(x.get());
+                case "tan":
+                    return () -> Math.tan(x.get());
+                case "asin":
+                    return () -> Math.asin(x.get());
+                case "acos":
+                    return () -> Math.acos(x.get());
+                case "atan":
+                    return () -> Math.atan(x.get());
+                case "sinh":
+                    return () -> Math.sinh(x.get());
+                case "cosh":
+                    return () -> Math.cosh(x.get());
+                case "tanh":
+                    return () -> Math.tanh(x.get());
+                case "sqrt":
+                    return () -> Math.sqrt(x.get());
+                case "cbrt":
+                    return () -> Math.cbrt(x.get());
+                case "abs":
+                    return () -> Math.abs(x.get());
+                case "ceil":
+                    return () -> Math.ceil(x.get());
+                case "floor":
+                    return () -> Math.floor(x.get());
+                case "rint":
+                    return () -> Math.rint(x.get());
+                case "round":
+                    return () -> Math.round(x.get());
+                case "exp":
+                    return () -> Math.exp(x.get());
+                case "ln":
+                case "log":
+                    return () -> Math.log(x.get());
+                case "log10":
+                    return () -> Math.log10(x.get());
+            }
+        } else if (args.length == 2) {
+            final Compiled a = args[0];
+            final Compiled b = args[1];
+            switch (name) {
+                case "add":
+                    return () -> a.get() + b.get();
+                case "sub":
+                    return () -> a.get() - b.get();
+                case "mul":
+                    return () -> a.get() * b.get();
+                case "div":
+                    return () -> a.get() / b.get();
+                case "mod":
+                    return () -> a.get() % b.get();
+                case "pow":
+                    return () -> Math.pow(a.get(), b.get());
+                case "lth":
+                    return () -> a.get() < b.get() ? 1 : 0;
+                case "gth":
+                    return () -> a.get() > b.get() ? 1 : 0;
+                case "leq":
+                    return () -> a.get() <= b.get() ? 1 : 0;
+                case "geq":
+                    return () -> a.get() >= b.get() ? 1 : 0;
+                case "equ":
+                    return () -> a.get() == b.get() ? 1 : 0;
+                case "neq":
+                    return () -> a.get() != b.get() ? 1 : 0;
+                case "and":
+                    return () -> a.get() > 0 && b.get() > 0 ? 1 : 0;
+                case "or":
+                    return () -> a.get() > 0 || b.get() > 0 ? 1 : 0;
+                case "shl":
+                    return () -> (long) a.get() << (long) b.get();
+                case "shr":
+                    return () -> (long) a.get() >> (long) b.get();
+                case "atan2":
+                    return () -> Math.atan2(a.get(), b.get());
+                case "min":
+                    return () -> Math.min(a.get(), b.get());
+                case "max":
+                    return () -> Math.max(a.get(), b.get());
+            }
+        } else if (args.length == 3) {
+            final Compiled a = args[0];
+            final Compiled b = args[1];
+            final Compiled c = args[2];
+            switch (name) {
+                case "min":
+                    return () -> Math.min(a.get(), Math.min(b.get(), c.get()));
+                case "max":
+                    return () -> Math.max(a.get(), Math.max(b.get(), c.get()));
+            }
+        }
+        return null;
+    }
+
+    private static Assign getAssign(String name) {
+        switch (name) {
+            case "ass":
+                return (current, value) -> value;
+            case "aadd":
+                return (current, value) -> current + value;
+            case "asub":
+                return (current, value) -> current - value;
+            case "amul":
+                return (current, value) -> current * value;
+            case "adiv":
+                return (current, value) -> current / value;
+            case "amod":
+                return (current, value) -> current % value;
+            case "aexp":
+                return Math::pow;
+            default:
+                return null;
+        }
+    }
+
+    private static Compiled compileAssign(String name, final Variable variable, final Compiled value) {
+        final Assign assign = getAssign(name);
+        if (assign == null) {
+            return null;
+        }
+        if (name.equals("ass")) {
+            return () -> variable.value = value.get();
+        }
+        return () -> variable.value = assign.apply(variable.value, value.get());
+    }
+
+    private static Compiled compileIncrement(String name, final Variable variable) {
+        switch (name) {
+            case "inc":
+                return () -> ++variable.value;
+            case "dec":
+                return () -> --variable.value;
+            case "postinc":
+                return () -> variable.value++;
+            case "postdec":
+                return () -> variable.value--;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check (once per method) that the inlined version returns the same values as the method
+     *
+     * @param method
+     * @return if the method can be inlined
+     */
+    private static boolean isVerified(Method method) {
+        Boolean verified = VERIFIED.get(method);
+        if (verified == null) {
+            verified = verify(method);
+            VERIFIED.put(method, verified);
+        }
+        return verified;
+    }
+
+    private static boolean verify(Method method) {
+        try {
+            Class<?>[] params = method.getParameterTypes();
+            int arity = params.length;
+            if (arity == 0 || arity > 3) {
+                return false;
+            }
+            boolean lvalue = params[0] == LValue.class;
+            for (int i = 0; i + arity <= SAMPLES.length; i++) {
+                Variable[] expected = new Variable[arity];
+                Variable[] actual = new Variable[arity];
+                for (int j = 0; j < arity; j++) {
+                    expected[j] = new Variable(SAMPLES[i + j]);
+                    actual[j] = new Variable(SAMPLES[i + j]);
+                }
+                Compiled compiled;
+                if (lvalue) {
+                    compiled = arity == 1 ? compileIncrement(method.getName(), actual[0]) : compileAssign(method.getName(), actual[0], variable(actual[1]));
+                } else {
+                    Compiled[] args = new Compiled[arity];
+                    for (int j = 0; j < arity; j++) {
+                        args[j] = variable(actual[j]);
+                    }
+                    compiled = inline(method, args);
+                }
+                if (compiled == null) {
+                    return false;
+                }
+                double expectedValue = Function.invokeMethod(method, expected);
+                double actualValue = compiled.get();
+                if (Double.compare(expectedValue, actualValue) != 0 || Double.compare(expected[0].value, actual[0].value) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Throwable ignore) {
+            return false;
+        }
+    }
+
+    private static Compiled variable(final Variable variable) {
+        return () -> variable.value;
+    }
+
+    private static <T> T getField(Object node, String name) {
+        try {
+            Field field = node.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return (T) field.get(node);
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+}